@@ -30,8 +30,11 @@ import static org.openlmis.cce.domain.CatalogItem.EQUIPMENT_CODE;
 import static org.openlmis.cce.domain.CatalogItem.MANUFACTURER_FIELD;
 import static org.openlmis.cce.domain.CatalogItem.MODEL_FIELD;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceException;
 import org.junit.Before;
@@ -198,7 +201,7 @@ public class CatalogItemRepositoryIntegrationTest
   }
 
   @Test
-  public void shouldFindExistingByEquipmentCode() throws Exception {
+  public void shouldFindExistingByEquipmentCodeAndModel() throws Exception {
     CatalogItem item = generateInstance();
     repository.save(item);
 
@@ -208,6 +211,38 @@ public class CatalogItemRepositoryIntegrationTest
     assertThat(found.get(0), hasProperty(EQUIPMENT_CODE, equalTo(item.getEquipmentCode())));
   }
 
+  @Test
+  public void shouldNotFindExistingByEquipmentCodeOfOtherModel() throws Exception {
+    CatalogItem item = generateInstance();
+    repository.save(item);
+
+    CatalogItem other = generateInstance();
+    other.setEquipmentCode(item.getEquipmentCode());
+    other.setModel("other-model");
+
+    List<CatalogItem> found = repository.findExisting(singletonList(other));
+
+    assertThat(found, hasSize(0));
+  }
+
+  @Test
+  public void shouldFindMatchingByManufacturerAndModelOfItemsWithEquipmentCode()
+      throws Exception {
+    CatalogItem item = generateInstance();
+    repository.save(item);
+
+    CatalogItem other = generateInstance();
+    other.setManufacturer(item.getManufacturer());
+    other.setModel(item.getModel());
+
+    List<CatalogItem> existing = repository.findExisting(singletonList(other));
+    List<CatalogItem> matching = repository.findMatching(singletonList(other));
+
+    assertThat(existing, hasSize(0));
+    assertThat(matching, hasSize(1));
+    assertThat(matching.get(0), hasProperty("id", equalTo(item.getId())));
+  }
+
   @Test
   public void shouldFindExistingByManufacturerAndModel() throws Exception {
     CatalogItem item = generateInstance();
@@ -223,4 +258,67 @@ public class CatalogItemRepositoryIntegrationTest
         hasProperty(MODEL_FIELD, equalTo(item.getModel()))
     ));
   }
+
+  @Test
+  public void shouldInsertNewAndUpdateExistingItemsInSingleUpsert() {
+    CatalogItem existing = repository.save(generateInstance());
+    entityManager.flush();
+    entityManager.clear();
+
+    CatalogItem updated = new CatalogItemDataBuilder()
+        .withId(existing.getId())
+        .withEquipmentCode(existing.getEquipmentCode())
+        .withType("new-type")
+        .withModel(existing.getModel())
+        .withManufacturer(existing.getManufacturer())
+        .withArchiveFlag()
+        .build();
+    CatalogItem inserted = generateInstance();
+    inserted.setId(UUID.randomUUID());
+
+    int count = repository.upsert(Arrays.asList(updated, inserted));
+    entityManager.clear();
+
+    assertEquals(2, count);
+    CatalogItem found = repository.findOne(existing.getId());
+    assertEquals("new-type", found.getType());
+    assertTrue(found.getArchived());
+    assertEquals(updated.getDimensions(), found.getDimensions());
+    assertEquals(updated.getEnergySource(), found.getEnergySource());
+    assertEquals(inserted.getEquipmentCode(),
+        repository.findOne(inserted.getId()).getEquipmentCode());
+  }
+
+  @Test
+  public void shouldLockKeysOfItemsUntilEndOfTransaction() {
+    CatalogItem withEquipmentCode = generateInstance();
+    CatalogItem withoutEquipmentCode = generateInstance();
+    withoutEquipmentCode.setEquipmentCode(null);
+
+    List<CatalogItem> items = Arrays.asList(withEquipmentCode, withoutEquipmentCode);
+    repository.lockKeys(items);
+    repository.lockKeys(items);
+
+    Number locks = (Number) entityManager.createNativeQuery("SELECT count(*) FROM pg_locks"
+        + " WHERE locktype = 'advisory' AND pid = pg_backend_pid() AND classid = ?")
+        .setParameter(1, AdvisoryLocks.CATALOG_ITEM_KEYS)
+        .getSingleResult();
+
+    assertEquals(3, locks.intValue());
+  }
+
+  @Test
+  public void shouldStreamAllAndDetachConsumedItems() {
+    repository.save(generateInstance());
+    repository.save(generateInstance());
+    entityManager.flush();
+    entityManager.clear();
+
+    try (Stream<CatalogItem> stream = repository.streamAll(1)) {
+      List<CatalogItem> found = stream.collect(Collectors.toList());
+
+      assertThat(found, hasSize(3));
+      found.forEach(item -> assertFalse(entityManager.contains(item)));
+    }
+  }
 }
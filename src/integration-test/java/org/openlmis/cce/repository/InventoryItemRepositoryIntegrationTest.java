@@ -18,11 +18,17 @@ package org.openlmis.cce.repository;
 import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
+import com.google.common.collect.Lists;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.UUID;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceException;
@@ -34,8 +40,11 @@ import org.openlmis.cce.InventoryItemDataBuilder;
 import org.openlmis.cce.domain.CatalogItem;
 import org.openlmis.cce.domain.FunctionalStatus;
 import org.openlmis.cce.domain.InventoryItem;
+import org.openlmis.cce.util.KeysetCursor;
+import org.openlmis.cce.util.KeysetPage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.repository.CrudRepository;
@@ -116,7 +125,7 @@ public class InventoryItemRepositoryIntegrationTest
     repository.save(item4);
 
     Page<InventoryItem> inventoryItems = repository.search(Arrays.asList(item.getFacilityId(),
-        item3.getFacilityId()), null, null, pageable);
+        item3.getFacilityId()), null, null, true, pageable);
 
     assertEquals(3, inventoryItems.getTotalElements());
     for (InventoryItem inventoryItem : inventoryItems) {
@@ -124,7 +133,7 @@ public class InventoryItemRepositoryIntegrationTest
           || inventoryItem.getFacilityId().equals(item3.getFacilityId()));
     }
 
-    inventoryItems = repository.search(singletonList(item.getFacilityId()), null, null, pageable);
+    inventoryItems = repository.search(singletonList(item.getFacilityId()), null, null, true, pageable);
 
     assertEquals(2, inventoryItems.getTotalElements());
     for (InventoryItem inventoryItem : inventoryItems) {
@@ -149,7 +158,7 @@ public class InventoryItemRepositoryIntegrationTest
     repository.save(item4);
 
     Page<InventoryItem> inventoryItems = repository.search(null, Arrays.asList(item.getProgramId(),
-        item3.getProgramId()), null, pageable);
+        item3.getProgramId()), null, true, pageable);
 
     assertEquals(3, inventoryItems.getTotalElements());
     for (InventoryItem inventoryItem : inventoryItems) {
@@ -157,7 +166,7 @@ public class InventoryItemRepositoryIntegrationTest
           || inventoryItem.getProgramId().equals(item3.getProgramId()));
     }
 
-    inventoryItems = repository.search(null, singletonList(item.getProgramId()), null, pageable);
+    inventoryItems = repository.search(null, singletonList(item.getProgramId()), null, true, pageable);
 
     assertEquals(2, inventoryItems.getTotalElements());
     for (InventoryItem inventoryItem : inventoryItems) {
@@ -181,7 +190,7 @@ public class InventoryItemRepositoryIntegrationTest
     item3 = repository.save(item3);
 
     Page<InventoryItem> inventoryItems = repository.search(singletonList(item.getFacilityId()),
-        singletonList(item2.getProgramId()), null, pageable);
+        singletonList(item2.getProgramId()), null, true, pageable);
 
     assertEquals(1, inventoryItems.getTotalElements());
     assertTrue(inventoryItems.getContent().get(0).getProgramId().equals(item3.getProgramId()));
@@ -209,6 +218,7 @@ public class InventoryItemRepositoryIntegrationTest
         null,
         null,
         FunctionalStatus.FUNCTIONING,
+        true,
         pageable
     );
 
@@ -267,7 +277,7 @@ public class InventoryItemRepositoryIntegrationTest
         .build();
     repository.save(item3);
 
-    Page<InventoryItem> inventoryItems = repository.search(null, null, null, pageable);
+    Page<InventoryItem> inventoryItems = repository.search(null, null, null, true, pageable);
 
     assertEquals(3, inventoryItems.getTotalElements());
     InventoryItem inventoryItem0 = inventoryItems.getContent().get(0);
@@ -288,6 +298,62 @@ public class InventoryItemRepositoryIntegrationTest
     assertTrue(catalogItem1.getType().compareTo(catalogItem2.getType()) < 0);
   }
 
+  @Test
+  public void shouldFindInventoryItemsAfterCursor() {
+    List<InventoryItem> items = Lists.newArrayList();
+    for (String name : Arrays.asList("d", "b", "a", "c", "b")) {
+      items.add(repository.save(getInventoryItemDataBuilder()
+          .withReferenceName(name)
+          .build()));
+    }
+
+    List<UUID> expected = items
+        .stream()
+        // postgres compares UUIDs as unsigned bytes, just like their text representations
+        .sorted(Comparator.comparing(InventoryItem::getReferenceName)
+            .thenComparing(item -> item.getId().toString()))
+        .map(InventoryItem::getId)
+        .collect(Collectors.toList());
+
+    Pageable keysetPageable = new PageRequest(0, 2, new Sort("referenceName"));
+    List<UUID> found = Lists.newArrayList();
+    KeysetCursor cursor = KeysetCursor.start();
+    KeysetPage<InventoryItem> page;
+
+    do {
+      page = repository.search(null, null, null, true, cursor, keysetPageable);
+
+      assertEquals(5, page.getTotalElements());
+      assertTrue(page.getNumberOfElements() <= 2);
+      page.forEach(item -> found.add(item.getId()));
+
+      cursor = page.hasNext() ? KeysetCursor.decode(page.getNextCursor()) : null;
+    } while (null != cursor);
+
+    assertNull(page.getNextCursor());
+    assertEquals(expected, found);
+  }
+
+  @Test
+  public void shouldNotCountAllInventoryItemsIfTotalIsNotRequested() {
+    for (int i = 0; i < 5; i++) {
+      repository.save(getInventoryItemDataBuilder().build());
+    }
+
+    Page<InventoryItem> page = repository.search(null, null, null, false,
+        new PageRequest(0, 2));
+
+    assertEquals(2, page.getNumberOfElements());
+    assertEquals(3, page.getTotalElements());
+    assertTrue(page.hasNext());
+
+    page = repository.search(null, null, null, false, new PageRequest(2, 2));
+
+    assertEquals(1, page.getNumberOfElements());
+    assertEquals(5, page.getTotalElements());
+    assertFalse(page.hasNext());
+  }
+
   @Test
   public void shouldReturnVolumeByFacility() {
     CatalogItem catalogItem2 = new CatalogItemDataBuilder()
@@ -344,6 +410,27 @@ public class InventoryItemRepositoryIntegrationTest
     assertEquals(Optional.empty(), volume);
   }
 
+  @Test
+  public void shouldStreamItemsByFacilityIdsAndProgramIdsAndDetachConsumedItems() {
+    InventoryItem item = repository.save(generateInstance());
+    repository.save(getInventoryItemDataBuilder()
+        .withFacilityId(item.getFacilityId())
+        .withProgramId(UUID.randomUUID())
+        .build());
+    repository.save(generateInstance());
+    entityManager.flush();
+    entityManager.clear();
+
+    try (Stream<InventoryItem> stream = repository.streamAll(singletonList(item.getFacilityId()),
+        singletonList(item.getProgramId()), null, 1)) {
+      List<InventoryItem> found = stream.collect(Collectors.toList());
+
+      assertEquals(1, found.size());
+      assertEquals(item.getId(), found.get(0).getId());
+      assertFalse(entityManager.contains(found.get(0)));
+    }
+  }
+
   private InventoryItemDataBuilder getInventoryItemDataBuilder() {
     return new InventoryItemDataBuilder()
         .withId(null)
@@ -0,0 +1,200 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+import org.junit.Test;
+import org.openlmis.cce.domain.OutboxEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+public class OutboxEventRepositoryIntegrationTest
+    extends BaseCrudRepositoryIntegrationTest<OutboxEvent> {
+
+  private static final String TYPE = "FUNCTIONAL_STATUS_CHANGE";
+
+  @Autowired
+  private OutboxEventRepository repository;
+
+  @Autowired
+  private EntityManager entityManager;
+
+  private ZonedDateTime now = ZonedDateTime.now();
+
+  @Override
+  CrudRepository<OutboxEvent, UUID> getRepository() {
+    return repository;
+  }
+
+  @Override
+  OutboxEvent generateInstance() {
+    return OutboxEvent.newInstance(TYPE, "{\"id\":" + getNextInstanceNumber() + "}", now);
+  }
+
+  @Test
+  public void shouldClaimOnlyUndeliveredDueEventsInOrder() {
+    OutboxEvent later = repository.save(OutboxEvent.newInstance(TYPE, "{}", now.minusMinutes(1)));
+    OutboxEvent earlier = repository.save(
+        OutboxEvent.newInstance(TYPE, "{}", now.minusMinutes(2)));
+    repository.save(OutboxEvent.newInstance(TYPE, "{}", now.plusMinutes(1)));
+
+    OutboxEvent delivered = OutboxEvent.newInstance(TYPE, "{}", now.minusMinutes(3));
+    delivered.markDelivered(now);
+    delivered = repository.save(delivered);
+    entityManager.flush();
+
+    List<OutboxEvent> claimed = repository.claimDue(now, 10);
+
+    assertEquals(2, claimed.size());
+    assertEquals(earlier.getId(), claimed.get(0).getId());
+    assertEquals(later.getId(), claimed.get(1).getId());
+    assertNull(repository.claim(delivered.getId(), now));
+  }
+
+  @Test
+  public void shouldNotClaimEventsClaimedElsewhereUntilClaimExpires() {
+    OutboxEvent claimed = OutboxEvent.newInstance(TYPE, "{}", now.minusMinutes(1));
+    claimed.markClaimed(now.plusMinutes(1));
+    claimed = repository.save(claimed);
+    entityManager.flush();
+
+    assertEquals(0, repository.claimDue(now, 10).size());
+    assertNull(repository.claim(claimed.getId(), now));
+    assertEquals(1, repository.claimDue(now.plusMinutes(2), 10).size());
+  }
+
+  @Test
+  public void shouldNotClaimFailedEvents() {
+    OutboxEvent failed = OutboxEvent.newInstance(TYPE, "{}", now.minusMinutes(1));
+    failed.markFailed(null, "error", now);
+    failed = repository.save(failed);
+    entityManager.flush();
+
+    assertEquals(0, repository.claimDue(now, 10).size());
+    assertNull(repository.claim(failed.getId(), now));
+  }
+
+  @Test
+  public void shouldLimitClaimedEvents() {
+    repository.save(generateInstance());
+    repository.save(generateInstance());
+    entityManager.flush();
+
+    assertEquals(1, repository.claimDue(now, 1).size());
+  }
+
+  @Test
+  public void shouldDeleteEventsDeliveredBeforeGivenDate() {
+    OutboxEvent delivered = generateInstance();
+    delivered.markDelivered(now.minusDays(2));
+    delivered = repository.save(delivered);
+
+    assertEquals(1, repository.deleteDeliveredBefore(now.minusDays(1)));
+    assertFalse(repository.exists(delivered.getId()));
+  }
+
+  @Test
+  public void shouldDeleteEventsFailedBeforeGivenDate() {
+    OutboxEvent failed = generateInstance();
+    failed.markFailed(null, "error", now.minusDays(2));
+    failed = repository.save(failed);
+
+    OutboxEvent retried = generateInstance();
+    retried.markFailed(now, "error", now.minusDays(2));
+    retried = repository.save(retried);
+
+    assertEquals(1, repository.deleteFailedBefore(now.minusDays(1)));
+    assertFalse(repository.exists(failed.getId()));
+    assertTrue(repository.exists(retried.getId()));
+  }
+
+  @Test
+  public void shouldKeepNotifiedRecipientsOfClaimedEvents() {
+    UUID recipientId = UUID.randomUUID();
+    OutboxEvent event = generateInstance();
+    event.addNotifiedRecipients(Collections.singleton(recipientId));
+    event = repository.save(event);
+    entityManager.flush();
+    entityManager.clear();
+
+    assertEquals(Collections.singleton(recipientId),
+        repository.claim(event.getId(), now).getNotifiedRecipients());
+  }
+
+  @Test
+  public void shouldDeleteNotifiedRecipientsWithEvents() {
+    OutboxEvent delivered = generateInstance();
+    delivered.addNotifiedRecipients(Collections.singleton(UUID.randomUUID()));
+    delivered.markDelivered(now.minusDays(2));
+    delivered = repository.save(delivered);
+    entityManager.flush();
+
+    assertEquals(1, repository.deleteDeliveredBefore(now.minusDays(1)));
+    assertFalse(repository.exists(delivered.getId()));
+  }
+
+  @Test(expected = ObjectOptimisticLockingFailureException.class)
+  public void shouldNotSaveOutcomeOfEventClaimedAgain() {
+    OutboxEvent event = repository.save(generateInstance());
+    entityManager.flush();
+    entityManager.clear();
+
+    OutboxEvent late = repository.findOne(event.getId());
+    entityManager.clear();
+
+    OutboxEvent claimedAgain = repository.findOne(event.getId());
+    claimedAgain.markClaimed(now.plusMinutes(5));
+    entityManager.flush();
+    entityManager.clear();
+
+    late.markDelivered(now);
+    repository.save(late);
+    entityManager.flush();
+  }
+
+  @Test
+  public void shouldLockWindowsUntilEndOfTransaction() {
+    repository.lockWindows(TYPE);
+    repository.lockWindows(TYPE);
+
+    Number locks = (Number) entityManager.createNativeQuery("SELECT count(*) FROM pg_locks"
+        + " WHERE locktype = 'advisory' AND pid = pg_backend_pid() AND classid = ?")
+        .setParameter(1, AdvisoryLocks.OUTBOX_WINDOWS)
+        .getSingleResult();
+
+    assertEquals(1, locks.intValue());
+  }
+
+  @Test
+  public void shouldFindEndOfOpenDeliveryWindow() {
+    repository.save(OutboxEvent.newInstance(TYPE, "{}", now, now.plusMinutes(1)));
+    repository.save(OutboxEvent.newInstance(TYPE, "{}", now, now.minusMinutes(1)));
+
+    assertEquals(now.plusMinutes(1).toInstant(),
+        repository.findOpenWindowEnd(TYPE, now).toInstant());
+    assertNull(repository.findOpenWindowEnd(TYPE, now.plusMinutes(2)));
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.repository;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+import org.junit.Test;
+import org.openlmis.cce.domain.UploadJob;
+import org.openlmis.cce.domain.UploadJobStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.repository.CrudRepository;
+
+public class UploadJobRepositoryIntegrationTest
+    extends BaseCrudRepositoryIntegrationTest<UploadJob> {
+
+  @Autowired
+  private UploadJobRepository repository;
+
+  @Autowired
+  private EntityManager entityManager;
+
+  private ZonedDateTime now = ZonedDateTime.now();
+
+  @Override
+  CrudRepository<UploadJob, UUID> getRepository() {
+    return repository;
+  }
+
+  @Override
+  UploadJob generateInstance() {
+    return UploadJob.newInstance("file" + getNextInstanceNumber() + ".csv", now,
+        now.plusMinutes(1));
+  }
+
+  @Test
+  public void shouldUpdateProgressOfJob() {
+    UploadJob job = repository.save(generateInstance());
+    entityManager.flush();
+
+    repository.markStarted(job.getId(), UploadJobStatus.RUNNING, now);
+    repository.addRowsRead(job.getId(), 250);
+    repository.addRowsRead(job.getId(), 100);
+    repository.addRowsWritten(job.getId(), 250);
+    repository.addRowsFailed(job.getId(), 50, "first error");
+    repository.addRowsFailed(job.getId(), 50, "second error");
+    repository.markFinished(job.getId(), UploadJobStatus.COMPLETED, now.plusSeconds(1));
+    entityManager.clear();
+
+    UploadJob found = repository.findOne(job.getId());
+
+    assertEquals(UploadJobStatus.COMPLETED, found.getStatus());
+    assertEquals(350, found.getRowsRead());
+    assertEquals(250, found.getRowsWritten());
+    assertEquals(100, found.getRowsFailed());
+    assertEquals("first error", found.getError());
+    assertEquals(now.plusSeconds(1).toInstant(), found.getFinishedDate().toInstant());
+  }
+
+  @Test
+  public void shouldMarkJobAsFailedWithError() {
+    UploadJob job = repository.save(generateInstance());
+    entityManager.flush();
+
+    repository.markFinished(job.getId(), UploadJobStatus.FAILED, now, "invalid header");
+    entityManager.clear();
+
+    UploadJob found = repository.findOne(job.getId());
+
+    assertEquals(UploadJobStatus.FAILED, found.getStatus());
+    assertEquals("invalid header", found.getError());
+  }
+
+  @Test
+  public void shouldFailActiveJobsWithExpiredLease() {
+    UploadJob renewed = repository.save(generateInstance());
+    UploadJob expired = repository.save(generateInstance());
+    UploadJob completed = repository.save(generateInstance());
+    entityManager.flush();
+
+    List<UploadJobStatus> active = Arrays.asList(UploadJobStatus.PENDING, UploadJobStatus.RUNNING);
+    repository.markFinished(completed.getId(), UploadJobStatus.COMPLETED, now);
+    repository.renewLeases(Collections.singletonList(renewed.getId()), active,
+        now.plusMinutes(10));
+
+    int failed = repository.markExpired(active, UploadJobStatus.FAILED, now.plusMinutes(5),
+        "interrupted");
+    entityManager.clear();
+
+    assertEquals(1, failed);
+    assertEquals(UploadJobStatus.PENDING, repository.findOne(renewed.getId()).getStatus());
+    assertEquals(UploadJobStatus.FAILED, repository.findOne(expired.getId()).getStatus());
+    assertEquals("interrupted", repository.findOne(expired.getId()).getError());
+    assertEquals(UploadJobStatus.COMPLETED, repository.findOne(completed.getId()).getStatus());
+  }
+}
@@ -19,6 +19,7 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
@@ -34,11 +35,20 @@ import static org.openlmis.cce.i18n.PermissionMessageKeys.ERROR_NO_FOLLOWING_PER
 import com.jayway.restassured.response.Response;
 import com.jayway.restassured.specification.RequestSpecification;
 import guru.nidi.ramltester.junit.RamlMatchers;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Arrays;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
@@ -46,15 +56,24 @@ import org.openlmis.cce.domain.CatalogItem;
 import org.openlmis.cce.domain.Dimensions;
 import org.openlmis.cce.domain.EnergySource;
 import org.openlmis.cce.domain.StorageTemperature;
+import org.openlmis.cce.domain.UploadJob;
+import org.openlmis.cce.domain.UploadJobStatus;
 import org.openlmis.cce.dto.CatalogItemDto;
+import org.openlmis.cce.dto.UploadJobDto;
 import org.openlmis.cce.dto.UploadResultDto;
+import org.openlmis.cce.dto.UploadValidationResultDto;
 import org.openlmis.cce.service.PermissionService;
+import org.openlmis.cce.service.UploadJobService;
+import org.openlmis.cce.service.UploadJobService.UploadTask;
 import org.openlmis.cce.util.PageImplRepresentation;
 import org.openlmis.cce.util.Pagination;
+import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.multipart.MultipartFile;
 
 @SuppressWarnings({"PMD.UnusedPrivateField", "PMD.TooManyMethods"})
 public class CatalogItemControllerIntegrationTest extends BaseWebIntegrationTest {
@@ -65,6 +84,9 @@ public class CatalogItemControllerIntegrationTest extends BaseWebIntegrationTest
   private CatalogItemDto catalogItemDto;
   private String managePermission = PermissionService.CCE_MANAGE;
 
+  @MockBean
+  private UploadJobService uploadJobService;
+
 
   @Before
   public void setUp() {
@@ -207,7 +229,7 @@ public class CatalogItemControllerIntegrationTest extends BaseWebIntegrationTest
         .statusCode(200)
         .extract().as(UploadResultDto.class);
 
-    verify(catalogItemRepository).save(anyListOf(CatalogItem.class));
+    verify(catalogItemRepository).upsert(anyListOf(CatalogItem.class));
     assertEquals(1, result.getAmount().intValue());
     // changed to responseChecks because file parameter is required
     // and RAML check does not recognizes it in request
@@ -224,7 +246,7 @@ public class CatalogItemControllerIntegrationTest extends BaseWebIntegrationTest
         .statusCode(200)
         .extract().as(UploadResultDto.class);
 
-    verify(catalogItemRepository).save(anyListOf(CatalogItem.class));
+    verify(catalogItemRepository).upsert(anyListOf(CatalogItem.class));
     assertEquals(1, result.getAmount().intValue());
     // changed to responseChecks because file parameter is required
     // and RAML check does not recognizes it in request
@@ -242,7 +264,7 @@ public class CatalogItemControllerIntegrationTest extends BaseWebIntegrationTest
         .body(MESSAGE, equalTo(getMessage(
             ERROR_UPLOAD_MISSING_MANDATORY_COLUMNS, "[From PQS catalog, Archived]")));
 
-    verify(catalogItemRepository, never()).save(anyListOf(CatalogItem.class));
+    verify(catalogItemRepository, never()).upsert(anyListOf(CatalogItem.class));
     // changed to responseChecks because file parameter is required
     // and RAML check does not recognizes it in request
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.responseChecks());
@@ -265,7 +287,110 @@ public class CatalogItemControllerIntegrationTest extends BaseWebIntegrationTest
         .body(MESSAGE, equalTo(errorMsg));
 
     // then
-    verify(catalogItemRepository, never()).save(any(CatalogItem.class));
+    verify(catalogItemRepository, never()).upsert(anyListOf(CatalogItem.class));
+    // changed to responseChecks because file parameter is required
+    // and RAML check does not recognizes it in request
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.responseChecks());
+  }
+
+  @Test
+  public void shouldUploadGzipCompressedCsv() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (OutputStream outputStream = new GZIPOutputStream(compressed)) {
+      outputStream.write(readBasicCsv());
+    }
+
+    UploadResultDto result = upload("csvWithBasicColumns.csv.gz", compressed.toByteArray())
+        .then()
+        .statusCode(200)
+        .extract().as(UploadResultDto.class);
+
+    verify(catalogItemRepository).upsert(anyListOf(CatalogItem.class));
+    assertEquals(1, result.getAmount().intValue());
+    // changed to responseChecks because file parameter is required
+    // and RAML check does not recognizes it in request
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.responseChecks());
+  }
+
+  @Test
+  public void shouldUploadCsvFromZipArchive() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (ZipOutputStream outputStream = new ZipOutputStream(compressed)) {
+      outputStream.putNextEntry(new ZipEntry("catalog/"));
+      outputStream.putNextEntry(new ZipEntry("catalog/csvWithBasicColumns.csv"));
+      outputStream.write(readBasicCsv());
+    }
+
+    UploadResultDto result = upload("csvWithBasicColumns.zip", compressed.toByteArray())
+        .then()
+        .statusCode(200)
+        .extract().as(UploadResultDto.class);
+
+    verify(catalogItemRepository).upsert(anyListOf(CatalogItem.class));
+    assertEquals(1, result.getAmount().intValue());
+    // changed to responseChecks because file parameter is required
+    // and RAML check does not recognizes it in request
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.responseChecks());
+  }
+
+  @Test
+  public void shouldReturnErrorsOfAllRowsWithoutUploadingInDryRun() throws IOException {
+    ClassPathResource basicCsvToUpload =
+        new ClassPathResource("csv/catalogItems/csvWithInvalidColumnValues.csv");
+
+    UploadValidationResultDto result = validate(basicCsvToUpload)
+        .then()
+        .statusCode(200)
+        .extract().as(UploadValidationResultDto.class);
+
+    verify(catalogItemRepository, never()).upsert(anyListOf(CatalogItem.class));
+    assertEquals(1, result.getAmount().intValue());
+    assertEquals(1, result.getErrorCount().intValue());
+    assertEquals(1, result.getErrors().size());
+    assertEquals(1, result.getErrors().get(0).getRow().intValue());
+    // changed to responseChecks because file parameter is required
+    // and RAML check does not recognizes it in request
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.responseChecks());
+  }
+
+  @Test
+  public void shouldReturnNoErrorsForValidCsvInDryRun() throws IOException {
+    ClassPathResource basicCsvToUpload =
+        new ClassPathResource("csv/catalogItems/csvWithBasicColumns.csv");
+
+    UploadValidationResultDto result = validate(basicCsvToUpload)
+        .then()
+        .statusCode(200)
+        .extract().as(UploadValidationResultDto.class);
+
+    verify(catalogItemRepository).findMatching(anyListOf(CatalogItem.class));
+    verify(catalogItemRepository, never()).upsert(anyListOf(CatalogItem.class));
+    assertEquals(1, result.getAmount().intValue());
+    assertEquals(0, result.getErrorCount().intValue());
+    assertEquals(0, result.getErrors().size());
+    // changed to responseChecks because file parameter is required
+    // and RAML check does not recognizes it in request
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.responseChecks());
+  }
+
+  @Test
+  public void shouldAcceptCsvToUploadInBackground() throws IOException {
+    UploadJob job = UploadJob.newInstance("csvWithBasicColumns.csv", ZonedDateTime.now(),
+        ZonedDateTime.now().plusMinutes(1));
+    job.setId(UUID.randomUUID());
+    when(uploadJobService.submit(any(MultipartFile.class), any(UploadTask.class)))
+        .thenReturn(job);
+    ClassPathResource basicCsvToUpload =
+        new ClassPathResource("csv/catalogItems/csvWithBasicColumns.csv");
+
+    UploadJobDto result = upload(basicCsvToUpload, true)
+        .then()
+        .statusCode(202)
+        .extract().as(UploadJobDto.class);
+
+    assertEquals(job.getId(), result.getId());
+    assertEquals(UploadJobStatus.PENDING, result.getStatus());
+    verify(catalogItemRepository, never()).upsert(anyListOf(CatalogItem.class));
     // changed to responseChecks because file parameter is required
     // and RAML check does not recognizes it in request
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.responseChecks());
@@ -291,15 +416,15 @@ public class CatalogItemControllerIntegrationTest extends BaseWebIntegrationTest
 
   @Test
   public void shouldDownloadCsvWithAllPossibleFields() throws IOException {
-    when(catalogItemRepository.findAll())
-        .thenReturn(Arrays.asList(CatalogItem.newInstance(catalogItemDto)));
+    when(catalogItemRepository.streamAll(anyInt()))
+        .thenReturn(Stream.of(CatalogItem.newInstance(catalogItemDto)));
 
     String csvContent = download()
         .then()
         .statusCode(200)
         .extract().body().asString();
 
-    verify(catalogItemRepository).findAll();
+    verify(catalogItemRepository).streamAll(anyInt());
     assertEquals("From PQS catalog,PQS equipment code,Type,Model,Manufacturer,"
         + "Energy source,Date of prequal,Storage temperature,Max operating temp (degrees C),"
         + "Min operating temp (degrees C),Energy consumption (NA for solar),Holdover time (hours),"
@@ -310,17 +435,40 @@ public class CatalogItemControllerIntegrationTest extends BaseWebIntegrationTest
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
   }
 
+  @Test
+  public void shouldDownloadGzipCompressedCsv() throws IOException {
+    when(catalogItemRepository.streamAll(anyInt()))
+        .thenReturn(Stream.empty());
+
+    Response response = download("csv.gz");
+
+    response
+        .then()
+        .statusCode(200)
+        .contentType("application/gzip")
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=catalog_items.csv.gz");
+
+    String csvContent = StreamUtils.copyToString(new GZIPInputStream(
+        new ByteArrayInputStream(response.asByteArray())), StandardCharsets.UTF_8);
+
+    assertEquals("From PQS catalog,PQS equipment code,Type,Model,Manufacturer,"
+        + "Energy source,Date of prequal,Storage temperature,Max operating temp (degrees C),"
+        + "Min operating temp (degrees C),Energy consumption (NA for solar),Holdover time (hours),"
+        + "Gross volume,Net volume,Dimensions,Visible in catalog,Archived\r\n", csvContent);
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
   @Test
   public void shouldDownloadCsvWithHeadersOnly() throws IOException {
-    when(catalogItemRepository.findAll())
-        .thenReturn(Collections.emptyList());
+    when(catalogItemRepository.streamAll(anyInt()))
+        .thenReturn(Stream.empty());
 
     String csvContent = download()
         .then()
         .statusCode(200)
         .extract().body().asString();
 
-    verify(catalogItemRepository).findAll();
+    verify(catalogItemRepository).streamAll(anyInt());
     assertEquals("From PQS catalog,PQS equipment code,Type,Model,Manufacturer,"
         + "Energy source,Date of prequal,Storage temperature,Max operating temp (degrees C),"
         + "Min operating temp (degrees C),Energy consumption (NA for solar),Holdover time (hours),"
@@ -387,23 +535,61 @@ public class CatalogItemControllerIntegrationTest extends BaseWebIntegrationTest
   }
 
   private Response download() {
+    return download("csv");
+  }
+
+  private Response download(String format) {
     return restAssured.given()
         .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
         .contentType("text/csv")
-        .queryParam("format", "csv")
+        .queryParam("format", format)
         .when()
         .get(RESOURCE_URL);
   }
 
+  private byte[] readBasicCsv() throws IOException {
+    return StreamUtils.copyToByteArray(
+        new ClassPathResource("csv/catalogItems/csvWithBasicColumns.csv").getInputStream());
+  }
+
+  private Response upload(String fileName, byte[] content) {
+    return restAssured.given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .contentType(MediaType.MULTIPART_FORM_DATA_VALUE)
+        .queryParam("format", "csv")
+        .multiPart(FILE_PARAM_NAME, fileName, content)
+        .when()
+        .post(RESOURCE_URL);
+  }
+
   private Response upload(ClassPathResource basicCsvToUpload) throws IOException {
+    return upload(basicCsvToUpload, false);
+  }
+
+  private Response upload(ClassPathResource basicCsvToUpload, boolean async)
+      throws IOException {
     return restAssured.given()
         .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
         .contentType(MediaType.MULTIPART_FORM_DATA_VALUE)
         .queryParam("format", "csv")
+        .queryParam("async", async)
         .multiPart(FILE_PARAM_NAME,
             basicCsvToUpload.getFilename(),
             basicCsvToUpload.getInputStream())
         .when()
         .post(RESOURCE_URL);
   }
-}
\ No newline at end of file
+
+  private Response validate(ClassPathResource csvToValidate) throws IOException {
+    return restAssured.given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .contentType(MediaType.MULTIPART_FORM_DATA_VALUE)
+        .queryParam("format", "csv")
+        .queryParam("dryRun", true)
+        .multiPart(FILE_PARAM_NAME,
+            csvToValidate.getFilename(),
+            csvToValidate.getInputStream())
+        .when()
+        .post(RESOURCE_URL);
+  }
+}
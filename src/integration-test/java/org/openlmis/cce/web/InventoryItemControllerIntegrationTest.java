@@ -18,11 +18,16 @@ package org.openlmis.cce.web;
 import static java.util.Collections.singleton;
 import static java.util.Collections.singletonList;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
@@ -30,6 +35,8 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.openlmis.cce.i18n.CsvUploadMessageKeys.ERROR_UPLOAD_RECORD_INVALID;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_CATALOG_ITEM_NOT_FOUND;
 import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_ITEM_ALREADY_EXISTS;
 import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_ITEM_NOT_FOUND;
 import static org.openlmis.cce.i18n.PermissionMessageKeys.ERROR_NO_FOLLOWING_PERMISSION;
@@ -41,9 +48,11 @@ import static org.openlmis.cce.service.ResourceNames.USERS;
 import com.jayway.restassured.response.Response;
 import com.jayway.restassured.specification.RequestSpecification;
 import guru.nidi.ramltester.junit.RamlMatchers;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Stream;
 import org.javers.common.collections.Lists;
 import org.javers.common.collections.Sets;
 import org.junit.Before;
@@ -58,12 +67,15 @@ import org.openlmis.cce.dto.CatalogItemDto;
 import org.openlmis.cce.dto.InventoryItemDto;
 import org.openlmis.cce.dto.ObjectReferenceDto;
 import org.openlmis.cce.dto.PermissionStringDto;
+import org.openlmis.cce.dto.PermissionStringIndex;
+import org.openlmis.cce.dto.UploadResultDto;
 import org.openlmis.cce.dto.UserDto;
 import org.openlmis.cce.dto.UserObjectReferenceDto;
 import org.openlmis.cce.service.PermissionService;
 import org.openlmis.cce.service.PermissionStrings;
 import org.openlmis.cce.util.PageImplRepresentation;
 import org.openlmis.cce.util.Pagination;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -75,6 +87,7 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
   private static final String RESOURCE_URL_WITH_ID = RESOURCE_URL + "/{id}";
   private static final String EXPAND = "expand";
   private static final String LAST_MODIFIER = "lastModifier";
+  private static final String FORMAT = "format";
 
   private InventoryItemDto inventoryItemDto;
   private InventoryItem inventoryItem;
@@ -221,6 +234,7 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
         eq(singleton(facilityId)),
         eq(singleton(programId)),
         eq(FunctionalStatus.FUNCTIONING),
+        eq(true),
         any(Pageable.class)))
         .thenReturn(Pagination.getPage(singletonList(inventoryItem), null, 1));
 
@@ -234,6 +248,104 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
   }
 
+  @Test
+  public void shouldUploadCsvWithMandatoryFields() throws IOException {
+    CatalogItem catalogItem = new CatalogItemDataBuilder()
+        .withId(UUID.fromString("4cd525c5-ea4a-4fa6-a5b6-1bd3a1a5b4fd"))
+        .build();
+    given(catalogItemRepository.findOne(catalogItem.getId())).willReturn(catalogItem);
+
+    UploadResultDto result = upload(
+        new ClassPathResource("csv/inventoryItems/csvWithMandatoryColumns.csv"))
+        .then()
+        .statusCode(200)
+        .extract().as(UploadResultDto.class);
+
+    assertEquals(2, result.getAmount().intValue());
+    assertNotNull(result.getDurationMillis());
+    verify(inventoryItemRepository)
+        .findByEquipmentTrackingIdInAndCatalogItem_ModelInAndCatalogItem_TypeIn(
+            Sets.asSet("eq-1", "eq-2"), singleton(catalogItem.getModel()),
+            singleton(catalogItem.getType()));
+    verify(inventoryItemRepository).save(anyListOf(InventoryItem.class));
+    // changed to responseChecks because file parameter is required
+    // and RAML check does not recognizes it in request
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.responseChecks());
+  }
+
+  @Test
+  public void shouldNotUploadCsvWithUnknownCatalogItem() throws IOException {
+    upload(new ClassPathResource("csv/inventoryItems/csvWithMandatoryColumns.csv"))
+        .then()
+        .statusCode(400)
+        .body(MESSAGE, equalTo(getMessage(ERROR_CATALOG_ITEM_NOT_FOUND,
+            "4cd525c5-ea4a-4fa6-a5b6-1bd3a1a5b4fd")));
+
+    verify(inventoryItemRepository, never()).save(anyListOf(InventoryItem.class));
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.responseChecks());
+  }
+
+  @Test
+  public void shouldNotUploadCsvWithInvalidColumnValues() throws IOException {
+    upload(new ClassPathResource("csv/inventoryItems/csvWithInvalidColumnValues.csv"))
+        .then()
+        .statusCode(400)
+        .body(MESSAGE, equalTo(getMessage(ERROR_UPLOAD_RECORD_INVALID, 1,
+            "'BROKEN' could not be parsed as a FunctionalStatus")));
+
+    verify(inventoryItemRepository, never()).save(anyListOf(InventoryItem.class));
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.responseChecks());
+  }
+
+  @Test
+  public void shouldDownloadCsvWithInventoryItemsForGivenParameters() {
+    UUID userId = mockUser();
+    UUID programId = UUID.randomUUID();
+    UUID facilityId = UUID.randomUUID();
+
+    mockUserPermissions(userId, programId, facilityId);
+
+    when(inventoryItemRepository.streamAll(
+        eq(singleton(facilityId)),
+        eq(singleton(programId)),
+        eq(FunctionalStatus.FUNCTIONING),
+        anyInt()))
+        .thenReturn(Stream.of(inventoryItem));
+
+    String csvContent = restAssured
+        .given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .queryParam(FORMAT, "csv")
+        .queryParam("functionalStatus", FunctionalStatus.FUNCTIONING.toString())
+        .when()
+        .get(RESOURCE_URL)
+        .then()
+        .statusCode(200)
+        .extract().body().asString();
+
+    String[] lines = csvContent.split("\r\n");
+    assertEquals(2, lines.length);
+    assertThat(lines[0], startsWith("ID,Facility ID,Program ID,Catalog item ID,"));
+    assertThat(lines[1], startsWith(inventoryItem.getId() + "," + inventoryItem.getFacilityId()
+        + "," + inventoryItem.getProgramId() + "," + inventoryItem.getCatalogItem().getId()));
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldNotDownloadInventoryItemsInUnsupportedFormat() {
+    restAssured
+        .given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .queryParam(FORMAT, "pdf")
+        .when()
+        .get(RESOURCE_URL)
+        .then()
+        .statusCode(400);
+
+    verify(inventoryItemRepository, never()).streamAll(any(), any(), any(), anyInt());
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
   @Test
   public void shouldRetrieveAllInventoryItemsWithExpandedLastModifier() {
     UUID userId = mockUser();
@@ -246,6 +358,7 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
         eq(singleton(facilityId)),
         eq(singleton(programId)),
         eq(null),
+        eq(true),
         any(Pageable.class)))
         .thenReturn(Pagination.getPage(
             Lists.asList(inventoryItem, inventoryItem, inventoryItem),
@@ -258,9 +371,9 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
 
     assertEquals(3, resultPage.getContent().size());
 
-    // All 3 DTOs should be expanded
-    verify(objReferenceExpander, times(3))
-        .expandDto(any(InventoryItemDto.class), eq(Lists.asList(LAST_MODIFIER)));
+    // All 3 DTOs should be expanded at once
+    verify(objReferenceExpander)
+        .expandDtos(argThat(hasSize(3)), eq(Lists.asList(LAST_MODIFIER)));
 
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
   }
@@ -285,7 +398,8 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
     );
 
     PermissionStrings.Handler handler = mock(PermissionStrings.Handler.class);
-    when(handler.get()).thenReturn(Sets.asSet(permission1, permission2, permission3, permission4));
+    when(handler.get()).thenReturn(PermissionStringIndex.of(
+        Sets.asSet(permission1, permission2, permission3, permission4)));
 
     when(permissionService.getPermissionStrings(userId)).thenReturn(handler);
 
@@ -293,6 +407,7 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
         eq(singleton(facilityId)),
         eq(singleton(programId)),
         eq(null),
+        eq(true),
         any(Pageable.class)))
         .thenReturn(Pagination.getPage(singletonList(inventoryItem), null, 1));
 
@@ -318,7 +433,7 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
     );
 
     PermissionStrings.Handler handler = mock(PermissionStrings.Handler.class);
-    when(handler.get()).thenReturn(Sets.asSet(permission1, permission2));
+    when(handler.get()).thenReturn(PermissionStringIndex.of(Sets.asSet(permission1, permission2)));
 
     when(permissionService.getPermissionStrings(userId)).thenReturn(handler);
 
@@ -326,6 +441,7 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
         eq(Sets.asSet(permission1.getFacilityId(), permission2.getFacilityId())),
         eq(singleton(programId)),
         eq(null),
+        eq(true),
         any(Pageable.class)))
         .thenReturn(Pagination.getPage(singletonList(inventoryItem), null, 1));
 
@@ -497,7 +613,7 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
     );
 
     PermissionStrings.Handler handler = mock(PermissionStrings.Handler.class);
-    when(handler.get()).thenReturn(singleton(permission));
+    when(handler.get()).thenReturn(PermissionStringIndex.of(singleton(permission)));
 
     when(permissionService.getPermissionStrings(userId)).thenReturn(handler);
   }
@@ -599,4 +715,14 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
         .when()
         .delete(RESOURCE_URL_WITH_ID);
   }
+
+  private Response upload(ClassPathResource csvToUpload) throws IOException {
+    return restAssured.given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .contentType(MediaType.MULTIPART_FORM_DATA_VALUE)
+        .queryParam(FORMAT, "csv")
+        .multiPart("file", csvToUpload.getFilename(), csvToUpload.getInputStream())
+        .when()
+        .post(RESOURCE_URL);
+  }
 }
@@ -0,0 +1,111 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+import static org.openlmis.cce.i18n.PermissionMessageKeys.ERROR_NO_FOLLOWING_PERMISSION;
+import static org.openlmis.cce.i18n.UploadJobMessageKeys.ERROR_JOB_NOT_FOUND;
+
+import com.jayway.restassured.response.Response;
+import guru.nidi.ramltester.junit.RamlMatchers;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlmis.cce.domain.UploadJob;
+import org.openlmis.cce.domain.UploadJobStatus;
+import org.openlmis.cce.dto.UploadJobDto;
+import org.openlmis.cce.repository.UploadJobRepository;
+import org.openlmis.cce.service.PermissionService;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class UploadJobControllerIntegrationTest extends BaseWebIntegrationTest {
+
+  private static final String RESOURCE_URL = "/api/uploadJobs/{id}";
+
+  @MockBean
+  private UploadJobRepository uploadJobRepository;
+
+  private UploadJob job;
+
+  @Before
+  public void setUp() {
+    mockUserAuthenticated();
+    job = UploadJob.newInstance("catalog.csv", ZonedDateTime.now().minusMinutes(1),
+        ZonedDateTime.now().plusMinutes(1));
+    job.setId(UUID.randomUUID());
+  }
+
+  @Test
+  public void shouldReturnProgressOfUploadJob() {
+    ReflectionTestUtils.setField(job, "status", UploadJobStatus.RUNNING);
+    ReflectionTestUtils.setField(job, "startedDate", ZonedDateTime.now().minusSeconds(10));
+    ReflectionTestUtils.setField(job, "rowsRead", 500);
+    ReflectionTestUtils.setField(job, "rowsWritten", 250);
+    ReflectionTestUtils.setField(job, "rowsFailed", 250);
+    when(uploadJobRepository.findOne(job.getId())).thenReturn(job);
+
+    UploadJobDto response = getUploadJob(job.getId())
+        .then()
+        .statusCode(200)
+        .extract().as(UploadJobDto.class);
+
+    assertEquals(job.getId(), response.getId());
+    assertEquals(UploadJobStatus.RUNNING, response.getStatus());
+    assertEquals(500, response.getRowsRead().intValue());
+    assertEquals(250, response.getRowsWritten().intValue());
+    assertEquals(250, response.getRowsFailed().intValue());
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldReturn404IfUploadJobNotFound() {
+    getUploadJob(UUID.randomUUID())
+        .then()
+        .statusCode(404)
+        .body(MESSAGE, equalTo(getMessage(ERROR_JOB_NOT_FOUND)));
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldReturnForbiddenIfUserHasNoCceManagePermission() {
+    doThrow(mockPermissionException(PermissionService.CCE_MANAGE))
+        .when(permissionService).canManageCce();
+
+    getUploadJob(job.getId())
+        .then()
+        .statusCode(403)
+        .body(MESSAGE, equalTo(
+            getMessage(ERROR_NO_FOLLOWING_PERMISSION, PermissionService.CCE_MANAGE)));
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  private Response getUploadJob(UUID id) {
+    return restAssured.given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .pathParam("id", id)
+        .when()
+        .get(RESOURCE_URL);
+  }
+}
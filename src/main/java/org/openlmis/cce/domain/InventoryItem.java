@@ -64,6 +64,7 @@ public class InventoryItem extends BaseEntity {
   @Column(columnDefinition = TEXT)
   private String equipmentTrackingId;
 
+  @Getter
   @Column(columnDefinition = TEXT, nullable = false)
   private String referenceName;
 
@@ -140,9 +141,21 @@ public class InventoryItem extends BaseEntity {
    * @return new instance of Inventory.
    */
   public static InventoryItem newInstance(Importer importer) {
+    return newInstance(importer, CatalogItem.newInstance(importer.getCatalogItem()));
+  }
+
+  /**
+   * Creates new instance based on data from {@link Importer} that references the given catalog
+   * item instead of the one provided by the importer.
+   *
+   * @param importer    instance of {@link Importer}
+   * @param catalogItem catalog item of the new inventory item
+   * @return new instance of Inventory.
+   */
+  public static InventoryItem newInstance(Importer importer, CatalogItem catalogItem) {
     InventoryItem inventoryItem = new InventoryItem(
         importer.getFacilityId(),
-        CatalogItem.newInstance(importer.getCatalogItem()),
+        catalogItem,
         importer.getProgramId(),
         importer.getEquipmentTrackingId(),
         importer.getReferenceName(),
@@ -0,0 +1,173 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.domain;
+
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import javax.persistence.CollectionTable;
+import javax.persistence.Column;
+import javax.persistence.ElementCollection;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
+import javax.persistence.JoinColumn;
+import javax.persistence.Table;
+import javax.persistence.Version;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * An event that has to be delivered to other services. It is saved in the same transaction as
+ * the change it describes and removed from the queue once it has been delivered, or once it has
+ * failed too many times. While it is being delivered, it is claimed for a limited time, so that
+ * it is not delivered by other instances of the service at the same time. The event is versioned,
+ * so the outcome of a delivery that outlived its claim cannot overwrite the outcome recorded by
+ * the instance that claimed the event next. The users already notified about the event are
+ * recorded, so a retry after a partial failure only notifies the remaining ones.
+ */
+@Entity
+@Table(name = "cce_outbox")
+@NoArgsConstructor
+@Getter
+public class OutboxEvent extends BaseEntity {
+  private static final int MAX_ERROR_LENGTH = 2000;
+  private static final String TIMESTAMP = "timestamp with time zone";
+
+  @Column(columnDefinition = TEXT, nullable = false)
+  private String type;
+
+  @Column(columnDefinition = TEXT, nullable = false)
+  private String payload;
+
+  @Column(columnDefinition = TIMESTAMP, nullable = false)
+  private ZonedDateTime createdDate;
+
+  @Column(nullable = false)
+  @Enumerated(EnumType.STRING)
+  private OutboxEventStatus status;
+
+  @Column(nullable = false)
+  private int attempts;
+
+  @Column(columnDefinition = TIMESTAMP)
+  private ZonedDateTime nextAttemptDate;
+
+  @Column(columnDefinition = TIMESTAMP)
+  private ZonedDateTime claimedUntil;
+
+  @Column(columnDefinition = TIMESTAMP)
+  private ZonedDateTime deliveredDate;
+
+  @Column(columnDefinition = TIMESTAMP)
+  private ZonedDateTime failedDate;
+
+  @Column(columnDefinition = TEXT)
+  private String lastError;
+
+  @Version
+  private long version;
+
+  @ElementCollection(fetch = FetchType.EAGER)
+  @Column(name = "recipientid")
+  @CollectionTable(
+      name = "cce_outbox_notified_recipients",
+      joinColumns = @JoinColumn(name = "eventid"))
+  private Set<UUID> notifiedRecipients = new HashSet<>();
+
+  private OutboxEvent(String type, String payload, ZonedDateTime createdDate,
+      ZonedDateTime nextAttemptDate) {
+    this.type = type;
+    this.payload = payload;
+    this.createdDate = createdDate;
+    this.nextAttemptDate = nextAttemptDate;
+    this.status = OutboxEventStatus.PENDING;
+  }
+
+  public static OutboxEvent newInstance(String type, String payload, ZonedDateTime createdDate) {
+    return new OutboxEvent(type, payload, createdDate, createdDate);
+  }
+
+  public static OutboxEvent newInstance(String type, String payload, ZonedDateTime createdDate,
+      ZonedDateTime nextAttemptDate) {
+    return new OutboxEvent(type, payload, createdDate, nextAttemptDate);
+  }
+
+  public boolean isDelivered() {
+    return OutboxEventStatus.DELIVERED == status;
+  }
+
+  public boolean isFailed() {
+    return OutboxEventStatus.FAILED == status;
+  }
+
+  /**
+   * Claims this event for delivery, so other instances do not deliver it until the given time.
+   *
+   * @param until when the claim expires if the outcome of the delivery is not recorded
+   */
+  public void markClaimed(ZonedDateTime until) {
+    claimedUntil = until;
+  }
+
+  /**
+   * Records users that have been notified about this event, so they are not notified again.
+   *
+   * @param recipientIds ids of the notified users
+   */
+  public void addNotifiedRecipients(Collection<UUID> recipientIds) {
+    notifiedRecipients.addAll(recipientIds);
+  }
+
+  /**
+   * Marks this event as delivered, so it is not delivered again.
+   *
+   * @param date when the event was delivered
+   */
+  public void markDelivered(ZonedDateTime date) {
+    attempts++;
+    status = OutboxEventStatus.DELIVERED;
+    deliveredDate = date;
+    claimedUntil = null;
+    nextAttemptDate = null;
+    lastError = null;
+  }
+
+  /**
+   * Records a failed attempt to deliver this event.
+   *
+   * @param nextAttempt when the event should be delivered again, or {@code null} if it should
+   *                    not be delivered anymore
+   * @param error       the reason of the failure
+   * @param date        when the attempt failed
+   */
+  public void markFailed(ZonedDateTime nextAttempt, String error, ZonedDateTime date) {
+    attempts++;
+    claimedUntil = null;
+    nextAttemptDate = nextAttempt;
+    lastError = null == error || error.length() <= MAX_ERROR_LENGTH
+        ? error
+        : error.substring(0, MAX_ERROR_LENGTH);
+
+    if (null == nextAttempt) {
+      status = OutboxEventStatus.FAILED;
+      failedDate = date;
+    }
+  }
+}
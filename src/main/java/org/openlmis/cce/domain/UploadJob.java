@@ -0,0 +1,99 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.domain;
+
+import java.time.ZonedDateTime;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * A file uploaded in the background. The job is saved when the file is accepted, and its
+ * progress is updated chunk by chunk while the file is processed, so any instance of the service
+ * can report it. The file itself is kept only by the instance that accepted it, which renews the
+ * lease of the job until it is finished, so a job whose lease expired will never be finished.
+ */
+@Entity
+@Table(name = "cce_upload_jobs")
+@NoArgsConstructor
+@Getter
+public class UploadJob extends BaseEntity {
+  private static final String TIMESTAMP = "timestamp with time zone";
+
+  @Column(columnDefinition = TEXT)
+  private String fileName;
+
+  @Column(nullable = false)
+  @Enumerated(EnumType.STRING)
+  private UploadJobStatus status;
+
+  @Column(nullable = false)
+  private int rowsRead;
+
+  @Column(nullable = false)
+  private int rowsWritten;
+
+  @Column(nullable = false)
+  private int rowsFailed;
+
+  @Column(columnDefinition = TIMESTAMP, nullable = false)
+  private ZonedDateTime createdDate;
+
+  @Column(columnDefinition = TIMESTAMP)
+  private ZonedDateTime startedDate;
+
+  @Column(columnDefinition = TIMESTAMP)
+  private ZonedDateTime finishedDate;
+
+  @Column(columnDefinition = TEXT)
+  private String error;
+
+  @Column(columnDefinition = TIMESTAMP, nullable = false)
+  private ZonedDateTime leaseUntil;
+
+  private UploadJob(String fileName, ZonedDateTime createdDate, ZonedDateTime leaseUntil) {
+    this.fileName = fileName;
+    this.status = UploadJobStatus.PENDING;
+    this.createdDate = createdDate;
+    this.leaseUntil = leaseUntil;
+  }
+
+  public static UploadJob newInstance(String fileName, ZonedDateTime createdDate,
+      ZonedDateTime leaseUntil) {
+    return new UploadJob(fileName, createdDate, leaseUntil);
+  }
+
+  /**
+   * Returns how many rows per second have been written so far, or {@code null} if the job has
+   * not been started yet.
+   *
+   * @param now current time, used while the job is still running
+   */
+  public Double getRowsPerSecond(ZonedDateTime now) {
+    if (null == startedDate) {
+      return null;
+    }
+
+    ZonedDateTime end = null == finishedDate ? now : finishedDate;
+    long durationMillis = end.toInstant().toEpochMilli() - startedDate.toInstant().toEpochMilli();
+
+    return durationMillis > 0 ? rowsWritten * 1000.0 / durationMillis : null;
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.dto;
+
+import static org.openlmis.cce.web.csv.processor.CsvCellProcessors.ENUM_TYPE;
+import static org.openlmis.cce.web.csv.processor.CsvCellProcessors.INT_TYPE;
+import static org.openlmis.cce.web.csv.processor.CsvCellProcessors.LOCAL_DATE_TYPE;
+import static org.openlmis.cce.web.csv.processor.CsvCellProcessors.UUID_TYPE;
+import static org.openlmis.cce.web.csv.processor.CsvCellProcessors.ZONED_DATE_TIME_TYPE;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.openlmis.cce.domain.BackupGeneratorStatus;
+import org.openlmis.cce.domain.CatalogItem;
+import org.openlmis.cce.domain.FunctionalStatus;
+import org.openlmis.cce.domain.InventoryItem;
+import org.openlmis.cce.domain.ManualTemperatureGaugeType;
+import org.openlmis.cce.domain.ReasonNotWorkingOrNotInUse;
+import org.openlmis.cce.domain.RemoteTemperatureMonitorType;
+import org.openlmis.cce.domain.Utilization;
+import org.openlmis.cce.domain.VoltageRegulatorStatus;
+import org.openlmis.cce.domain.VoltageStabilizerStatus;
+import org.openlmis.cce.web.csv.model.ImportField;
+
+/**
+ * Flat representation of an inventory item used as a row of CSV files. Referenced resources are
+ * represented by their ids.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = false)
+public class InventoryItemCsvDto extends BaseDto implements InventoryItem.Exporter,
+    InventoryItem.Importer {
+
+  public static final String ID = "ID";
+  public static final String FACILITY_ID = "Facility ID";
+  public static final String PROGRAM_ID = "Program ID";
+  public static final String CATALOG_ITEM_ID = "Catalog item ID";
+  public static final String EQUIPMENT_TRACKING_ID = "Equipment tracking ID";
+  public static final String REFERENCE_NAME = "Reference name";
+  public static final String YEAR_OF_INSTALLATION = "Year of installation";
+  public static final String YEAR_OF_WARRANTY_EXPIRY = "Year of warranty expiry";
+  public static final String SOURCE = "Source";
+  public static final String FUNCTIONAL_STATUS = "Functional status";
+  public static final String REASON_NOT_WORKING_OR_NOT_IN_USE =
+      "Reason not working or not in use";
+  public static final String UTILIZATION = "Utilization";
+  public static final String VOLTAGE_STABILIZER = "Voltage stabilizer";
+  public static final String BACKUP_GENERATOR = "Backup generator";
+  public static final String VOLTAGE_REGULATOR = "Voltage regulator";
+  public static final String MANUAL_TEMPERATURE_GAUGE = "Manual temperature gauge";
+  public static final String REMOTE_TEMPERATURE_MONITOR = "Remote temperature monitor";
+  public static final String REMOTE_TEMPERATURE_MONITOR_ID = "Remote temperature monitor ID";
+  public static final String ADDITIONAL_NOTES = "Additional notes";
+  public static final String DECOMMISSION_DATE = "Decommission date";
+  public static final String MODIFIED_DATE = "Modified date";
+  public static final String LAST_MODIFIER_ID = "Last modifier ID";
+
+  // declared again because only fields declared by this class are mapped to columns
+  @ImportField(name = ID, type = UUID_TYPE)
+  private UUID id;
+
+  @ImportField(name = FACILITY_ID, mandatory = true, type = UUID_TYPE)
+  private UUID facilityId;
+
+  @ImportField(name = PROGRAM_ID, mandatory = true, type = UUID_TYPE)
+  private UUID programId;
+
+  @ImportField(name = CATALOG_ITEM_ID, mandatory = true, type = UUID_TYPE)
+  private UUID catalogItemId;
+
+  @ImportField(name = EQUIPMENT_TRACKING_ID)
+  private String equipmentTrackingId;
+
+  @ImportField(name = REFERENCE_NAME, mandatory = true)
+  private String referenceName;
+
+  @ImportField(name = YEAR_OF_INSTALLATION, mandatory = true, type = INT_TYPE)
+  private Integer yearOfInstallation;
+
+  @ImportField(name = YEAR_OF_WARRANTY_EXPIRY, type = INT_TYPE)
+  private Integer yearOfWarrantyExpiry;
+
+  @ImportField(name = SOURCE)
+  private String source;
+
+  @ImportField(name = FUNCTIONAL_STATUS, mandatory = true, type = ENUM_TYPE)
+  private FunctionalStatus functionalStatus;
+
+  @ImportField(name = REASON_NOT_WORKING_OR_NOT_IN_USE, type = ENUM_TYPE)
+  private ReasonNotWorkingOrNotInUse reasonNotWorkingOrNotInUse;
+
+  @ImportField(name = UTILIZATION, mandatory = true, type = ENUM_TYPE)
+  private Utilization utilization;
+
+  @ImportField(name = VOLTAGE_STABILIZER, mandatory = true, type = ENUM_TYPE)
+  private VoltageStabilizerStatus voltageStabilizer;
+
+  @ImportField(name = BACKUP_GENERATOR, mandatory = true, type = ENUM_TYPE)
+  private BackupGeneratorStatus backupGenerator;
+
+  @ImportField(name = VOLTAGE_REGULATOR, mandatory = true, type = ENUM_TYPE)
+  private VoltageRegulatorStatus voltageRegulator;
+
+  @ImportField(name = MANUAL_TEMPERATURE_GAUGE, mandatory = true, type = ENUM_TYPE)
+  private ManualTemperatureGaugeType manualTemperatureGauge;
+
+  @ImportField(name = REMOTE_TEMPERATURE_MONITOR, mandatory = true, type = ENUM_TYPE)
+  private RemoteTemperatureMonitorType remoteTemperatureMonitor;
+
+  @ImportField(name = REMOTE_TEMPERATURE_MONITOR_ID)
+  private String remoteTemperatureMonitorId;
+
+  @ImportField(name = ADDITIONAL_NOTES)
+  private String additionalNotes;
+
+  @ImportField(name = DECOMMISSION_DATE, type = LOCAL_DATE_TYPE)
+  private LocalDate decommissionDate;
+
+  @ImportField(name = MODIFIED_DATE, type = ZONED_DATE_TIME_TYPE)
+  private ZonedDateTime modifiedDate;
+
+  @ImportField(name = LAST_MODIFIER_ID, type = UUID_TYPE)
+  private UUID lastModifierId;
+
+  /**
+   * Creates new instance based on the given inventory item.
+   */
+  public static InventoryItemCsvDto newInstance(InventoryItem inventoryItem) {
+    InventoryItemCsvDto dto = new InventoryItemCsvDto();
+    inventoryItem.export(dto);
+    return dto;
+  }
+
+  @Override
+  public CatalogItem.Importer getCatalogItem() {
+    if (null == catalogItemId) {
+      return null;
+    }
+
+    CatalogItemDto catalogItem = new CatalogItemDto();
+    catalogItem.setId(catalogItemId);
+    return catalogItem;
+  }
+
+  @Override
+  public void setCatalogItem(CatalogItem catalogItem) {
+    this.catalogItemId = null == catalogItem ? null : catalogItem.getId();
+  }
+}
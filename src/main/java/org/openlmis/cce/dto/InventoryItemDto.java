@@ -159,7 +159,7 @@ public class InventoryItemDto extends BaseDto
   @JsonIgnore
   @Override
   public UUID getFacilityId() {
-    return facility.getId();
+    return null == facility ? null : facility.getId();
   }
 
   @JsonIgnore
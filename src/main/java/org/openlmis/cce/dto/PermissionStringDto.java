@@ -15,12 +15,7 @@
 
 package org.openlmis.cce.dto;
 
-import static org.apache.commons.lang3.StringUtils.splitByWholeSeparator;
-
-import java.util.Collection;
-import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
@@ -33,24 +28,12 @@ import lombok.Getter;
 @EqualsAndHashCode
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
 public class PermissionStringDto {
+  private static final char SEPARATOR = '|';
+
   private String rightName;
   private UUID facilityId;
   private UUID programId;
 
-  /**
-   * Parses a collection of string representation of permissionString to set with object
-   * representation.
-   *
-   * @param permissionStrings a collection of string representation
-   * @return a set with {@link PermissionStringDto} instances
-   */
-  public static Set<PermissionStringDto> from(Collection<String> permissionStrings) {
-    return permissionStrings
-        .parallelStream()
-        .map(PermissionStringDto::from)
-        .collect(Collectors.toSet());
-  }
-
   /**
    * Parses string representation of permissionString to object representation.
    *
@@ -58,10 +41,23 @@ public class PermissionStringDto {
    * @return {@link PermissionStringDto}
    */
   public static PermissionStringDto from(String permissionString) {
-    String[] elements = splitByWholeSeparator(permissionString, "|");
-    String rightName = elements[0];
-    UUID facilityId = elements.length > 1 ? UUID.fromString(elements[1]) : null;
-    UUID programId = elements.length > 2 ? UUID.fromString(elements[2]) : null;
+    int facilityStart = permissionString.indexOf(SEPARATOR);
+
+    if (facilityStart < 0) {
+      return create(permissionString, null, null);
+    }
+
+    String rightName = permissionString.substring(0, facilityStart);
+    int programStart = permissionString.indexOf(SEPARATOR, facilityStart + 1);
+
+    if (programStart < 0) {
+      UUID facilityId = UUID.fromString(permissionString.substring(facilityStart + 1));
+      return create(rightName, facilityId, null);
+    }
+
+    UUID facilityId = UUID.fromString(
+        permissionString.substring(facilityStart + 1, programStart));
+    UUID programId = UUID.fromString(permissionString.substring(programStart + 1));
 
     return create(rightName, facilityId, programId);
   }
@@ -0,0 +1,170 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.dto;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.unmodifiableSet;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Permission strings of a single user indexed by right name. Rights are looked up without
+ * allocating any objects and ids of facilities and programs for which the user has a given right
+ * are precomputed. Right names are case insensitive.
+ */
+public final class PermissionStringIndex {
+  private final Set<String> generalRights;
+  private final Map<String, Map<UUID, Set<UUID>>> programsByFacility;
+  private final Map<String, Set<UUID>> programs;
+  private final int size;
+
+  private PermissionStringIndex(Set<String> generalRights,
+                                Map<String, Map<UUID, Set<UUID>>> programsByFacility,
+                                Map<String, Set<UUID>> programs, int size) {
+    this.generalRights = generalRights;
+    this.programsByFacility = programsByFacility;
+    this.programs = programs;
+    this.size = size;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Creates an index of the given permission strings.
+   */
+  public static PermissionStringIndex of(Collection<PermissionStringDto> permissionStrings) {
+    Builder builder = builder();
+    permissionStrings.forEach(builder::add);
+
+    return builder.build();
+  }
+
+  /**
+   * Checks if there is a permission string with the given right, facility and program. If both
+   * facility and program are null, the right has to be a general (not facility based) one.
+   */
+  public boolean hasRight(String rightName, UUID facilityId, UUID programId) {
+    String key = normalize(rightName);
+
+    if (null == facilityId) {
+      return null == programId && generalRights.contains(key);
+    }
+
+    Set<UUID> facilityPrograms = programsByFacility
+        .getOrDefault(key, emptyMap())
+        .get(facilityId);
+
+    return null != facilityPrograms && facilityPrograms.contains(programId);
+  }
+
+  /**
+   * Returns ids of all facilities for which there is a permission string with the given right.
+   */
+  public Set<UUID> getFacilityIds(String rightName) {
+    return unmodifiableSet(programsByFacility.getOrDefault(normalize(rightName), emptyMap())
+        .keySet());
+  }
+
+  /**
+   * Returns ids of all programs for which there is a permission string with the given right.
+   */
+  public Set<UUID> getProgramIds(String rightName) {
+    return unmodifiableSet(programs.getOrDefault(normalize(rightName), emptySet()));
+  }
+
+  /**
+   * Returns the number of indexed permission strings.
+   */
+  public int size() {
+    return size;
+  }
+
+  private static String normalize(String rightName) {
+    // returns the same instance if the right name is already in upper case
+    return rightName.toUpperCase(Locale.ENGLISH);
+  }
+
+  public static final class Builder {
+    private final Set<String> generalRights = new HashSet<>();
+    private final Map<String, Map<UUID, Set<UUID>>> programsByFacility = new HashMap<>();
+    private final Map<String, Set<UUID>> programs = new HashMap<>();
+    private final Map<UUID, UUID> ids = new HashMap<>();
+    private int size;
+
+    private Builder() {
+    }
+
+    /**
+     * Parses the given string representation of a permission string and adds it to the index.
+     */
+    public Builder add(String permissionString) {
+      return add(PermissionStringDto.from(permissionString));
+    }
+
+    /**
+     * Adds the given permission string to the index.
+     */
+    public Builder add(PermissionStringDto permissionString) {
+      String key = normalize(permissionString.getRightName());
+      UUID facilityId = canonical(permissionString.getFacilityId());
+      UUID programId = canonical(permissionString.getProgramId());
+      boolean added;
+
+      if (null == facilityId) {
+        added = generalRights.add(key);
+      } else {
+        added = programsByFacility
+            .computeIfAbsent(key, right -> new HashMap<>())
+            .computeIfAbsent(facilityId, facility -> new HashSet<>())
+            .add(programId);
+
+        if (null != programId) {
+          programs.computeIfAbsent(key, right -> new HashSet<>()).add(programId);
+        }
+      }
+
+      if (added) {
+        ++size;
+      }
+
+      return this;
+    }
+
+    public PermissionStringIndex build() {
+      return new PermissionStringIndex(generalRights, programsByFacility, programs, size);
+    }
+
+    // the same facilities and programs appear in many permission strings so only one instance
+    // of each id is kept in memory
+    private UUID canonical(UUID id) {
+      if (null == id) {
+        return null;
+      }
+
+      UUID existing = ids.putIfAbsent(id, id);
+      return null == existing ? id : existing;
+    }
+  }
+}
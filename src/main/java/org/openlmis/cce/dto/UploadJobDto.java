@@ -0,0 +1,61 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.dto;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.openlmis.cce.domain.UploadJob;
+import org.openlmis.cce.domain.UploadJobStatus;
+
+@Data
+@NoArgsConstructor
+public class UploadJobDto {
+  private UUID id;
+  private String fileName;
+  private UploadJobStatus status;
+  private Integer rowsRead;
+  private Integer rowsWritten;
+  private Integer rowsFailed;
+  private Double rowsPerSecond;
+  private ZonedDateTime createdDate;
+  private ZonedDateTime startedDate;
+  private ZonedDateTime finishedDate;
+  private String error;
+
+  /**
+   * Creates new instance based on the given job.
+   *
+   * @param job upload job
+   * @param now current time, used to calculate the throughput of a running job
+   */
+  public static UploadJobDto newInstance(UploadJob job, ZonedDateTime now) {
+    UploadJobDto dto = new UploadJobDto();
+    dto.id = job.getId();
+    dto.fileName = job.getFileName();
+    dto.status = job.getStatus();
+    dto.rowsRead = job.getRowsRead();
+    dto.rowsWritten = job.getRowsWritten();
+    dto.rowsFailed = job.getRowsFailed();
+    dto.rowsPerSecond = job.getRowsPerSecond(now);
+    dto.createdDate = job.getCreatedDate();
+    dto.startedDate = job.getStartedDate();
+    dto.finishedDate = job.getFinishedDate();
+    dto.error = job.getError();
+    return dto;
+  }
+}
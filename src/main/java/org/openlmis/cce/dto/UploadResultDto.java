@@ -22,8 +22,15 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 public class UploadResultDto {
   private Integer amount;
+  private Long durationMillis;
+  private Double rowsPerSecond;
 
-  public UploadResultDto(int amount) {
+  /**
+   * Creates new instance with the number of uploaded records and the time it took to upload them.
+   */
+  public UploadResultDto(int amount, long durationMillis) {
     this.amount = amount;
+    this.durationMillis = durationMillis;
+    this.rowsPerSecond = durationMillis > 0 ? amount * 1000.0 / durationMillis : null;
   }
 }
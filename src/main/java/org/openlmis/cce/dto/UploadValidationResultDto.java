@@ -0,0 +1,64 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.cce.dto;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.openlmis.cce.util.Message;
+import org.openlmis.cce.web.csv.parser.ValidationReport;
+
+@Data
+@NoArgsConstructor
+public class UploadValidationResultDto {
+  private Integer amount;
+  private Integer errorCount;
+  private Long durationMillis;
+  private List<RowErrorDto> errors;
+
+  /**
+   * Creates new instance based on the given report.
+   *
+   * @param report         result of the validation
+   * @param durationMillis time it took to validate the file
+   * @param localizer      used to localize messages of the reported errors
+   */
+  public static UploadValidationResultDto newInstance(
+      ValidationReport report, long durationMillis,
+      Function<Message, Message.LocalizedMessage> localizer) {
+    UploadValidationResultDto dto = new UploadValidationResultDto();
+    dto.amount = report.getRowCount();
+    dto.errorCount = report.getErrorCount();
+    dto.durationMillis = durationMillis;
+    dto.errors = report.getErrors()
+        .stream()
+        .map(error -> new RowErrorDto(error.getRow(), localizer.apply(error.getMessage())))
+        .collect(Collectors.toList());
+    return dto;
+  }
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static final class RowErrorDto {
+    private Integer row;
+    private Message.LocalizedMessage error;
+  }
+}
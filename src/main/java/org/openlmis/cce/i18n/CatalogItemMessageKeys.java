@@ -33,6 +33,8 @@ public class CatalogItemMessageKeys extends MessageKeys {
       join(ERROR_PREFIX, "equipmentCode", NOT_UNIQUE);
   public static final String ERROR_MANUFACTURER_MODEL_NOT_UNIQUE =
       join(ERROR_PREFIX, "manufacturerAndModel", NOT_UNIQUE);
+  public static final String ERROR_MANUFACTURER_MODEL_DUPLICATED =
+      join(ERROR_PREFIX, "manufacturerAndModel", "duplicated");
   public static final String ERROR_ID_MISMATCH =
           join(ERROR_PREFIX, "id", MISMATCH);
 }
@@ -20,8 +20,11 @@ public class InventoryItemMessageKeys extends MessageKeys {
 
   public static final String ERROR_ITEM_NOT_FOUND = ERROR_PREFIX + ".item.notFound";
   public static final String ERROR_ITEM_ALREADY_EXISTS = ERROR_PREFIX + ".item.alreadyExists";
+  public static final String ERROR_ITEM_DUPLICATED = ERROR_PREFIX + ".item.duplicated";
   public static final String ERROR_CATALOG_ITEM_REQUIRED =
       join(ERROR_PREFIX, "catalogItem", REQUIRED);
+  public static final String ERROR_CATALOG_ITEM_NOT_FOUND =
+      join(ERROR_PREFIX, "catalogItem", "notFound");
   public static final String ERROR_FACILITY_REQUIRED =
       join(ERROR_PREFIX, "facility", REQUIRED);
   public static final String ERROR_PROGRAM_ID_REQUIRED =
@@ -52,12 +55,20 @@ public class InventoryItemMessageKeys extends MessageKeys {
       join(ERROR_PREFIX, "userId", INVALID);
   public static final String ERROR_ID_MISMATCH =
       join(ERROR_PREFIX, "id", MISMATCH);
+  public static final String ERROR_FORMAT_NOT_ALLOWED =
+      join(ERROR_PREFIX, "format", "notAllowed");
 
   //notifications
   public static final String EMAIL_NONFUNCTIONAL_CCE_SUBJECT
       = SERVICE_PREFIX + ".email.nonfunctionalCce.subject";
   public static final String EMAIL_NONFUNCTIONAL_CCE_CONTENT
       = SERVICE_PREFIX + ".email.nonfunctionalCce.content";
+  public static final String EMAIL_NONFUNCTIONAL_CCE_DIGEST_SUBJECT
+      = SERVICE_PREFIX + ".email.nonfunctionalCceDigest.subject";
+  public static final String EMAIL_NONFUNCTIONAL_CCE_DIGEST_CONTENT
+      = SERVICE_PREFIX + ".email.nonfunctionalCceDigest.content";
+  public static final String EMAIL_NONFUNCTIONAL_CCE_DIGEST_ITEM
+      = SERVICE_PREFIX + ".email.nonfunctionalCceDigest.item";
 
 
   private InventoryItemMessageKeys() {
@@ -36,6 +36,8 @@ public abstract class MessageKeys {
   public static final String ERROR_FILE_IS_EMPTY = SERVICE_ERROR_PREFIX + ".file.empty";
   public static final String ERROR_INCORRECT_FILE_FORMAT = SERVICE_ERROR_PREFIX
       + ".file.format.incorrect";
+  public static final String ERROR_DECOMPRESSED_FILE_TOO_LARGE = SERVICE_ERROR_PREFIX
+      + ".file.decompressed.tooLarge";
 
   private static final String ERROR_DTO_EXPANSION = join(SERVICE_ERROR_PREFIX, "dtoExpansion");
   public static final String ERROR_DTO_EXPANSION_CAST = join(ERROR_DTO_EXPANSION, "cast");
@@ -15,7 +15,13 @@
 
 package org.openlmis.cce.i18n;
 
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
 import org.openlmis.cce.util.Message;
+import org.openlmis.cce.util.MessageTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.stereotype.Service;
@@ -26,8 +32,20 @@ public class MessageService {
   @Autowired
   private ExposedMessageSource messageSource;
 
+  private final ConcurrentMap<Pair<String, Locale>, MessageTemplate> templates =
+      new ConcurrentHashMap<>();
+
   public Message.LocalizedMessage localize(Message message) {
     return message.localMessage(messageSource, LocaleContextHolder.getLocale());
   }
 
-}
\ No newline at end of file
+  /**
+   * Returns the message with the given key in the given locale compiled into a template.
+   * Each message is compiled only once per locale.
+   */
+  public MessageTemplate getTemplate(String key, Locale locale) {
+    return templates.computeIfAbsent(ImmutablePair.of(key, locale), template -> MessageTemplate
+        .compile(new Message(key).localMessage(messageSource, locale).asMessage()));
+  }
+
+}
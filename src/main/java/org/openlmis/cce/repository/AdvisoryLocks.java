@@ -0,0 +1,31 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.cce.repository;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Namespaces of transaction-scoped advisory locks, passed as the first key of
+ * {@code pg_advisory_xact_lock(int, int)}, so that locks taken for different purposes never wait
+ * for each other even if their second keys are the same.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class AdvisoryLocks {
+  public static final int CATALOG_ITEM_KEYS = 1;
+  public static final int OUTBOX_WINDOWS = 2;
+}
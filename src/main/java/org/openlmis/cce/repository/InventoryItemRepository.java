@@ -15,6 +15,8 @@
 
 package org.openlmis.cce.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import org.javers.spring.annotation.JaversSpringDataAuditable;
@@ -34,6 +36,10 @@ public interface InventoryItemRepository extends PagingAndSortingRepository<Inve
   Boolean existsByEquipmentTrackingIdAndCatalogItem_ModelAndCatalogItem_Type(
       String equipmentTrackingId, String catalogItemModel, String catalogItemType);
 
+  List<InventoryItem> findByEquipmentTrackingIdInAndCatalogItem_ModelInAndCatalogItem_TypeIn(
+      Collection<String> equipmentTrackingIds, Collection<String> models,
+      Collection<String> types);
+
   @Query(value = "SELECT\n"
       + "    ci.*\n"
       + "FROM\n"
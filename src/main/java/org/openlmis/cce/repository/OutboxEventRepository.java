@@ -0,0 +1,89 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.repository;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+import org.openlmis.cce.domain.OutboxEvent;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+public interface OutboxEventRepository extends CrudRepository<OutboxEvent, UUID> {
+
+  /**
+   * Locks pending events that are due for delivery and not claimed by anyone. Events locked by
+   * other transactions are skipped, so several instances of the service can claim events at the
+   * same time without claiming any of them twice.
+   */
+  @Query(value = "SELECT o.*"
+      + " FROM cce.cce_outbox o"
+      + " WHERE o.status = 'PENDING'"
+      + "   AND o.nextattemptdate <= :now"
+      + "   AND (o.claimeduntil IS NULL OR o.claimeduntil <= :now)"
+      + " ORDER BY o.nextattemptdate"
+      + " LIMIT :limit"
+      + " FOR UPDATE SKIP LOCKED",
+      nativeQuery = true
+  )
+  List<OutboxEvent> claimDue(@Param("now") ZonedDateTime now, @Param("limit") int limit);
+
+  /**
+   * Locks the given event if it is pending, not claimed by anyone and not locked by another
+   * transaction.
+   */
+  @Query(value = "SELECT o.*"
+      + " FROM cce.cce_outbox o"
+      + " WHERE o.id = :id"
+      + "   AND o.status = 'PENDING'"
+      + "   AND (o.claimeduntil IS NULL OR o.claimeduntil <= :now)"
+      + " FOR UPDATE SKIP LOCKED",
+      nativeQuery = true
+  )
+  OutboxEvent claim(@Param("id") UUID id, @Param("now") ZonedDateTime now);
+
+  /**
+   * Locks delivery windows of events of the given type until the current transaction ends, so
+   * that concurrent transactions do not open a window each.
+   */
+  @Query(value = "SELECT 1 FROM pg_advisory_xact_lock("
+      + AdvisoryLocks.OUTBOX_WINDOWS + ", hashtext(:type))",
+      nativeQuery = true
+  )
+  Integer lockWindows(@Param("type") String type);
+
+  /**
+   * Returns when the open delivery window of events of the given type closes, that is the latest
+   * time of the first delivery attempt of events that are still waiting for it.
+   */
+  @Query("SELECT MAX(o.nextAttemptDate) FROM OutboxEvent o"
+      + " WHERE o.type = :type"
+      + "   AND o.status = org.openlmis.cce.domain.OutboxEventStatus.PENDING"
+      + "   AND o.attempts = 0"
+      + "   AND o.nextAttemptDate > :now")
+  ZonedDateTime findOpenWindowEnd(@Param("type") String type, @Param("now") ZonedDateTime now);
+
+  @Modifying
+  @Query("DELETE FROM OutboxEvent o WHERE o.deliveredDate < :before")
+  int deleteDeliveredBefore(@Param("before") ZonedDateTime before);
+
+  @Modifying
+  @Query("DELETE FROM OutboxEvent o WHERE o.failedDate < :before")
+  int deleteFailedBefore(@Param("before") ZonedDateTime before);
+
+}
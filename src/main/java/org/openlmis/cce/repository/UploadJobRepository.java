@@ -0,0 +1,107 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.repository;
+
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.UUID;
+import org.openlmis.cce.domain.UploadJob;
+import org.openlmis.cce.domain.UploadJobStatus;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Progress of upload jobs is updated in place by the threads that process their chunks, so the
+ * counters are incremented by the database instead of being read and saved back.
+ */
+@SuppressWarnings("PMD.AvoidDuplicateLiterals")
+public interface UploadJobRepository extends CrudRepository<UploadJob, UUID> {
+
+  @Transactional
+  @Modifying
+  @Query("UPDATE UploadJob j SET j.status = :status, j.startedDate = :date WHERE j.id = :id")
+  int markStarted(@Param("id") UUID id, @Param("status") UploadJobStatus status,
+      @Param("date") ZonedDateTime date);
+
+  @Transactional
+  @Modifying
+  @Query("UPDATE UploadJob j SET j.rowsRead = j.rowsRead + :rows WHERE j.id = :id")
+  int addRowsRead(@Param("id") UUID id, @Param("rows") int rows);
+
+  /**
+   * Adds written rows to the job. When called in the transaction of a chunk, the counter is
+   * committed together with the chunk.
+   */
+  @Transactional
+  @Modifying
+  @Query("UPDATE UploadJob j SET j.rowsWritten = j.rowsWritten + :rows WHERE j.id = :id")
+  int addRowsWritten(@Param("id") UUID id, @Param("rows") int rows);
+
+  /**
+   * Adds failed rows to the job. Only the error of the first failed chunk is kept.
+   */
+  @Transactional
+  @Modifying
+  @Query(value = "UPDATE cce.cce_upload_jobs"
+      + " SET rowsfailed = rowsfailed + :rows, error = COALESCE(error, :error)"
+      + " WHERE id = :id",
+      nativeQuery = true
+  )
+  int addRowsFailed(@Param("id") UUID id, @Param("rows") int rows,
+      @Param("error") String error);
+
+  @Transactional
+  @Modifying
+  @Query("UPDATE UploadJob j SET j.status = :status, j.finishedDate = :date WHERE j.id = :id")
+  int markFinished(@Param("id") UUID id, @Param("status") UploadJobStatus status,
+      @Param("date") ZonedDateTime date);
+
+  @Transactional
+  @Modifying
+  @Query("UPDATE UploadJob j"
+      + " SET j.status = :status, j.finishedDate = :date, j.error = :error"
+      + " WHERE j.id = :id")
+  int markFinished(@Param("id") UUID id, @Param("status") UploadJobStatus status,
+      @Param("date") ZonedDateTime date, @Param("error") String error);
+
+  /**
+   * Extends the lease of the given jobs, unless they have already been finished.
+   */
+  @Transactional
+  @Modifying
+  @Query("UPDATE UploadJob j SET j.leaseUntil = :leaseUntil"
+      + " WHERE j.id IN :ids AND j.status IN :statuses")
+  int renewLeases(@Param("ids") Collection<UUID> ids,
+      @Param("statuses") Collection<UploadJobStatus> statuses,
+      @Param("leaseUntil") ZonedDateTime leaseUntil);
+
+  /**
+   * Marks jobs with any of the given statuses whose lease expired before the given date as
+   * failed with the given error.
+   */
+  @Transactional
+  @Modifying
+  @Query("UPDATE UploadJob j"
+      + " SET j.status = :status, j.finishedDate = :date, j.error = :error"
+      + " WHERE j.status IN :statuses AND j.leaseUntil < :date")
+  int markExpired(@Param("statuses") Collection<UploadJobStatus> statuses,
+      @Param("status") UploadJobStatus status, @Param("date") ZonedDateTime date,
+      @Param("error") String error);
+
+}
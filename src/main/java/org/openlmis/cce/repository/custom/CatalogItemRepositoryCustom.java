@@ -16,6 +16,7 @@
 package org.openlmis.cce.repository.custom;
 
 import java.util.List;
+import java.util.stream.Stream;
 import org.openlmis.cce.domain.CatalogItem;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -25,5 +26,13 @@ public interface CatalogItemRepositoryCustom {
   Page<CatalogItem> search(String type, Boolean archived,
                            Boolean visibleInCatalog, Pageable pageable);
 
+  void lockKeys(List<CatalogItem> items);
+
   List<CatalogItem> findExisting(List<CatalogItem> items);
+
+  List<CatalogItem> findMatching(List<CatalogItem> items);
+
+  int upsert(List<CatalogItem> items);
+
+  Stream<CatalogItem> streamAll(int fetchSize);
 }
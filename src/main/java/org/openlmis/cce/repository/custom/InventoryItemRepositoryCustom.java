@@ -17,13 +17,24 @@ package org.openlmis.cce.repository.custom;
 
 import java.util.Collection;
 import java.util.UUID;
+import java.util.stream.Stream;
 import org.openlmis.cce.domain.FunctionalStatus;
 import org.openlmis.cce.domain.InventoryItem;
+import org.openlmis.cce.util.KeysetCursor;
+import org.openlmis.cce.util.KeysetPage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
 public interface InventoryItemRepositoryCustom {
 
   Page<InventoryItem> search(Collection<UUID> facilityIds, Collection<UUID> programIds,
-                             FunctionalStatus functionalStatus, Pageable pageable);
+                             FunctionalStatus functionalStatus, boolean withTotal,
+                             Pageable pageable);
+
+  KeysetPage<InventoryItem> search(Collection<UUID> facilityIds, Collection<UUID> programIds,
+                                   FunctionalStatus functionalStatus, boolean withTotal,
+                                   KeysetCursor after, Pageable pageable);
+
+  Stream<InventoryItem> streamAll(Collection<UUID> facilityIds, Collection<UUID> programIds,
+                                  FunctionalStatus functionalStatus, int fetchSize);
 }
@@ -15,18 +15,27 @@
 
 package org.openlmis.cce.repository.custom.impl;
 
-import static org.openlmis.cce.domain.CatalogItem.EQUIPMENT_CODE;
-import static org.openlmis.cce.domain.CatalogItem.MANUFACTURER_FIELD;
-import static org.openlmis.cce.domain.CatalogItem.MODEL_FIELD;
-
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.stream.Stream;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import org.hibernate.Query;
+import org.hibernate.Session;
 import org.openlmis.cce.domain.CatalogItem;
+import org.openlmis.cce.domain.Dimensions;
+import org.openlmis.cce.repository.AdvisoryLocks;
 import org.openlmis.cce.repository.custom.CatalogItemRepositoryCustom;
 import org.openlmis.cce.util.Pagination;
 import org.springframework.data.domain.Page;
@@ -38,6 +47,46 @@ public class CatalogItemRepositoryImpl implements CatalogItemRepositoryCustom {
   private static final String ARCHIVED = "archived";
   private static final String VISIBLE_IN_CATALOG = "visibleInCatalog";
 
+  private static final String TEXT = "text";
+  private static final String INT = "int4";
+  private static final String BOOL = "bool";
+  private static final String UUID_TYPE = "uuid";
+
+  private static final String LOCK_KEYS_SQL = "SELECT pg_advisory_xact_lock(?, k.hash)"
+      + " FROM (SELECT DISTINCT hashtext(u.key) AS hash FROM unnest(?) AS u(key)"
+      + " ORDER BY hash) k";
+
+  private static final String FIND_EXISTING_SQL = "SELECT c.id, c.equipmentCode,"
+      + " c.manufacturer, c.model"
+      + " FROM cce.cce_catalog_items c"
+      + " INNER JOIN unnest(?, ?) AS e(equipmentCode, model)"
+      + " ON c.equipmentCode = e.equipmentCode AND c.model = e.model"
+      + " UNION"
+      + " SELECT c.id, c.equipmentCode, c.manufacturer, c.model"
+      + " FROM cce.cce_catalog_items c"
+      + " INNER JOIN unnest(?, ?) AS k(manufacturer, model)"
+      + " ON c.manufacturer = k.manufacturer AND c.model = k.model";
+
+  private static final String[] UPSERT_COLUMNS = {
+      "id", "fromPqsCatalog", "equipmentCode", "type", "model", "manufacturer", "energySource",
+      "dateOfPrequal", "storageTemperature", "maxOperatingTemp", "minOperatingTemp",
+      "energyConsumption", "holdoverTime", "grossVolume", "netVolume", "width", "depth",
+      "height", "visibleInCatalog", "archived"
+  };
+
+  private static final String[] UPSERT_COLUMN_TYPES = {
+      UUID_TYPE, BOOL, TEXT, TEXT, TEXT, TEXT, TEXT,
+      INT, TEXT, INT, INT,
+      TEXT, INT, INT, INT, INT, INT,
+      INT, BOOL, BOOL
+  };
+
+  private static final String UPSERT_SQL = "INSERT INTO cce.cce_catalog_items ("
+      + String.join(", ", UPSERT_COLUMNS) + ")"
+      + " SELECT * FROM unnest("
+      + String.join(", ", Collections.nCopies(UPSERT_COLUMNS.length, "?")) + ")"
+      + " ON CONFLICT (id) DO UPDATE SET " + getUpdates();
+
   @PersistenceContext
   private EntityManager entityManager;
 
@@ -71,34 +120,206 @@ public class CatalogItemRepositoryImpl implements CatalogItemRepositoryCustom {
     return Pagination.getPage(result, pageable, count);
   }
 
+  /**
+   * This method locks the keys of both unique constraints of the given items until the current
+   * transaction ends, so that items with the same keys are not matched and written by other
+   * transactions at the same time. A transaction that writes an item which another one has just
+   * inserted waits until the other commits, and then finds it with
+   * {@link #findExisting(List)} instead of inserting a duplicate. All keys are locked with a
+   * single statement in a fixed order.
+   *
+   * @param items catalog items whose keys should be locked
+   */
+  @Override
+  public void lockKeys(List<CatalogItem> items) {
+    List<String> keys = new ArrayList<>();
+
+    for (CatalogItem item : items) {
+      if (null != item.getEquipmentCode()) {
+        keys.add(getKey("equipmentCode", item.getEquipmentCode(), item.getModel()));
+      }
+
+      keys.add(getKey("manufacturer", item.getManufacturer(), item.getModel()));
+    }
+
+    entityManager.unwrap(Session.class).doWork(connection -> {
+      try (PreparedStatement statement = connection.prepareStatement(LOCK_KEYS_SQL)) {
+        statement.setInt(1, AdvisoryLocks.CATALOG_ITEM_KEYS);
+        statement.setArray(2, connection.createArrayOf(TEXT, keys.toArray()));
+        statement.execute();
+      }
+    });
+  }
+
+  /**
+   * This method finds catalog items that have the same equipment code and model, or the same
+   * manufacturer and model, as any of the given items. Manufacturer and model are matched only for
+   * items without equipment code, the same way uploaded items are matched with existing ones. The
+   * items are matched with a single query that joins the catalog with arrays of their keys, so it
+   * can use the unique indexes of both constraints. Returned items contain only their id,
+   * equipment code, manufacturer and model, and are not attached to the persistence context.
+   *
+   * @param items catalog items to match
+   * @return List of existing Catalog Items with the same keys.
+   */
   @Override
   public List<CatalogItem> findExisting(List<CatalogItem> items) {
-    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
-    CriteriaQuery<CatalogItem> query = builder.createQuery(CatalogItem.class);
-    Root<CatalogItem> root = query.from(CatalogItem.class);
+    entityManager.flush();
+
+    return entityManager.unwrap(Session.class)
+        .doReturningWork(connection -> selectExisting(connection, items, false));
+  }
+
+  /**
+   * This method finds catalog items that have the same equipment code and model, or the same
+   * manufacturer and model, as any of the given items, regardless of whether the given items have
+   * equipment codes. It is used to find items that would conflict with the given ones, with the
+   * same single query and the same partially loaded results as {@link #findExisting(List)}.
+   *
+   * @param items catalog items to match
+   * @return List of existing Catalog Items with any of the same keys.
+   */
+  @Override
+  public List<CatalogItem> findMatching(List<CatalogItem> items) {
+    entityManager.flush();
+
+    return entityManager.unwrap(Session.class)
+        .doReturningWork(connection -> selectExisting(connection, items, true));
+  }
+
+  /**
+   * This method inserts the given catalog items, or updates them if items with the same ids
+   * already exist, with a single statement. Items have to have ids and each id can be present only
+   * once. Pending changes are flushed first, but the statement itself bypasses the persistence
+   * context, so catalog items that are already loaded in it are not refreshed.
+   *
+   * @param items catalog items to insert or update
+   * @return number of inserted or updated rows.
+   */
+  @Override
+  public int upsert(List<CatalogItem> items) {
+    entityManager.flush();
+
+    return entityManager.unwrap(Session.class)
+        .doReturningWork(connection -> executeUpsert(connection, items));
+  }
+
+  /**
+   * This method streams all catalog items from a forward-only cursor that fetches the given
+   * number of rows at a time. Each item is detached from the persistence context once it has
+   * been consumed. The stream has to be consumed in a transaction and closed afterwards.
+   *
+   * @param fetchSize number of rows fetched from the database at a time
+   * @return Stream of all Catalog Items.
+   */
+  @Override
+  public Stream<CatalogItem> streamAll(int fetchSize) {
+    Session session = entityManager.unwrap(Session.class);
+    Query query = session.createQuery("SELECT c FROM CatalogItem c");
+
+    return ScrollableResultsSpliterator.stream(session, query, fetchSize, CatalogItem.class);
+  }
+
+  private static String getKey(String type, String value, String model) {
+    return new StringJoiner("\u001f").add(type).add(value).add(model).toString();
+  }
+
+  private List<CatalogItem> selectExisting(Connection connection, List<CatalogItem> items,
+                                           boolean allPairs) throws SQLException {
+    List<Object> equipmentCodes = new ArrayList<>();
+    List<Object> equipmentModels = new ArrayList<>();
+    List<Object> manufacturers = new ArrayList<>();
+    List<Object> models = new ArrayList<>();
+
+    for (CatalogItem item : items) {
+      if (null != item.getEquipmentCode()) {
+        equipmentCodes.add(item.getEquipmentCode());
+        equipmentModels.add(item.getModel());
+      }
+
+      if (null == item.getEquipmentCode() || allPairs) {
+        manufacturers.add(item.getManufacturer());
+        models.add(item.getModel());
+      }
+    }
+
+    try (PreparedStatement statement = connection.prepareStatement(FIND_EXISTING_SQL)) {
+      statement.setArray(1, connection.createArrayOf(TEXT, equipmentCodes.toArray()));
+      statement.setArray(2, connection.createArrayOf(TEXT, equipmentModels.toArray()));
+      statement.setArray(3, connection.createArrayOf(TEXT, manufacturers.toArray()));
+      statement.setArray(4, connection.createArrayOf(TEXT, models.toArray()));
+
+      List<CatalogItem> existing = new ArrayList<>();
+
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          CatalogItem item = new CatalogItem();
+          item.setId((UUID) resultSet.getObject(1));
+          item.setEquipmentCode(resultSet.getString(2));
+          item.setManufacturer(resultSet.getString(3));
+          item.setModel(resultSet.getString(4));
+          existing.add(item);
+        }
+      }
+
+      return existing;
+    }
+  }
 
+  private int executeUpsert(Connection connection, List<CatalogItem> items) throws SQLException {
     int size = items.size();
-    Predicate[] predicates = new Predicate[size];
-
-    for (int i = 0; i < size; i++) {
-      CatalogItem catalogItem = items.get(i);
-      Predicate predicate;
-
-      if (null != catalogItem.getEquipmentCode()) {
-        predicate = builder.equal(root.get(EQUIPMENT_CODE), catalogItem.getEquipmentCode());
-      } else {
-        predicate = builder.and(
-            builder.equal(root.get(MANUFACTURER_FIELD), catalogItem.getManufacturer()),
-            builder.equal(root.get(MODEL_FIELD), catalogItem.getModel())
-        );
+    Object[][] columns = new Object[UPSERT_COLUMNS.length][size];
+
+    for (int row = 0; row < size; ++row) {
+      CatalogItem item = items.get(row);
+      final Dimensions dimensions = item.getDimensions();
+      int column = 0;
+
+      columns[column++][row] = item.getId();
+      columns[column++][row] = item.getFromPqsCatalog();
+      columns[column++][row] = item.getEquipmentCode();
+      columns[column++][row] = item.getType();
+      columns[column++][row] = item.getModel();
+      columns[column++][row] = item.getManufacturer();
+      columns[column++][row] = getName(item.getEnergySource());
+      columns[column++][row] = item.getDateOfPrequal();
+      columns[column++][row] = getName(item.getStorageTemperature());
+      columns[column++][row] = item.getMaxOperatingTemp();
+      columns[column++][row] = item.getMinOperatingTemp();
+      columns[column++][row] = item.getEnergyConsumption();
+      columns[column++][row] = item.getHoldoverTime();
+      columns[column++][row] = item.getGrossVolume();
+      columns[column++][row] = item.getNetVolume();
+      columns[column++][row] = null == dimensions ? null : dimensions.getWidth();
+      columns[column++][row] = null == dimensions ? null : dimensions.getDepth();
+      columns[column++][row] = null == dimensions ? null : dimensions.getHeight();
+      columns[column++][row] = item.getVisibleInCatalog();
+      columns[column][row] = item.getArchived();
+    }
+
+    try (PreparedStatement statement = connection.prepareStatement(UPSERT_SQL)) {
+      for (int column = 0; column < UPSERT_COLUMNS.length; ++column) {
+        statement.setArray(column + 1,
+            connection.createArrayOf(UPSERT_COLUMN_TYPES[column], columns[column]));
       }
 
-      predicates[i] = predicate;
+      return statement.executeUpdate();
     }
+  }
 
-    query.where(builder.or(predicates));
+  private static String getUpdates() {
+    StringJoiner updates = new StringJoiner(", ");
+
+    // all columns except the id
+    for (int i = 1; i < UPSERT_COLUMNS.length; ++i) {
+      updates.add(UPSERT_COLUMNS[i] + " = EXCLUDED." + UPSERT_COLUMNS[i]);
+    }
+
+    return updates.toString();
+  }
 
-    return entityManager.createQuery(query).getResultList();
+  private static String getName(Enum<?> value) {
+    return null == value ? null : value.name();
   }
 
   private <T> CriteriaQuery<T> prepareQuery(CriteriaQuery<T> query, String type,
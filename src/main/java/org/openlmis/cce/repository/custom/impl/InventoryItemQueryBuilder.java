@@ -15,29 +15,53 @@
 
 package org.openlmis.cce.repository.custom.impl;
 
-import static java.lang.String.format;
 import static org.apache.commons.collections.CollectionUtils.isEmpty;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
 import org.openlmis.cce.domain.FunctionalStatus;
+import org.openlmis.cce.util.KeysetCursor;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 
-@AllArgsConstructor
+@RequiredArgsConstructor
 class InventoryItemQueryBuilder {
   static final String SELECT_SQL = "SELECT i FROM InventoryItem AS i"
       + " INNER JOIN FETCH i.catalogItem AS c";
   static final String COUNT_SQL = "SELECT count(i) FROM InventoryItem AS i";
 
-  static final String FACILITY_PREDICATE = "i.facilityId IN ('%s')";
-  static final String PROGRAM_PREDICATE = "i.programId IN ('%s')";
-  static final String STATUS_PREDICATE = "i.functionalStatus = '%s'";
+  static final String FACILITY_IDS = "facilityIds";
+  static final String PROGRAM_IDS = "programIds";
+  static final String FUNCTIONAL_STATUS = "functionalStatus";
+
+  static final String FACILITY_PREDICATE = "i.facilityId IN (:" + FACILITY_IDS + ")";
+  static final String PROGRAM_PREDICATE = "i.programId IN (:" + PROGRAM_IDS + ")";
+  static final String STATUS_PREDICATE = "i.functionalStatus = :" + FUNCTIONAL_STATUS;
+
+  static final String AFTER_VALUE = "afterValue";
+  static final String AFTER_ID = "afterId";
+
+  // the first condition lets the database use an index on the sort column to seek the position
+  static final String SEEK_ASC_PREDICATE = "%1$s >= :" + AFTER_VALUE
+      + " AND (%1$s > :" + AFTER_VALUE + " OR i.id > :" + AFTER_ID + ")";
+  static final String SEEK_DESC_PREDICATE = "%1$s <= :" + AFTER_VALUE
+      + " AND (%1$s < :" + AFTER_VALUE + " OR i.id < :" + AFTER_ID + ")";
+
+  /*
+    Lists up to this size are padded to the next power of two, larger ones to the next multiple
+    of this value. Hibernate expands every list parameter into one bind marker per element, so
+    this keeps the number of distinct statements (and cached query plans) logarithmic in the
+    number of rights a user has, while staying below the Postgres limit of bind parameters.
+   */
+  static final int MAX_POWER_OF_TWO_PADDING = 4096;
 
   private static final String WHERE = "WHERE";
   private static final String ORDER_BY = "ORDER BY";
@@ -46,20 +70,33 @@ class InventoryItemQueryBuilder {
   private static final String ASC = "ASC";
   private static final String DESC = "DESC";
 
-  private static final String COLLECTION_JOINER = "','";
   private static final String COMMA = ",";
   private static final char SPACE = ' ';
 
   private static final String TYPE = "type";
   private static final String C_TYPE = "c.type";
+  private static final String I_ID = "i.id";
 
   private final Collection<UUID> facilityIds;
   private final Collection<UUID> programIds;
   private final FunctionalStatus functionalStatus;
   private final Pageable pageable;
   private final boolean count;
+  private final Map<String, Object> parameters = new LinkedHashMap<>();
+  private KeysetCursor cursor;
+
+  /**
+   * Switches the query to keyset pagination. Only rows placed after the given cursor, with
+   * respect to the first sort order, are selected and the id is used as the tie breaker.
+   */
+  InventoryItemQueryBuilder after(KeysetCursor cursor) {
+    this.cursor = cursor;
+    return this;
+  }
 
   String build() {
+    parameters.clear();
+
     List<String> query = Lists.newArrayList();
 
     addSelect(query);
@@ -69,6 +106,38 @@ class InventoryItemQueryBuilder {
     return Joiner.on(SPACE).join(query);
   }
 
+  /**
+   * Returns values for named parameters used in the query created by the {@link #build()} method.
+   * Collections are padded by repeating their last element so that the number of bind markers
+   * only takes a few distinct values.
+   */
+  Map<String, Object> getParameters() {
+    return parameters;
+  }
+
+  static int getPaddedSize(int size) {
+    if (size > MAX_POWER_OF_TWO_PADDING) {
+      int chunks = (size + MAX_POWER_OF_TWO_PADDING - 1) / MAX_POWER_OF_TWO_PADDING;
+      return chunks * MAX_POWER_OF_TWO_PADDING;
+    }
+
+    int highestOneBit = Integer.highestOneBit(size);
+    return highestOneBit == size ? size : highestOneBit << 1;
+  }
+
+  private static <T> List<T> pad(Collection<T> values) {
+    int paddedSize = getPaddedSize(values.size());
+    List<T> padded = new ArrayList<>(paddedSize);
+    padded.addAll(values);
+
+    T last = padded.get(padded.size() - 1);
+    while (padded.size() < paddedSize) {
+      padded.add(last);
+    }
+
+    return padded;
+  }
+
   private void addSelect(List<String> query) {
     if (count) {
       query.add(COUNT_SQL);
@@ -78,32 +147,35 @@ class InventoryItemQueryBuilder {
   }
 
   private void addWhere(List<String> query) {
-    boolean hasFacilities = !isEmpty(facilityIds);
-    boolean hasPrograms = !isEmpty(programIds);
-    boolean hasFunctionalStatus = functionalStatus != null;
+    List<String> predicates = Lists.newArrayList();
 
-    if (hasFacilities || hasPrograms || hasFunctionalStatus) {
-      query.add(WHERE);
+    if (!isEmpty(facilityIds)) {
+      predicates.add(FACILITY_PREDICATE);
+      parameters.put(FACILITY_IDS, pad(facilityIds));
+    }
 
-      if (hasFacilities) {
-        query.add(format(FACILITY_PREDICATE, Joiner.on(COLLECTION_JOINER).join(facilityIds)));
-      }
+    if (!isEmpty(programIds)) {
+      predicates.add(PROGRAM_PREDICATE);
+      parameters.put(PROGRAM_IDS, pad(programIds));
+    }
 
-      if (hasPrograms) {
-        if (hasFacilities) {
-          query.add(AND);
-        }
+    if (functionalStatus != null) {
+      predicates.add(STATUS_PREDICATE);
+      parameters.put(FUNCTIONAL_STATUS, functionalStatus);
+    }
 
-        query.add(format(PROGRAM_PREDICATE, Joiner.on(COLLECTION_JOINER).join(programIds)));
-      }
+    if (isSeeking() && !cursor.isStart()) {
+      Sort.Order order = getKeysetOrder();
+      String predicate = order.isAscending() ? SEEK_ASC_PREDICATE : SEEK_DESC_PREDICATE;
 
-      if (hasFunctionalStatus) {
-        if (hasFacilities || hasPrograms) {
-          query.add(AND);
-        }
+      predicates.add(String.format(predicate, getPath(order.getProperty())));
+      parameters.put(AFTER_VALUE, cursor.getValue());
+      parameters.put(AFTER_ID, cursor.getId());
+    }
 
-        query.add(format(STATUS_PREDICATE, functionalStatus.toString()));
-      }
+    if (!predicates.isEmpty()) {
+      query.add(WHERE);
+      query.add(Joiner.on(SPACE + AND + SPACE).join(predicates));
     }
   }
 
@@ -122,25 +194,37 @@ class InventoryItemQueryBuilder {
 
     while (iterator.hasNext()) {
       Sort.Order order = iterator.next();
-      String property = order.getProperty();
 
-      if (TYPE.equals(property)) {
-        query.add(C_TYPE);
-      } else {
-        query.add("i." + property);
-      }
-
-      if (order.isAscending()) {
-        query.add(ASC);
-      } else {
-        query.add(DESC);
-      }
+      query.add(getPath(order.getProperty()));
+      query.add(order.isAscending() ? ASC : DESC);
 
       if (iterator.hasNext()) {
         query.add(COMMA);
       }
     }
+
+    if (isSeeking()) {
+      query.add(COMMA);
+      query.add(I_ID);
+      query.add(getKeysetOrder().isAscending() ? ASC : DESC);
+    }
+  }
+
+  private boolean isSeeking() {
+    return !count && null != cursor && null != getKeysetOrder();
   }
 
+  private Sort.Order getKeysetOrder() {
+    if (null == pageable || null == pageable.getSort()) {
+      return null;
+    }
+
+    Iterator<Sort.Order> iterator = pageable.getSort().iterator();
+    return iterator.hasNext() ? iterator.next() : null;
+  }
+
+  private String getPath(String property) {
+    return TYPE.equals(property) ? C_TYPE : "i." + property;
+  }
 
 }
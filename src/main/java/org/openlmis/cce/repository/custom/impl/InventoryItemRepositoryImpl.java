@@ -18,14 +18,20 @@ package org.openlmis.cce.repository.custom.impl;
 import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
+import org.hibernate.Query;
+import org.hibernate.Session;
 import org.openlmis.cce.domain.FunctionalStatus;
 import org.openlmis.cce.domain.InventoryItem;
 import org.openlmis.cce.repository.custom.InventoryItemRepositoryCustom;
+import org.openlmis.cce.util.KeysetCursor;
+import org.openlmis.cce.util.KeysetPage;
 import org.openlmis.cce.util.Pagination;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
 public class InventoryItemRepositoryImpl implements InventoryItemRepositoryCustom {
@@ -38,37 +44,129 @@ public class InventoryItemRepositoryImpl implements InventoryItemRepositoryCusto
    * sorted and paginated by pageable parameter. You can use 'type' sort value and it will sort
    * inventory items by their catalog item type.
    *
+   * <p>The separate count query is only executed if the total number of items can't be
+   * determined from the page itself, i.e. when the page is full. If the exact total is not
+   * needed, one more item is retrieved instead of counting and the total is then only
+   * a lower bound that tells whether there is a next page.
+   *
    * @param facilityIds list of facility ids
    * @param programIds  list of program ids
+   * @param withTotal   whether the exact total number of items should be calculated
    * @param pageable    pagination and sort parameters
    * @return Page of Catalog Items matching the parameters.
    */
   public Page<InventoryItem> search(Collection<UUID> facilityIds, Collection<UUID> programIds,
-                                    FunctionalStatus functionalStatus, Pageable pageable) {
-    TypedQuery<Long> count = createQuery(
-        facilityIds, programIds, functionalStatus, pageable, Long.class
-    );
-
+                                    FunctionalStatus functionalStatus, boolean withTotal,
+                                    Pageable pageable) {
     TypedQuery<InventoryItem> select = createQuery(
         facilityIds, programIds, functionalStatus, pageable, InventoryItem.class
     );
 
+    int pageSize = Pagination.getPageSize(pageable);
+    boolean lookahead = !withTotal && null != pageable;
+    if (lookahead) {
+      select.setMaxResults(pageSize + 1);
+    }
+
     List<InventoryItem> list = select.getResultList();
-    Long size = count.getSingleResult();
+    boolean hasNext = list.size() > pageSize;
+    if (hasNext) {
+      list = list.subList(0, pageSize);
+    }
+
+    long offset = (long) Pagination.getPageNumber(pageable) * pageSize;
+    long size;
+    if (isLastPage(list, pageSize, offset)) {
+      size = offset + list.size();
+    } else if (withTotal) {
+      size = createQuery(facilityIds, programIds, functionalStatus, pageable, Long.class)
+          .getSingleResult();
+    } else {
+      size = offset + list.size() + (hasNext ? 1 : 0);
+    }
 
     return Pagination.getPage(list, pageable, size);
   }
 
+  /**
+   * This method is supposed to retrieve inventory items with matched parameters that are placed
+   * after the given cursor. Unlike offset pagination, the cost of retrieving a page does not
+   * depend on its position. Items are sorted by their reference names, in the direction given by
+   * the pageable parameter, and by their ids. The page number of pageable parameter is ignored.
+   *
+   * @param facilityIds list of facility ids
+   * @param programIds  list of program ids
+   * @param withTotal   whether the total number of items should be calculated; if not, the total
+   *                    only tells how many items have been retrieved so far
+   * @param after       the position after which items should be returned
+   * @param pageable    page size and sort parameters
+   * @return Page of Inventory Items placed after the cursor with the cursor to the next page.
+   */
+  public KeysetPage<InventoryItem> search(Collection<UUID> facilityIds,
+                                          Collection<UUID> programIds,
+                                          FunctionalStatus functionalStatus, boolean withTotal,
+                                          KeysetCursor after, Pageable pageable) {
+    TypedQuery<InventoryItem> select = createQuery(
+        facilityIds, programIds, functionalStatus, after, pageable, InventoryItem.class
+    );
+
+    // one more row tells whether there is a next page
+    List<InventoryItem> list = select
+        .setMaxResults(pageable.getPageSize() + 1)
+        .getResultList();
+
+    String nextCursor = null;
+    if (list.size() > pageable.getPageSize()) {
+      list = list.subList(0, pageable.getPageSize());
+      InventoryItem last = list.get(list.size() - 1);
+      nextCursor = new KeysetCursor(last.getReferenceName(), last.getId()).encode();
+    }
+
+    long size;
+    if (!withTotal || after.isStart() && null == nextCursor) {
+      size = list.size();
+    } else {
+      size = createQuery(facilityIds, programIds, functionalStatus, null, pageable, Long.class)
+          .getSingleResult();
+    }
+
+    Pageable keysetPageable = new PageRequest(0, pageable.getPageSize(), pageable.getSort());
+    return new KeysetPage<>(list, keysetPageable, size, nextCursor, after.isStart());
+  }
+
+  /**
+   * This method streams all inventory items with matched parameters from a forward-only cursor
+   * that fetches the given number of rows at a time. Each item is detached from the persistence
+   * context once it has been consumed. The stream has to be consumed in a transaction and closed
+   * afterwards.
+   *
+   * @param facilityIds list of facility ids
+   * @param programIds  list of program ids
+   * @param fetchSize   number of rows fetched from the database at a time
+   * @return Stream of Inventory Items matching the parameters.
+   */
+  public Stream<InventoryItem> streamAll(Collection<UUID> facilityIds,
+                                         Collection<UUID> programIds,
+                                         FunctionalStatus functionalStatus, int fetchSize) {
+    Query query = createQuery(facilityIds, programIds, functionalStatus, null, null,
+        InventoryItem.class).unwrap(Query.class);
+
+    return ScrollableResultsSpliterator.stream(entityManager.unwrap(Session.class), query,
+        fetchSize, InventoryItem.class);
+  }
+
+  private static boolean isLastPage(List<InventoryItem> list, int pageSize, long offset) {
+    // an empty page is only known to be the last one if there are no previous pages
+    return list.size() < pageSize && (!list.isEmpty() || offset == 0);
+  }
+
   private <T> TypedQuery<T> createQuery(Collection<UUID> facilities, Collection<UUID> programs,
                                         FunctionalStatus functionalStatus, Pageable pageable,
                                         Class<T> type) {
-    boolean isNumber = Number.class.isAssignableFrom(type);
-    String sql = new InventoryItemQueryBuilder(facilities, programs, functionalStatus, pageable,
-        isNumber).build();
-
-    TypedQuery<T> query = entityManager.createQuery(sql, type);
+    TypedQuery<T> query = createQuery(facilities, programs, functionalStatus, null, pageable,
+        type);
 
-    if (!isNumber && null != pageable) {
+    if (!Number.class.isAssignableFrom(type) && null != pageable) {
       query
           .setMaxResults(pageable.getPageSize())
           .setFirstResult(pageable.getPageNumber() * pageable.getPageSize());
@@ -77,4 +175,18 @@ public class InventoryItemRepositoryImpl implements InventoryItemRepositoryCusto
     return query;
   }
 
+  private <T> TypedQuery<T> createQuery(Collection<UUID> facilities, Collection<UUID> programs,
+                                        FunctionalStatus functionalStatus, KeysetCursor after,
+                                        Pageable pageable, Class<T> type) {
+    boolean isNumber = Number.class.isAssignableFrom(type);
+    InventoryItemQueryBuilder builder = new InventoryItemQueryBuilder(facilities, programs,
+        functionalStatus, pageable, isNumber).after(after);
+    String sql = builder.build();
+
+    TypedQuery<T> query = entityManager.createQuery(sql, type);
+    builder.getParameters().forEach(query::setParameter);
+
+    return query;
+  }
+
 }
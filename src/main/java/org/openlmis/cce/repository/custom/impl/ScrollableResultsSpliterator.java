@@ -0,0 +1,81 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.repository.custom.impl;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.hibernate.CacheMode;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+/**
+ * Iterates over entities read from a forward-only cursor. Each entity is detached from the
+ * persistence context once it has been consumed, so memory use does not grow with the number
+ * of rows.
+ */
+final class ScrollableResultsSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+  private final Session session;
+  private final ScrollableResults results;
+  private final Class<T> type;
+
+  private ScrollableResultsSpliterator(Session session, ScrollableResults results,
+                                       Class<T> type) {
+    super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+    this.session = session;
+    this.results = results;
+    this.type = type;
+  }
+
+  /**
+   * Executes the given query and returns its results as a stream that has to be consumed in
+   * a transaction and closed afterwards.
+   *
+   * @param session   the session that executes the query
+   * @param query     the query selecting entities of the given type
+   * @param fetchSize number of rows fetched from the database at a time
+   * @param type      the type of selected entities
+   * @return Stream of selected entities.
+   */
+  static <T> Stream<T> stream(Session session, Query query, int fetchSize, Class<T> type) {
+    ScrollableResults results = query
+        .setFetchSize(fetchSize)
+        .setReadOnly(true)
+        .setCacheMode(CacheMode.IGNORE)
+        .scroll(ScrollMode.FORWARD_ONLY);
+
+    return StreamSupport
+        .stream(new ScrollableResultsSpliterator<>(session, results, type), false)
+        .onClose(results::close);
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super T> action) {
+    if (!results.next()) {
+      return false;
+    }
+
+    T entity = type.cast(results.get(0));
+    action.accept(entity);
+    session.evict(entity);
+
+    return true;
+  }
+}
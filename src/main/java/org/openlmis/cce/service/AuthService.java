@@ -17,20 +17,36 @@ package org.openlmis.cce.service;
 
 import static org.openlmis.cce.util.RequestHelper.createUri;
 
+import java.time.Clock;
 import java.util.Map;
+import java.util.function.Function;
 import org.apache.commons.codec.binary.Base64;
+import org.openlmis.cce.util.CacheStatistics;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestOperations;
-import org.springframework.web.client.RestTemplate;
 
 @Service
 public class AuthService {
   private static final String ACCESS_TOKEN = "access_token";
+  private static final String EXPIRES_IN = "expires_in";
+
+  /*
+    How long (in milliseconds) before its expiration a token is replaced with a new one, so that
+    it does not expire while a request with it is on the way.
+   */
+  private static final long EXPIRATION_MARGIN = 60_000;
+
+  private final Object lock = new Object();
+  private final CacheStatistics statistics = new CacheStatistics();
+  private volatile AccessToken token;
 
   @Value("${auth.server.clientId}")
   private String clientId;
@@ -41,14 +57,87 @@ public class AuthService {
   @Value("${auth.server.authorizationUrl}")
   private String authorizationUrl;
 
-  private RestOperations restTemplate = new RestTemplate();
+  @Autowired
+  private Clock clock;
+
+  @Autowired
+  private RestOperations restTemplate;
 
   /**
-   * Retrieves access token from the auth service.
+   * Retrieves access token from the auth service. The token is reused until shortly before it
+   * expires. If it has to be refreshed, only one request is sent to the auth service and all
+   * concurrent callers wait for it.
    *
    * @return token.
    */
   public String obtainAccessToken() {
+    AccessToken current = token;
+
+    if (null != current && current.isValid(clock.millis())) {
+      statistics.recordHit();
+      return current.value;
+    }
+
+    synchronized (lock) {
+      current = token;
+
+      if (null != current && current.isValid(clock.millis())) {
+        // another caller has refreshed the token while we were waiting for the lock
+        statistics.recordHit();
+        return current.value;
+      }
+
+      statistics.recordMiss();
+      current = fetchAccessToken();
+      token = current;
+
+      return current.value;
+    }
+  }
+
+  /**
+   * Removes the given token from the cache, so the next call will retrieve a new one. Nothing
+   * happens if the token has already been replaced.
+   */
+  public void invalidateAccessToken(String rejected) {
+    synchronized (lock) {
+      if (null != token && token.value.equals(rejected)) {
+        token = null;
+        statistics.recordInvalidation();
+      }
+    }
+  }
+
+  /**
+   * Executes the given request with an access token. If the token is rejected with 401, it is
+   * invalidated and the request is executed once more with a new token.
+   *
+   * @param request the request that should be authorized with the given token.
+   * @return the result of the request.
+   */
+  public <T> T withAccessToken(Function<String, T> request) {
+    String accessToken = obtainAccessToken();
+
+    try {
+      return request.apply(accessToken);
+    } catch (HttpStatusCodeException ex) {
+      if (HttpStatus.UNAUTHORIZED != ex.getStatusCode()) {
+        throw ex;
+      }
+
+      invalidateAccessToken(accessToken);
+      return request.apply(obtainAccessToken());
+    }
+  }
+
+  /**
+   * Returns counters of token fetches and of tokens served from the cache.
+   */
+  public CacheStatistics getStatistics() {
+    return statistics;
+  }
+
+  private AccessToken fetchAccessToken() {
     String plainCreds = clientId + ":" + clientSecret;
     byte[] plainCredsBytes = plainCreds.getBytes();
     byte[] base64CredsBytes = Base64.encodeBase64(plainCredsBytes);
@@ -63,11 +152,45 @@ public class AuthService {
         .init()
         .set("grant_type", "client_credentials");
 
-    ResponseEntity<?> response = restTemplate.exchange(
-        createUri(authorizationUrl, params), HttpMethod.POST, request, Object.class
-    );
+    long start = clock.millis();
+    ResponseEntity<?> response;
+
+    try {
+      response = restTemplate.exchange(
+          createUri(authorizationUrl, params), HttpMethod.POST, request, Object.class
+      );
+    } catch (RuntimeException ex) {
+      statistics.recordFailure();
+      throw ex;
+    }
+
+    statistics.recordRevalidation(clock.millis() - start);
+
+    Map<String, Object> body = (Map<String, Object>) response.getBody();
+    Object expiresIn = body.get(EXPIRES_IN);
+
+    // without the expiration time the token is used only once
+    long validUntil = start;
+    if (expiresIn instanceof Number) {
+      long lifetime = ((Number) expiresIn).longValue() * 1000;
+      validUntil = start + lifetime - Math.min(EXPIRATION_MARGIN, lifetime / 2);
+    }
+
+    return new AccessToken((String) body.get(ACCESS_TOKEN), validUntil);
+  }
+
+  private static final class AccessToken {
+    private final String value;
+    private final long validUntil;
+
+    private AccessToken(String value, long validUntil) {
+      this.value = value;
+      this.validUntil = validUntil;
+    }
 
-    return ((Map<String, String>) response.getBody()).get(ACCESS_TOKEN);
+    private boolean isValid(long now) {
+      return now < validUntil;
+    }
   }
 
 }
@@ -24,10 +24,11 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestOperations;
-import org.springframework.web.client.RestTemplate;
 
 public abstract class BaseCommunicationService {
   protected final Logger logger = LoggerFactory.getLogger(getClass());
@@ -35,7 +36,8 @@ public abstract class BaseCommunicationService {
   @Autowired
   private AuthService authService;
 
-  private RestOperations restTemplate = new RestTemplate();
+  @Autowired
+  private RestOperations restTemplate;
 
   protected abstract String getServiceUrl();
 
@@ -46,8 +48,10 @@ public abstract class BaseCommunicationService {
                                           HttpMethod method, Class<P> type) {
     String url = getServiceUrl() + getUrl() + resourceUrl;
     URI uri = createUri(url, parameters);
-    HttpEntity<Object> entity = createEntity(payload, addAuthHeader(headers));
-    return restTemplate.exchange(uri, method, entity, type);
+    return authService.withAccessToken(token -> {
+      HttpEntity<Object> entity = createEntity(payload, addAuthHeader(headers, token));
+      return restTemplate.exchange(uri, method, entity, type);
+    });
   }
 
   protected <P> ResponseEntity<P> execute(String resourceUrl, RequestParameters parameters,
@@ -55,13 +59,27 @@ public abstract class BaseCommunicationService {
                                           HttpMethod method, ParameterizedTypeReference<P> type) {
     String url = getServiceUrl() + getUrl() + resourceUrl;
     URI uri = createUri(url, parameters);
-    HttpEntity<Object> entity = createEntity(payload, addAuthHeader(headers));
-    return restTemplate.exchange(uri, method, entity, type);
+    return authService.withAccessToken(token -> {
+      HttpEntity<Object> entity = createEntity(payload, addAuthHeader(headers, token));
+      return restTemplate.exchange(uri, method, entity, type);
+    });
+  }
+
+  protected <P> P execute(String resourceUrl, RequestParameters parameters,
+                          RequestHeaders headers, HttpMethod method,
+                          ResponseExtractor<P> extractor) {
+    String url = getServiceUrl() + getUrl() + resourceUrl;
+    URI uri = createUri(url, parameters);
+    return authService.withAccessToken(token -> {
+      HttpHeaders httpHeaders = addAuthHeader(headers, token).toHeaders();
+      return restTemplate.execute(uri, method,
+          request -> request.getHeaders().putAll(httpHeaders), extractor);
+    });
   }
 
-  private RequestHeaders addAuthHeader(RequestHeaders headers) {
+  private RequestHeaders addAuthHeader(RequestHeaders headers, String token) {
     return null == headers
-        ? RequestHeaders.init().setAuth(authService.obtainAccessToken())
-        : headers.setAuth(authService.obtainAccessToken());
+        ? RequestHeaders.init().setAuth(token)
+        : headers.setAuth(token);
   }
 }
@@ -37,5 +37,7 @@ public final class InventoryItemSearchParams {
   private UUID programId;
   private FunctionalStatus functionalStatus;
   private List<String> expand;
+  private String after;
+  private boolean withTotal = true;
 
 }
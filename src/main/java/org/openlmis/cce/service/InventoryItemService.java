@@ -16,16 +16,23 @@
 package org.openlmis.cce.service;
 
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
 import static org.apache.commons.collections4.CollectionUtils.isEmpty;
-import static org.apache.commons.lang3.StringUtils.equalsIgnoreCase;
+import static org.openlmis.cce.i18n.PageableMessageKeys.ERROR_CURSOR_SORT_NOT_SUPPORTED;
 import static org.openlmis.cce.service.PermissionService.CCE_INVENTORY_VIEW;
 
-import com.google.common.collect.Sets;
+import java.util.Iterator;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.openlmis.cce.domain.InventoryItem;
-import org.openlmis.cce.dto.PermissionStringDto;
+import org.openlmis.cce.dto.PermissionStringIndex;
+import org.openlmis.cce.exception.ValidationMessageException;
 import org.openlmis.cce.repository.InventoryItemRepository;
+import org.openlmis.cce.util.KeysetCursor;
 import org.openlmis.cce.util.Pagination;
 import org.slf4j.ext.XLogger;
 import org.slf4j.ext.XLoggerFactory;
@@ -33,6 +40,7 @@ import org.slf4j.profiler.Profiler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -40,6 +48,8 @@ public class InventoryItemService {
 
   private static final XLogger XLOGGER = XLoggerFactory.getXLogger(InventoryItemService.class);
 
+  static final String KEYSET_SORT_PROPERTY = "referenceName";
+
   @Autowired
   private InventoryItemRepository repository;
 
@@ -51,6 +61,19 @@ public class InventoryItemService {
    * sorted and paginated by pageable parameter. You can use 'type' sort value and it will sort
    * inventory items by their catalog item type.
    *
+   * <p>If the {@code after} search parameter is set, the keyset (seek) pagination is used instead
+   * of the offset one. In that case the result can only be sorted by reference name, the page
+   * number is ignored and the returned page contains the cursor to the next page. An empty
+   * cursor means the first page.
+   *
+   * <p>If the {@code withTotal} search parameter is false, the exact number of all matching items
+   * is not calculated and the returned total is only big enough to tell whether there is a next
+   * page.
+   *
+   * <p>If a facility or a program is requested, only items of facilities and programs the user
+   * has the right for together with the requested one are returned. The page is empty if the
+   * user has no right for the requested facility or program.
+   *
    * @param   userId    the id of the user to search the inventoryItems for
    * @param   params    the search parameters
    * @param   pageable  the pagination and sort parameters
@@ -64,34 +87,25 @@ public class InventoryItemService {
     profiler.setLogger(XLOGGER);
 
     profiler.start("GET_PERMISSION_STRINGS");
-    PermissionStrings.Handler handler = permissionService.getPermissionStrings(userId);
-    Set<PermissionStringDto> permissionStrings = handler.get();
+    PermissionStringIndex permissionStrings = getPermissionStrings(userId);
 
     profiler.start("GET_PROGRAMS_AND_FACILITIES");
-    Set<UUID> programIds = Sets.newHashSet();
-    Set<UUID> facilityIds = Sets.newHashSet();
-
-    UUID facilityId = params.getFacilityId();
-    UUID programId = params.getProgramId();
-    for (PermissionStringDto permissionString : permissionStrings) {
-      if (equalsIgnoreCase(CCE_INVENTORY_VIEW, permissionString.getRightName())) {
-        if (facilityId == null || permissionString.getFacilityId().equals(facilityId)) {
-          facilityIds.add(permissionString.getFacilityId());
-        }
-
-        if (programId == null || permissionString.getProgramId().equals(programId)) {
-          programIds.add(permissionString.getProgramId());
-        }
-      }
-    }
+    Set<UUID> facilityIds = getFacilityIds(permissionStrings, params);
+    Set<UUID> programIds = getProgramIds(permissionStrings, params);
 
     profiler.start("INVENTORY_ITEM_REPOSITORY_SEARCH");
     Page<InventoryItem> page;
-    if (isEmpty(facilityIds) && isEmpty(programIds)) {
+    if (isEmpty(facilityIds) || isEmpty(programIds)) {
       // missing rights
       page = Pagination.getPage(emptyList(), pageable);
+    } else if (null != params.getAfter()) {
+      validateKeysetSort(pageable.getSort());
+      KeysetCursor after = KeysetCursor.decode(params.getAfter());
+      page = repository.search(facilityIds, programIds, params.getFunctionalStatus(),
+          params.isWithTotal(), after, pageable);
     } else {
-      page = repository.search(facilityIds, programIds, params.getFunctionalStatus(), pageable);
+      page = repository.search(facilityIds, programIds, params.getFunctionalStatus(),
+          params.isWithTotal(), pageable);
     }
 
     profiler.stop().log();
@@ -99,4 +113,98 @@ public class InventoryItemService {
     return page;
   }
 
+  /**
+   * This method streams all inventory items with matched parameters that the user has right for,
+   * in the same way as the {@link #search(UUID, InventoryItemSearchParams, Pageable)} method
+   * does, but without sorting and pagination. The stream has to be consumed in a transaction and
+   * closed afterwards.
+   *
+   * @param   userId     the id of the user to search the inventoryItems for
+   * @param   params     the search parameters, the pagination related ones are ignored
+   * @param   fetchSize  number of items fetched from the database at a time
+   * @return             the stream of inventory items matching given parameters
+   */
+  public Stream<InventoryItem> streamAll(UUID userId, InventoryItemSearchParams params,
+                                         int fetchSize) {
+    XLOGGER.entry(userId, params, fetchSize);
+    Profiler profiler = new Profiler("INVENTORY_ITEM_SERVICE_STREAM_ALL");
+    profiler.setLogger(XLOGGER);
+
+    profiler.start("GET_PERMISSION_STRINGS");
+    PermissionStringIndex permissionStrings = getPermissionStrings(userId);
+
+    profiler.start("GET_PROGRAMS_AND_FACILITIES");
+    Set<UUID> facilityIds = getFacilityIds(permissionStrings, params);
+    Set<UUID> programIds = getProgramIds(permissionStrings, params);
+
+    profiler.start("INVENTORY_ITEM_REPOSITORY_STREAM_ALL");
+    Stream<InventoryItem> items;
+    if (isEmpty(facilityIds) || isEmpty(programIds)) {
+      // missing rights
+      items = Stream.empty();
+    } else {
+      items = repository.streamAll(facilityIds, programIds, params.getFunctionalStatus(),
+          fetchSize);
+    }
+
+    profiler.stop().log();
+    XLOGGER.exit();
+    return items;
+  }
+
+  private PermissionStringIndex getPermissionStrings(UUID userId) {
+    PermissionStrings.Handler handler = permissionService.getPermissionStrings(userId);
+    return handler.get();
+  }
+
+  // the repository matches facilities and programs separately, so when one of them is requested
+  // the other ones are limited to those the user has the right for together with it
+  private Set<UUID> getFacilityIds(PermissionStringIndex permissionStrings,
+                                   InventoryItemSearchParams params) {
+    UUID programId = params.getProgramId();
+    Set<UUID> facilityIds = filter(permissionStrings.getFacilityIds(CCE_INVENTORY_VIEW),
+        params.getFacilityId());
+
+    return null == programId
+        ? facilityIds
+        : filter(facilityIds,
+            facilityId -> permissionStrings.hasRight(CCE_INVENTORY_VIEW, facilityId, programId));
+  }
+
+  private Set<UUID> getProgramIds(PermissionStringIndex permissionStrings,
+                                  InventoryItemSearchParams params) {
+    UUID facilityId = params.getFacilityId();
+    Set<UUID> programIds = filter(permissionStrings.getProgramIds(CCE_INVENTORY_VIEW),
+        params.getProgramId());
+
+    return null == facilityId
+        ? programIds
+        : filter(programIds,
+            programId -> permissionStrings.hasRight(CCE_INVENTORY_VIEW, facilityId, programId));
+  }
+
+  private Set<UUID> filter(Set<UUID> ids, UUID id) {
+    if (null == id) {
+      return ids;
+    }
+
+    return ids.contains(id) ? singleton(id) : emptySet();
+  }
+
+  private Set<UUID> filter(Set<UUID> ids, Predicate<UUID> granted) {
+    return ids
+        .stream()
+        .filter(granted)
+        .collect(Collectors.toSet());
+  }
+
+  private void validateKeysetSort(Sort sort) {
+    Iterator<Sort.Order> iterator = null == sort ? null : sort.iterator();
+
+    if (null == iterator || !iterator.hasNext()
+        || !KEYSET_SORT_PROPERTY.equals(iterator.next().getProperty()) || iterator.hasNext()) {
+      throw new ValidationMessageException(ERROR_CURSOR_SORT_NOT_SUPPORTED, KEYSET_SORT_PROPERTY);
+    }
+  }
+
 }
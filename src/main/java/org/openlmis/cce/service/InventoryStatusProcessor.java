@@ -15,13 +15,27 @@
 
 package org.openlmis.cce.service;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.openlmis.cce.domain.FunctionalStatus;
+import org.openlmis.cce.domain.OutboxEvent;
 import org.openlmis.cce.dto.InventoryItemDto;
-import org.openlmis.cce.service.notifier.NonfunctionalCceNotifier;
+import org.openlmis.cce.util.ExecutorStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Component
 public class InventoryStatusProcessor {
@@ -29,16 +43,157 @@ public class InventoryStatusProcessor {
   protected final Logger logger = LoggerFactory.getLogger(getClass());
 
   @Autowired
-  private NonfunctionalCceNotifier nonfunctionalCceNotifier;
+  private OutboxService outboxService;
+
+  @Value("${statusChange.executor.poolSize}")
+  private int poolSize;
+
+  @Value("${statusChange.executor.queueCapacity}")
+  private int queueCapacity;
+
+  @Value("${statusChange.executor.submitTimeout}")
+  private long submitTimeout;
+
+  @Value("${statusChange.executor.shutdownTimeout}")
+  private long shutdownTimeout;
+
+  private ThreadPoolExecutor executor;
+  private ExecutorStatistics statistics;
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * Creates the executor that processes status changes in the background. When its queue is
+   * full, the thread reporting a status change waits up to {@code submitTimeout} milliseconds
+   * for a free place before the status change is left to the {@link OutboxPoller}. Digest
+   * windows are delivered by the same executor when they close.
+   */
+  @PostConstruct
+  public void init() {
+    executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity),
+        new ThreadFactoryBuilder()
+            .setNameFormat("inventory-status-processor-%d")
+            .setDaemon(true)
+            .build(),
+        (task, pool) -> enqueue(task));
+    statistics = new ExecutorStatistics(executor);
+    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("inventory-status-scheduler-%d")
+        .setDaemon(true)
+        .build());
+  }
+
+  /**
+   * Stops accepting status changes and waits up to {@code shutdownTimeout} milliseconds for the
+   * queued ones to be processed. Digest windows that have not closed yet are left to the
+   * {@link OutboxPoller}.
+   */
+  @PreDestroy
+  public void shutdown() {
+    scheduler.shutdownNow();
+    executor.shutdown();
+
+    try {
+      if (!executor.awaitTermination(shutdownTimeout, TimeUnit.MILLISECONDS)) {
+        logger.warn("Leaving {} unprocessed status changes to the outbox poller",
+            executor.shutdownNow().size());
+      }
+    } catch (InterruptedException exp) {
+      Thread.currentThread().interrupt();
+      executor.shutdownNow();
+    }
+  }
 
   /**
-   * Process inventory functional status change.
+   * Process inventory functional status change. The change is added to the outbox in the current
+   * transaction and delivered in the background after the transaction commits, or right away if
+   * there is no transaction. If the change opens a digest window, all changes of the window are
+   * delivered in the background when it closes; changes that join an open window are delivered
+   * with it.
    * @param inventoryItem a inventoryItem that has just changed its status
    */
   public void functionalStatusChange(InventoryItemDto inventoryItem) {
     logger.debug("Status processor called with: {}", inventoryItem);
-    if (inventoryItem.getFunctionalStatus() != FunctionalStatus.FUNCTIONING) {
-      nonfunctionalCceNotifier.notify(inventoryItem);
+    if (inventoryItem.getFunctionalStatus() == FunctionalStatus.FUNCTIONING) {
+      return;
+    }
+
+    OutboxEvent event = outboxService.addFunctionalStatusChange(inventoryItem);
+    if (null == event) {
+      return;
+    }
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+              submit(event);
+            }
+          });
+    } else {
+      submit(event);
+    }
+  }
+
+  public ExecutorStatistics getStatistics() {
+    return statistics;
+  }
+
+  private void submit(OutboxEvent event) {
+    long delay = Duration
+        .between(event.getCreatedDate(), event.getNextAttemptDate())
+        .toMillis();
+
+    if (delay <= 0) {
+      executor.execute(() -> deliver(event));
+      return;
+    }
+
+    try {
+      scheduler.schedule(() -> executor.execute(this::deliverWindow), delay,
+          TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException exp) {
+      logger.warn("Leaving the digest window of status change {} to the outbox poller",
+          event.getId(), exp);
+    }
+  }
+
+  private void deliver(OutboxEvent event) {
+    try {
+      outboxService.deliver(event.getId());
+    } catch (RuntimeException exp) {
+      statistics.recordFailed();
+      logger.error("Could not deliver status change {}", event.getId(), exp);
+    }
+  }
+
+  private void deliverWindow() {
+    try {
+      boolean more;
+      do {
+        more = outboxService.deliverDue();
+      } while (more);
+    } catch (RuntimeException exp) {
+      statistics.recordFailed();
+      logger.error("Could not deliver status changes of a digest window", exp);
+    }
+  }
+
+  private void enqueue(Runnable task) {
+    boolean accepted = false;
+
+    try {
+      accepted = !executor.isShutdown()
+          && executor.getQueue().offer(task, submitTimeout, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException exp) {
+      Thread.currentThread().interrupt();
+    }
+
+    if (!accepted) {
+      statistics.recordRejected();
+      logger.warn("Status change processing queue is full, leaving a status change to the "
+          + "outbox poller ({})", statistics);
     }
   }
 }
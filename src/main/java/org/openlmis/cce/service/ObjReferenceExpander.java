@@ -15,34 +15,46 @@
 
 package org.openlmis.cce.service;
 
+import static java.util.Collections.singletonList;
 import static org.openlmis.cce.i18n.MessageKeys.ERROR_DTO_EXPANSION_ASSIGNMENT;
 import static org.openlmis.cce.i18n.MessageKeys.ERROR_DTO_EXPANSION_CAST;
 import static org.openlmis.cce.i18n.MessageKeys.ERROR_DTO_EXPANSION_HREF;
 import static org.openlmis.cce.util.RequestHelper.createEntity;
 import static org.openlmis.cce.util.RequestHelper.createUri;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.lang.reflect.InvocationTargetException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.apache.commons.beanutils.BeanUtilsBean;
 import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.openlmis.cce.dto.ObjectReferenceDto;
 import org.openlmis.cce.exception.ValidationMessageException;
+import org.openlmis.cce.util.CacheStatistics;
 import org.openlmis.util.converter.UuidConverter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestOperations;
-import org.springframework.web.client.RestTemplate;
 
 @Component
 public class ObjReferenceExpander {
@@ -54,15 +66,65 @@ public class ObjReferenceExpander {
 
   private BeanUtilsBean beanUtils;
 
-  private RestOperations restTemplate = new RestTemplate();
+  @Autowired
+  private RestOperations restTemplate;
+
+  @Autowired
+  private Clock clock;
+
+  @Value("${expand.maxParallelRequests}")
+  private int maxParallelRequests;
+
+  @Value("${expand.cache.ttl}")
+  private long cacheTtl;
+
+  @Value("${expand.cache.maxSize}")
+  private long cacheMaxSize;
+
+  @Value("${referencedata.cache.notFoundTtl}")
+  private long cacheNotFoundTtl;
+
+  private ResourceCache<String, Map<String, Object>> cache = ResourceCache.disabled();
+
+  private ExecutorService executor;
 
   /**
    * Create an instance of the {@link BeanUtilsBean} and register custom converters with it.
+   * Creates the cache of retrieved references and starts the threads that retrieve them.
    */
   @PostConstruct
   public void registerConverters() {
     beanUtils = BeanUtilsBean.getInstance();
     beanUtils.getConvertUtils().register(new UuidConverter(), UUID.class);
+    cache = new ResourceCache<>(cacheTtl, cacheNotFoundTtl, cacheMaxSize, clock,
+        new CacheStatistics());
+    executor = Executors.newFixedThreadPool(Math.max(1, maxParallelRequests),
+        new ThreadFactoryBuilder()
+            .setNameFormat("reference-expander-%d")
+            .setDaemon(true)
+            .build());
+  }
+
+  /**
+   * Stops the threads that retrieve references.
+   */
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Removes all cached references, so they are retrieved again on the next request.
+   */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /**
+   * Returns how the cache of retrieved references performs.
+   */
+  public CacheStatistics getCacheStatistics() {
+    return cache.getStatistics();
   }
 
   /**
@@ -76,23 +138,81 @@ public class ObjReferenceExpander {
    * @param expands a list of field names from the passed DTO to expand
    */
   public void expandDto(Object dto, List<String> expands) {
-    if (expands == null) {
+    expandDtos(singletonList(dto), expands);
+  }
+
+  /**
+   * Expands all given DTO objects in the same way as {@link #expandDto(Object, List)}. Each
+   * distinct URL referenced by the DTOs is queried only once and the queries are sent
+   * concurrently, at most {@code expand.maxParallelRequests} at a time for all callers together.
+   * URLs queried recently are served from the cache.
+   *
+   * @param dtos the DTOs to expand
+   * @param expands a list of field names from the passed DTOs to expand
+   */
+  public void expandDtos(Collection<?> dtos, List<String> expands) {
+    if (expands == null || dtos.isEmpty()) {
       return;
     }
 
-    for (String expand : expands) {
-      try {
+    Map<String, List<Reference>> references = new LinkedHashMap<>();
+    for (Object dto : dtos) {
+      for (String expand : expands) {
         ObjectReferenceDto refDto = getObjectReferenceDto(dto, expand);
         String href = getHref(expand, refDto);
 
-        Map<String, Object> refObj = retrieve(href);
-        if (MapUtils.isNotEmpty(refObj)) {
-          beanUtils.populate(refDto, refObj);
-        }
-      } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException ex) {
-        throw new ValidationMessageException(ex, ERROR_DTO_EXPANSION_ASSIGNMENT, expand);
+        references
+            .computeIfAbsent(href, key -> new ArrayList<>())
+            .add(new Reference(expand, refDto));
       }
     }
+
+    Map<String, Map<String, Object>> retrieved = retrieveAll(references.keySet());
+
+    references.forEach((href, hrefReferences) -> {
+      Map<String, Object> refObj = retrieved.get(href);
+      if (MapUtils.isNotEmpty(refObj)) {
+        hrefReferences.forEach(reference -> reference.populate(refObj));
+      }
+    });
+  }
+
+  private Map<String, Map<String, Object>> retrieveAll(Collection<String> hrefs) {
+    Map<String, Map<String, Object>> retrieved = new LinkedHashMap<>();
+
+    if (hrefs.size() == 1) {
+      hrefs.forEach(href -> retrieved.put(href, retrieve(href)));
+      return retrieved;
+    }
+
+    Map<String, Future<Map<String, Object>>> futures = new LinkedHashMap<>();
+    hrefs.forEach(href -> futures.put(href, executor.submit(() -> retrieve(href))));
+
+    try {
+      for (Map.Entry<String, Future<Map<String, Object>>> entry : futures.entrySet()) {
+        retrieved.put(entry.getKey(), getResult(entry.getValue()));
+      }
+    } finally {
+      // the remaining queries are not needed if one of them failed
+      futures.values().forEach(future -> future.cancel(true));
+    }
+
+    return retrieved;
+  }
+
+  private Map<String, Object> getResult(Future<Map<String, Object>> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(ex);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+
+      throw new IllegalStateException(ex);
+    }
   }
 
   private String getHref(String expand, ObjectReferenceDto refDto) {
@@ -103,9 +223,14 @@ public class ObjReferenceExpander {
     return href;
   }
 
-  private ObjectReferenceDto getObjectReferenceDto(Object dto, String expand)
-      throws IllegalAccessException, InvocationTargetException, NoSuchMethodException {
-    Object retrievedField = PropertyUtils.getProperty(dto, expand);
+  private ObjectReferenceDto getObjectReferenceDto(Object dto, String expand) {
+    Object retrievedField;
+
+    try {
+      retrievedField = PropertyUtils.getProperty(dto, expand);
+    } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException ex) {
+      throw new ValidationMessageException(ex, ERROR_DTO_EXPANSION_ASSIGNMENT, expand);
+    }
 
     if (!(retrievedField instanceof ObjectReferenceDto)) {
       throw new ValidationMessageException(ERROR_DTO_EXPANSION_CAST, expand);
@@ -114,10 +239,15 @@ public class ObjReferenceExpander {
   }
 
   private Map<String, Object> retrieve(String href) {
-    HttpEntity<Object> entity = createEntity(null,
-        RequestHeaders.init().setAuth(authService.obtainAccessToken()));
+    return cache.get(href, () -> retrieveFromService(href));
+  }
+
+  private Map<String, Object> retrieveFromService(String href) {
     try {
-      return restTemplate.exchange(createUri(href), HttpMethod.GET, entity, Map.class).getBody();
+      return authService.withAccessToken(token -> {
+        HttpEntity<Object> entity = createEntity(null, RequestHeaders.init().setAuth(token));
+        return restTemplate.exchange(createUri(href), HttpMethod.GET, entity, Map.class);
+      }).getBody();
     } catch (HttpStatusCodeException ex) {
       // We don't want to stop processing if the referenced instance does not exist.
       if (HttpStatus.NOT_FOUND == ex.getStatusCode()) {
@@ -129,4 +259,22 @@ public class ObjReferenceExpander {
     }
   }
 
+  private final class Reference {
+    private final String expand;
+    private final ObjectReferenceDto refDto;
+
+    private Reference(String expand, ObjectReferenceDto refDto) {
+      this.expand = expand;
+      this.refDto = refDto;
+    }
+
+    private void populate(Map<String, Object> refObj) {
+      try {
+        beanUtils.populate(refDto, refObj);
+      } catch (IllegalAccessException | InvocationTargetException ex) {
+        throw new ValidationMessageException(ex, ERROR_DTO_EXPANSION_ASSIGNMENT, expand);
+      }
+    }
+  }
+
 }
@@ -0,0 +1,57 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service;
+
+import org.slf4j.ext.XLogger;
+import org.slf4j.ext.XLoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically delivers outbox events that are due, for example because the service was
+ * restarted before it delivered them or because an earlier attempt failed.
+ */
+@Component
+public class OutboxPoller {
+  private static final XLogger XLOGGER = XLoggerFactory.getXLogger(OutboxPoller.class);
+
+  @Autowired
+  private OutboxService outboxService;
+
+  /**
+   * Delivers due events batch by batch until there are none left.
+   */
+  @Scheduled(initialDelayString = "${outbox.pollInterval}",
+      fixedDelayString = "${outbox.pollInterval}")
+  public void deliverDue() {
+    boolean more;
+    do {
+      more = outboxService.deliverDue();
+    } while (more);
+  }
+
+  /**
+   * Removes delivered and failed events that are no longer needed.
+   */
+  @Scheduled(initialDelayString = "${outbox.purgeInterval}",
+      fixedDelayString = "${outbox.purgeInterval}")
+  public void purgeDelivered() {
+    int purged = outboxService.purgeDelivered();
+    XLOGGER.debug("Removed {} delivered outbox events", purged);
+    outboxService.purgeFailed();
+  }
+}
@@ -0,0 +1,311 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.openlmis.cce.domain.OutboxEvent;
+import org.openlmis.cce.dto.InventoryItemDto;
+import org.openlmis.cce.repository.OutboxEventRepository;
+import org.openlmis.cce.service.notifier.NonfunctionalCceNotifier;
+import org.openlmis.cce.service.notifier.NotificationResult;
+import org.slf4j.ext.XLogger;
+import org.slf4j.ext.XLoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps events that have to be delivered to other services in the outbox table. Events are
+ * added in the transaction of the change they describe and delivered at least once: an event is
+ * marked as delivered only after it has been processed successfully, failed deliveries are
+ * retried with an exponential backoff. Events are claimed for {@code outbox.lease} milliseconds
+ * in a short transaction and delivered after it commits, so no database connection or row lock
+ * is held while other services are called; the outcome of each event is recorded in another short
+ * transaction, unless the event has been claimed again in the meantime because the delivery took
+ * longer than the lease.
+ * Events that run out of attempts or cannot be read are marked as failed and kept for
+ * {@code outbox.failedRetention} milliseconds. Functional status changes wait for the digest
+ * window, so a burst of them is delivered together as one digest per recipient.
+ */
+@Service
+@SuppressWarnings("PMD.TooManyMethods")
+public class OutboxService {
+  static final String FUNCTIONAL_STATUS_CHANGE = "FUNCTIONAL_STATUS_CHANGE";
+
+  private static final XLogger XLOGGER = XLoggerFactory.getXLogger(OutboxService.class);
+
+  @Autowired
+  private OutboxEventRepository outboxEventRepository;
+
+  @Autowired
+  private NonfunctionalCceNotifier nonfunctionalCceNotifier;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private Clock clock;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Value("${outbox.batchSize}")
+  private int batchSize;
+
+  @Value("${outbox.retry.initialDelay}")
+  private long initialRetryDelay;
+
+  @Value("${outbox.retry.maxDelay}")
+  private long maxRetryDelay;
+
+  @Value("${outbox.retry.maxAttempts}")
+  private int maxAttempts;
+
+  @Value("${outbox.lease}")
+  private long lease;
+
+  @Value("${outbox.retention}")
+  private long retention;
+
+  @Value("${outbox.failedRetention}")
+  private long failedRetention;
+
+  @Value("${notification.digest.window}")
+  private long digestWindow;
+
+  /**
+   * Adds the functional status change of the given inventory item to the outbox. The first
+   * status change opens a digest window of {@code notification.digest.window} milliseconds, the
+   * status changes added before the window closes are delivered together with it. Windows are
+   * locked until the transaction ends, so concurrent status changes join the same window.
+   *
+   * @param inventoryItem an inventory item that has just changed its status
+   * @return the added event if it can be delivered right away or if it opened a digest window,
+   *         null if it joined an open window
+   */
+  @Transactional
+  public OutboxEvent addFunctionalStatusChange(InventoryItemDto inventoryItem) {
+    String payload;
+    try {
+      payload = objectMapper.writeValueAsString(inventoryItem);
+    } catch (JsonProcessingException exp) {
+      throw new IllegalStateException(exp);
+    }
+
+    ZonedDateTime now = ZonedDateTime.now(clock);
+    ZonedDateTime deliveryDate = now;
+    boolean opensWindow = false;
+
+    if (digestWindow > 0) {
+      outboxEventRepository.lockWindows(FUNCTIONAL_STATUS_CHANGE);
+      ZonedDateTime windowEnd = outboxEventRepository
+          .findOpenWindowEnd(FUNCTIONAL_STATUS_CHANGE, now);
+      opensWindow = null == windowEnd;
+      deliveryDate = opensWindow
+          ? now.plus(digestWindow, ChronoUnit.MILLIS)
+          : windowEnd;
+    }
+
+    OutboxEvent event = outboxEventRepository.save(OutboxEvent
+        .newInstance(FUNCTIONAL_STATUS_CHANGE, payload, now, deliveryDate));
+
+    return opensWindow || !deliveryDate.isAfter(now) ? event : null;
+  }
+
+  /**
+   * Delivers the given event unless it has already been delivered or is being delivered
+   * elsewhere.
+   *
+   * @param eventId the id of the event
+   * @return true if the event has been processed
+   */
+  public boolean deliver(UUID eventId) {
+    OutboxEvent event = inTransaction(() -> {
+      ZonedDateTime now = ZonedDateTime.now(clock);
+      OutboxEvent claimed = outboxEventRepository.claim(eventId, now);
+      return null == claimed ? null : claim(claimed, now);
+    });
+
+    if (null == event) {
+      return false;
+    }
+
+    process(Collections.singletonList(event));
+    return true;
+  }
+
+  /**
+   * Delivers the next batch of events that are due. Events that are being delivered elsewhere
+   * are skipped.
+   *
+   * @return true if the batch was full and more events may be due
+   */
+  public boolean deliverDue() {
+    List<OutboxEvent> events = inTransaction(() -> {
+      ZonedDateTime now = ZonedDateTime.now(clock);
+      List<OutboxEvent> claimed = outboxEventRepository.claimDue(now, batchSize);
+      claimed.forEach(event -> claim(event, now));
+      return claimed;
+    });
+
+    process(events);
+
+    return events.size() >= batchSize;
+  }
+
+  /**
+   * Removes events that were delivered longer than {@code outbox.retention} milliseconds ago.
+   *
+   * @return the number of removed events
+   */
+  @Transactional
+  public int purgeDelivered() {
+    return outboxEventRepository.deleteDeliveredBefore(
+        ZonedDateTime.now(clock).minus(retention, ChronoUnit.MILLIS));
+  }
+
+  /**
+   * Removes events that failed longer than {@code outbox.failedRetention} milliseconds ago.
+   *
+   * @return the number of removed events
+   */
+  @Transactional
+  public int purgeFailed() {
+    int purged = outboxEventRepository.deleteFailedBefore(
+        ZonedDateTime.now(clock).minus(failedRetention, ChronoUnit.MILLIS));
+
+    if (purged > 0) {
+      XLOGGER.error("Removed {} outbox events that could not be delivered", purged);
+    }
+
+    return purged;
+  }
+
+  private OutboxEvent claim(OutboxEvent event, ZonedDateTime now) {
+    event.markClaimed(now.plus(lease, ChronoUnit.MILLIS));
+    return outboxEventRepository.save(event);
+  }
+
+  private void process(List<OutboxEvent> events) {
+    if (events.isEmpty()) {
+      return;
+    }
+
+    events
+        .stream()
+        .collect(Collectors.groupingBy(OutboxEvent::getType, LinkedHashMap::new,
+            Collectors.toList()))
+        .forEach(this::process);
+
+    for (OutboxEvent event : events) {
+      try {
+        inTransaction(() -> outboxEventRepository.save(event));
+      } catch (OptimisticLockingFailureException exp) {
+        XLOGGER.warn("Lost the claim of {} event {} before its outcome was recorded,"
+            + " it may be delivered again", event.getType(), event.getId(), exp);
+      }
+    }
+  }
+
+  private void process(String type, List<OutboxEvent> events) {
+    if (!FUNCTIONAL_STATUS_CHANGE.equals(type)) {
+      events.forEach(event -> markFailed(event, null,
+          new IllegalStateException("Unknown outbox event type: " + type)));
+      return;
+    }
+
+    List<OutboxEvent> readable = new ArrayList<>();
+    List<InventoryItemDto> inventoryItems = new ArrayList<>();
+    for (OutboxEvent event : events) {
+      try {
+        inventoryItems.add(readPayload(event, InventoryItemDto.class));
+        readable.add(event);
+      } catch (IllegalStateException exp) {
+        markFailed(event, null, exp);
+      }
+    }
+
+    if (readable.isEmpty()) {
+      return;
+    }
+
+    List<NotificationResult> results = nonfunctionalCceNotifier.notify(inventoryItems,
+        readable.stream().map(OutboxEvent::getNotifiedRecipients).collect(Collectors.toList()));
+    ZonedDateTime now = ZonedDateTime.now(clock);
+
+    for (int i = 0; i < readable.size(); ++i) {
+      OutboxEvent event = readable.get(i);
+      NotificationResult result = results.get(i);
+      event.addNotifiedRecipients(result.getNotifiedRecipients());
+
+      if (result.isSuccessful()) {
+        event.markDelivered(now);
+      } else {
+        markFailed(event, getNextAttempt(event), result.getError());
+      }
+    }
+  }
+
+  private void markFailed(OutboxEvent event, ZonedDateTime nextAttempt, RuntimeException exp) {
+    if (null == nextAttempt) {
+      XLOGGER.error("Gave up delivering {} event {} after {} attempts",
+          event.getType(), event.getId(), event.getAttempts() + 1, exp);
+    } else {
+      XLOGGER.warn("Could not deliver {} event {} (attempt {}), next attempt: {}",
+          event.getType(), event.getId(), event.getAttempts() + 1, nextAttempt, exp);
+    }
+
+    event.markFailed(nextAttempt, exp.toString(), ZonedDateTime.now(clock));
+  }
+
+  private <T> T inTransaction(Supplier<T> action) {
+    return new TransactionTemplate(transactionManager).execute(status -> action.get());
+  }
+
+  private <T> T readPayload(OutboxEvent event, Class<T> type) {
+    try {
+      return objectMapper.readValue(event.getPayload(), type);
+    } catch (IOException exp) {
+      throw new IllegalStateException(exp);
+    }
+  }
+
+  private ZonedDateTime getNextAttempt(OutboxEvent event) {
+    int attempt = event.getAttempts() + 1;
+    if (attempt >= maxAttempts) {
+      return null;
+    }
+
+    long delay = Math.min(initialRetryDelay << Math.min(attempt - 1, 30), maxRetryDelay);
+    return ZonedDateTime.now(clock).plus(delay, ChronoUnit.MILLIS);
+  }
+}
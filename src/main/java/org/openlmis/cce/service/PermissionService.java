@@ -20,7 +20,6 @@ import static org.openlmis.cce.i18n.PermissionMessageKeys.ERROR_NO_FOLLOWING_PER
 
 import java.util.UUID;
 import org.openlmis.cce.domain.InventoryItem;
-import org.openlmis.cce.dto.PermissionStringDto;
 import org.openlmis.cce.exception.PermissionMessageException;
 import org.openlmis.cce.util.AuthenticationHelper;
 import org.openlmis.cce.util.Message;
@@ -141,9 +140,8 @@ public class PermissionService {
 
     UUID user = authenticationHelper.getCurrentUser().getId();
     PermissionStrings.Handler handler = getPermissionStrings(user);
-    PermissionStringDto permission = PermissionStringDto.create(rightName, facility, program);
 
-    return handler.get().contains(permission);
+    return handler.get().hasRight(rightName, facility, program);
   }
 
   private boolean checkServiceToken(boolean allowServiceTokens, boolean allowApiKey,
@@ -15,49 +15,240 @@
 
 package org.openlmis.cce.service;
 
-import com.google.common.collect.Maps;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.time.Clock;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
-import org.openlmis.cce.dto.PermissionStringDto;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.openlmis.cce.dto.PermissionStringIndex;
 import org.openlmis.cce.service.referencedata.UserReferenceDataService;
+import org.openlmis.cce.util.CacheStatistics;
+import org.slf4j.ext.XLogger;
+import org.slf4j.ext.XLoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 @Component
 public class PermissionStrings {
-  private final Map<UUID, Handler> handlers = Maps.newConcurrentMap();
+  private static final XLogger XLOGGER = XLoggerFactory.getXLogger(PermissionStrings.class);
+  private static final int REFRESH_THREADS = 2;
+
+  private final CacheStatistics statistics = new CacheStatistics();
+  private Cache<UUID, Handler> handlers;
+
+  private ExecutorService refreshExecutor = Executors.newFixedThreadPool(REFRESH_THREADS,
+      new ThreadFactoryBuilder()
+          .setNameFormat("permission-strings-refresh-%d")
+          .setDaemon(true)
+          .build());
 
   @Autowired
   private UserReferenceDataService userReferenceDataService;
 
+  @Autowired
+  private Clock clock;
+
+  /*
+    For how long (in milliseconds) permission strings are used without asking referencedata.
+   */
+  @Value("${permissionStrings.cache.freshness}")
+  private long freshness;
+
+  /*
+    For how long (in milliseconds) after the freshness window expires permission strings are
+    still used while being refreshed in the background.
+   */
+  @Value("${permissionStrings.cache.staleWhileRevalidate}")
+  private long staleWhileRevalidate;
+
+  /*
+    How many users can have their permission strings kept in memory at the same time.
+   */
+  @Value("${permissionStrings.cache.maxUsers}")
+  private long maxUsers;
+
+  /*
+    After how long (in milliseconds) without any access permission strings of a user are removed
+    from memory.
+   */
+  @Value("${permissionStrings.cache.expireAfterAccess}")
+  private long expireAfterAccess;
+
+  /**
+   * Creates the registry of handlers. The least recently used handlers are evicted when there
+   * are too many of them and idle handlers are evicted after the configured time.
+   */
+  @PostConstruct
+  public void init() {
+    handlers = CacheBuilder
+        .newBuilder()
+        .maximumSize(maxUsers)
+        .expireAfterAccess(expireAfterAccess, TimeUnit.MILLISECONDS)
+        .ticker(new Ticker() {
+          @Override
+          public long read() {
+            return TimeUnit.MILLISECONDS.toNanos(clock.millis());
+          }
+        })
+        .recordStats()
+        .build();
+  }
+
   Handler forUser(UUID user) {
-    return handlers.computeIfAbsent(user, Handler::new);
+    try {
+      return handlers.get(user, () -> new Handler(user));
+    } catch (ExecutionException exp) {
+      // the handler constructor does not throw checked exceptions
+      throw new IllegalStateException(exp);
+    }
+  }
+
+  public CacheStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Returns the number of users whose permission strings are kept in memory.
+   */
+  public long getUserCount() {
+    return handlers.size();
+  }
+
+  /**
+   * Returns the number of permission strings kept in memory for all users. Together with
+   * {@link #getUserCount()} it describes the heap used by this registry.
+   */
+  public long getPermissionStringCount() {
+    return handlers
+        .asMap()
+        .values()
+        .stream()
+        .mapToLong(Handler::size)
+        .sum();
+  }
+
+  /**
+   * Returns how many users have been removed from the registry because it was full or they
+   * were idle for too long.
+   */
+  public long getEvictionCount() {
+    return handlers.stats().evictionCount();
+  }
+
+  @PreDestroy
+  void shutdown() {
+    refreshExecutor.shutdownNow();
   }
 
-  public class Handler implements Supplier<Set<PermissionStringDto>> {
-    private UUID userId;
+  public class Handler implements Supplier<PermissionStringIndex> {
+    private final UUID userId;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
 
-    private Set<PermissionStringDto> permissionStrings;
-    private String etag;
+    private volatile PermissionStringIndex permissionStrings;
+    private volatile String etag;
+    private volatile long validatedAt;
+    private volatile long version;
 
     Handler(UUID userId) {
       this.userId = userId;
     }
 
+    /**
+     * Returns permission strings of the user. Values younger than the freshness window are
+     * returned without any remote call. Older values are still returned during the
+     * stale-while-revalidate window but a single background refresh is started. If there are no
+     * values yet or they are older than both windows, the caller waits for referencedata.
+     */
     @Override
-    public synchronized Set<PermissionStringDto> get() {
-      ServiceResponse<List<String>> response = userReferenceDataService
-          .getPermissionStrings(userId, etag);
+    public PermissionStringIndex get() {
+      long observedVersion = version;
+      PermissionStringIndex current = permissionStrings;
+
+      if (null != current) {
+        long age = clock.millis() - validatedAt;
+
+        if (age < freshness) {
+          statistics.recordHit();
+          return current;
+        }
+
+        if (age < freshness + staleWhileRevalidate && refreshInBackground(observedVersion)) {
+          statistics.recordStaleHit();
+          return current;
+        }
+      }
+
+      statistics.recordMiss();
+      return refresh(observedVersion);
+    }
+
+    int size() {
+      PermissionStringIndex current = permissionStrings;
+      return null == current ? 0 : current.size();
+    }
+
+    private boolean refreshInBackground(long observedVersion) {
+      if (!refreshing.compareAndSet(false, true)) {
+        // another caller has already started the refresh
+        return true;
+      }
+
+      try {
+        refreshExecutor.execute(() -> {
+          try {
+            refresh(observedVersion);
+          } catch (RuntimeException exp) {
+            XLOGGER.warn("Could not refresh permission strings of user {}", userId, exp);
+          } finally {
+            refreshing.set(false);
+          }
+        });
+        return true;
+      } catch (RejectedExecutionException exp) {
+        refreshing.set(false);
+        return false;
+      }
+    }
+
+    private synchronized PermissionStringIndex refresh(long observedVersion) {
+      if (observedVersion != version) {
+        // permission strings have been refreshed while we were waiting for the lock
+        return permissionStrings;
+      }
+
+      long start = clock.millis();
+      ServiceResponse<PermissionStringIndex> response;
+
+      try {
+        response = userReferenceDataService.getPermissionStrings(userId, etag);
+      } catch (RuntimeException exp) {
+        statistics.recordFailure();
+        throw exp;
+      }
+
+      long end = clock.millis();
+      statistics.recordRevalidation(end - start);
 
       if (response.isModified()) {
-        permissionStrings = PermissionStringDto.from(response.getBody());
+        permissionStrings = response.getBody();
         etag = response.getETag();
       }
 
+      validatedAt = end;
+      version = observedVersion + 1;
+
       return permissionStrings;
     }
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,166 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.time.Clock;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openlmis.cce.util.CacheStatistics;
+
+/**
+ * A bounded read-through cache for resources retrieved from other services. Resources are kept
+ * for the given time to live, resources that do not exist (the loader returned {@code null}) are
+ * remembered for the shorter not found time to live. Concurrent requests for the same key wait
+ * for a single load. A cache with a time to live of zero does not keep anything and always asks
+ * the loader.
+ *
+ * @param <K> the type of keys.
+ * @param <V> the type of cached resources.
+ */
+public class ResourceCache<K, V> {
+  private final Cache<K, Entry<V>> entries;
+  private final long timeToLive;
+  private final long notFoundTimeToLive;
+  private final Clock clock;
+  private final CacheStatistics statistics;
+
+  /**
+   * Creates a new cache.
+   *
+   * @param timeToLive         how long (in milliseconds) a resource is kept.
+   * @param notFoundTimeToLive how long (in milliseconds) a missing resource is remembered.
+   * @param maxSize            the maximum number of kept keys.
+   * @param clock              the clock used to expire entries.
+   * @param statistics         the statistics the cache reports to.
+   */
+  public ResourceCache(long timeToLive, long notFoundTimeToLive, long maxSize, Clock clock,
+                       CacheStatistics statistics) {
+    this.timeToLive = timeToLive;
+    this.notFoundTimeToLive = Math.min(notFoundTimeToLive, timeToLive);
+    this.clock = clock;
+    this.statistics = statistics;
+    this.entries = timeToLive <= 0 || maxSize <= 0
+        ? null
+        : CacheBuilder
+            .newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(timeToLive, TimeUnit.MILLISECONDS)
+            .ticker(new Ticker() {
+              @Override
+              public long read() {
+                return TimeUnit.MILLISECONDS.toNanos(clock.millis());
+              }
+            })
+            .build();
+  }
+
+  /**
+   * Creates a cache that does not keep anything.
+   */
+  public static <K, V> ResourceCache<K, V> disabled() {
+    return new ResourceCache<>(0, 0, 0, null, new CacheStatistics());
+  }
+
+  /**
+   * Returns the resource with the given key from the cache or retrieves it with the given loader
+   * if it is not cached or has expired.
+   *
+   * @param key    the key of the resource.
+   * @param loader retrieves the resource, returns {@code null} if it does not exist.
+   * @return the resource or {@code null} if it does not exist.
+   */
+  public V get(K key, Supplier<V> loader) {
+    if (entries == null) {
+      return loader.get();
+    }
+
+    Entry<V> entry = entries.getIfPresent(key);
+    if (entry != null) {
+      if (entry.validUntil > clock.millis()) {
+        statistics.recordHit();
+        return entry.value;
+      }
+
+      entries.asMap().remove(key, entry);
+    }
+
+    try {
+      return entries.get(key, () -> load(loader)).value;
+    } catch (ExecutionException | UncheckedExecutionException exp) {
+      statistics.recordFailure();
+
+      if (exp.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) exp.getCause();
+      }
+
+      throw new IllegalStateException(exp);
+    }
+  }
+
+  /**
+   * Removes the resource with the given key, so it is retrieved again on the next request.
+   */
+  public void invalidate(K key) {
+    if (entries != null) {
+      entries.invalidate(key);
+      statistics.recordInvalidation();
+    }
+  }
+
+  /**
+   * Removes all resources, so they are retrieved again on the next request.
+   */
+  public void invalidateAll() {
+    if (entries != null) {
+      entries.invalidateAll();
+      statistics.recordInvalidation();
+    }
+  }
+
+  public long size() {
+    return entries == null ? 0 : entries.size();
+  }
+
+  public CacheStatistics getStatistics() {
+    return statistics;
+  }
+
+  private Entry<V> load(Supplier<V> loader) {
+    statistics.recordMiss();
+
+    long start = clock.millis();
+    V value = loader.get();
+    long end = clock.millis();
+
+    statistics.recordRevalidation(end - start);
+    return new Entry<>(value, end + (value == null ? notFoundTimeToLive : timeToLive));
+  }
+
+  private static final class Entry<V> {
+    private final V value;
+    private final long validUntil;
+
+    private Entry(V value, long validUntil) {
+      this.value = value;
+      this.validUntil = validUntil;
+    }
+  }
+}
@@ -20,27 +20,62 @@ import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.openlmis.cce.dto.BaseDto;
+import org.openlmis.cce.util.CacheStatistics;
 import org.openlmis.cce.util.DynamicPageTypeReference;
 import org.springframework.data.domain.Page;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResponseExtractor;
 
 public abstract class ResourceCommunicationService<T extends BaseDto>
     extends BaseCommunicationService {
 
+  private ResourceCache<UUID, T> cache = ResourceCache.disabled();
+
   protected abstract Class<T> getResultClass();
 
   protected abstract Class<T[]> getArrayResultClass();
 
   /**
-   * Return one object from service.
+   * Return one object from service. The object is served from the cache if it has been
+   * retrieved recently, so it must not be modified.
    *
    * @param id UUID of requesting object.
    * @return Requesting reference data object.
    */
   public T findOne(UUID id) {
+    return cache.get(id, () -> retrieveOne(id));
+  }
+
+  /**
+   * Removes the object with the given id from the cache, so it is retrieved again on the next
+   * request.
+   */
+  public void invalidate(UUID id) {
+    cache.invalidate(id);
+  }
+
+  /**
+   * Removes all cached objects, so they are retrieved again on the next request.
+   */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /**
+   * Returns how the cache of objects retrieved from this service performs.
+   */
+  public CacheStatistics getCacheStatistics() {
+    return cache.getStatistics();
+  }
+
+  protected void setCache(ResourceCache<UUID, T> cache) {
+    this.cache = cache;
+  }
+
+  private T retrieveOne(UUID id) {
     try {
       return execute(id.toString(), null, null, null, HttpMethod.GET, getResultClass()).getBody();
     } catch (HttpStatusCodeException ex) {
@@ -102,6 +137,32 @@ public abstract class ResourceCommunicationService<T extends BaseDto>
     }
   }
 
+  /**
+   * Retrieves a resource only if it has changed since the given etag. The response body is
+   * passed to the body extractor as a stream so it does not have to be kept in memory at once.
+   *
+   * @param resourceUrl   Endpoint url.
+   * @param etag          the etag of the currently known version of the resource.
+   * @param bodyExtractor reads the response body if the resource has changed.
+   * @return the response with the extracted body or without body if nothing has changed.
+   */
+  protected <P> ServiceResponse<P> tryFind(String resourceUrl, String etag,
+                                           ResponseExtractor<P> bodyExtractor) {
+    try {
+      RequestHeaders headers = RequestHeaders.init().setIfNoneMatch(etag);
+      return execute(resourceUrl, null, headers, HttpMethod.GET, response -> {
+        if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+          return new ServiceResponse<>(null, response.getHeaders(), false);
+        }
+
+        P body = bodyExtractor.extractData(response);
+        return new ServiceResponse<>(body, response.getHeaders(), true);
+      });
+    } catch (HttpStatusCodeException ex) {
+      throw DataRetrievalException.build(getResultClass().getSimpleName(), ex);
+    }
+  }
+
   /**
    * Return all reference data T objects for Page that need to be retrieved with GET request.
    *
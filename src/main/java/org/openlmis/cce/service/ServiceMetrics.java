@@ -0,0 +1,75 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.openlmis.cce.service.referencedata.BaseReferenceDataService;
+import org.openlmis.cce.util.ConnectionPoolStatistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes how the local caches, the pool of connections to other services and the background
+ * executors of this instance perform through the {@code /metrics} endpoint.
+ * The values describe this instance only, so they are read from each instance separately.
+ */
+@Component
+public class ServiceMetrics implements PublicMetrics {
+  static final String PERMISSION_STRINGS = "cache.permissionStrings";
+  static final String ACCESS_TOKEN = "cache.accessToken";
+  static final String CONNECTION_POOL = "http.pool";
+  static final String REFERENCES = "cache.references";
+  static final String STATUS_CHANGES = "executor.statusChanges";
+
+  @Autowired
+  private PermissionStrings permissionStrings;
+
+  @Autowired
+  private AuthService authService;
+
+  @Autowired
+  private ConnectionPoolStatistics connectionPoolStatistics;
+
+  @Autowired
+  private List<BaseReferenceDataService<?>> referenceDataServices;
+
+  @Autowired
+  private ObjReferenceExpander objReferenceExpander;
+
+  @Autowired
+  private InventoryStatusProcessor inventoryStatusProcessor;
+
+  @Override
+  public Collection<Metric<?>> metrics() {
+    List<Metric<?>> metrics = new ArrayList<>();
+    permissionStrings.getStatistics().addMetrics(PERMISSION_STRINGS, metrics);
+    metrics.add(new Metric<>(PERMISSION_STRINGS + ".users", permissionStrings.getUserCount()));
+    metrics.add(new Metric<>(PERMISSION_STRINGS + ".permissionStrings",
+        permissionStrings.getPermissionStringCount()));
+    metrics.add(new Metric<>(PERMISSION_STRINGS + ".evictions",
+        permissionStrings.getEvictionCount()));
+    authService.getStatistics().addMetrics(ACCESS_TOKEN, metrics);
+    connectionPoolStatistics.addMetrics(CONNECTION_POOL, metrics);
+    referenceDataServices.forEach(service -> service.addCacheMetrics(metrics));
+    objReferenceExpander.getCacheStatistics().addMetrics(REFERENCES, metrics);
+    inventoryStatusProcessor.getStatistics().addMetrics(STATUS_CHANGES, metrics);
+    return metrics;
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.cce.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically renews the leases of upload jobs that run on this instance and fails jobs whose
+ * lease expired, for example because the instance that ran them was restarted.
+ */
+@Component
+public class UploadJobPoller {
+
+  @Autowired
+  private UploadJobService uploadJobService;
+
+  /**
+   * Renews the leases of upload jobs that are pending or running on this instance.
+   */
+  @Scheduled(initialDelayString = "${uploadJobs.heartbeatInterval}",
+      fixedDelayString = "${uploadJobs.heartbeatInterval}")
+  public void renewLeases() {
+    uploadJobService.renewLeases();
+  }
+
+  /**
+   * Fails upload jobs whose lease expired, starting right after the service is started.
+   */
+  @Scheduled(fixedDelayString = "${uploadJobs.heartbeatInterval}")
+  public void failExpired() {
+    uploadJobService.failExpired();
+  }
+}
@@ -0,0 +1,304 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.apache.commons.lang3.StringUtils;
+import org.openlmis.cce.domain.UploadJob;
+import org.openlmis.cce.domain.UploadJobStatus;
+import org.openlmis.cce.exception.BaseMessageException;
+import org.openlmis.cce.i18n.MessageService;
+import org.openlmis.cce.i18n.UploadJobMessageKeys;
+import org.openlmis.cce.repository.UploadJobRepository;
+import org.openlmis.cce.util.Message;
+import org.openlmis.cce.web.csv.parser.ParseListener;
+import org.slf4j.ext.XLogger;
+import org.slf4j.ext.XLoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Uploads files in the background. At most {@code uploadJobs.poolSize} files are uploaded at a
+ * time, and the chunks of each file are processed by the shared pool of the CSV parser. Jobs
+ * waiting for a free thread are kept in memory and their files are stored in temporary files of
+ * this instance, so the instance renews the leases of its jobs every
+ * {@code uploadJobs.heartbeatInterval} milliseconds. Jobs that were not started before the service
+ * stopped are marked as failed, and so are jobs of any instance whose lease of
+ * {@code uploadJobs.lease} milliseconds expired, for example because the instance crashed.
+ */
+@Service
+@SuppressWarnings("PMD.TooManyMethods")
+public class UploadJobService {
+  private static final XLogger XLOGGER = XLoggerFactory.getXLogger(UploadJobService.class);
+
+  private static final int MAX_ERROR_LENGTH = 2000;
+  private static final Collection<UploadJobStatus> ACTIVE_STATUSES =
+      EnumSet.of(UploadJobStatus.PENDING, UploadJobStatus.RUNNING);
+
+  @Autowired
+  private UploadJobRepository uploadJobRepository;
+
+  @Autowired
+  private MessageService messageService;
+
+  @Value("${uploadJobs.poolSize}")
+  private int poolSize;
+
+  @Value("${uploadJobs.lease}")
+  private long lease;
+
+  private final Set<UUID> activeJobs = ConcurrentHashMap.newKeySet();
+
+  private ExecutorService executor;
+
+  /**
+   * Starts the threads that run upload jobs.
+   */
+  @PostConstruct
+  public void init() {
+    executor = Executors.newFixedThreadPool(poolSize, new ThreadFactoryBuilder()
+        .setNameFormat("upload-job-%d")
+        .setDaemon(true)
+        .build());
+  }
+
+  /**
+   * Stops the threads that run upload jobs. Jobs that have not been started yet are marked as
+   * failed and their files are removed.
+   */
+  @PreDestroy
+  public void shutdown() {
+    for (Runnable runnable : executor.shutdownNow()) {
+      Job job = (Job) runnable;
+
+      try {
+        uploadJobRepository.markFinished(job.jobId, UploadJobStatus.FAILED, ZonedDateTime.now(),
+            getError(new Message(UploadJobMessageKeys.ERROR_JOB_INTERRUPTED)));
+      } catch (RuntimeException exp) {
+        XLOGGER.warn("Could not mark job {} as failed, it will fail when its lease expires",
+            job.jobId, exp);
+      } finally {
+        activeJobs.remove(job.jobId);
+        delete(job.file);
+      }
+    }
+  }
+
+  /**
+   * Extends the leases of jobs that are pending or running on this instance.
+   */
+  public void renewLeases() {
+    if (activeJobs.isEmpty()) {
+      return;
+    }
+
+    uploadJobRepository.renewLeases(new ArrayList<>(activeJobs), ACTIVE_STATUSES,
+        ZonedDateTime.now().plus(lease, ChronoUnit.MILLIS));
+  }
+
+  /**
+   * Marks jobs of all instances whose lease expired as failed, because their files are gone.
+   *
+   * @return the number of failed jobs
+   */
+  public int failExpired() {
+    int failed = uploadJobRepository.markExpired(ACTIVE_STATUSES, UploadJobStatus.FAILED,
+        ZonedDateTime.now(), getError(new Message(UploadJobMessageKeys.ERROR_JOB_INTERRUPTED)));
+
+    if (failed > 0) {
+      XLOGGER.warn("Marked {} upload jobs with expired lease as failed", failed);
+    }
+
+    return failed;
+  }
+
+  /**
+   * Creates a job that uploads the given file in the background. The file is copied first,
+   * because the uploaded one is removed when the request completes. The job is started after the
+   * current transaction commits, or right away if there is no transaction, and runs with the
+   * security context of the current thread. The copy is removed when the job finishes, or if it
+   * is never started.
+   *
+   * @param file the uploaded file
+   * @param task uploads the copy of the file
+   * @return the created job.
+   */
+  public UploadJob submit(MultipartFile file, UploadTask task) throws IOException {
+    Path copy = Files.createTempFile("cce-upload-", ".tmp");
+    UploadJob job;
+
+    try {
+      file.transferTo(copy.toFile());
+
+      ZonedDateTime now = ZonedDateTime.now();
+      job = uploadJobRepository.save(UploadJob.newInstance(file.getOriginalFilename(), now,
+          now.plus(lease, ChronoUnit.MILLIS)));
+    } catch (IOException | RuntimeException exp) {
+      delete(copy);
+      throw exp;
+    }
+
+    activeJobs.add(job.getId());
+    Job runnable = new Job(job.getId(), copy, new DelegatingSecurityContextRunnable(
+        () -> run(job.getId(), copy, task), SecurityContextHolder.getContext()));
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+              if (TransactionSynchronization.STATUS_COMMITTED == status) {
+                executor.execute(runnable);
+              } else {
+                activeJobs.remove(job.getId());
+                delete(copy);
+              }
+            }
+          });
+    } else {
+      executor.execute(runnable);
+    }
+
+    return job;
+  }
+
+  void run(UUID jobId, Path file, UploadTask task) {
+    XLOGGER.entry(jobId);
+
+    try {
+      uploadJobRepository.markStarted(jobId, UploadJobStatus.RUNNING, ZonedDateTime.now());
+
+      int count;
+      try (InputStream input = Files.newInputStream(file)) {
+        count = task.upload(input, new JobProgress(jobId));
+      }
+
+      uploadJobRepository.markFinished(jobId, UploadJobStatus.COMPLETED, ZonedDateTime.now());
+      XLOGGER.exit(count);
+    } catch (IOException | RuntimeException exp) {
+      XLOGGER.catching(exp);
+      uploadJobRepository.markFinished(jobId, UploadJobStatus.FAILED, ZonedDateTime.now(),
+          getError(exp));
+    } finally {
+      activeJobs.remove(jobId);
+      delete(file);
+    }
+  }
+
+  private String getError(Exception exp) {
+    return exp instanceof BaseMessageException
+        ? getError(((BaseMessageException) exp).asMessage())
+        : StringUtils.abbreviate(String.valueOf(exp.getMessage()), MAX_ERROR_LENGTH);
+  }
+
+  private String getError(Message message) {
+    String error = messageService.localize(message).asMessage();
+    return StringUtils.abbreviate(String.valueOf(error), MAX_ERROR_LENGTH);
+  }
+
+  private void delete(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException exp) {
+      XLOGGER.warn("Could not delete uploaded file {}", file, exp);
+    }
+  }
+
+  /**
+   * Uploads a file of an upload job.
+   */
+  @FunctionalInterface
+  public interface UploadTask {
+
+    /**
+     * Uploads the given file, reporting the progress to the given listener.
+     *
+     * @return number of read records
+     */
+    int upload(InputStream input, ParseListener listener) throws IOException;
+  }
+
+  /**
+   * Runs a job with the security context of the thread that submitted it. The job and its file
+   * are kept, so that they can be cleaned up if the job is never started.
+   */
+  private static final class Job implements Runnable {
+    private final UUID jobId;
+    private final Path file;
+    private final Runnable delegate;
+
+    Job(UUID jobId, Path file, Runnable delegate) {
+      this.jobId = jobId;
+      this.file = file;
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void run() {
+      delegate.run();
+    }
+  }
+
+  /**
+   * Saves the progress of a job. Failed chunks are counted and do not stop the job.
+   */
+  private final class JobProgress implements ParseListener {
+    private final UUID jobId;
+
+    JobProgress(UUID jobId) {
+      this.jobId = jobId;
+    }
+
+    @Override
+    public void chunkRead(int rows) {
+      uploadJobRepository.addRowsRead(jobId, rows);
+    }
+
+    @Override
+    public void chunkWritten(int rows) {
+      uploadJobRepository.addRowsWritten(jobId, rows);
+    }
+
+    @Override
+    public void chunkFailed(int rows, RuntimeException error) {
+      XLOGGER.warn("Could not upload {} rows of job {}", rows, jobId, error);
+      uploadJobRepository.addRowsFailed(jobId, rows, getError(error));
+    }
+  }
+}
@@ -20,12 +20,16 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.time.format.FormatStyle;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.openlmis.cce.dto.UserDto;
 import org.openlmis.cce.i18n.MessageService;
 import org.openlmis.cce.util.Message;
+import org.openlmis.cce.util.MessageTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.beans.factory.annotation.Value;
 
 public class BaseNotifier {
 
@@ -34,17 +38,37 @@ public class BaseNotifier {
   @Autowired
   protected MessageService messageService;
 
+  @Value("${defaultLocale}")
+  private Locale defaultLocale;
+
+  private final Map<Locale, DateTimeFormatter> dateTimeFormatters = new ConcurrentHashMap<>();
+
   protected String getMessage(String key) {
     return messageService
         .localize(new Message(key))
         .asMessage();
   }
 
-  protected DateTimeFormatter getDateTimeFormatter() {
-    Locale locale = LocaleContextHolder.getLocale();
+  protected MessageTemplate getTemplate(String key, Locale locale) {
+    return messageService.getTemplate(key, locale);
+  }
+
+  /**
+   * Returns the locale in which the given recipient is notified. The reference data service does
+   * not share the language preferred by users, so all of them get the default locale for now.
+   */
+  protected Locale getLocale(UserDto recipient) {
+    return defaultLocale;
+  }
 
-    String datePattern = DateTimeFormatterBuilder.getLocalizedDateTimePattern(
-        FormatStyle.MEDIUM, FormatStyle.MEDIUM, Chronology.ofLocale(locale), locale);
-    return DateTimeFormatter.ofPattern(datePattern);
+  /**
+   * Returns the formatter of dates in notifications sent in the given locale. Notifications are
+   * sent outside of the request that triggered them, so dates are formatted in the locale of the
+   * recipient, the same as the templates, instead of the locale of the current request.
+   */
+  protected DateTimeFormatter getDateTimeFormatter(Locale locale) {
+    return dateTimeFormatters.computeIfAbsent(locale, key -> DateTimeFormatter.ofPattern(
+        DateTimeFormatterBuilder.getLocalizedDateTimePattern(
+            FormatStyle.MEDIUM, FormatStyle.MEDIUM, Chronology.ofLocale(key), key)));
   }
 }
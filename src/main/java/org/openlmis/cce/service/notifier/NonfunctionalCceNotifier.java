@@ -16,24 +16,40 @@
 package org.openlmis.cce.service.notifier;
 
 import static org.openlmis.cce.i18n.InventoryItemMessageKeys.EMAIL_NONFUNCTIONAL_CCE_CONTENT;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.EMAIL_NONFUNCTIONAL_CCE_DIGEST_CONTENT;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.EMAIL_NONFUNCTIONAL_CCE_DIGEST_ITEM;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.EMAIL_NONFUNCTIONAL_CCE_DIGEST_SUBJECT;
 import static org.openlmis.cce.i18n.InventoryItemMessageKeys.EMAIL_NONFUNCTIONAL_CCE_SUBJECT;
 import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_USER_INVALID;
 import static org.openlmis.cce.service.PermissionService.CCE_INVENTORY_EDIT;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.text.MessageFormat;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.annotation.PreDestroy;
 import javax.validation.constraints.NotNull;
-import org.apache.commons.lang3.text.StrSubstitutor;
+import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.openlmis.cce.dto.InventoryItemDto;
 import org.openlmis.cce.dto.RightDto;
 import org.openlmis.cce.dto.SupervisoryNodeDto;
@@ -45,12 +61,18 @@ import org.openlmis.cce.service.referencedata.RightReferenceDataService;
 import org.openlmis.cce.service.referencedata.SupervisoryNodeReferenceDataService;
 import org.openlmis.cce.service.referencedata.UserReferenceDataService;
 import org.openlmis.cce.util.Message;
+import org.openlmis.cce.util.MessageTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 @Component
 public class NonfunctionalCceNotifier extends BaseNotifier {
+  private static final int SEARCH_THREADS = 4;
+  private static final String USERNAME = "username";
+  private static final String COUNT = "count";
+  private static final String ITEMS = "items";
+  private static final String SAVE_DATE = "saveDate";
 
   @Autowired
   private RightReferenceDataService rightReferenceDataService;
@@ -73,33 +95,205 @@ public class NonfunctionalCceNotifier extends BaseNotifier {
   @Value("${email.urlToViewCce}")
   private String urlToViewCce;
 
+  private ExecutorService searchExecutor = Executors.newFixedThreadPool(SEARCH_THREADS,
+      new ThreadFactoryBuilder()
+          .setNameFormat("notification-recipient-search-%d")
+          .setDaemon(true)
+          .build());
+
+  /**
+   * Stops the threads searching for recipients.
+   */
+  @PreDestroy
+  public void shutdown() {
+    searchExecutor.shutdownNow();
+  }
+
   /**
    * Notify user with Edit Inventory rights for the facility assigned with inventory item.
    *
    * @param inventoryItem InventoryItem that became non functional
    */
   public void notify(InventoryItemDto inventoryItem) {
-    Collection<UserDto> recipients = getRecipients(inventoryItem);
+    NotificationResult result = notify(Collections.singletonList(inventoryItem),
+        Collections.singletonList(Collections.emptySet())).get(0);
+    if (!result.isSuccessful()) {
+      throw result.getError();
+    }
+  }
+
+  /**
+   * Notify users with Edit Inventory rights for the facilities assigned with inventory items.
+   * Recipients are resolved once per program and facility. A recipient of several inventory
+   * items gets a single digest instead of one notification per item. Failures are isolated: if
+   * the recipients of a program and facility cannot be resolved, an inventory item cannot be
+   * described or a recipient cannot be notified, only the affected inventory items fail.
+   * Recipients that have already been notified about an inventory item are skipped.
+   *
+   * @param inventoryItems     InventoryItems that became non functional
+   * @param notifiedRecipients ids of users already notified, for each of the inventory items
+   * @return the outcome for each of the inventory items, in the same order
+   */
+  public List<NotificationResult> notify(List<InventoryItemDto> inventoryItems,
+      List<Set<UUID>> notifiedRecipients) {
+    List<NotificationResult> results = new ArrayList<>();
+    inventoryItems.forEach(item -> results.add(new NotificationResult()));
+    Map<UserDto, List<Integer>> itemsByRecipient = new LinkedHashMap<>();
+    Map<Integer, Map<String, String>> valuesByItem = new HashMap<>();
+
+    IntStream.range(0, inventoryItems.size())
+        .boxed()
+        .collect(Collectors.groupingBy(
+            index -> ImmutablePair.of(inventoryItems.get(index).getProgramId(),
+                inventoryItems.get(index).getFacilityId()),
+            LinkedHashMap::new, Collectors.toList()))
+        .forEach((key, group) -> {
+          Collection<UserDto> recipients;
+          try {
+            recipients = getRecipients(inventoryItems.get(group.get(0)));
+          } catch (RuntimeException exp) {
+            logger.warn("Could not find recipients for program {} and facility {}",
+                key.getLeft(), key.getRight(), exp);
+            group.forEach(index -> results.get(index).fail(exp));
+            return;
+          }
+
+          if (logger.isDebugEnabled()) {
+            logger.debug(
+                "Found recipients to send notification to: {}",
+                recipients.stream().map(UserDto::getUsername).collect(Collectors.toSet())
+            );
+          }
+
+          for (Integer index : group) {
+            List<UserDto> remaining = recipients
+                .stream()
+                .filter(recipient -> !notifiedRecipients.get(index).contains(recipient.getId()))
+                .collect(Collectors.toList());
+
+            if (remaining.isEmpty()) {
+              continue;
+            }
+
+            try {
+              valuesByItem.put(index, getValuesMap(inventoryItems.get(index)));
+            } catch (RuntimeException exp) {
+              logger.warn("Could not describe inventory item {}",
+                  inventoryItems.get(index).getId(), exp);
+              results.get(index).fail(exp);
+              continue;
+            }
+
+            remaining.forEach(recipient -> itemsByRecipient
+                .computeIfAbsent(recipient, user -> new ArrayList<>())
+                .add(index));
+          }
+        });
+
+    if (!itemsByRecipient.isEmpty()) {
+      send(inventoryItems, itemsByRecipient, valuesByItem, results);
+    }
+
+    return results;
+  }
+
+  private void send(List<InventoryItemDto> inventoryItems,
+      Map<UserDto, List<Integer>> itemsByRecipient,
+      Map<Integer, Map<String, String>> valuesByItem, List<NotificationResult> results) {
+    List<NotificationDto> notifications = new ArrayList<>();
+    StringBuilder buffer = new StringBuilder();
+    itemsByRecipient.forEach((recipient, items) -> notifications.add(buildNotification(recipient,
+        items.stream().map(valuesByItem::get).collect(Collectors.toList()),
+        items.stream().map(index -> inventoryItems.get(index).getModifiedDate())
+            .collect(Collectors.toList()),
+        buffer)));
 
-    if (logger.isDebugEnabled()) {
-      logger.debug(
-          "Found recipients to send notification to: {}",
-          recipients.stream().map(UserDto::getUsername).collect(Collectors.toSet())
-      );
+    Map<UUID, Boolean> sent;
+    try {
+      sent = notificationService.notify(notifications);
+    } catch (RuntimeException exp) {
+      itemsByRecipient.values().forEach(items -> items.forEach(
+          index -> results.get(index).fail(exp)));
+      return;
     }
 
-    if (!recipients.isEmpty()) {
-      String subject = getMessage(EMAIL_NONFUNCTIONAL_CCE_SUBJECT);
-      String content = getMessage(EMAIL_NONFUNCTIONAL_CCE_CONTENT);
+    int failed = 0;
+    for (Map.Entry<UserDto, List<Integer>> entry : itemsByRecipient.entrySet()) {
+      UUID recipientId = entry.getKey().getId();
 
-      Map<String, String> valuesMap = getValuesMap(inventoryItem);
-      StrSubstitutor sub = new StrSubstitutor(valuesMap);
-      for (UserDto recipient : recipients) {
-        valuesMap.put("username", recipient.getUsername());
-        logger.debug("Sending notification to: " + recipient.getUsername());
-        notificationService.notify(recipient, sub.replace(subject), sub.replace(content));
+      if (Boolean.TRUE.equals(sent.get(recipientId))) {
+        entry.getValue().forEach(index -> results.get(index).addNotifiedRecipient(recipientId));
+      } else {
+        IllegalStateException exp = new IllegalStateException(
+            "Could not notify user " + recipientId);
+        entry.getValue().forEach(index -> results.get(index).fail(exp));
+        failed++;
       }
     }
+
+    if (failed > 0) {
+      logger.warn("Could not notify {} of {} recipients", failed, itemsByRecipient.size());
+    }
+  }
+
+  /**
+   * Renders the notification of the given recipient. Saving dates are formatted here, in the
+   * locale of the recipient, since the other values of the items do not depend on it.
+   */
+  private NotificationDto buildNotification(UserDto recipient, List<Map<String, String>> items,
+      List<ZonedDateTime> saveDates, StringBuilder buffer) {
+    Locale locale = getLocale(recipient);
+    DateTimeFormatter dateTimeFormatter = getDateTimeFormatter(locale);
+    MessageTemplate subject;
+    MessageTemplate content;
+    Function<String, String> values;
+
+    if (items.size() == 1) {
+      Function<String, String> item = getItemValues(items.get(0), saveDates.get(0),
+          dateTimeFormatter);
+      subject = getTemplate(EMAIL_NONFUNCTIONAL_CCE_SUBJECT, locale);
+      content = getTemplate(EMAIL_NONFUNCTIONAL_CCE_CONTENT, locale);
+      values = name -> USERNAME.equals(name) ? recipient.getUsername() : item.apply(name);
+    } else {
+      MessageTemplate itemTemplate = getTemplate(EMAIL_NONFUNCTIONAL_CCE_DIGEST_ITEM, locale);
+      buffer.setLength(0);
+      for (int i = 0; i < items.size(); ++i) {
+        if (buffer.length() > 0) {
+          buffer.append('\n');
+        }
+        itemTemplate.appendTo(buffer,
+            getItemValues(items.get(i), saveDates.get(i), dateTimeFormatter));
+      }
+
+      String count = String.valueOf(items.size());
+      String itemsText = buffer.toString();
+      subject = getTemplate(EMAIL_NONFUNCTIONAL_CCE_DIGEST_SUBJECT, locale);
+      content = getTemplate(EMAIL_NONFUNCTIONAL_CCE_DIGEST_CONTENT, locale);
+      values = name -> getDigestValue(name, recipient, count, itemsText);
+    }
+
+    logger.debug("Sending notification about {} items to: {}",
+        items.size(), recipient.getUsername());
+    return NotificationDto.createEmail(recipient.getId(),
+        subject.render(values, buffer), content.render(values, buffer));
+  }
+
+  private Function<String, String> getItemValues(Map<String, String> values,
+      ZonedDateTime saveDate, DateTimeFormatter dateTimeFormatter) {
+    return name -> SAVE_DATE.equals(name) ? dateTimeFormatter.format(saveDate) : values.get(name);
+  }
+
+  private String getDigestValue(String name, UserDto recipient, String count, String items) {
+    switch (name) {
+      case USERNAME:
+        return recipient.getUsername();
+      case COUNT:
+        return count;
+      case ITEMS:
+        return items;
+      default:
+        return null;
+    }
   }
 
   @NotNull
@@ -122,20 +316,34 @@ public class NonfunctionalCceNotifier extends BaseNotifier {
   @VisibleForTesting
   Collection<UserDto> getRecipients(UUID rightId, UUID programId,
       SupervisoryNodeDto supervisoryNode) {
-    List<UserDto> supervisingUsers = Optional
+    CompletableFuture<List<UserDto>> supervisingUsers = Optional
         .ofNullable(supervisoryNode)
-        .map(node -> userReferenceDataService.findByRight(rightId, programId, node.getId()))
-        .orElse(Collections.emptyList());
+        .map(node -> CompletableFuture.supplyAsync(
+            () -> userReferenceDataService.findByRight(rightId, programId, node.getId()),
+            searchExecutor))
+        .orElse(CompletableFuture.completedFuture(Collections.emptyList()));
 
     List<UserDto> homeUsers = userReferenceDataService
         .findByRight(rightId, programId, null);
 
-    Set<UserDto> users = Sets.newHashSet(supervisingUsers);
+    Set<UserDto> users = Sets.newHashSet(getResult(supervisingUsers));
     users.addAll(homeUsers);
 
     return users;
   }
 
+  private List<UserDto> getResult(CompletableFuture<List<UserDto>> future) {
+    try {
+      return future.join();
+    } catch (CompletionException exp) {
+      if (exp.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) exp.getCause();
+      }
+
+      throw exp;
+    }
+  }
+
   private Map<String, String> getValuesMap(InventoryItemDto inventoryItem) {
     Map<String, String> valuesMap = new HashMap<>();
     valuesMap.put("equipmentType", getType(inventoryItem));
@@ -145,7 +353,6 @@ public class NonfunctionalCceNotifier extends BaseNotifier {
     valuesMap.put("reasonForNonFunctionalStatus",
         inventoryItem.getReasonNotWorkingOrNotInUse().toString());
     valuesMap.put("saveUser", getUsername(inventoryItem));
-    valuesMap.put("saveDate", getDateTimeFormatter().format(inventoryItem.getModifiedDate()));
     valuesMap.put("urlToViewCceList", getUrlToViewCceList(inventoryItem));
     return valuesMap;
   }
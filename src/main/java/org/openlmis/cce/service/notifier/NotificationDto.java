@@ -15,6 +15,7 @@
 
 package org.openlmis.cce.service.notifier;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 import lombok.AllArgsConstructor;
@@ -33,4 +34,14 @@ import lombok.ToString;
 public final class NotificationDto {
   private UUID userId;
   private Map<String, MessageDto> messages;
+
+  /**
+   * Creates a notification sent to the given user by email.
+   */
+  public static NotificationDto createEmail(UUID userId, String subject, String content) {
+    Map<String, MessageDto> messages = new HashMap<>();
+    messages.put(NotificationChannelDto.EMAIL.toString(), new MessageDto(subject, content));
+
+    return new NotificationDto(userId, messages);
+  }
 }
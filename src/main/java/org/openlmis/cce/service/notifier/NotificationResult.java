@@ -0,0 +1,51 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.notifier;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import lombok.Getter;
+
+/**
+ * The outcome of notifying the recipients of a single inventory item. The item has been notified
+ * about only if there is no error; otherwise, the users that have been notified are kept so that
+ * they are skipped when the notification is retried.
+ */
+@Getter
+public class NotificationResult {
+  private final Set<UUID> notifiedRecipients = new HashSet<>();
+  private RuntimeException error;
+
+  public boolean isSuccessful() {
+    return null == error;
+  }
+
+  public void addNotifiedRecipient(UUID recipientId) {
+    notifiedRecipients.add(recipientId);
+  }
+
+  /**
+   * Records the reason why the item could not be notified about. The first error is kept.
+   *
+   * @param exp the reason of the failure
+   */
+  public void fail(RuntimeException exp) {
+    if (null == error) {
+      error = exp;
+    }
+  }
+}
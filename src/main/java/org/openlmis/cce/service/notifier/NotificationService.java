@@ -17,9 +17,20 @@ package org.openlmis.cce.service.notifier;
 
 import static org.openlmis.cce.service.notifier.NotificationChannelDto.EMAIL;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.net.URI;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.openlmis.cce.dto.UserDto;
 import org.openlmis.cce.service.AuthService;
 import org.openlmis.cce.service.RequestHeaders;
@@ -32,7 +43,6 @@ import org.springframework.http.HttpEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestOperations;
-import org.springframework.web.client.RestTemplate;
 
 @Service
 public class NotificationService {
@@ -44,7 +54,29 @@ public class NotificationService {
   @Value("${notification.url}")
   private String notificationUrl;
 
-  private RestOperations restTemplate = new RestTemplate();
+  @Autowired
+  private RestOperations restTemplate;
+
+  @Value("${notification.maxParallelRequests}")
+  private int maxParallelRequests;
+
+  private ExecutorService executor;
+
+  /**
+   * Creates the executor that sends notifications concurrently.
+   */
+  @PostConstruct
+  public void init() {
+    executor = Executors.newFixedThreadPool(maxParallelRequests, new ThreadFactoryBuilder()
+        .setNameFormat("notification-sender-%d")
+        .setDaemon(true)
+        .build());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
 
   /**
    * Send an email notification.
@@ -55,7 +87,60 @@ public class NotificationService {
    * @return true if success, false if failed.
    */
   public boolean notify(UserDto user, String subject, String content) {
-    NotificationDto request = buildNotification(user, subject, content);
+    return send(NotificationDto.createEmail(user.getId(), subject, content));
+  }
+
+  /**
+   * Sends the given notifications. The requests share the pooled connections to the
+   * notification service and are sent concurrently, at most
+   * {@code notification.maxParallelRequests} at a time for all callers together.
+   *
+   * @param notifications notifications to send
+   * @return whether sending succeeded, by the id of the receiver. A receiver of several
+   *     notifications is successful only if all of them were sent.
+   */
+  public Map<UUID, Boolean> notify(Collection<NotificationDto> notifications) {
+    Map<UUID, Boolean> results = new LinkedHashMap<>();
+    if (notifications.size() == 1) {
+      NotificationDto notification = notifications.iterator().next();
+      results.put(notification.getUserId(), sendSafely(notification));
+      return results;
+    }
+
+    List<Future<Boolean>> futures = new ArrayList<>();
+    notifications.forEach(notification ->
+        futures.add(executor.submit(() -> sendSafely(notification))));
+
+    int index = 0;
+    for (NotificationDto notification : notifications) {
+      boolean sent = getResult(futures.get(index++));
+      results.merge(notification.getUserId(), sent, Boolean::logicalAnd);
+    }
+
+    return results;
+  }
+
+  private boolean sendSafely(NotificationDto request) {
+    try {
+      return send(request);
+    } catch (RuntimeException exp) {
+      logger.error("Unable to send notification to user {}", request.getUserId(), exp);
+      return false;
+    }
+  }
+
+  private boolean getResult(Future<Boolean> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException exp) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(exp);
+    } catch (ExecutionException exp) {
+      throw new IllegalStateException(exp);
+    }
+  }
+
+  private boolean send(NotificationDto request) {
     logger.debug("Sending request:"
         + "\n subject:" + request.getMessages().get(EMAIL.toString()).getSubject()
         + "\n content:" + request.getMessages().get(EMAIL.toString()).getBody()
@@ -63,11 +148,13 @@ public class NotificationService {
 
     String url = notificationUrl + "/api/notifications";
     try {
-      RequestHeaders headers = RequestHeaders.init().setAuth(authService.obtainAccessToken());
       URI uri = RequestHelper.createUri(url);
-      HttpEntity<NotificationDto> entity = RequestHelper.createEntity(request, headers);
+      authService.withAccessToken(token -> {
+        RequestHeaders headers = RequestHeaders.init().setAuth(token);
+        HttpEntity<NotificationDto> entity = RequestHelper.createEntity(request, headers);
 
-      restTemplate.postForObject(uri, entity, Object.class);
+        return restTemplate.postForObject(uri, entity, Object.class);
+      });
     } catch (HttpStatusCodeException ex) {
       logger.error(
           "Unable to send notification. Error code: {}, response message: {}",
@@ -78,11 +165,4 @@ public class NotificationService {
 
     return true;
   }
-
-  private NotificationDto buildNotification(UserDto user, String subject, String content) {
-    Map<String, MessageDto> messages = new HashMap<>();
-    messages.put(EMAIL.toString(), new MessageDto(subject, content));
-
-    return new NotificationDto(user.getId(), messages);
-  }
 }
@@ -15,18 +15,80 @@
 
 package org.openlmis.cce.service.referencedata;
 
+import java.time.Clock;
+import java.util.Collection;
+import javax.annotation.PostConstruct;
 import org.openlmis.cce.dto.BaseDto;
+import org.openlmis.cce.service.ResourceCache;
 import org.openlmis.cce.service.ResourceCommunicationService;
+import org.openlmis.cce.util.CacheStatistics;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.core.env.Environment;
 
 public abstract class BaseReferenceDataService<T extends BaseDto>
     extends ResourceCommunicationService<T> {
 
+  protected static final String CACHE_METRICS_PREFIX = "cache.referencedata.";
+
   @Value("${referencedata.url}")
   private String referenceDataUrl;
 
+  @Autowired
+  private Environment environment;
+
+  @Autowired
+  private Clock clock;
+
+  private final CacheStatistics cacheStatistics = new CacheStatistics();
+
   @Override
   protected String getServiceUrl() {
     return referenceDataUrl;
   }
+
+  /**
+   * Returns the name of the resource used in the cache settings
+   * ({@code referencedata.cache.<name>.ttl} and {@code referencedata.cache.<name>.maxSize}).
+   */
+  protected abstract String getCacheName();
+
+  /**
+   * Adds the statistics of the caches of this resource to the given metrics, under
+   * {@code cache.referencedata.<name>}.
+   */
+  public void addCacheMetrics(Collection<Metric<?>> metrics) {
+    getCacheStatistics().addMetrics(CACHE_METRICS_PREFIX + getCacheName(), metrics);
+  }
+
+  /**
+   * Creates the cache of objects retrieved by id.
+   */
+  @PostConstruct
+  public void initCache() {
+    setCache(createCache());
+  }
+
+  /**
+   * Creates a new cache with the settings of this resource. All caches of the resource report to
+   * the same statistics.
+   */
+  protected <K, V> ResourceCache<K, V> createCache() {
+    return createCache(getCacheName(), cacheStatistics);
+  }
+
+  /**
+   * Creates a new cache with the settings of the given name
+   * ({@code referencedata.cache.<name>.ttl} and {@code referencedata.cache.<name>.maxSize}).
+   */
+  protected <K, V> ResourceCache<K, V> createCache(String name, CacheStatistics statistics) {
+    String prefix = "referencedata.cache." + name + ".";
+
+    return new ResourceCache<>(
+        environment.getProperty(prefix + "ttl", Long.class, 0L),
+        environment.getProperty("referencedata.cache.notFoundTtl", Long.class, 0L),
+        environment.getProperty(prefix + "maxSize", Long.class, 0L),
+        clock, statistics);
+  }
 }
@@ -22,6 +22,11 @@ import org.springframework.stereotype.Service;
 @Service
 public class FacilityReferenceDataService extends BaseReferenceDataService<FacilityDto> {
 
+  @Override
+  protected String getCacheName() {
+    return "facilities";
+  }
+
   @Override
   protected String getUrl() {
     return ResourceNames.getFacilitiesPath();
@@ -18,12 +18,20 @@ package org.openlmis.cce.service.referencedata;
 import java.util.List;
 import org.openlmis.cce.dto.RightDto;
 import org.openlmis.cce.service.RequestParameters;
+import org.openlmis.cce.service.ResourceCache;
 import org.openlmis.cce.service.ResourceNames;
 import org.springframework.stereotype.Service;
 
 @Service
 public class RightReferenceDataService extends BaseReferenceDataService<RightDto> {
 
+  private ResourceCache<String, RightDto> rightsByName = ResourceCache.disabled();
+
+  @Override
+  protected String getCacheName() {
+    return "rights";
+  }
+
   @Override
   protected String getUrl() {
     return ResourceNames.getRightsPath();
@@ -39,13 +47,30 @@ public class RightReferenceDataService extends BaseReferenceDataService<RightDto
     return RightDto[].class;
   }
 
+  @Override
+  public void initCache() {
+    super.initCache();
+    rightsByName = createCache();
+  }
+
+  @Override
+  public void invalidateAll() {
+    super.invalidateAll();
+    rightsByName.invalidateAll();
+  }
+
   /**
    * Find a correct right by the provided name.
    *
    * @param name right name
-   * @return right related with the name or {@code null}.
+   * @return right related with the name or {@code null}. The right may be served from the cache,
+   *     so it must not be modified.
    */
   public RightDto findRight(String name) {
+    return rightsByName.get(name, () -> searchRight(name));
+  }
+
+  private RightDto searchRight(String name) {
     List<RightDto> rights = findAll("search", RequestParameters.init().set("name", name));
     return rights.isEmpty() ? null : rights.get(0);
   }
@@ -19,8 +19,11 @@ import static org.springframework.util.CollectionUtils.isEmpty;
 
 import java.util.List;
 import java.util.UUID;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
 import org.openlmis.cce.dto.SupervisoryNodeDto;
 import org.openlmis.cce.service.RequestParameters;
+import org.openlmis.cce.service.ResourceCache;
 import org.openlmis.cce.service.ResourceNames;
 import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Service;
@@ -33,6 +36,14 @@ public class SupervisoryNodeReferenceDataService
   static final String FACILITY_ID = "facilityId";
   static final String RIGHT_ID = "rightId";
 
+  private ResourceCache<Pair<UUID, UUID>, SupervisoryNodeDto> nodesByFacilityAndProgram =
+      ResourceCache.disabled();
+
+  @Override
+  protected String getCacheName() {
+    return "supervisoryNodes";
+  }
+
   @Override
   protected String getUrl() {
     return ResourceNames.getSupervisoryNodesPath();
@@ -48,10 +59,28 @@ public class SupervisoryNodeReferenceDataService
     return SupervisoryNodeDto[].class;
   }
 
+  @Override
+  public void initCache() {
+    super.initCache();
+    nodesByFacilityAndProgram = createCache();
+  }
+
+  @Override
+  public void invalidateAll() {
+    super.invalidateAll();
+    nodesByFacilityAndProgram.invalidateAll();
+  }
+
   /**
-   * Find a correct supervisory node by the provided facility and program.
+   * Find a correct supervisory node by the provided facility and program. The supervisory node
+   * may be served from the cache, so it must not be modified.
    */
   public SupervisoryNodeDto findSupervisoryNode(UUID facility, UUID program) {
+    return nodesByFacilityAndProgram.get(ImmutablePair.of(facility, program),
+        () -> searchSupervisoryNode(facility, program));
+  }
+
+  private SupervisoryNodeDto searchSupervisoryNode(UUID facility, UUID program) {
     RequestParameters parameters = RequestParameters
         .init()
         .set(FACILITY_ID, facility)
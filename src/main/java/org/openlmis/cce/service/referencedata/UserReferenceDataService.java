@@ -17,18 +17,40 @@ package org.openlmis.cce.service.referencedata;
 
 import static org.springframework.util.CollectionUtils.isEmpty;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.apache.commons.lang3.tuple.Triple;
+import org.openlmis.cce.dto.PermissionStringIndex;
 import org.openlmis.cce.dto.UserDto;
 import org.openlmis.cce.service.RequestParameters;
+import org.openlmis.cce.service.ResourceCache;
 import org.openlmis.cce.service.ResourceNames;
 import org.openlmis.cce.service.ServiceResponse;
+import org.openlmis.cce.util.CacheStatistics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Service;
 
 @Service
 public class UserReferenceDataService extends BaseReferenceDataService<UserDto> {
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private ResourceCache<Triple<UUID, UUID, UUID>, List<UserDto>> usersByRight =
+      ResourceCache.disabled();
+
+  @Override
+  protected String getCacheName() {
+    return "users";
+  }
 
   @Override
   protected String getUrl() {
@@ -45,6 +67,31 @@ public class UserReferenceDataService extends BaseReferenceDataService<UserDto>
     return UserDto[].class;
   }
 
+  @Override
+  public void initCache() {
+    super.initCache();
+    usersByRight = createCache("usersByRight", new CacheStatistics());
+  }
+
+  @Override
+  public void invalidateAll() {
+    super.invalidateAll();
+    usersByRight.invalidateAll();
+  }
+
+  @Override
+  public void addCacheMetrics(Collection<Metric<?>> metrics) {
+    super.addCacheMetrics(metrics);
+    getUsersByRightCacheStatistics().addMetrics(CACHE_METRICS_PREFIX + "usersByRight", metrics);
+  }
+
+  /**
+   * Returns how the cache of users found by right performs.
+   */
+  public CacheStatistics getUsersByRightCacheStatistics() {
+    return usersByRight.getStatistics();
+  }
+
   /**
    * This method retrieves a user with given name.
    *
@@ -59,8 +106,17 @@ public class UserReferenceDataService extends BaseReferenceDataService<UserDto>
     return isEmpty(users) ? null : users.get(0);
   }
 
-  public ServiceResponse<List<String>> getPermissionStrings(UUID user, String etag) {
-    return tryFindAll(user + "/permissionStrings", String[].class, etag);
+  /**
+   * Retrieves permission strings of the given user if they have changed since the given etag.
+   * The response is parsed while it is being read, so the permission strings are indexed without
+   * keeping the whole response or a list of all permission strings in memory.
+   *
+   * @param user the id of the user.
+   * @param etag the etag of the currently known permission strings, can be null.
+   * @return the response with indexed permission strings or without body if nothing has changed.
+   */
+  public ServiceResponse<PermissionStringIndex> getPermissionStrings(UUID user, String etag) {
+    return tryFind(user + "/permissionStrings", etag, this::readPermissionStrings);
   }
 
   /**
@@ -71,9 +127,15 @@ public class UserReferenceDataService extends BaseReferenceDataService<UserDto>
    * @param rightId UUID of supervised right
    * @param programId UUID of program
    * @param supervisoryNodeId UUID of supervisory node. Can be null.
-   * @return a list of users that match parameters.
+   * @return a list of users that match parameters. The list may be served from the cache, so it
+   *     must not be modified.
    */
   public List<UserDto> findByRight(UUID rightId, UUID programId, UUID supervisoryNodeId) {
+    return usersByRight.get(ImmutableTriple.of(rightId, programId, supervisoryNodeId),
+        () -> searchByRight(rightId, programId, supervisoryNodeId));
+  }
+
+  private List<UserDto> searchByRight(UUID rightId, UUID programId, UUID supervisoryNodeId) {
     RequestParameters parameters = RequestParameters
         .init()
         .set("rightId", rightId)
@@ -82,4 +144,26 @@ public class UserReferenceDataService extends BaseReferenceDataService<UserDto>
 
     return findAll("rightSearch", parameters);
   }
+
+  private PermissionStringIndex readPermissionStrings(ClientHttpResponse response)
+      throws IOException {
+    PermissionStringIndex.Builder builder = PermissionStringIndex.builder();
+
+    try (JsonParser parser = JSON_FACTORY.createParser(response.getBody())) {
+      if (parser.nextToken() != JsonToken.START_ARRAY) {
+        throw new JsonParseException(parser, "Permission strings must be an array");
+      }
+
+      JsonToken token;
+      while ((token = parser.nextToken()) == JsonToken.VALUE_STRING) {
+        builder.add(parser.getText());
+      }
+
+      if (token != JsonToken.END_ARRAY) {
+        throw new JsonParseException(parser, "Permission string must be a string");
+      }
+    }
+
+    return builder.build();
+  }
 }
@@ -0,0 +1,151 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.util;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.boot.actuate.metrics.Metric;
+
+/**
+ * Thread-safe counters describing how a local cache performs: how often values are served
+ * from the cache, how often the remote source has to be asked and how long it takes.
+ */
+public final class CacheStatistics {
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder staleHits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder revalidations = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder invalidations = new LongAdder();
+  private final LongAdder refreshTime = new LongAdder();
+  private final LongAccumulator maxRefreshTime = new LongAccumulator(Math::max, 0);
+
+  /**
+   * A fresh value was served from the cache.
+   */
+  public void recordHit() {
+    hits.increment();
+  }
+
+  /**
+   * An expired value was served from the cache while it is being refreshed in the background.
+   */
+  public void recordStaleHit() {
+    staleHits.increment();
+  }
+
+  /**
+   * There was no usable value in the cache and the caller had to wait for the remote source.
+   */
+  public void recordMiss() {
+    misses.increment();
+  }
+
+  /**
+   * The remote source was asked for the value and answered after the given number of
+   * milliseconds.
+   */
+  public void recordRevalidation(long millis) {
+    revalidations.increment();
+    refreshTime.add(millis);
+    maxRefreshTime.accumulate(millis);
+  }
+
+  /**
+   * The remote source could not be asked for the value.
+   */
+  public void recordFailure() {
+    failures.increment();
+  }
+
+  /**
+   * A cached value was rejected by the remote side and removed from the cache.
+   */
+  public void recordInvalidation() {
+    invalidations.increment();
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getStaleHits() {
+    return staleHits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getRevalidations() {
+    return revalidations.sum();
+  }
+
+  public long getFailures() {
+    return failures.sum();
+  }
+
+  public long getInvalidations() {
+    return invalidations.sum();
+  }
+
+  /**
+   * Returns the share of requests that were served from the cache, between 0 and 1.
+   */
+  public double getHitRatio() {
+    long served = hits.sum() + staleHits.sum();
+    long requests = served + misses.sum();
+    return requests == 0 ? 0 : (double) served / requests;
+  }
+
+  /**
+   * Returns the average time (in milliseconds) it took to ask the remote source for the value.
+   */
+  public double getAverageRefreshTime() {
+    long count = revalidations.sum();
+    return count == 0 ? 0 : (double) refreshTime.sum() / count;
+  }
+
+  public long getMaxRefreshTime() {
+    return maxRefreshTime.get();
+  }
+
+  /**
+   * Adds these statistics to the given metrics, with names starting with the given prefix.
+   */
+  public void addMetrics(String prefix, Collection<Metric<?>> metrics) {
+    metrics.add(new Metric<>(prefix + ".hits", getHits()));
+    metrics.add(new Metric<>(prefix + ".staleHits", getStaleHits()));
+    metrics.add(new Metric<>(prefix + ".misses", getMisses()));
+    metrics.add(new Metric<>(prefix + ".hitRatio", getHitRatio()));
+    metrics.add(new Metric<>(prefix + ".revalidations", getRevalidations()));
+    metrics.add(new Metric<>(prefix + ".failures", getFailures()));
+    metrics.add(new Metric<>(prefix + ".invalidations", getInvalidations()));
+    metrics.add(new Metric<>(prefix + ".averageRefreshTime", getAverageRefreshTime()));
+    metrics.add(new Metric<>(prefix + ".maxRefreshTime", getMaxRefreshTime()));
+  }
+
+  @Override
+  public String toString() {
+    return "CacheStatistics(hits=" + getHits() + ", staleHits=" + getStaleHits()
+        + ", misses=" + getMisses() + ", hitRatio=" + getHitRatio()
+        + ", revalidations=" + getRevalidations() + ", failures=" + getFailures()
+        + ", invalidations=" + getInvalidations()
+        + ", averageRefreshTime=" + getAverageRefreshTime()
+        + ", maxRefreshTime=" + getMaxRefreshTime() + ")";
+  }
+}
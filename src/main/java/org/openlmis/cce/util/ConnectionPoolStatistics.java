@@ -0,0 +1,77 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.util;
+
+import java.util.Collection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+import org.springframework.boot.actuate.metrics.Metric;
+
+/**
+ * Describes the current state of the pool of connections used for calls to other services.
+ */
+public final class ConnectionPoolStatistics {
+  private final ConnPoolControl<HttpRoute> pool;
+
+  public ConnectionPoolStatistics(ConnPoolControl<HttpRoute> pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Returns the number of connections that are currently used by requests.
+   */
+  public int getLeased() {
+    return pool.getTotalStats().getLeased();
+  }
+
+  /**
+   * Returns the number of requests that wait for a free connection.
+   */
+  public int getPending() {
+    return pool.getTotalStats().getPending();
+  }
+
+  /**
+   * Returns the number of idle connections that are kept alive for next requests.
+   */
+  public int getAvailable() {
+    return pool.getTotalStats().getAvailable();
+  }
+
+  public int getMax() {
+    return pool.getTotalStats().getMax();
+  }
+
+  /**
+   * Adds these statistics to the given metrics, with names starting with the given prefix.
+   */
+  public void addMetrics(String prefix, Collection<Metric<?>> metrics) {
+    PoolStats stats = pool.getTotalStats();
+    metrics.add(new Metric<>(prefix + ".leased", stats.getLeased()));
+    metrics.add(new Metric<>(prefix + ".pending", stats.getPending()));
+    metrics.add(new Metric<>(prefix + ".available", stats.getAvailable()));
+    metrics.add(new Metric<>(prefix + ".max", stats.getMax()));
+  }
+
+  @Override
+  public String toString() {
+    PoolStats stats = pool.getTotalStats();
+    return "ConnectionPoolStatistics(leased=" + stats.getLeased()
+        + ", pending=" + stats.getPending() + ", available=" + stats.getAvailable()
+        + ", max=" + stats.getMax() + ")";
+  }
+}
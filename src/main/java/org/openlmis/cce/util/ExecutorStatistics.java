@@ -0,0 +1,102 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.util;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.boot.actuate.metrics.Metric;
+
+/**
+ * Describes the current state of an executor that processes tasks in the background and counts
+ * the tasks it could not accept or that failed.
+ */
+public final class ExecutorStatistics {
+  private final ThreadPoolExecutor executor;
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+
+  public ExecutorStatistics(ThreadPoolExecutor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * A task was not accepted because the queue stayed full.
+   */
+  public void recordRejected() {
+    rejected.increment();
+  }
+
+  /**
+   * A task was accepted but threw an exception.
+   */
+  public void recordFailed() {
+    failed.increment();
+  }
+
+  /**
+   * Returns the number of tasks waiting in the queue.
+   */
+  public int getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  /**
+   * Returns the number of tasks the queue can hold at most.
+   */
+  public int getQueueCapacity() {
+    return executor.getQueue().size() + executor.getQueue().remainingCapacity();
+  }
+
+  /**
+   * Returns the number of tasks that are being processed.
+   */
+  public int getActive() {
+    return executor.getActiveCount();
+  }
+
+  public long getCompleted() {
+    return executor.getCompletedTaskCount();
+  }
+
+  public long getRejected() {
+    return rejected.sum();
+  }
+
+  public long getFailed() {
+    return failed.sum();
+  }
+
+  /**
+   * Adds these statistics to the given metrics, with names starting with the given prefix.
+   */
+  public void addMetrics(String prefix, Collection<Metric<?>> metrics) {
+    metrics.add(new Metric<>(prefix + ".queueDepth", getQueueDepth()));
+    metrics.add(new Metric<>(prefix + ".queueCapacity", getQueueCapacity()));
+    metrics.add(new Metric<>(prefix + ".active", getActive()));
+    metrics.add(new Metric<>(prefix + ".completed", getCompleted()));
+    metrics.add(new Metric<>(prefix + ".rejected", getRejected()));
+    metrics.add(new Metric<>(prefix + ".failed", getFailed()));
+  }
+
+  @Override
+  public String toString() {
+    return "ExecutorStatistics(queueDepth=" + getQueueDepth()
+        + ", queueCapacity=" + getQueueCapacity() + ", active=" + getActive()
+        + ", completed=" + getCompleted() + ", rejected=" + getRejected()
+        + ", failed=" + getFailed() + ")";
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.util;
+
+import static org.openlmis.cce.i18n.PageableMessageKeys.ERROR_CURSOR_INVALID;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.apache.commons.lang3.StringUtils;
+import org.openlmis.cce.exception.ValidationMessageException;
+
+/**
+ * Opaque position in a result set sorted by a single value and the id of the resource. Used for
+ * keyset (seek) pagination, where the next page is selected by the sort key of the last row of
+ * the previous page instead of by an offset.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public final class KeysetCursor {
+  private static final int UUID_LENGTH = 36;
+
+  private final String value;
+  private final UUID id;
+
+  public KeysetCursor(String value, UUID id) {
+    this.value = value;
+    this.id = id;
+  }
+
+  /**
+   * Creates a cursor that points before the first element.
+   */
+  public static KeysetCursor start() {
+    return new KeysetCursor(null, null);
+  }
+
+  /**
+   * Decodes the cursor from the given token. A blank token means the start of the result set.
+   *
+   * @param token the token created by the {@link #encode()} method.
+   * @return decoded cursor.
+   */
+  public static KeysetCursor decode(String token) {
+    if (StringUtils.isBlank(token)) {
+      return start();
+    }
+
+    try {
+      String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      UUID id = UUID.fromString(decoded.substring(0, UUID_LENGTH));
+
+      return new KeysetCursor(decoded.substring(UUID_LENGTH), id);
+    } catch (IllegalArgumentException | IndexOutOfBoundsException exp) {
+      throw new ValidationMessageException(exp, ERROR_CURSOR_INVALID, token);
+    }
+  }
+
+  public boolean isStart() {
+    return null == id;
+  }
+
+  /**
+   * Encodes the cursor to an URL-safe token.
+   */
+  public String encode() {
+    String raw = id + value;
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.util;
+
+import java.util.List;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Page retrieved by keyset (seek) pagination. Besides regular page properties it contains
+ * the cursor that should be passed to get the next page. The page number is always zero because
+ * the position is determined by the cursor.
+ */
+public class KeysetPage<T> extends PageImpl<T> {
+
+  private static final long serialVersionUID = 1L;
+
+  private final transient Pageable pageable;
+  private final String nextCursor;
+  private final boolean first;
+
+  /**
+   * Creates a new page.
+   *
+   * @param content    the content of this page.
+   * @param pageable   the size and sort of this page.
+   * @param total      the total amount of items available.
+   * @param nextCursor the cursor to the next page, null if this is the last page.
+   * @param first      true if this page starts at the beginning of the result set.
+   */
+  public KeysetPage(List<T> content, Pageable pageable, long total, String nextCursor,
+                    boolean first) {
+    super(content, pageable, total);
+    this.pageable = pageable;
+    this.nextCursor = nextCursor;
+    this.first = first;
+  }
+
+  public String getNextCursor() {
+    return nextCursor;
+  }
+
+  @Override
+  public boolean isFirst() {
+    return first;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return null != nextCursor;
+  }
+
+  @Override
+  public boolean isLast() {
+    return !hasNext();
+  }
+
+  /**
+   * Creates a page with the same position and cursor but a different content, e.g. DTOs created
+   * from domain objects of this page.
+   */
+  public <R> KeysetPage<R> withContent(List<R> content) {
+    return new KeysetPage<>(content, pageable, getTotalElements(), nextCursor, first);
+  }
+
+}
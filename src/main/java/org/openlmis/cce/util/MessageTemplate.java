@@ -0,0 +1,114 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Localized message text compiled once into literal and variable segments, so that it can be
+ * rendered many times without parsing it again. Variables are written as ${name} and are
+ * replaced the same way {@link org.apache.commons.lang3.text.StrSubstitutor} does: unknown
+ * variables are left as they are and $${name} renders as ${name}.
+ */
+public final class MessageTemplate {
+  private static final String PREFIX = "${";
+  private static final String ESCAPED_PREFIX = "$" + PREFIX;
+  private static final char SUFFIX = '}';
+
+  // literals are on even indexes and variable names on odd ones
+  private final String[] segments;
+
+  private MessageTemplate(String[] segments) {
+    this.segments = segments;
+  }
+
+  /**
+   * Splits the given text into literal and variable segments.
+   *
+   * @param text the localized message text.
+   * @return the compiled template.
+   */
+  public static MessageTemplate compile(String text) {
+    List<String> segments = new ArrayList<>();
+    StringBuilder literal = new StringBuilder(text.length());
+    int position = 0;
+
+    while (position < text.length()) {
+      if (text.startsWith(ESCAPED_PREFIX, position)) {
+        literal.append(PREFIX);
+        position += ESCAPED_PREFIX.length();
+        continue;
+      }
+
+      int end = text.startsWith(PREFIX, position)
+          ? text.indexOf(SUFFIX, position + PREFIX.length())
+          : -1;
+
+      if (end > position + PREFIX.length()) {
+        segments.add(literal.toString());
+        segments.add(text.substring(position + PREFIX.length(), end));
+        literal.setLength(0);
+        position = end + 1;
+      } else {
+        literal.append(text.charAt(position));
+        position++;
+      }
+    }
+
+    segments.add(literal.toString());
+    return new MessageTemplate(segments.toArray(new String[segments.size()]));
+  }
+
+  /**
+   * Renders the template into the given buffer, clearing it first.
+   *
+   * @param values returns the value of a variable or null if it is unknown.
+   * @param buffer the buffer that is reused between renderings.
+   * @return the rendered text.
+   */
+  public String render(Function<String, String> values, StringBuilder buffer) {
+    buffer.setLength(0);
+    return appendTo(buffer, values).toString();
+  }
+
+  /**
+   * Renders the template at the end of the given buffer.
+   *
+   * @param buffer the buffer to render into.
+   * @param values returns the value of a variable or null if it is unknown.
+   * @return the given buffer.
+   */
+  public StringBuilder appendTo(StringBuilder buffer, Function<String, String> values) {
+    for (int index = 0; index < segments.length; index++) {
+      if (index % 2 == 0) {
+        buffer.append(segments[index]);
+        continue;
+      }
+
+      String value = values.apply(segments[index]);
+      if (value == null) {
+        buffer.append(PREFIX).append(segments[index]).append(SUFFIX);
+      } else {
+        buffer.append(value);
+      }
+    }
+
+    return buffer;
+  }
+
+}
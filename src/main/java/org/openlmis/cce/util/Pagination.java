@@ -112,6 +112,19 @@ public class Pagination {
     return new PageImpl<T>(subList, pageable, fullListSize);
   }
 
+  /**
+   * Returns the Page for the specified list that has the same position as the source page.
+   * Intended for use when the content of a page is converted, e.g. from domain objects to DTOs.
+   * The keyset cursor is kept if the source page has been retrieved by keyset pagination.
+   */
+  public static <T> Page<T> getPage(List<T> subList, Pageable pageable, Page<?> source) {
+    if (source instanceof KeysetPage) {
+      return ((KeysetPage<?>) source).withContent(subList);
+    }
+
+    return getPage(subList, pageable, source.getTotalElements());
+  }
+
   /**
    * Static method that helps do some actions on resources by using page instances.
    *
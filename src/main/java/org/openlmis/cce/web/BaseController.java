@@ -15,12 +15,22 @@
 
 package org.openlmis.cce.web;
 
+import static org.openlmis.cce.i18n.MessageKeys.ERROR_DECOMPRESSED_FILE_TOO_LARGE;
 import static org.openlmis.cce.i18n.MessageKeys.ERROR_FILE_IS_EMPTY;
 import static org.openlmis.cce.i18n.MessageKeys.ERROR_INCORRECT_FILE_FORMAT;
 import static org.openlmis.cce.service.ResourceNames.BASE_PATH;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.lang3.StringUtils;
 import org.javers.core.Javers;
 import org.javers.core.changelog.SimpleTextChangeLog;
@@ -30,16 +40,30 @@ import org.javers.repository.jql.QueryBuilder;
 import org.openlmis.cce.exception.ValidationMessageException;
 import org.openlmis.cce.util.Pagination;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.multipart.MultipartFile;
 
 @RequestMapping(BASE_PATH)
+@SuppressWarnings("PMD.TooManyMethods")
 public abstract class BaseController {
+  static final String CSV = "csv";
+  static final String CSV_GZ = "csv.gz";
+  static final String CSV_FORMATS = CSV + ", " + CSV_GZ;
+
+  private static final String CSV_EXTENSION = "." + CSV;
+  private static final String CSV_GZ_EXTENSION = "." + CSV_GZ;
+  private static final String ZIP_EXTENSION = ".zip";
+  private static final int GZIP_BUFFER_SIZE = 8192;
 
   @Autowired
   private Javers javers;
 
+  @Value("${csvParser.maxDecompressedSize}")
+  private long maxDecompressedSize;
+
   /**
    * <p>
    * Convenience method intended to return audit log information via either JSON or raw text,
@@ -126,11 +150,151 @@ public abstract class BaseController {
   void validateCsvFile(MultipartFile csvFile) {
     if (csvFile == null || csvFile.isEmpty()) {
       throw new ValidationMessageException(ERROR_FILE_IS_EMPTY);
-    } else if (!csvFile.getOriginalFilename().endsWith(".csv")) {
+    } else if (!isCsvFile(csvFile.getOriginalFilename())) {
       throw new ValidationMessageException(ERROR_INCORRECT_FILE_FORMAT);
     }
   }
 
+  /**
+   * Opens the uploaded csv file. Files ending with ".csv.gz" and ".zip" archives with a single
+   * ".csv" file are decompressed while they are read, so they are never stored uncompressed.
+   * Reading fails if the decompressed file is larger than {@code csvParser.maxDecompressedSize}
+   * bytes.
+   */
+  InputStream openCsvFile(MultipartFile csvFile) throws IOException {
+    return openCsvFile(csvFile.getInputStream(), csvFile.getOriginalFilename());
+  }
+
+  InputStream openCsvFile(InputStream inputStream, String fileName) throws IOException {
+    return openCsvFile(inputStream, fileName, maxDecompressedSize);
+  }
+
+  static InputStream openCsvFile(InputStream inputStream, String fileName,
+                                 long maxDecompressedSize) throws IOException {
+    if (fileName.endsWith(CSV_GZ_EXTENSION)) {
+      return new DecompressedInputStream(new GZIPInputStream(inputStream), maxDecompressedSize);
+    }
+
+    if (fileName.endsWith(ZIP_EXTENSION)) {
+      ZipInputStream zipInputStream = new ZipInputStream(inputStream);
+      ZipEntry entry = getNextFile(zipInputStream);
+
+      if (null == entry) {
+        throw new ValidationMessageException(ERROR_FILE_IS_EMPTY);
+      }
+
+      if (!entry.getName().endsWith(CSV_EXTENSION)) {
+        throw new ValidationMessageException(ERROR_INCORRECT_FILE_FORMAT);
+      }
+
+      return new DecompressedInputStream(zipInputStream, maxDecompressedSize);
+    }
+
+    return inputStream;
+  }
+
+  private static ZipEntry getNextFile(ZipInputStream zipInputStream) throws IOException {
+    ZipEntry entry = zipInputStream.getNextEntry();
+
+    while (null != entry && entry.isDirectory()) {
+      entry = zipInputStream.getNextEntry();
+    }
+
+    return entry;
+  }
+
+  /**
+   * Prepares the response for a downloaded csv file in the given format, either plain "csv" or
+   * "csv.gz", and returns the stream to write the file to. Compressed output is written as it
+   * is produced and flushes are passed through, so the file is never buffered as a whole.
+   */
+  OutputStream openCsvDownload(HttpServletResponse response, String fileName,
+                               String format) throws IOException {
+    boolean compressed = CSV_GZ.equals(format);
+
+    response.setContentType(compressed ? "application/gzip" : "text/csv");
+    response.addHeader(HttpHeaders.CONTENT_DISPOSITION,
+        "attachment; filename=" + fileName + "." + format);
+
+    OutputStream outputStream = response.getOutputStream();
+
+    if (compressed) {
+      outputStream = new GZIPOutputStream(outputStream, GZIP_BUFFER_SIZE, true);
+    }
+
+    return outputStream;
+  }
+
+  private boolean isCsvFile(String fileName) {
+    return fileName.endsWith(CSV_EXTENSION) || fileName.endsWith(CSV_GZ_EXTENSION)
+        || fileName.endsWith(ZIP_EXTENSION);
+  }
+
+  /**
+   * Counts bytes read from a decompressing stream and fails as soon as there are more than the
+   * given maximum, before the whole file is decompressed. For zip archives, it also checks that no
+   * other file follows the csv one when its end is reached, as entries can only be read in order.
+   */
+  private static final class DecompressedInputStream extends FilterInputStream {
+    private final long maxSize;
+    private long size;
+    private boolean finished;
+
+    DecompressedInputStream(InputStream inputStream, long maxSize) {
+      super(inputStream);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int value = super.read();
+      count(value < 0 ? -1 : 1);
+      return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      int count = super.read(buffer, offset, length);
+      count(count);
+      return count;
+    }
+
+    @Override
+    public long skip(long length) throws IOException {
+      long count = super.skip(length);
+      count(count);
+      return count;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    private void count(long count) throws IOException {
+      if (count < 0) {
+        finish();
+        return;
+      }
+
+      size += count;
+
+      if (size > maxSize) {
+        throw new ValidationMessageException(ERROR_DECOMPRESSED_FILE_TOO_LARGE, maxSize);
+      }
+    }
+
+    private void finish() throws IOException {
+      if (!finished) {
+        finished = true;
+
+        if (in instanceof ZipInputStream && null != getNextFile((ZipInputStream) in)) {
+          throw new ValidationMessageException(ERROR_INCORRECT_FILE_FORMAT);
+        }
+      }
+    }
+  }
+
   /*
     Return JaVers changes for the specified type, optionally filtered by id, author, and property.
   */
@@ -18,14 +18,19 @@ package org.openlmis.cce.web;
 import static org.openlmis.cce.i18n.CatalogItemMessageKeys.ERROR_FORMAT_NOT_ALLOWED;
 
 import java.io.IOException;
+import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import javax.servlet.http.HttpServletResponse;
 import org.openlmis.cce.domain.CatalogItem;
+import org.openlmis.cce.domain.UploadJob;
 import org.openlmis.cce.dto.CatalogItemDto;
+import org.openlmis.cce.dto.UploadJobDto;
 import org.openlmis.cce.dto.UploadResultDto;
+import org.openlmis.cce.dto.UploadValidationResultDto;
 import org.openlmis.cce.exception.NotFoundException;
 import org.openlmis.cce.exception.ValidationMessageException;
 import org.openlmis.cce.i18n.CatalogItemMessageKeys;
@@ -33,11 +38,13 @@ import org.openlmis.cce.i18n.MessageKeys;
 import org.openlmis.cce.i18n.MessageService;
 import org.openlmis.cce.repository.CatalogItemRepository;
 import org.openlmis.cce.service.PermissionService;
+import org.openlmis.cce.service.UploadJobService;
 import org.openlmis.cce.util.Message;
 import org.openlmis.cce.util.Pagination;
 import org.openlmis.cce.web.csv.format.CsvFormatter;
 import org.openlmis.cce.web.csv.model.ModelClass;
 import org.openlmis.cce.web.csv.parser.CsvParser;
+import org.openlmis.cce.web.csv.parser.ValidationReport;
 import org.openlmis.cce.web.csv.recordhandler.CatalogItemProcessor;
 import org.openlmis.cce.web.csv.recordhandler.CatalogItemWriter;
 import org.openlmis.cce.web.validator.CatalogItemValidator;
@@ -46,9 +53,9 @@ import org.slf4j.ext.XLogger;
 import org.slf4j.ext.XLoggerFactory;
 import org.slf4j.profiler.Profiler;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
@@ -69,11 +76,13 @@ import org.springframework.web.multipart.MultipartFile;
 public class CatalogItemController extends BaseController {
   private static final XLogger XLOGGER = XLoggerFactory.getXLogger(CatalogItemController.class);
 
-  private static final String DISPOSITION_BASE = "attachment; filename=";
   private static final String RESOURCE_URL = "/catalogItems";
   private static final String FORMAT = "format";
-  private static final String CSV = "csv";
+  private static final String ASYNC = "async";
+  private static final String DRY_RUN = "dryRun";
 
+  private static final String PROFILER_CHECK_PERMISSION = "CHECK_PERMISSION";
+  private static final String PROFILER_VALIDATE = "VALIDATE";
   private static final String PROFILER_CREATE_DTO = "PROFILER_CREATE_DTO";
 
   @Autowired
@@ -103,6 +112,12 @@ public class CatalogItemController extends BaseController {
   @Autowired
   private CatalogItemValidator catalogItemValidator;
 
+  @Autowired
+  private UploadJobService uploadJobService;
+
+  @Value("${csvFormatter.fetchSize}")
+  private int exportFetchSize;
+
   /**
    * Allows creating new CCE Catalog Item. If the id is specified, it will be ignored.
    *
@@ -117,10 +132,10 @@ public class CatalogItemController extends BaseController {
     Profiler profiler = new Profiler("CREATE_CATALOG_ITEM");
     profiler.setLogger(XLOGGER);
 
-    profiler.start("CHECK_PERMISSION");
+    profiler.start(PROFILER_CHECK_PERMISSION);
     permissionService.canManageCce();
 
-    profiler.start("VALIDATE");
+    profiler.start(PROFILER_VALIDATE);
     catalogItemValidator.validateNewCatalogItem(catalogItemDto);
 
     profiler.start("CREATE_DOMAIN_INSTANCE");
@@ -224,10 +239,10 @@ public class CatalogItemController extends BaseController {
     Profiler profiler = new Profiler("UPDATE_CATALOG_ITEM");
     profiler.setLogger(XLOGGER);
 
-    profiler.start("CHECK_PERMISSION");
+    profiler.start(PROFILER_CHECK_PERMISSION);
     permissionService.canManageCce();
 
-    profiler.start("VALIDATE");
+    profiler.start(PROFILER_VALIDATE);
 
     catalogItemValidator.validateMisMatchCatalogItem(catalogItemDto,catalogItemId);
 
@@ -262,7 +277,7 @@ public class CatalogItemController extends BaseController {
     Profiler profiler = new Profiler("UPLOAD_CATALOG_ITEMS_FILE");
     profiler.setLogger(XLOGGER);
 
-    profiler.start("CHECK_PERMISSION");
+    profiler.start(PROFILER_CHECK_PERMISSION);
     permissionService.canManageCce();
 
     if (!CSV.equals(format)) {
@@ -272,7 +287,7 @@ public class CatalogItemController extends BaseController {
       throw new NotFoundException(new Message(ERROR_FORMAT_NOT_ALLOWED, format, CSV));
     }
 
-    profiler.start("VALIDATE");
+    profiler.start(PROFILER_VALIDATE);
     validateCsvFile(file);
 
     profiler.start("CREATE_MODEL_CLASS");
@@ -281,13 +296,15 @@ public class CatalogItemController extends BaseController {
     try {
 
       profiler.start("PARSE_FILE");
+      long start = System.currentTimeMillis();
       int result = csvParser.parse(
-          file.getInputStream(), modelClass, csvHeaderValidator,
+          openCsvFile(file), modelClass, csvHeaderValidator,
           catalogItemProcessor, catalogItemWriter
       );
 
       profiler.start("CREATE_RESPONSE");
-      UploadResultDto uploadResult = new UploadResultDto(result);
+      UploadResultDto uploadResult = new UploadResultDto(result,
+          System.currentTimeMillis() - start);
 
       profiler.stop().log();
       XLOGGER.exit(uploadResult);
@@ -302,40 +319,147 @@ public class CatalogItemController extends BaseController {
   }
 
   /**
-   * Downloads csv file with all catalog items.
+   * Accepts csv file that is uploaded in the background. Each chunk of the file is written in
+   * its own transaction, and chunks that fail are counted instead of stopping the upload. The
+   * progress can be checked with the returned upload job.
+   *
+   * @param file File in ".csv" format to upload.
+   * @return created upload job
+   */
+  @PostMapping(value = RESOURCE_URL, params = {FORMAT, ASYNC + "=true", DRY_RUN + "!=true"})
+  @ResponseBody
+  @ResponseStatus(HttpStatus.ACCEPTED)
+  public UploadJobDto uploadAsync(@RequestParam(FORMAT) String format,
+                                  @RequestPart("file") MultipartFile file) {
+    XLOGGER.entry(format);
+    Profiler profiler = new Profiler("UPLOAD_CATALOG_ITEMS_FILE_ASYNC");
+    profiler.setLogger(XLOGGER);
+
+    profiler.start(PROFILER_CHECK_PERMISSION);
+    permissionService.canManageCce();
+
+    if (!CSV.equals(format)) {
+      profiler.stop().log();
+      XLOGGER.exit();
+
+      throw new NotFoundException(new Message(ERROR_FORMAT_NOT_ALLOWED, format, CSV));
+    }
+
+    profiler.start(PROFILER_VALIDATE);
+    validateCsvFile(file);
+
+    profiler.start("CREATE_MODEL_CLASS");
+    ModelClass<CatalogItemDto> modelClass = new ModelClass<>(CatalogItemDto.class);
+
+    try {
+      profiler.start("SUBMIT_JOB");
+      String fileName = file.getOriginalFilename();
+      UploadJob job = uploadJobService.submit(file, (input, listener) -> csvParser.parse(
+          openCsvFile(input, fileName), modelClass, csvHeaderValidator,
+          catalogItemProcessor, catalogItemWriter, listener
+      ));
+
+      profiler.start("CREATE_RESPONSE");
+      UploadJobDto dto = UploadJobDto.newInstance(job, ZonedDateTime.now());
+
+      profiler.stop().log();
+      XLOGGER.exit(dto);
+
+      return dto;
+    } catch (IOException ex) {
+      profiler.stop().log();
+      XLOGGER.exit();
+
+      throw new ValidationMessageException(ex, MessageKeys.ERROR_IO, ex.getMessage());
+    }
+  }
+
+  /**
+   * Validates csv file without uploading it. All rows are checked the way they would be uploaded,
+   * including uniqueness against existing catalog items and other rows of the file, and the
+   * errors of all rows are returned at once, up to the configured limit.
+   *
+   * @param file File in ".csv" format to validate.
+   * @return number of read records and the errors found
+   */
+  @PostMapping(value = RESOURCE_URL, params = {FORMAT, DRY_RUN + "=true"})
+  @ResponseBody
+  @ResponseStatus(HttpStatus.OK)
+  @Transactional(readOnly = true)
+  public UploadValidationResultDto validateUpload(@RequestParam(FORMAT) String format,
+                                                  @RequestPart("file") MultipartFile file) {
+    XLOGGER.entry(format);
+    Profiler profiler = new Profiler("VALIDATE_CATALOG_ITEMS_FILE");
+    profiler.setLogger(XLOGGER);
+
+    profiler.start(PROFILER_CHECK_PERMISSION);
+    permissionService.canManageCce();
+
+    if (!CSV.equals(format)) {
+      profiler.stop().log();
+      XLOGGER.exit();
+
+      throw new NotFoundException(new Message(ERROR_FORMAT_NOT_ALLOWED, format, CSV));
+    }
+
+    profiler.start(PROFILER_VALIDATE);
+    validateCsvFile(file);
+
+    profiler.start("CREATE_MODEL_CLASS");
+    ModelClass<CatalogItemDto> modelClass = new ModelClass<>(CatalogItemDto.class);
+
+    try {
+      profiler.start("VALIDATE_FILE");
+      long start = System.currentTimeMillis();
+      ValidationReport report = csvParser.validate(
+          openCsvFile(file), modelClass, csvHeaderValidator,
+          catalogItemProcessor, catalogItemWriter.newValidator()
+      );
+
+      profiler.start("CREATE_RESPONSE");
+      UploadValidationResultDto result = UploadValidationResultDto.newInstance(report,
+          System.currentTimeMillis() - start, messageService::localize);
+
+      profiler.stop().log();
+      XLOGGER.exit(result);
+
+      return result;
+    } catch (IOException ex) {
+      profiler.stop().log();
+      XLOGGER.exit();
+
+      throw new ValidationMessageException(ex, MessageKeys.ERROR_IO, ex.getMessage());
+    }
+  }
+
+  /**
+   * Downloads csv file with all catalog items. Items are streamed from the database and written
+   * to the response one by one.
    */
   @GetMapping(value = RESOURCE_URL, params = FORMAT)
   @ResponseBody
   @ResponseStatus(HttpStatus.OK)
+  @Transactional(readOnly = true)
   public void download(@RequestParam(FORMAT) String format,
                        HttpServletResponse response) throws IOException {
     XLOGGER.entry(format);
     Profiler profiler = new Profiler("DOWNLOAD_CATALOG_ITEMS_AS_FILE");
     profiler.setLogger(XLOGGER);
 
-    if (!CSV.equals(format)) {
+    if (!CSV.equals(format) && !CSV_GZ.equals(format)) {
       profiler.stop().log();
       XLOGGER.exit();
 
-      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
-          messageService.localize(new Message(ERROR_FORMAT_NOT_ALLOWED, format, CSV)).asMessage());
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, messageService.localize(
+          new Message(ERROR_FORMAT_NOT_ALLOWED, format, CSV_FORMATS)).asMessage());
       return;
     }
 
-    profiler.start("FIND_ALL");
-    Iterable<CatalogItem> items = catalogRepository.findAll();
-
-    profiler.start(PROFILER_CREATE_DTO);
-    List<CatalogItemDto> catalogItems = toDto(items);
-
-    response.setContentType("text/csv");
-    response.addHeader(HttpHeaders.CONTENT_DISPOSITION,
-        DISPOSITION_BASE + "catalog_items.csv");
-
-    try {
+    profiler.start("STREAM_ALL");
+    try (Stream<CatalogItem> items = catalogRepository.streamAll(exportFetchSize)) {
       profiler.start("WRITE_TO_OUTPUT");
-      csvFormatter.process(
-          response.getOutputStream(), new ModelClass<>(CatalogItemDto.class), catalogItems);
+      csvFormatter.process(openCsvDownload(response, "catalog_items", format),
+          new ModelClass<>(CatalogItemDto.class), items.map(this::toDto));
     } catch (IOException ex) {
       throw new ValidationMessageException(ex, MessageKeys.ERROR_IO, ex.getMessage());
     } finally {
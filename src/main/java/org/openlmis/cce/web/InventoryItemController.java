@@ -15,18 +15,26 @@
 
 package org.openlmis.cce.web;
 
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_FORMAT_NOT_ALLOWED;
 import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_ITEM_NOT_FOUND;
 import static org.openlmis.cce.service.ResourceNames.BASE_PATH;
 import static org.openlmis.cce.web.InventoryItemController.RESOURCE_PATH;
 
+import java.io.IOException;
 import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
+import javax.servlet.http.HttpServletResponse;
 import org.openlmis.cce.domain.InventoryItem;
+import org.openlmis.cce.dto.InventoryItemCsvDto;
 import org.openlmis.cce.dto.InventoryItemDto;
+import org.openlmis.cce.dto.UploadResultDto;
 import org.openlmis.cce.exception.NotFoundException;
 import org.openlmis.cce.exception.ValidationMessageException;
 import org.openlmis.cce.i18n.InventoryItemMessageKeys;
+import org.openlmis.cce.i18n.MessageKeys;
+import org.openlmis.cce.i18n.MessageService;
 import org.openlmis.cce.repository.InventoryItemRepository;
 import org.openlmis.cce.service.InventoryItemSearchParams;
 import org.openlmis.cce.service.InventoryItemService;
@@ -34,25 +42,37 @@ import org.openlmis.cce.service.InventoryStatusProcessor;
 import org.openlmis.cce.service.ObjReferenceExpander;
 import org.openlmis.cce.service.PermissionService;
 import org.openlmis.cce.util.AuthenticationHelper;
+import org.openlmis.cce.util.Message;
 import org.openlmis.cce.util.Pagination;
+import org.openlmis.cce.web.csv.format.CsvFormatter;
+import org.openlmis.cce.web.csv.model.ModelClass;
+import org.openlmis.cce.web.csv.parser.CsvParser;
+import org.openlmis.cce.web.csv.recordhandler.InventoryItemProcessor;
+import org.openlmis.cce.web.csv.recordhandler.InventoryItemWriter;
+import org.openlmis.cce.web.validator.CsvHeaderValidator;
 import org.openlmis.cce.web.validator.InventoryItemValidator;
 import org.slf4j.ext.XLogger;
 import org.slf4j.ext.XLoggerFactory;
 import org.slf4j.profiler.Profiler;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.SortDefault;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.multipart.MultipartFile;
 
 @Controller
 @Transactional
@@ -62,6 +82,7 @@ public class InventoryItemController extends BaseController {
 
   static final String RESOURCE_PATH = BASE_PATH + "/inventoryItems";
   private static final String PROFILER_CHECK_PERMISSION = "CHECK_PERMISSION";
+  private static final String FORMAT = "format";
 
   @Autowired
   private InventoryItemRepository inventoryRepository;
@@ -87,6 +108,27 @@ public class InventoryItemController extends BaseController {
   @Autowired
   private ObjReferenceExpander objReferenceExpander;
 
+  @Autowired
+  private CsvFormatter csvFormatter;
+
+  @Autowired
+  private MessageService messageService;
+
+  @Autowired
+  private CsvParser csvParser;
+
+  @Autowired
+  private CsvHeaderValidator csvHeaderValidator;
+
+  @Autowired
+  private InventoryItemProcessor inventoryItemProcessor;
+
+  @Autowired
+  private InventoryItemWriter inventoryItemWriter;
+
+  @Value("${csvFormatter.fetchSize}")
+  private int exportFetchSize;
+
   /**
    * Allows creating new CCE Inventory item. If the id is specified, it will be ignored.
    *
@@ -120,6 +162,56 @@ public class InventoryItemController extends BaseController {
     return dto;
   }
 
+  /**
+   * Uploads csv file with new CCE Inventory items. Each row is created the same way as by
+   * {@link #create(InventoryItemDto)}, except that the uniqueness of items is verified for whole
+   * chunks of rows at once.
+   *
+   * @param file File in ".csv" format to upload.
+   * @return number of uploaded records and the upload speed
+   */
+  @PostMapping(params = FORMAT)
+  @ResponseBody
+  @ResponseStatus(HttpStatus.OK)
+  public UploadResultDto upload(@RequestParam(FORMAT) String format,
+                                @RequestPart("file") MultipartFile file) {
+    XLOGGER.entry(format);
+    Profiler profiler = new Profiler("UPLOAD_INVENTORY_ITEMS_FILE");
+    profiler.setLogger(XLOGGER);
+
+    if (!CSV.equals(format)) {
+      profiler.stop().log();
+      XLOGGER.exit();
+
+      throw new ValidationMessageException(ERROR_FORMAT_NOT_ALLOWED, format, CSV);
+    }
+
+    profiler.start("VALIDATE");
+    validateCsvFile(file);
+
+    try {
+      profiler.start("PARSE_FILE");
+      long start = System.currentTimeMillis();
+      int result = csvParser.parse(openCsvFile(file),
+          new ModelClass<>(InventoryItemCsvDto.class), csvHeaderValidator,
+          inventoryItemProcessor, inventoryItemWriter);
+
+      profiler.start("CREATE_RESPONSE");
+      UploadResultDto uploadResult = new UploadResultDto(result,
+          System.currentTimeMillis() - start);
+
+      profiler.stop().log();
+      XLOGGER.exit(uploadResult);
+
+      return uploadResult;
+    } catch (IOException ex) {
+      profiler.stop().log();
+      XLOGGER.exit();
+
+      throw new ValidationMessageException(ex, MessageKeys.ERROR_IO, ex.getMessage());
+    }
+  }
+
   /**
    * Get chosen CCE Inventory item.
    *
@@ -160,7 +252,8 @@ public class InventoryItemController extends BaseController {
   }
 
   /**
-   * Get all CCE Inventory items that user has right for.
+   * Get all CCE Inventory items that user has right for. If the {@code after} parameter is
+   * present, the keyset pagination is used and the response contains the cursor to the next page.
    *
    * @return CCE Inventory items.
    */
@@ -183,7 +276,7 @@ public class InventoryItemController extends BaseController {
     List<InventoryItemDto> dtos = inventoryItemDtoBuilder.build(itemsPage.getContent());
 
     profiler.start("CREATE_PAGE");
-    Page<InventoryItemDto> page = Pagination.getPage(dtos, pageable, itemsPage.getTotalElements());
+    Page<InventoryItemDto> page = Pagination.getPage(dtos, pageable, itemsPage);
 
     profiler.start("EXPAND_DTOS");
     expandDtos(page, params);
@@ -193,6 +286,46 @@ public class InventoryItemController extends BaseController {
     return page;
   }
 
+  /**
+   * Downloads csv file with all CCE Inventory items that user has right for, filtered by the same
+   * parameters as {@link #getAll(InventoryItemSearchParams, Pageable)}. Items are streamed from
+   * the database and written to the response one by one.
+   */
+  @GetMapping(params = FORMAT)
+  @ResponseStatus(HttpStatus.OK)
+  @Transactional(readOnly = true)
+  public void download(@RequestParam(FORMAT) String format, InventoryItemSearchParams params,
+                       HttpServletResponse response) throws IOException {
+    XLOGGER.entry(format, params);
+    Profiler profiler = new Profiler("DOWNLOAD_INVENTORY_ITEMS_AS_FILE");
+    profiler.setLogger(XLOGGER);
+
+    if (!CSV.equals(format) && !CSV_GZ.equals(format)) {
+      profiler.stop().log();
+      XLOGGER.exit();
+
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, messageService.localize(
+          new Message(ERROR_FORMAT_NOT_ALLOWED, format, CSV_FORMATS)).asMessage());
+      return;
+    }
+
+    profiler.start("GET_CURRENT_USER");
+    UUID userId = authenticationHelper.getCurrentUser().getId();
+
+    profiler.start("STREAM_ALL");
+    try (Stream<InventoryItem> items = inventoryItemService
+        .streamAll(userId, params, exportFetchSize)) {
+      profiler.start("WRITE_TO_OUTPUT");
+      csvFormatter.process(openCsvDownload(response, "inventory_items", format),
+          new ModelClass<>(InventoryItemCsvDto.class), items.map(InventoryItemCsvDto::newInstance));
+    } catch (IOException ex) {
+      throw new ValidationMessageException(ex, MessageKeys.ERROR_IO, ex.getMessage());
+    } finally {
+      profiler.stop().log();
+      XLOGGER.exit();
+    }
+  }
+
   /**
    * Updates CCE Inventory item.
    *
@@ -296,8 +429,6 @@ public class InventoryItemController extends BaseController {
 
   private void expandDtos(Page<InventoryItemDto> page,
                           InventoryItemSearchParams params) {
-    for (InventoryItemDto dto : page) {
-      objReferenceExpander.expandDto(dto, params.getExpand());
-    }
+    objReferenceExpander.expandDtos(page.getContent(), params.getExpand());
   }
 }
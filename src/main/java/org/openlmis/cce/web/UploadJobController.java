@@ -0,0 +1,86 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import org.openlmis.cce.domain.UploadJob;
+import org.openlmis.cce.dto.UploadJobDto;
+import org.openlmis.cce.exception.NotFoundException;
+import org.openlmis.cce.i18n.UploadJobMessageKeys;
+import org.openlmis.cce.repository.UploadJobRepository;
+import org.openlmis.cce.service.PermissionService;
+import org.slf4j.ext.XLogger;
+import org.slf4j.ext.XLoggerFactory;
+import org.slf4j.profiler.Profiler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@Controller
+@Transactional(readOnly = true)
+public class UploadJobController extends BaseController {
+  private static final XLogger XLOGGER = XLoggerFactory.getXLogger(UploadJobController.class);
+
+  static final String RESOURCE_URL = "/uploadJobs";
+
+  @Autowired
+  private UploadJobRepository uploadJobRepository;
+
+  @Autowired
+  private PermissionService permissionService;
+
+  /**
+   * Get the progress of chosen upload job.
+   *
+   * @param jobId UUID of upload job which we want to get
+   * @return Upload Job.
+   */
+  @GetMapping(RESOURCE_URL + "/{id}")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public UploadJobDto getUploadJob(@PathVariable("id") UUID jobId) {
+    XLOGGER.entry(jobId);
+    Profiler profiler = new Profiler("GET_UPLOAD_JOB_BY_ID");
+    profiler.setLogger(XLOGGER);
+
+    profiler.start("CHECK_PERMISSION");
+    permissionService.canManageCce();
+
+    profiler.start("SEARCH_IN_DB");
+    UploadJob job = uploadJobRepository.findOne(jobId);
+
+    if (job == null) {
+      profiler.stop().log();
+      XLOGGER.exit();
+
+      throw new NotFoundException(UploadJobMessageKeys.ERROR_JOB_NOT_FOUND);
+    }
+
+    profiler.start("CREATE_DTO");
+    UploadJobDto dto = UploadJobDto.newInstance(job, ZonedDateTime.now());
+
+    profiler.stop().log();
+    XLOGGER.exit(dto);
+
+    return dto;
+  }
+}
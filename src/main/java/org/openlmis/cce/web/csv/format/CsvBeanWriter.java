@@ -21,24 +21,29 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import lombok.Getter;
 import org.openlmis.cce.dto.BaseDto;
 import org.openlmis.cce.web.csv.model.ModelClass;
 import org.openlmis.cce.web.csv.model.ModelField;
+import org.openlmis.cce.web.csv.model.PropertyAccessor;
 import org.openlmis.cce.web.csv.processor.CsvCellProcessors;
 import org.supercsv.cellprocessor.ift.CellProcessor;
-import org.supercsv.io.dozer.CsvDozerBeanWriter;
+import org.supercsv.io.CsvListWriter;
 import org.supercsv.prefs.CsvPreference;
 
 /**
- * This class has responsibility to instantiate a csvDozerBeanWriter from given inputStream.
+ * This class has responsibility to instantiate a csvListWriter from given outputStream. Values of
+ * each row are taken from the model with accessors compiled once per model class.
  */
 class CsvBeanWriter<T extends BaseDto> {
 
   private ModelClass<T> modelClass;
-  private CsvDozerBeanWriter csvDozerBeanWriter;
+  private CsvListWriter csvListWriter;
   private CellProcessor[] processors;
+  private PropertyAccessor[] accessors;
 
   @Getter
   private String[] headers;
@@ -46,29 +51,42 @@ class CsvBeanWriter<T extends BaseDto> {
   CsvBeanWriter(ModelClass<T> modelClass,
                 OutputStream outputStream) throws IOException {
     this.modelClass = modelClass;
-    configureDozerBeanWriter(outputStream);
+    configureListWriter(outputStream);
     configureProcessors();
   }
 
-  void writeWithCellProcessors(List<? extends BaseDto> dtos) throws IOException {
-    csvDozerBeanWriter.writeHeader(headers);
-    for (Object dto : dtos) {
-      csvDozerBeanWriter.write(dto, processors);
+  void writeWithCellProcessors(Iterator<? extends BaseDto> dtos,
+                               int flushInterval) throws IOException {
+    csvListWriter.writeHeader(headers);
+    Object[] values = new Object[accessors.length];
+    List<Object> row = Arrays.asList(values);
+    int rows = 0;
+    while (dtos.hasNext()) {
+      BaseDto dto = dtos.next();
+
+      for (int i = 0; i < accessors.length; ++i) {
+        values[i] = accessors[i].get(dto);
+      }
+
+      csvListWriter.write(row, processors);
+
+      if (flushInterval > 0 && ++rows % flushInterval == 0) {
+        csvListWriter.flush();
+      }
     }
-    csvDozerBeanWriter.close();
+    csvListWriter.close();
   }
 
-  private void configureDozerBeanWriter(OutputStream outputStream) throws IOException {
+  private void configureListWriter(OutputStream outputStream) throws IOException {
     CsvPreference csvPreference = new CsvPreference.Builder(CsvPreference.STANDARD_PREFERENCE)
         .surroundingSpacesNeedQuotes(true)
         .build();
 
     BufferedWriter bufferedReader = new BufferedWriter(
         new OutputStreamWriter(outputStream, "UTF-8"));
-    csvDozerBeanWriter = new CsvDozerBeanWriter(bufferedReader, csvPreference);
+    csvListWriter = new CsvListWriter(bufferedReader, csvPreference);
     headers = readHeaders();
-    String[] mappings = modelClass.getFieldNameMappings(headers);
-    csvDozerBeanWriter.configureBeanMapping(modelClass.getClazz(), mappings);
+    accessors = modelClass.getAccessors(headers);
   }
 
   private String[] readHeaders() {
@@ -20,11 +20,13 @@ import static org.openlmis.cce.i18n.CsvExportMessageKeys.ERROR_EXPORT_RECORD_INV
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.List;
+import java.util.stream.Stream;
 import lombok.NoArgsConstructor;
 import org.openlmis.cce.dto.BaseDto;
 import org.openlmis.cce.exception.ValidationMessageException;
 import org.openlmis.cce.util.Message;
 import org.openlmis.cce.web.csv.model.ModelClass;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.supercsv.exception.SuperCsvException;
 import org.supercsv.util.CsvContext;
@@ -37,6 +39,9 @@ import org.supercsv.util.CsvContext;
 @NoArgsConstructor
 public class CsvFormatter {
 
+  @Value("${csvFormatter.flushInterval}")
+  private int flushInterval;
+
   /**
    * Parses data from input stream into the corresponding model.
    *
@@ -46,11 +51,25 @@ public class CsvFormatter {
   public <T extends BaseDto> void process(OutputStream outputStream,
                                           ModelClass<T> modelClass,
                                           List<T> dtos) throws IOException {
+    process(outputStream, modelClass, dtos.stream());
+  }
+
+  /**
+   * Writes rows to the output stream as they are taken from the given stream. The output is
+   * flushed every {@code csvFormatter.flushInterval} rows.
+   *
+   * @param outputStream output stream of csv file
+   * @param modelClass   java model from which the csv row will be mapped
+   * @param dtos         stream of rows, consumed only once
+   */
+  public <T extends BaseDto> void process(OutputStream outputStream,
+                                          ModelClass<T> modelClass,
+                                          Stream<T> dtos) throws IOException {
 
     CsvBeanWriter<T> csvBeanWriter = new CsvBeanWriter<>(modelClass, outputStream);
 
     try {
-      csvBeanWriter.writeWithCellProcessors(dtos);
+      csvBeanWriter.writeWithCellProcessors(dtos.iterator(), flushInterval);
     } catch (SuperCsvException err) {
       Message message = getCsvRowErrorMessage(err);
       throw new ValidationMessageException(err, message);
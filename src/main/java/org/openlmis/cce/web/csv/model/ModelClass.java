@@ -47,13 +47,7 @@ public class ModelClass<T extends BaseDto> {
       ModelField importField = findImportFieldWithName(header);
 
       if (importField != null) {
-        String nestedProperty = importField.getNested();
-
-        if (nestedProperty.isEmpty()) {
-          fieldMappings.add(importField.getField().getName());
-        } else {
-          fieldMappings.add(importField.getField().getName() + "." + nestedProperty);
-        }
+        fieldMappings.add(importField.getPath());
       } else {
         fieldMappings.add(null);
       }
@@ -62,6 +56,28 @@ public class ModelClass<T extends BaseDto> {
     return fieldMappings.toArray(new String[fieldMappings.size()]);
   }
 
+  /**
+   * Returns accessors of the fields with given names, or {@code null} for headers that do not
+   * match any field. Accessors are compiled once per model class.
+   */
+  public PropertyAccessor[] getAccessors(String[] headers) {
+    PropertyAccessor[] accessors = new PropertyAccessor[headers.length];
+
+    for (int i = 0; i < headers.length; ++i) {
+      ModelField importField = findImportFieldWithName(headers[i]);
+      accessors[i] = importField == null ? null : importField.getAccessor();
+    }
+
+    return accessors;
+  }
+
+  /**
+   * Creates new instance of the model with its constructor compiled once per model class.
+   */
+  public T newInstance() {
+    return ModelClassHelper.getConstructor(clazz).get();
+  }
+
   /**
    * Returns import field with given name.
    *
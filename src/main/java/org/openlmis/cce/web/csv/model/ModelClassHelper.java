@@ -19,21 +19,29 @@ import com.google.common.collect.Maps;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import org.openlmis.cce.dto.BaseDto;
 
 /**
  * This class contains a list of {@link ModelField} for each dto class. It only retrieve class
  * fields on the first time. Any additional execution will simple return cached list. This should
- * slightly speed up the process of creating {@link ModelClass}.
+ * slightly speed up the process of creating {@link ModelClass}. Compiled constructors of dto
+ * classes are cached the same way.
  */
 class ModelClassHelper {
   private static final Map<Class<?>, List<ModelField>> MAP = Maps.newConcurrentMap();
+  private static final Map<Class<?>, Supplier<?>> CONSTRUCTORS = Maps.newConcurrentMap();
 
   static List<ModelField> getModelFields(Class<? extends BaseDto> clazz) {
     return MAP.computeIfAbsent(clazz, ModelClassHelper::fieldsWithImportFieldAnnotation);
   }
 
+  @SuppressWarnings("unchecked")
+  static <T extends BaseDto> Supplier<T> getConstructor(Class<T> clazz) {
+    return (Supplier<T>) CONSTRUCTORS.computeIfAbsent(clazz, PropertyAccessor::compileConstructor);
+  }
+
   private static List<ModelField> fieldsWithImportFieldAnnotation(Class clazz) {
     return Arrays
         .stream(clazz.getDeclaredFields())
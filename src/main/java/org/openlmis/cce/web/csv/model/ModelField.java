@@ -16,6 +16,7 @@
 package org.openlmis.cce.web.csv.model;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
 /**
@@ -24,12 +25,14 @@ import lombok.NoArgsConstructor;
  */
 @Data
 @NoArgsConstructor
+@EqualsAndHashCode(exclude = "accessor")
 public class ModelField {
   java.lang.reflect.Field field;
   private boolean mandatory;
   private String name;
   private String nested;
   private String type;
+  private PropertyAccessor accessor;
 
   /**
    * Constructs new field.
@@ -40,6 +43,14 @@ public class ModelField {
     this.name = annotation.name().isEmpty() ? field.getName() : annotation.name();
     this.nested = annotation.nested();
     this.type = annotation.type();
+    this.accessor = PropertyAccessor.compile(field.getDeclaringClass(), getPath());
+  }
+
+  /**
+   * Returns path of the property, including the nested property if there is any.
+   */
+  public String getPath() {
+    return nested.isEmpty() ? field.getName() : field.getName() + "." + nested;
   }
 
   /**
@@ -0,0 +1,215 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web.csv.model;
+
+import com.google.common.primitives.Primitives;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.reflect.ConstructorUtils;
+import org.apache.commons.lang3.reflect.MethodUtils;
+
+/**
+ * Reads and writes a property of a bean, which may be nested like {@code dimensions.width}. The
+ * getters, setters and constructors of all properties on the path are compiled once into lambdas
+ * that call them directly, so rows are mapped without reflection. Missing intermediate beans are
+ * created with their public no-argument constructor when a value is written, and make the value
+ * {@code null} when it is read.
+ */
+public final class PropertyAccessor {
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+  private final String path;
+  private final Function<Object, Object>[] getters;
+  private final BiConsumer<Object, Object>[] setters;
+  private final Supplier<?>[] constructors;
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private PropertyAccessor(Class<?> beanClass, String path) {
+    String[] names = StringUtils.split(path, '.');
+
+    this.path = path;
+    this.getters = new Function[names.length];
+    this.setters = new BiConsumer[names.length];
+    this.constructors = new Supplier[names.length];
+
+    Class<?> type = beanClass;
+    for (int i = 0; i < names.length; ++i) {
+      Method getter = findGetter(type, names[i]);
+      Class<?> propertyType = getter.getReturnType();
+
+      getters[i] = compileGetter(getter);
+      setters[i] = compileSetter(findSetter(type, names[i], propertyType));
+
+      if (i < names.length - 1 && hasPublicConstructor(propertyType)) {
+        constructors[i] = compileConstructor(propertyType);
+      }
+
+      type = propertyType;
+    }
+  }
+
+  /**
+   * Compiles accessor of the property with the given path.
+   *
+   * @param beanClass class of the beans that will be accessed
+   * @param path      property name, or names of nested properties separated by dots
+   * @return compiled accessor.
+   * @throws IllegalArgumentException if any property on the path has no public getter or setter
+   */
+  public static PropertyAccessor compile(Class<?> beanClass, String path) {
+    return new PropertyAccessor(beanClass, path);
+  }
+
+  /**
+   * Compiles a public no-argument constructor of the given class.
+   *
+   * @throws IllegalArgumentException if the class has no such constructor
+   */
+  public static <T> Supplier<T> compileConstructor(Class<T> type) {
+    try {
+      MethodHandle constructor = LOOKUP.findConstructor(type, MethodType.methodType(void.class));
+      CallSite site = LambdaMetafactory.metafactory(LOOKUP, "get",
+          MethodType.methodType(Supplier.class),
+          MethodType.methodType(Object.class),
+          constructor,
+          MethodType.methodType(type));
+
+      return newLambda(site);
+    } catch (Throwable exp) {
+      throw new IllegalArgumentException(
+          "Could not compile constructor of " + type.getName(), exp);
+    }
+  }
+
+  /**
+   * Returns the value of the property, or {@code null} if any intermediate bean is missing.
+   */
+  public Object get(Object bean) {
+    Object value = bean;
+
+    for (int i = 0; i < getters.length && null != value; ++i) {
+      value = getters[i].apply(value);
+    }
+
+    return value;
+  }
+
+  /**
+   * Sets the value of the property, creating missing intermediate beans.
+   */
+  public void set(Object bean, Object value) {
+    int last = setters.length - 1;
+    Object target = bean;
+
+    for (int i = 0; i < last; ++i) {
+      Object next = getters[i].apply(target);
+
+      if (null == next) {
+        if (null == constructors[i]) {
+          throw new IllegalStateException("Could not create intermediate bean of " + path);
+        }
+
+        next = constructors[i].get();
+        setters[i].accept(target, next);
+      }
+
+      target = next;
+    }
+
+    setters[last].accept(target, value);
+  }
+
+  @Override
+  public String toString() {
+    return path;
+  }
+
+  private static boolean hasPublicConstructor(Class<?> type) {
+    return null != ConstructorUtils.getAccessibleConstructor(type);
+  }
+
+  private static Method findGetter(Class<?> type, String name) {
+    String suffix = StringUtils.capitalize(name);
+
+    for (String prefix : new String[]{"get", "is"}) {
+      Method getter = MethodUtils.getAccessibleMethod(type, prefix + suffix);
+
+      if (null != getter) {
+        return getter;
+      }
+    }
+
+    throw new IllegalArgumentException(
+        "Property " + name + " of " + type.getName() + " has no public getter");
+  }
+
+  private static Method findSetter(Class<?> type, String name, Class<?> propertyType) {
+    Method setter = MethodUtils.getAccessibleMethod(type,
+        "set" + StringUtils.capitalize(name), propertyType);
+
+    if (null == setter) {
+      throw new IllegalArgumentException(
+          "Property " + name + " of " + type.getName() + " has no public setter");
+    }
+
+    return setter;
+  }
+
+  private static Function<Object, Object> compileGetter(Method method) {
+    try {
+      MethodHandle getter = LOOKUP.unreflect(method);
+      CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply",
+          MethodType.methodType(Function.class),
+          MethodType.methodType(Object.class, Object.class),
+          getter,
+          MethodType.methodType(Primitives.wrap(method.getReturnType()),
+              method.getDeclaringClass()));
+
+      return newLambda(site);
+    } catch (Throwable exp) {
+      throw new IllegalArgumentException("Could not compile getter " + method, exp);
+    }
+  }
+
+  private static BiConsumer<Object, Object> compileSetter(Method method) {
+    try {
+      MethodHandle setter = LOOKUP.unreflect(method);
+      CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+          MethodType.methodType(BiConsumer.class),
+          MethodType.methodType(void.class, Object.class, Object.class),
+          setter,
+          MethodType.methodType(void.class, method.getDeclaringClass(),
+              Primitives.wrap(method.getParameterTypes()[0])));
+
+      return newLambda(site);
+    } catch (Throwable exp) {
+      throw new IllegalArgumentException("Could not compile setter " + method, exp);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T newLambda(CallSite site) throws Throwable {
+    return (T) site.getTarget().invoke();
+  }
+}
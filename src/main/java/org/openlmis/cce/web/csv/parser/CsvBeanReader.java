@@ -25,22 +25,25 @@ import java.util.List;
 import lombok.Getter;
 import org.openlmis.cce.dto.BaseDto;
 import org.openlmis.cce.web.csv.model.ModelClass;
+import org.openlmis.cce.web.csv.model.PropertyAccessor;
 import org.openlmis.cce.web.csv.processor.CsvCellProcessors;
 import org.openlmis.cce.web.validator.CsvHeaderValidator;
 import org.supercsv.cellprocessor.ift.CellProcessor;
-import org.supercsv.io.dozer.CsvDozerBeanReader;
+import org.supercsv.io.CsvListReader;
 import org.supercsv.prefs.CsvPreference;
 
 /**
- * This class has responsibility to instantiate a dozerBeanReader from given inputStream,
- * and CsvPreferences. Also is responsible for validating headers.
+ * This class has responsibility to instantiate a csvListReader from given inputStream,
+ * and CsvPreferences. Also is responsible for validating headers. Values of each row are set on
+ * a new model instance with accessors compiled once per model class.
  */
 class CsvBeanReader<T extends BaseDto> {
 
   private ModelClass<T> modelClass;
-  private CsvDozerBeanReader dozerBeanReader;
+  private CsvListReader csvListReader;
   private CsvHeaderValidator csvHeaderValidator;
   private CellProcessor[] processors;
+  private PropertyAccessor[] accessors;
 
   @Getter
   private String[] headers;
@@ -50,36 +53,51 @@ class CsvBeanReader<T extends BaseDto> {
                 CsvHeaderValidator csvHeaderValidator) throws IOException {
     this.modelClass = modelClass;
     this.csvHeaderValidator = csvHeaderValidator;
-    configureDozerBeanReader(inputStream);
+    configureListReader(inputStream);
     configureProcessors();
   }
 
   T readWithCellProcessors() throws IOException {
-    return dozerBeanReader.read(modelClass.getClazz(), processors);
+    List<Object> values = csvListReader.read(processors);
+
+    if (null == values) {
+      return null;
+    }
+
+    T bean = modelClass.newInstance();
+
+    for (int i = 0; i < accessors.length; ++i) {
+      Object value = values.get(i);
+
+      if (null != accessors[i] && null != value) {
+        accessors[i].set(bean, value);
+      }
+    }
+
+    return bean;
   }
 
   int getRowNumber() {
-    return dozerBeanReader.getRowNumber();
+    return csvListReader.getRowNumber();
   }
 
   void validateHeaders() {
     csvHeaderValidator.validateHeaders(asList(headers), modelClass, false);
   }
 
-  private void configureDozerBeanReader(InputStream inputStream) throws IOException {
+  private void configureListReader(InputStream inputStream) throws IOException {
     CsvPreference csvPreference = new CsvPreference.Builder(CsvPreference.STANDARD_PREFERENCE)
         .surroundingSpacesNeedQuotes(true)
         .build();
 
     BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
-    dozerBeanReader = new CsvDozerBeanReader(bufferedReader, csvPreference);
+    csvListReader = new CsvListReader(bufferedReader, csvPreference);
     headers = readHeaders();
-    String[] mappings = modelClass.getFieldNameMappings(headers);
-    dozerBeanReader.configureBeanMapping(modelClass.getClazz(), mappings);
+    accessors = modelClass.getAccessors(headers);
   }
 
   private String[] readHeaders() throws IOException {
-    String[] headers = dozerBeanReader.getHeader(true);
+    String[] headers = csvListReader.getHeader(true);
     return headers == null ? new String[0] : headers;
   }
 
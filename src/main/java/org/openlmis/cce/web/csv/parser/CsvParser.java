@@ -15,31 +15,45 @@
 
 package org.openlmis.cce.web.csv.parser;
 
-import static java.util.concurrent.CompletableFuture.runAsync;
 import static org.openlmis.cce.i18n.CsvUploadMessageKeys.ERROR_UPLOAD_RECORD_INVALID;
 
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import lombok.NoArgsConstructor;
 import org.openlmis.cce.domain.BaseEntity;
 import org.openlmis.cce.dto.BaseDto;
+import org.openlmis.cce.exception.BaseMessageException;
 import org.openlmis.cce.exception.ValidationMessageException;
 import org.openlmis.cce.util.Message;
 import org.openlmis.cce.web.csv.model.ModelClass;
+import org.openlmis.cce.web.csv.recordhandler.ChunkValidator;
 import org.openlmis.cce.web.csv.recordhandler.RecordProcessor;
 import org.openlmis.cce.web.csv.recordhandler.RecordWriter;
 import org.openlmis.cce.web.validator.CsvHeaderValidator;
 import org.slf4j.ext.XLogger;
 import org.slf4j.ext.XLoggerFactory;
 import org.slf4j.profiler.Profiler;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.supercsv.exception.SuperCsvException;
 import org.supercsv.util.CsvContext;
 
@@ -47,10 +61,17 @@ import org.supercsv.util.CsvContext;
  * This class has logic to invoke corresponding respective record handler to parse data from input
  * stream into the corresponding model. To speed up the process for huge files the stream is divided
  * into smaller chunks. The chunk size is set by {@code csvParser.chunkSize} property. Each chunk is
- * executed asynchronously in the thread pool with size set by {@code csvParser.poolSize}.
+ * submitted as a separate task to a pool of {@code csvParser.poolSize} threads shared by all files,
+ * so chunks of files uploaded at the same time are processed side by side, each in its own
+ * transaction. Reading waits while {@code csvParser.queueCapacity} chunks of the file are pending,
+ * and stops when any chunk fails unless a {@link ParseListener} that records failed chunks is
+ * given. Tasks run with the security context of the thread that parses the file. Files can also
+ * be validated the same way without writing anything, collecting the errors of all rows into a
+ * {@link ValidationReport} that keeps at most {@code csvParser.maxReportedErrors} of them.
  */
 @Component
 @NoArgsConstructor
+@SuppressWarnings("PMD.TooManyMethods")
 public class CsvParser {
   private static final XLogger XLOGGER = XLoggerFactory.getXLogger(CsvParser.class);
 
@@ -60,6 +81,36 @@ public class CsvParser {
   @Value("${csvParser.poolSize}")
   private int poolSize;
 
+  @Value("${csvParser.queueCapacity}")
+  private int queueCapacity;
+
+  @Value("${csvParser.maxReportedErrors}")
+  private int maxReportedErrors;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  private ExecutorService executor;
+
+  /**
+   * Starts the threads that process and write chunks.
+   */
+  @PostConstruct
+  public void init() {
+    executor = Executors.newFixedThreadPool(poolSize, new ThreadFactoryBuilder()
+        .setNameFormat("csv-parser-%d")
+        .setDaemon(true)
+        .build());
+  }
+
+  /**
+   * Stops the threads that process and write chunks.
+   */
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
   /**
    * Parses data from input stream into the corresponding model.
    *
@@ -71,6 +122,22 @@ public class CsvParser {
                                                              RecordProcessor<D, E> processor,
                                                              RecordWriter<E> writer)
       throws IOException {
+    return parse(inputStream, modelClass, headerValidator, processor, writer, ParseListener.NONE);
+  }
+
+  /**
+   * Parses data from input stream into the corresponding model, reporting the progress to the
+   * given listener.
+   *
+   * @return number of read records
+   */
+  public <D extends BaseDto, E extends BaseEntity> int parse(InputStream inputStream,
+                                                             ModelClass<D> modelClass,
+                                                             CsvHeaderValidator headerValidator,
+                                                             RecordProcessor<D, E> processor,
+                                                             RecordWriter<E> writer,
+                                                             ParseListener listener)
+      throws IOException {
     XLOGGER.entry();
     Profiler profiler = new Profiler("PARSE");
     profiler.setLogger(XLOGGER);
@@ -83,28 +150,32 @@ public class CsvParser {
     profiler.start("VALIDATE_HEADERS");
     csvBeanReader.validateHeaders();
 
-    profiler.start("CREATE_EXECUTOR_SERVICE");
-    ExecutorService executor = Executors.newFixedThreadPool(Math.min(1, poolSize));
-    List<CompletableFuture<Void>> futures = Lists.newArrayList();
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    Pipeline<D> pipeline = new Pipeline<>(executor, queueCapacity,
+        imported -> doWrite(transaction, processor, writer, listener, imported));
+
+    boolean completed = false;
 
     try {
       profiler.start("HANDLE_FILE");
-      while (true) {
+      while (!pipeline.isFailed()) {
         List<D> imported = doRead(csvBeanReader);
 
         if (imported.isEmpty()) {
           break;
         }
 
-        Runnable runnable = () -> doWrite(processor, writer, imported);
-        CompletableFuture<Void> future = runAsync(runnable, executor);
-        futures.add(future);
+        listener.chunkRead(imported.size());
+        pipeline.submit(imported);
       }
+
+      completed = true;
     } finally {
-      profiler.start("WAIT_FOR_THREADS");
-      futures.forEach(CompletableFuture::join);
+      profiler.start("WAIT_FOR_CHUNKS");
+      pipeline.finish(!completed);
     }
 
+    pipeline.rethrowFailure();
     int count = csvBeanReader.getRowNumber() - 1;
 
     profiler.stop().log();
@@ -113,6 +184,64 @@ public class CsvParser {
     return count;
   }
 
+  /**
+   * Parses data from input stream and checks every row the way it would be processed and written,
+   * without writing anything. Chunks are validated in parallel, each in its own read-only
+   * transaction. Rows that cannot be parsed or processed are reported and skipped, so that the
+   * whole file is checked; only invalid headers stop the validation.
+   *
+   * @return report with the number of read records and the errors found
+   */
+  public <D extends BaseDto, E extends BaseEntity> ValidationReport validate(
+      InputStream inputStream, ModelClass<D> modelClass, CsvHeaderValidator headerValidator,
+      RecordProcessor<D, E> processor, ChunkValidator<E> validator) throws IOException {
+    XLOGGER.entry();
+    Profiler profiler = new Profiler("VALIDATE");
+    profiler.setLogger(XLOGGER);
+
+    profiler.start("NEW_CSV_BEAN_READER");
+    CsvBeanReader<D> csvBeanReader = new CsvBeanReader<>(
+        modelClass, inputStream, headerValidator
+    );
+
+    profiler.start("VALIDATE_HEADERS");
+    csvBeanReader.validateHeaders();
+
+    ValidationReport report = new ValidationReport(maxReportedErrors);
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    transaction.setReadOnly(true);
+    Pipeline<Row<D>> pipeline = new Pipeline<>(executor, queueCapacity,
+        rows -> doValidate(transaction, processor, validator, report, rows));
+
+    boolean completed = false;
+
+    try {
+      profiler.start("HANDLE_FILE");
+      while (!pipeline.isFailed()) {
+        List<Row<D>> rows = doReadRows(csvBeanReader, report);
+
+        if (rows.isEmpty()) {
+          break;
+        }
+
+        pipeline.submit(rows);
+      }
+
+      completed = true;
+    } finally {
+      profiler.start("WAIT_FOR_CHUNKS");
+      pipeline.finish(!completed);
+    }
+
+    pipeline.rethrowFailure();
+    report.setRowCount(csvBeanReader.getRowNumber() - 1);
+
+    profiler.stop().log();
+    XLOGGER.exit(report.getErrorCount());
+
+    return report;
+  }
+
   private <D extends BaseDto> List<D> doRead(CsvBeanReader<D> csvBeanReader) throws IOException {
     try {
       List<D> list = Lists.newArrayList();
@@ -134,11 +263,72 @@ public class CsvParser {
     }
   }
 
-  private <D extends BaseDto, E extends BaseEntity> void doWrite(RecordProcessor<D, E> processor,
+  private <D extends BaseDto> List<Row<D>> doReadRows(CsvBeanReader<D> csvBeanReader,
+                                                      ValidationReport report) throws IOException {
+    List<Row<D>> list = Lists.newArrayList();
+
+    // rows that cannot be parsed are reported but do not count towards the chunk size
+    while (list.size() < chunkSize) {
+      try {
+        D imported = csvBeanReader.readWithCellProcessors();
+
+        if (null == imported) {
+          break;
+        }
+
+        list.add(new Row<>(csvBeanReader.getRowNumber() - 1, imported));
+      } catch (SuperCsvException err) {
+        Message message = getCsvRowErrorMessage(err);
+        report.addError(err.getCsvContext().getRowNumber() - 1, message);
+      }
+    }
+
+    return list;
+  }
+
+  private <D extends BaseDto, E extends BaseEntity> void doWrite(TransactionTemplate transaction,
+                                                                 RecordProcessor<D, E> processor,
                                                                  RecordWriter<E> writer,
+                                                                 ParseListener listener,
                                                                  List<D> imported) {
-    List<E> entities = imported.stream().map(processor::process).collect(Collectors.toList());
-    writer.write(entities);
+    try {
+      transaction.execute(status -> {
+        List<E> entities = imported.stream()
+            .map(processor::process)
+            .collect(Collectors.toList());
+        writer.write(entities);
+        listener.chunkWritten(imported.size());
+        return null;
+      });
+    } catch (RuntimeException exp) {
+      listener.chunkFailed(imported.size(), exp);
+    }
+  }
+
+  private <D extends BaseDto, E extends BaseEntity> void doValidate(
+      TransactionTemplate transaction, RecordProcessor<D, E> processor,
+      ChunkValidator<E> validator, ValidationReport report, List<Row<D>> rows) {
+    transaction.execute(status -> {
+      List<E> entities = Lists.newArrayList();
+      List<Integer> numbers = Lists.newArrayList();
+
+      for (Row<D> row : rows) {
+        try {
+          entities.add(processor.process(row.dto));
+          numbers.add(row.number);
+        } catch (BaseMessageException exp) {
+          report.addError(row.number, exp.asMessage());
+        }
+      }
+
+      if (!entities.isEmpty()) {
+        Map<Integer, Message> errors = validator.validate(entities);
+        errors.forEach((index, message) -> report.addError(numbers.get(index), message));
+      }
+
+      status.setRollbackOnly();
+      return null;
+    });
   }
 
   private Message getCsvRowErrorMessage(SuperCsvException err) {
@@ -147,4 +337,88 @@ public class CsvParser {
     return new Message(ERROR_UPLOAD_RECORD_INVALID, row, err.getMessage());
   }
 
+  /**
+   * Parsed row of a validated file with its number.
+   */
+  private static final class Row<D> {
+    private final int number;
+    private final D dto;
+
+    Row(int number, D dto) {
+      this.number = number;
+      this.dto = dto;
+    }
+  }
+
+  /**
+   * Chunks of a single file submitted to the shared executor. At most {@code capacity} chunks of
+   * the file are pending at a time, submitting more waits until one of them is done. Once a chunk
+   * fails, or the file is cancelled, the remaining chunks are skipped.
+   */
+  private static final class Pipeline<D> {
+    private final ExecutorService executor;
+    private final int capacity;
+    private final Semaphore permits;
+    private final Consumer<List<D>> handler;
+    // record processors check rights of the user who uploads the file
+    private final SecurityContext securityContext = SecurityContextHolder.getContext();
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    private volatile boolean cancelled;
+
+    Pipeline(ExecutorService executor, int capacity, Consumer<List<D>> handler) {
+      this.executor = executor;
+      this.capacity = capacity;
+      this.permits = new Semaphore(capacity);
+      this.handler = handler;
+    }
+
+    boolean isFailed() {
+      return failure.get() != null;
+    }
+
+    void submit(List<D> chunk) {
+      acquire(1);
+
+      try {
+        executor.execute(new DelegatingSecurityContextRunnable(
+            () -> handle(chunk), securityContext));
+      } catch (RejectedExecutionException exp) {
+        permits.release();
+        throw exp;
+      }
+    }
+
+    void finish(boolean cancel) {
+      cancelled = cancel;
+      acquire(capacity);
+    }
+
+    void rethrowFailure() {
+      if (isFailed()) {
+        throw failure.get();
+      }
+    }
+
+    private void handle(List<D> chunk) {
+      try {
+        if (!cancelled && !isFailed()) {
+          handler.accept(chunk);
+        }
+      } catch (RuntimeException exp) {
+        failure.compareAndSet(null, exp);
+      } finally {
+        permits.release();
+      }
+    }
+
+    private void acquire(int count) {
+      try {
+        permits.acquire(count);
+      } catch (InterruptedException exp) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(exp);
+      }
+    }
+  }
+
 }
@@ -0,0 +1,52 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web.csv.parser;
+
+/**
+ * Receives the progress of a parsed file chunk by chunk. Methods are called both by the thread
+ * that reads the file and by the workers, so implementations have to be thread-safe.
+ */
+public interface ParseListener {
+
+  /**
+   * Does not track the progress and stops parsing at the first failed chunk.
+   */
+  ParseListener NONE = new ParseListener() {
+  };
+
+  /**
+   * Called when a chunk has been read, before it is processed.
+   */
+  default void chunkRead(int rows) {
+    // progress is not tracked by default
+  }
+
+  /**
+   * Called in the transaction of a chunk after it has been written.
+   */
+  default void chunkWritten(int rows) {
+    // progress is not tracked by default
+  }
+
+  /**
+   * Called when a chunk could not be processed or written and its transaction has been rolled
+   * back. The failure is rethrown by default, which stops parsing; if this method returns
+   * normally, the remaining chunks are processed.
+   */
+  default void chunkFailed(int rows, RuntimeException error) {
+    throw error;
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.cce.web.csv.parser;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.openlmis.cce.util.Message;
+
+/**
+ * Errors found while validating a file. All errors are counted, but only those of the first
+ * {@code maxErrors} rows are kept, so the memory used does not grow with the number of invalid
+ * rows. Errors are added concurrently by the workers that validate chunks.
+ */
+public final class ValidationReport {
+  private static final Comparator<RowError> BY_ROW = Comparator.comparingInt(RowError::getRow);
+
+  private final int maxErrors;
+  // the last kept row is at the head, so it can be replaced by an earlier one
+  private final PriorityQueue<RowError> errors;
+  private int errorCount;
+  private int rowCount;
+
+  ValidationReport(int maxErrors) {
+    this.maxErrors = maxErrors;
+    this.errors = new PriorityQueue<>(Math.max(1, maxErrors), BY_ROW.reversed());
+  }
+
+  synchronized void addError(int row, Message message) {
+    ++errorCount;
+
+    if (maxErrors <= 0) {
+      return;
+    }
+
+    if (errors.size() < maxErrors) {
+      errors.add(new RowError(row, message));
+    } else if (row < errors.peek().getRow()) {
+      errors.poll();
+      errors.add(new RowError(row, message));
+    }
+  }
+
+  synchronized void setRowCount(int rowCount) {
+    this.rowCount = rowCount;
+  }
+
+  /**
+   * Returns the number of rows that were read.
+   */
+  public synchronized int getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * Returns the number of all errors, including those that are not kept.
+   */
+  public synchronized int getErrorCount() {
+    return errorCount;
+  }
+
+  public synchronized boolean isValid() {
+    return errorCount == 0;
+  }
+
+  /**
+   * Returns the kept errors ordered by row.
+   */
+  public synchronized List<RowError> getErrors() {
+    List<RowError> list = new ArrayList<>(errors);
+    list.sort(BY_ROW);
+    return list;
+  }
+
+  @Getter
+  @AllArgsConstructor
+  public static final class RowError {
+    private final int row;
+    private final Message message;
+  }
+}
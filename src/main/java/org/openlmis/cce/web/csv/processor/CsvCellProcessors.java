@@ -52,6 +52,10 @@ public class CsvCellProcessors {
   public static final String ENERGY_SOURCE_TYPE = "EnergySource";
   public static final String STORAGE_TEMPERATURE_TYPE = "StorageTemperature";
   public static final String DIMENSIONS_TYPE = "triple";
+  public static final String ZONED_DATE_TIME_TYPE = "ZonedDateTime";
+  public static final String LOCAL_DATE_TYPE = "LocalDate";
+  public static final String UUID_TYPE = "UUID";
+  public static final String ENUM_TYPE = "enum";
 
   private static final Map<String, CellProcessor> typeParseMappings = new HashMap<>();
   private static final Map<String, CellProcessor> typeExportMappings = new HashMap<>();
@@ -70,9 +74,13 @@ public class CsvCellProcessors {
     typeParseMappings.put(ENERGY_SOURCE_TYPE, new ParseEnergySource());
     typeParseMappings.put(STORAGE_TEMPERATURE_TYPE, new ParseStorageTemperature());
     typeParseMappings.put(DIMENSIONS_TYPE, new ParseDimensions());
+    typeParseMappings.put(ZONED_DATE_TIME_TYPE, new ParseZonedDateTime());
+    typeParseMappings.put(LOCAL_DATE_TYPE, new ParseLocalDate());
+    typeParseMappings.put(UUID_TYPE, new ParseUuid());
 
     typeExportMappings.put(BOOLEAN_TYPE, new FmtBool("Y", "N"));
     typeExportMappings.put(DIMENSIONS_TYPE, new FormatDimensions());
+    typeExportMappings.put(ZONED_DATE_TIME_TYPE, new FormatZonedDateTime());
   }
 
   /**
@@ -108,7 +116,9 @@ public class CsvCellProcessors {
 
   private static CellProcessor chainTypeProcessor(ModelField field, boolean forParsing) {
     CellProcessor mappedProcessor;
-    if (forParsing && typeParseMappings.containsKey(field.getType())) {
+    if (forParsing && field.hasType(ENUM_TYPE)) {
+      mappedProcessor = parseEnum(field.getField().getType());
+    } else if (forParsing && typeParseMappings.containsKey(field.getType())) {
       mappedProcessor = typeParseMappings.get(field.getType());
     } else if (!forParsing && typeExportMappings.containsKey(field.getType())) {
       mappedProcessor = typeExportMappings.get(field.getType());
@@ -118,4 +128,9 @@ public class CsvCellProcessors {
 
     return field.isMandatory() ? new NotNull(mappedProcessor) : new Optional(mappedProcessor);
   }
+
+  @SuppressWarnings("unchecked")
+  private static <E extends Enum<E>> ParseEnum<E> parseEnum(Class<?> enumClass) {
+    return new ParseEnum<>((Class<E>) enumClass);
+  }
 }
@@ -0,0 +1,52 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web.csv.processor;
+
+import org.apache.commons.lang3.EnumUtils;
+import org.supercsv.cellprocessor.CellProcessorAdaptor;
+import org.supercsv.cellprocessor.ift.StringCellProcessor;
+import org.supercsv.exception.SuperCsvCellProcessorException;
+import org.supercsv.util.CsvContext;
+
+/**
+ * This is a custom cell processor used to parse string to a constant of the given enum type.
+ * This is used in CsvCellProcessors for fields of the {@code enum} type.
+ */
+
+public class ParseEnum<E extends Enum<E>> extends CellProcessorAdaptor
+    implements StringCellProcessor {
+
+  private final Class<E> enumClass;
+
+  public ParseEnum(Class<E> enumClass) {
+    super();
+    this.enumClass = enumClass;
+  }
+
+  @Override
+  public Object execute(Object value, CsvContext context) {
+    validateInputNotNull(value, context);
+
+    String name = String.valueOf(value).trim();
+    if (!EnumUtils.isValidEnum(enumClass, name)) {
+      throw new SuperCsvCellProcessorException(
+          String.format("'%s' could not be parsed as a %s", value, enumClass.getSimpleName()),
+          context, this);
+    }
+
+    return next.execute(Enum.valueOf(enumClass, name), context);
+  }
+}
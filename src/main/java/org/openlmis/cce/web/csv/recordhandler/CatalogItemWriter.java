@@ -15,16 +15,21 @@
 
 package org.openlmis.cce.web.csv.recordhandler;
 
-import static org.springframework.util.CollectionUtils.isEmpty;
+import static org.openlmis.cce.i18n.CatalogItemMessageKeys.ERROR_MANUFACTURER_MODEL_DUPLICATED;
+import static org.openlmis.cce.i18n.CatalogItemMessageKeys.ERROR_MANUFACTURER_MODEL_NOT_UNIQUE;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.openlmis.cce.domain.CatalogItem;
 import org.openlmis.cce.repository.CatalogItemRepository;
+import org.openlmis.cce.util.Message;
 import org.slf4j.ext.XLogger;
 import org.slf4j.ext.XLoggerFactory;
 import org.slf4j.profiler.Profiler;
@@ -32,7 +37,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
- * This class is responsible for saving {@link CatalogItem} instances to the database.
+ * This class is responsible for saving {@link CatalogItem} instances to the database. Items are
+ * matched with existing ones by equipment code and model or, if equipment code is not set, by
+ * manufacturer and model, with a single query for the whole chunk, and then written with a single
+ * upsert statement. Items of the chunk with the same key are written once, with values of the last
+ * of them. The keys of the chunk are locked first, so chunks that are written in parallel
+ * transactions and share a new key do not both insert it.
  */
 @Component
 public class CatalogItemWriter implements RecordWriter<CatalogItem> {
@@ -47,55 +57,171 @@ public class CatalogItemWriter implements RecordWriter<CatalogItem> {
     Profiler profiler = new Profiler("WRITE");
     profiler.setLogger(XLOGGER);
 
+    profiler.start("LOCK_KEYS");
+    catalogItemRepository.lockKeys(entities);
+
     profiler.start("FIND_EXISTING");
     List<CatalogItem> existing = catalogItemRepository.findExisting(entities);
 
-    if (!isEmpty(existing)) {
-      profiler.start("CREATE_GROUPS");
-      Map<String, UUID> groupByEquipmentCode = Maps.newHashMap();
-      Map<Pair<String, String>, UUID> groupByManufacturerAndModel = Maps.newHashMap();
+    profiler.start("CREATE_GROUPS");
+    Map<Pair<String, String>, UUID> groupByEquipmentCodeAndModel = Maps.newHashMap();
+    Map<Pair<String, String>, UUID> groupByManufacturerAndModel = Maps.newHashMap();
 
-      for (CatalogItem item : existing) {
-        UUID id = item.getId();
-        String equipmentCode = item.getEquipmentCode();
+    for (CatalogItem item : existing) {
+      UUID id = item.getId();
+      String equipmentCode = item.getEquipmentCode();
+      String model = item.getModel();
 
-        if (null != equipmentCode) {
-          groupByEquipmentCode.put(equipmentCode, id);
-        }
+      if (null != equipmentCode) {
+        groupByEquipmentCodeAndModel.put(ImmutablePair.of(equipmentCode, model), id);
+      }
+
+      String manufacturer = item.getManufacturer();
+      Pair<String, String> key = ImmutablePair.of(manufacturer, model);
 
-        String manufacturer = item.getManufacturer();
-        String model = item.getModel();
-        Pair<String, String> key = ImmutablePair.of(manufacturer, model);
+      groupByManufacturerAndModel.put(key, id);
+    }
 
-        groupByManufacturerAndModel.put(key, id);
+    profiler.start("FIND_IN_GROUPS");
+    Map<UUID, CatalogItem> toWrite = Maps.newLinkedHashMap();
+
+    for (int i = 0, size = entities.size(); i < size; ++i) {
+      CatalogItem item = entities.get(i);
+      String equipmentCode = item.getEquipmentCode();
+      UUID id;
+
+      if (null != equipmentCode) {
+        ImmutablePair<String, String> key = ImmutablePair.of(equipmentCode, item.getModel());
+        id = groupByEquipmentCodeAndModel.computeIfAbsent(key, value -> getNewId(item));
+      } else {
+        ImmutablePair<String, String> key = ImmutablePair.of(
+            item.getManufacturer(), item.getModel()
+        );
+        id = groupByManufacturerAndModel.computeIfAbsent(key, value -> getNewId(item));
       }
 
-      profiler.start("FIND_IN_GROUPS");
+      item.setId(id);
+      toWrite.put(id, item);
+    }
+
+    profiler.start("UPSERT");
+    catalogItemRepository.upsert(Lists.newArrayList(toWrite.values()));
+
+    profiler.stop().log();
+    XLOGGER.exit();
+  }
+
+  /**
+   * Creates a validator that checks chunks against existing catalog items with a single query
+   * each, and against each other, reporting rows that would break the unique constraints of the
+   * catalog if the file was uploaded.
+   */
+  @Override
+  public ChunkValidator<CatalogItem> newValidator() {
+    return new Validator();
+  }
+
+  private UUID getNewId(CatalogItem item) {
+    return null == item.getId() ? UUID.randomUUID() : item.getId();
+  }
+
+  /**
+   * Matches items with existing ones the same way {@link #write(List)} does. Items that are not
+   * matched are identified by their equipment code and model, or by their manufacturer and model,
+   * so that rows which would be written as different items with the same manufacturer and model
+   * are found even if they are in different chunks.
+   */
+  private final class Validator implements ChunkValidator<CatalogItem> {
+    private final ConcurrentMap<Pair<String, String>, Object> identities =
+        new ConcurrentHashMap<>();
+
+    @Override
+    public Map<Integer, Message> validate(List<CatalogItem> entities) {
+      XLOGGER.entry();
+      Profiler profiler = new Profiler("VALIDATE");
+      profiler.setLogger(XLOGGER);
+
+      profiler.start("FIND_MATCHING");
+      List<CatalogItem> matching = catalogItemRepository.findMatching(entities);
+
+      profiler.start("CREATE_GROUPS");
+      Groups groups = new Groups(matching);
+
+      profiler.start("FIND_CONFLICTS");
+      Map<Integer, Message> errors = Maps.newHashMap();
+
       for (int i = 0, size = entities.size(); i < size; ++i) {
         CatalogItem item = entities.get(i);
+        Pair<String, String> key = ImmutablePair.of(item.getManufacturer(), item.getModel());
+        UUID id = groups.getId(item, key);
+
+        Object identity = getIdentity(id, item.getEquipmentCode(), key);
+        Object previous = identities.putIfAbsent(key, identity);
+        Message error = groups.getConflict(item, key, id);
+
+        if (null == error && null != previous && !previous.equals(identity)) {
+          error = new Message(ERROR_MANUFACTURER_MODEL_DUPLICATED,
+              item.getManufacturer(), item.getModel());
+        }
+
+        if (null != error) {
+          errors.put(i, error);
+        }
+      }
+
+      profiler.stop().log();
+      XLOGGER.exit(errors.size());
+
+      return errors;
+    }
+
+    private Object getIdentity(UUID id, String equipmentCode, Pair<String, String> key) {
+      if (null != id) {
+        return id;
+      }
+
+      return null == equipmentCode ? key : equipmentCode;
+    }
+  }
+
+  /**
+   * Ids of existing catalog items by the keys of both unique constraints of the catalog.
+   */
+  private static final class Groups {
+    private final Map<Pair<String, String>, UUID> byEquipmentCodeAndModel = Maps.newHashMap();
+    private final Map<Pair<String, String>, UUID> byManufacturerAndModel = Maps.newHashMap();
+
+    Groups(List<CatalogItem> existing) {
+      for (CatalogItem item : existing) {
+        UUID id = item.getId();
         String equipmentCode = item.getEquipmentCode();
-        UUID existingId;
 
         if (null != equipmentCode) {
-          existingId = groupByEquipmentCode.get(equipmentCode);
-        } else {
-          ImmutablePair<String, String> key = ImmutablePair.of(
-              item.getManufacturer(), item.getModel()
-          );
-          existingId = groupByManufacturerAndModel.get(key);
+          byEquipmentCodeAndModel.put(ImmutablePair.of(equipmentCode, item.getModel()), id);
         }
 
-        if (null != existingId) {
-          item.setId(existingId);
-        }
+        byManufacturerAndModel.put(ImmutablePair.of(item.getManufacturer(), item.getModel()), id);
       }
     }
 
-    profiler.start("SAVE");
-    catalogItemRepository.save(entities);
+    UUID getId(CatalogItem item, Pair<String, String> key) {
+      String equipmentCode = item.getEquipmentCode();
 
-    profiler.stop().log();
-    XLOGGER.exit();
+      return null == equipmentCode
+          ? byManufacturerAndModel.get(key)
+          : byEquipmentCodeAndModel.get(ImmutablePair.of(equipmentCode, item.getModel()));
+    }
+
+    Message getConflict(CatalogItem item, Pair<String, String> key, UUID id) {
+      UUID sameManufacturerAndModel = byManufacturerAndModel.get(key);
+
+      if (null != sameManufacturerAndModel && !sameManufacturerAndModel.equals(id)) {
+        return new Message(ERROR_MANUFACTURER_MODEL_NOT_UNIQUE,
+            item.getManufacturer(), item.getModel());
+      }
+
+      return null;
+    }
   }
 
 }
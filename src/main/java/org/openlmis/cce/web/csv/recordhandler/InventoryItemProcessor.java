@@ -0,0 +1,73 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web.csv.recordhandler;
+
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_CATALOG_ITEM_NOT_FOUND;
+
+import java.time.ZonedDateTime;
+import org.openlmis.cce.domain.CatalogItem;
+import org.openlmis.cce.domain.InventoryItem;
+import org.openlmis.cce.dto.InventoryItemCsvDto;
+import org.openlmis.cce.exception.ValidationMessageException;
+import org.openlmis.cce.repository.CatalogItemRepository;
+import org.openlmis.cce.service.PermissionService;
+import org.openlmis.cce.util.AuthenticationHelper;
+import org.openlmis.cce.web.validator.InventoryItemValidator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates new inventory items from rows of uploaded files. Rows are validated with the same rules
+ * as items created one by one, except that the uniqueness of items is verified for the whole
+ * chunk by {@link InventoryItemWriter}.
+ */
+@Component
+public class InventoryItemProcessor implements RecordProcessor<InventoryItemCsvDto, InventoryItem> {
+
+  @Autowired
+  private PermissionService permissionService;
+
+  @Autowired
+  private AuthenticationHelper authenticationHelper;
+
+  @Autowired
+  private CatalogItemRepository catalogItemRepository;
+
+  @Autowired
+  private InventoryItemValidator inventoryItemValidator;
+
+  @Override
+  public InventoryItem process(InventoryItemCsvDto dto) {
+    inventoryItemValidator.validateRequiredFields(dto);
+    permissionService.canEditInventory(dto.getProgramId(), dto.getFacilityId());
+    inventoryItemValidator.validateFunctionalStatus(dto);
+
+    // catalog items found once are returned from the persistence context of the chunk
+    CatalogItem catalogItem = catalogItemRepository.findOne(dto.getCatalogItemId());
+
+    if (null == catalogItem) {
+      throw new ValidationMessageException(ERROR_CATALOG_ITEM_NOT_FOUND, dto.getCatalogItemId());
+    }
+
+    dto.setId(null);
+    dto.setLastModifierId(authenticationHelper.getCurrentUser().getId());
+
+    InventoryItem inventoryItem = InventoryItem.newInstance(dto, catalogItem);
+    inventoryItem.setModifiedDate(ZonedDateTime.now());
+
+    return inventoryItem;
+  }
+}
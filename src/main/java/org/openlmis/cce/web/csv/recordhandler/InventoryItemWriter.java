@@ -0,0 +1,108 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web.csv.recordhandler;
+
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_ITEM_ALREADY_EXISTS;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_ITEM_DUPLICATED;
+
+import com.google.common.collect.Sets;
+import java.util.List;
+import java.util.Set;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.apache.commons.lang3.tuple.Triple;
+import org.openlmis.cce.domain.CatalogItem;
+import org.openlmis.cce.domain.InventoryItem;
+import org.openlmis.cce.exception.ValidationMessageException;
+import org.openlmis.cce.repository.InventoryItemRepository;
+import org.slf4j.ext.XLogger;
+import org.slf4j.ext.XLoggerFactory;
+import org.slf4j.profiler.Profiler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Saves new inventory items. Items with the same equipment tracking id, catalog item model and
+ * catalog item type are rejected, as they are by {@code InventoryItemValidator} for items
+ * created one by one. Existing items are searched for the whole chunk with a single query, and
+ * the inserts are sent to the database in JDBC batches of {@code hibernate.jdbc.batch_size} when
+ * the chunk is committed.
+ */
+@Component
+public class InventoryItemWriter implements RecordWriter<InventoryItem> {
+  private static final XLogger XLOGGER = XLoggerFactory.getXLogger(InventoryItemWriter.class);
+
+  @Autowired
+  private InventoryItemRepository inventoryItemRepository;
+
+  @Override
+  public void write(List<InventoryItem> entities) {
+    XLOGGER.entry();
+    Profiler profiler = new Profiler("WRITE");
+    profiler.setLogger(XLOGGER);
+
+    profiler.start("FIND_DUPLICATES");
+    Set<Triple<String, String, String>> keys = Sets.newHashSet();
+    Set<String> equipmentTrackingIds = Sets.newHashSet();
+    Set<String> models = Sets.newHashSet();
+    Set<String> types = Sets.newHashSet();
+
+    for (InventoryItem item : entities) {
+      String equipmentTrackingId = item.getEquipmentTrackingId();
+
+      if (null != equipmentTrackingId) {
+        if (!keys.add(getKey(item))) {
+          throw newError(ERROR_ITEM_DUPLICATED, item);
+        }
+
+        equipmentTrackingIds.add(equipmentTrackingId);
+        models.add(item.getCatalogItem().getModel());
+        types.add(item.getCatalogItem().getType());
+      }
+    }
+
+    if (!keys.isEmpty()) {
+      profiler.start("FIND_EXISTING");
+      List<InventoryItem> existing = inventoryItemRepository
+          .findByEquipmentTrackingIdInAndCatalogItem_ModelInAndCatalogItem_TypeIn(
+              equipmentTrackingIds, models, types);
+
+      for (InventoryItem item : existing) {
+        if (keys.contains(getKey(item))) {
+          throw newError(ERROR_ITEM_ALREADY_EXISTS, item);
+        }
+      }
+    }
+
+    profiler.start("SAVE");
+    inventoryItemRepository.save(entities);
+
+    profiler.stop().log();
+    XLOGGER.exit();
+  }
+
+  private Triple<String, String, String> getKey(InventoryItem item) {
+    CatalogItem catalogItem = item.getCatalogItem();
+    return ImmutableTriple
+        .of(item.getEquipmentTrackingId(), catalogItem.getModel(), catalogItem.getType());
+  }
+
+  private ValidationMessageException newError(String messageKey, InventoryItem item) {
+    CatalogItem catalogItem = item.getCatalogItem();
+    return new ValidationMessageException(messageKey, item.getEquipmentTrackingId(),
+        catalogItem.getType(), catalogItem.getModel());
+  }
+
+}
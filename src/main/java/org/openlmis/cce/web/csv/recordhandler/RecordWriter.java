@@ -15,6 +15,7 @@
 
 package org.openlmis.cce.web.csv.recordhandler;
 
+import java.util.Collections;
 import java.util.List;
 import org.openlmis.cce.domain.BaseEntity;
 
@@ -25,4 +26,12 @@ public interface RecordWriter<T extends BaseEntity> {
 
   void write(List<T> entities);
 
+  /**
+   * Creates a validator that checks chunks of a single file the way they would be written. By
+   * default no errors are reported.
+   */
+  default ChunkValidator<T> newValidator() {
+    return entities -> Collections.emptyMap();
+  }
+
 }
@@ -42,9 +42,21 @@ public class InventoryItemValidator {
    * @see ValidationUtils
    */
   public void validate(InventoryItemDto inventoryItem, InventoryItem existing) {
+    validateRequiredFields(inventoryItem);
+    validateUniqueConstraints(inventoryItem, existing);
+    validateFunctionalStatus(inventoryItem);
+  }
+
+  /**
+   * Validates if the {@code inventoryItem} has values in all required properties. The same
+   * properties are required from items created one by one and from uploaded ones.
+   *
+   * @param inventoryItem the object that will be validated
+   */
+  public void validateRequiredFields(InventoryItem.Importer inventoryItem) {
     validateNotNull(inventoryItem.getCatalogItem(),
         InventoryItemMessageKeys.ERROR_CATALOG_ITEM_REQUIRED);
-    validateNotNull(inventoryItem.getFacility(),
+    validateNotNull(inventoryItem.getFacilityId(),
         InventoryItemMessageKeys.ERROR_FACILITY_REQUIRED);
     validateNotNull(inventoryItem.getProgramId(),
         InventoryItemMessageKeys.ERROR_PROGRAM_ID_REQUIRED);
@@ -66,8 +78,15 @@ public class InventoryItemValidator {
         InventoryItemMessageKeys.ERROR_REFERENCE_NAME_REQUIRED);
     validateNotNull(inventoryItem.getRemoteTemperatureMonitor(),
         InventoryItemMessageKeys.ERROR_REMOTE_TEMPERATURE_MONITOR_REQUIRED);
-    validateUniqueConstraints(inventoryItem, existing);
+  }
 
+  /**
+   * Validates if the {@code inventoryItem} has values in properties required by its functional
+   * status.
+   *
+   * @param inventoryItem the object that will be validated
+   */
+  public void validateFunctionalStatus(InventoryItem.Importer inventoryItem) {
     if (inventoryItem.getFunctionalStatus().equals(FunctionalStatus.UNSERVICEABLE)) {
       validateNotNull(inventoryItem.getDecommissionDate(),
           InventoryItemMessageKeys.ERROR_DECOMMISSION_DATE_REQUIRED);
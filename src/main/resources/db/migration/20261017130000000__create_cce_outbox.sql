@@ -0,0 +1,13 @@
+CREATE TABLE cce_outbox (
+    id uuid NOT NULL PRIMARY KEY,
+    type text NOT NULL,
+    payload text NOT NULL,
+    createddate timestamptz NOT NULL,
+    attempts integer NOT NULL DEFAULT 0,
+    nextattemptdate timestamptz,
+    delivereddate timestamptz,
+    lasterror text
+);
+
+CREATE INDEX cce_outbox_pending_idx ON cce.cce_outbox (nextattemptdate)
+    WHERE delivereddate IS NULL;
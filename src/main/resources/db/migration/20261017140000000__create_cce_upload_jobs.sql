@@ -0,0 +1,12 @@
+CREATE TABLE cce_upload_jobs (
+    id uuid NOT NULL PRIMARY KEY,
+    filename text,
+    status text NOT NULL,
+    rowsread integer NOT NULL DEFAULT 0,
+    rowswritten integer NOT NULL DEFAULT 0,
+    rowsfailed integer NOT NULL DEFAULT 0,
+    createddate timestamptz NOT NULL,
+    starteddate timestamptz,
+    finisheddate timestamptz,
+    error text
+);
@@ -0,0 +1,21 @@
+ALTER TABLE cce_outbox ADD COLUMN status text;
+ALTER TABLE cce_outbox ADD COLUMN claimeduntil timestamptz;
+ALTER TABLE cce_outbox ADD COLUMN faileddate timestamptz;
+
+UPDATE cce_outbox
+SET status = CASE
+    WHEN delivereddate IS NOT NULL THEN 'DELIVERED'
+    WHEN nextattemptdate IS NULL THEN 'FAILED'
+    ELSE 'PENDING'
+END;
+
+UPDATE cce_outbox
+SET faileddate = createddate
+WHERE status = 'FAILED';
+
+ALTER TABLE cce_outbox ALTER COLUMN status SET NOT NULL;
+
+DROP INDEX cce.cce_outbox_pending_idx;
+
+CREATE INDEX cce_outbox_pending_idx ON cce.cce_outbox (nextattemptdate)
+    WHERE status = 'PENDING';
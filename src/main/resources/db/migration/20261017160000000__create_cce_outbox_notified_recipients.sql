@@ -0,0 +1,6 @@
+CREATE TABLE cce_outbox_notified_recipients (
+    eventid uuid NOT NULL,
+    recipientid uuid NOT NULL,
+    PRIMARY KEY (eventid, recipientid),
+    FOREIGN KEY (eventid) REFERENCES cce_outbox ON DELETE CASCADE
+);
@@ -0,0 +1,9 @@
+ALTER TABLE cce_upload_jobs ADD COLUMN leaseuntil timestamptz;
+
+UPDATE cce_upload_jobs
+SET leaseuntil = COALESCE(finisheddate, createddate);
+
+ALTER TABLE cce_upload_jobs ALTER COLUMN leaseuntil SET NOT NULL;
+
+CREATE INDEX cce_upload_jobs_active_idx ON cce.cce_upload_jobs (leaseuntil)
+    WHERE status IN ('PENDING', 'RUNNING');
@@ -0,0 +1 @@
+ALTER TABLE cce_outbox ADD COLUMN version bigint NOT NULL DEFAULT 0;
@@ -28,6 +28,8 @@ public class InventoryItemSearchParamsDataBuilder {
   private UUID programId = UUID.randomUUID();
   private FunctionalStatus functionalStatus = FunctionalStatus.FUNCTIONING;
   private List<String> expands = Arrays.asList("program");
+  private String after;
+  private boolean withTotal = true;
 
   public InventoryItemSearchParamsDataBuilder withFacilityId(UUID newFacilityId) {
     this.facilityId = newFacilityId;
@@ -44,6 +46,16 @@ public class InventoryItemSearchParamsDataBuilder {
     return this;
   }
 
+  public InventoryItemSearchParamsDataBuilder withAfter(String newAfter) {
+    this.after = newAfter;
+    return this;
+  }
+
+  public InventoryItemSearchParamsDataBuilder withoutTotal() {
+    this.withTotal = false;
+    return this;
+  }
+
   public InventoryItemSearchParamsDataBuilder withoutFacilityId() {
     return withFacilityId(null);
   }
@@ -71,7 +83,9 @@ public class InventoryItemSearchParamsDataBuilder {
         facilityId,
         programId,
         functionalStatus,
-        expands
+        expands,
+        after,
+        withTotal
     );
   }
 
@@ -0,0 +1,83 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlmis.cce.util.ConnectionPoolStatistics;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+public class RestTemplateConfigurationTest {
+  private static final int MAX_CONNECTIONS = 50;
+  private static final int MAX_CONNECTIONS_PER_ROUTE = 10;
+
+  private RestTemplateConfiguration configuration = new RestTemplateConfiguration();
+  private PoolingHttpClientConnectionManager connectionManager;
+  private CloseableHttpClient httpClient;
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(configuration, "maxConnections", MAX_CONNECTIONS);
+    ReflectionTestUtils.setField(configuration, "maxConnectionsPerRoute",
+        MAX_CONNECTIONS_PER_ROUTE);
+    ReflectionTestUtils.setField(configuration, "connectTimeout", 1000);
+    ReflectionTestUtils.setField(configuration, "readTimeout", 1000);
+    ReflectionTestUtils.setField(configuration, "connectionRequestTimeout", 1000);
+    ReflectionTestUtils.setField(configuration, "maxIdleTime", 1000L);
+
+    connectionManager = configuration.connectionManager();
+    httpClient = configuration.httpClient(connectionManager);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    httpClient.close();
+  }
+
+  @Test
+  public void shouldLimitNumberOfConnections() {
+    assertThat(connectionManager.getMaxTotal(), is(MAX_CONNECTIONS));
+    assertThat(connectionManager.getDefaultMaxPerRoute(), is(MAX_CONNECTIONS_PER_ROUTE));
+  }
+
+  @Test
+  public void shouldUsePooledClientInRestTemplate() {
+    RestTemplate restTemplate = configuration.restTemplate(httpClient);
+
+    assertThat(restTemplate.getRequestFactory(),
+        is(instanceOf(HttpComponentsClientHttpRequestFactory.class)));
+  }
+
+  @Test
+  public void shouldExposeConnectionPoolStatistics() {
+    ConnectionPoolStatistics statistics = configuration
+        .connectionPoolStatistics(connectionManager);
+
+    assertThat(statistics.getMax(), is(MAX_CONNECTIONS));
+    assertThat(statistics.getLeased(), is(0));
+    assertThat(statistics.getPending(), is(0));
+    assertThat(statistics.getAvailable(), is(0));
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.domain;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class UploadJobTest {
+  private static final ZonedDateTime NOW = ZonedDateTime.of(2026, 10, 17, 12, 0, 0, 0,
+      ZoneOffset.UTC);
+
+  private UploadJob job = UploadJob.newInstance("catalog.csv", NOW.minusMinutes(1),
+      NOW.plusMinutes(1));
+
+  @Test
+  public void shouldNotCalculateRowsPerSecondIfJobHasNotStarted() {
+    assertThat(job.getStatus(), is(UploadJobStatus.PENDING));
+    assertThat(job.getRowsPerSecond(NOW), is(nullValue()));
+  }
+
+  @Test
+  public void shouldCalculateRowsPerSecondOfRunningJobUntilNow() {
+    ReflectionTestUtils.setField(job, "startedDate", NOW.minusSeconds(4));
+    ReflectionTestUtils.setField(job, "rowsWritten", 10);
+
+    assertThat(job.getRowsPerSecond(NOW), is(closeTo(2.5, 0.001)));
+  }
+
+  @Test
+  public void shouldCalculateRowsPerSecondOfFinishedJobUntilItFinished() {
+    ReflectionTestUtils.setField(job, "startedDate", NOW.minusSeconds(4));
+    ReflectionTestUtils.setField(job, "finishedDate", NOW.minusSeconds(2));
+    ReflectionTestUtils.setField(job, "rowsWritten", 10);
+
+    assertThat(job.getRowsPerSecond(NOW), is(closeTo(5.0, 0.001)));
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.dto;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PermissionStringIndexTest {
+  private static final String GENERAL_RIGHT = "GENERAL_RIGHT";
+  private static final String HOME_RIGHT = "HOME_RIGHT";
+  private static final String FACILITY_RIGHT = "FACILITY_RIGHT";
+
+  private UUID facility1 = UUID.randomUUID();
+  private UUID facility2 = UUID.randomUUID();
+  private UUID program1 = UUID.randomUUID();
+  private UUID program2 = UUID.randomUUID();
+
+  private PermissionStringIndex index;
+
+  @Before
+  public void setUp() {
+    index = PermissionStringIndex
+        .builder()
+        .add(GENERAL_RIGHT)
+        .add(HOME_RIGHT + "|" + facility1 + "|" + program1)
+        .add(HOME_RIGHT + "|" + facility1 + "|" + program2)
+        .add(HOME_RIGHT + "|" + facility2 + "|" + program2)
+        .add(HOME_RIGHT + "|" + facility2 + "|" + program2)
+        .add(FACILITY_RIGHT + "|" + facility2)
+        .build();
+  }
+
+  @Test
+  public void shouldCountDistinctPermissionStrings() {
+    assertThat(index.size(), is(5));
+  }
+
+  @Test
+  public void shouldFindGeneralRight() {
+    assertThat(index.hasRight(GENERAL_RIGHT, null, null), is(true));
+    assertThat(index.hasRight(GENERAL_RIGHT, facility1, null), is(false));
+    assertThat(index.hasRight(HOME_RIGHT, null, null), is(false));
+  }
+
+  @Test
+  public void shouldFindRightForFacilityAndProgram() {
+    assertThat(index.hasRight(HOME_RIGHT, facility1, program1), is(true));
+    assertThat(index.hasRight(HOME_RIGHT, facility2, program2), is(true));
+    assertThat(index.hasRight(HOME_RIGHT, facility2, program1), is(false));
+    assertThat(index.hasRight(HOME_RIGHT, facility1, null), is(false));
+    assertThat(index.hasRight(FACILITY_RIGHT, facility2, null), is(true));
+    assertThat(index.hasRight(FACILITY_RIGHT, facility1, null), is(false));
+  }
+
+  @Test
+  public void shouldIgnoreCaseOfRightNames() {
+    assertThat(index.hasRight("home_right", facility1, program1), is(true));
+    assertThat(index.getFacilityIds("Home_Right"), containsInAnyOrder(facility1, facility2));
+  }
+
+  @Test
+  public void shouldReturnFacilitiesAndProgramsOfRight() {
+    assertThat(index.getFacilityIds(HOME_RIGHT), containsInAnyOrder(facility1, facility2));
+    assertThat(index.getProgramIds(HOME_RIGHT), containsInAnyOrder(program1, program2));
+    assertThat(index.getFacilityIds(FACILITY_RIGHT), containsInAnyOrder(facility2));
+    assertThat(index.getProgramIds(FACILITY_RIGHT), is(empty()));
+  }
+
+  @Test
+  public void shouldReturnNothingForUnknownRight() {
+    assertThat(index.hasRight("UNKNOWN", facility1, program1), is(false));
+    assertThat(index.getFacilityIds("UNKNOWN"), is(empty()));
+    assertThat(index.getProgramIds("UNKNOWN"), is(empty()));
+  }
+
+  @Test
+  public void shouldCreateIndexOfPermissionStrings() {
+    PermissionStringIndex created = PermissionStringIndex.of(Arrays.asList(
+        PermissionStringDto.create(GENERAL_RIGHT, null, null),
+        PermissionStringDto.create(HOME_RIGHT, facility1, program1)));
+
+    assertThat(created.size(), is(2));
+    assertThat(created.hasRight(HOME_RIGHT, facility1, program1), is(true));
+  }
+}
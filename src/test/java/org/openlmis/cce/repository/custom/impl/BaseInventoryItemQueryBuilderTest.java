@@ -15,19 +15,30 @@
 
 package org.openlmis.cce.repository.custom.impl;
 
+import static java.util.Collections.singletonList;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.when;
 import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.COUNT_SQL;
+import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.FACILITY_IDS;
 import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.FACILITY_PREDICATE;
+import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.FUNCTIONAL_STATUS;
+import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.PROGRAM_IDS;
 import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.PROGRAM_PREDICATE;
 import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.SELECT_SQL;
 import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.STATUS_PREDICATE;
 import static org.springframework.data.domain.Sort.Direction.ASC;
 import static org.springframework.data.domain.Sort.Direction.DESC;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import org.junit.Before;
 import org.junit.Test;
@@ -47,12 +58,10 @@ public abstract class BaseInventoryItemQueryBuilderTest {
   private static final Collection<UUID> PROGRAMS = Collections.singleton(PROGRAM);
   private static final Collection<UUID> FACILITIES = Collections.singleton(FACILITY);
 
-  private static final String FACILITY_WHERE = String.format(FACILITY_PREDICATE, FACILITY);
-  private static final String PROGRAM_WHERE = String.format(PROGRAM_PREDICATE, PROGRAM);
-  private static final String STATUS_WHERE = String.format(STATUS_PREDICATE, STATUS.toString());
-  private static final String FACILITY_PROGRAM_WHERE = FACILITY_WHERE + " AND " + PROGRAM_WHERE;
+  private static final String FACILITY_PROGRAM_WHERE = FACILITY_PREDICATE + " AND "
+      + PROGRAM_PREDICATE;
   private static final String FACILITY_PROGRAM_STATUS_WHERE = FACILITY_PROGRAM_WHERE + " AND "
-      + STATUS_WHERE;
+      + STATUS_PREDICATE;
 
   private static final String WHERE = " WHERE ";
 
@@ -82,14 +91,22 @@ public abstract class BaseInventoryItemQueryBuilderTest {
 
   @Test
   public void shouldAddFacilityWherePartToQuery() throws Exception {
-    String sql = new InventoryItemQueryBuilder(FACILITIES, null, null, null, isCount()).build();
-    assertThat(sql, equalTo(getSelect() + WHERE + FACILITY_WHERE));
+    InventoryItemQueryBuilder builder = new InventoryItemQueryBuilder(
+        FACILITIES, null, null, null, isCount());
+    String sql = builder.build();
+
+    assertThat(sql, equalTo(getSelect() + WHERE + FACILITY_PREDICATE));
+    assertThat(builder.getParameters().get(FACILITY_IDS), equalTo(singletonList(FACILITY)));
   }
 
   @Test
   public void shouldAddProgramWherePartToQuery() throws Exception {
-    String sql = new InventoryItemQueryBuilder(null, PROGRAMS, null, null, isCount()).build();
-    assertThat(sql, equalTo(getSelect() + WHERE + PROGRAM_WHERE));
+    InventoryItemQueryBuilder builder = new InventoryItemQueryBuilder(
+        null, PROGRAMS, null, null, isCount());
+    String sql = builder.build();
+
+    assertThat(sql, equalTo(getSelect() + WHERE + PROGRAM_PREDICATE));
+    assertThat(builder.getParameters().get(PROGRAM_IDS), equalTo(singletonList(PROGRAM)));
   }
 
   @Test
@@ -102,14 +119,61 @@ public abstract class BaseInventoryItemQueryBuilderTest {
   public void shouldAddFunctionalStatusToQuery() throws Exception {
     String sql = new InventoryItemQueryBuilder(
         null, null, STATUS, null, isCount()).build();
-    assertThat(sql, equalTo(getSelect() + WHERE + STATUS_WHERE));
+    assertThat(sql, equalTo(getSelect() + WHERE + STATUS_PREDICATE));
   }
 
   @Test
   public void shouldAddFacilityProgramAndStatusWherePartsToQuery() throws Exception {
-    String sql = new InventoryItemQueryBuilder(
-        FACILITIES, PROGRAMS, STATUS, null, isCount()).build();
+    InventoryItemQueryBuilder builder = new InventoryItemQueryBuilder(
+        FACILITIES, PROGRAMS, STATUS, null, isCount());
+    String sql = builder.build();
+
     assertThat(sql, equalTo(getSelect() + WHERE + FACILITY_PROGRAM_STATUS_WHERE));
+    assertThat(builder.getParameters().get(FUNCTIONAL_STATUS), equalTo(STATUS));
+  }
+
+  @Test
+  public void shouldPadCollectionParametersWithLastElement() throws Exception {
+    UUID facility1 = UUID.randomUUID();
+    UUID facility2 = UUID.randomUUID();
+    UUID facility3 = UUID.randomUUID();
+
+    InventoryItemQueryBuilder builder = new InventoryItemQueryBuilder(
+        Arrays.asList(facility1, facility2, facility3), null, null, null, isCount());
+    builder.build();
+
+    assertThat((List<?>) builder.getParameters().get(FACILITY_IDS),
+        contains(facility1, facility2, facility3, facility3));
+  }
+
+  @Test
+  public void shouldReuseBoundedNumberOfQueryPlansForDifferentRightSets() throws Exception {
+    Set<String> expandedQueries = Sets.newHashSet();
+    List<UUID> facilities = Lists.newArrayList();
+
+    for (int i = 0; i < 2000; ++i) {
+      facilities.add(UUID.randomUUID());
+
+      InventoryItemQueryBuilder builder = new InventoryItemQueryBuilder(
+          facilities, PROGRAMS, STATUS, null, isCount());
+      String sql = builder.build();
+      int markers = ((Collection<?>) builder.getParameters().get(FACILITY_IDS)).size();
+
+      // hibernate caches one plan per query string and the number of elements in list parameters
+      expandedQueries.add(sql + '#' + markers);
+    }
+
+    // 1, 2, 4, ..., 2048
+    assertThat(expandedQueries, hasSize(12));
+  }
+
+  @Test
+  public void shouldPadLargeCollectionsToMultipleOfMaxPadding() throws Exception {
+    assertThat(InventoryItemQueryBuilder.getPaddedSize(1), equalTo(1));
+    assertThat(InventoryItemQueryBuilder.getPaddedSize(3), equalTo(4));
+    assertThat(InventoryItemQueryBuilder.getPaddedSize(4096), equalTo(4096));
+    assertThat(InventoryItemQueryBuilder.getPaddedSize(4097), equalTo(8192));
+    assertThat(InventoryItemQueryBuilder.getPaddedSize(8193), equalTo(12288));
   }
 
 }
\ No newline at end of file
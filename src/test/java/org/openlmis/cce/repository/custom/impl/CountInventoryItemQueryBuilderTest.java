@@ -19,7 +19,9 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertThat;
 import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.COUNT_SQL;
 
+import java.util.UUID;
 import org.junit.Test;
+import org.openlmis.cce.util.KeysetCursor;
 
 public class CountInventoryItemQueryBuilderTest
     extends BaseInventoryItemQueryBuilderTest {
@@ -34,4 +36,16 @@ public class CountInventoryItemQueryBuilderTest
     String sql = new InventoryItemQueryBuilder(null, null, null, pageable, true).build();
     assertThat(sql, equalTo(COUNT_SQL));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void shouldIgnoreCursorInCountQuery() throws Exception {
+    KeysetCursor cursor = new KeysetCursor("fridge", UUID.randomUUID());
+
+    InventoryItemQueryBuilder builder = new InventoryItemQueryBuilder(
+        null, null, null, pageable, true).after(cursor);
+    String sql = builder.build();
+
+    assertThat(sql, equalTo(COUNT_SQL));
+    assertThat(builder.getParameters().isEmpty(), equalTo(true));
+  }
+}
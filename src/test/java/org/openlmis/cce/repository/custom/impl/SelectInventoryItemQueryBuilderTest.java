@@ -16,16 +16,23 @@
 package org.openlmis.cce.repository.custom.impl;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasEntry;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.when;
+import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.AFTER_ID;
+import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.AFTER_VALUE;
 import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.SELECT_SQL;
 
+import java.util.UUID;
 import org.junit.Test;
+import org.openlmis.cce.util.KeysetCursor;
+import org.springframework.data.domain.Sort;
 
 public class SelectInventoryItemQueryBuilderTest
     extends BaseInventoryItemQueryBuilderTest {
 
   private static final String ORDER_BY = " ORDER BY c.type ASC , i.functionalStatus DESC";
+  private static final String REFERENCE_NAME = "referenceName";
 
   @Override
   boolean isCount() {
@@ -45,4 +52,48 @@ public class SelectInventoryItemQueryBuilderTest
     String sql = new InventoryItemQueryBuilder(null, null, null, pageable, false).build();
     assertThat(sql, equalTo(SELECT_SQL + ORDER_BY));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void shouldAddIdToOrderPartIfCursorIsAtStart() throws Exception {
+    when(pageable.getSort()).thenReturn(new Sort(Sort.Direction.ASC, REFERENCE_NAME));
+
+    InventoryItemQueryBuilder builder = new InventoryItemQueryBuilder(
+        null, null, null, pageable, false).after(KeysetCursor.start());
+    String sql = builder.build();
+
+    assertThat(sql, equalTo(SELECT_SQL + " ORDER BY i.referenceName ASC , i.id ASC"));
+    assertThat(builder.getParameters().isEmpty(), equalTo(true));
+  }
+
+  @Test
+  public void shouldAddSeekPredicateIfCursorIsSet() throws Exception {
+    when(pageable.getSort()).thenReturn(new Sort(Sort.Direction.ASC, REFERENCE_NAME));
+    KeysetCursor cursor = new KeysetCursor("fridge", UUID.randomUUID());
+
+    InventoryItemQueryBuilder builder = new InventoryItemQueryBuilder(
+        null, null, null, pageable, false).after(cursor);
+    String sql = builder.build();
+
+    assertThat(sql, equalTo(SELECT_SQL
+        + " WHERE i.referenceName >= :afterValue"
+        + " AND (i.referenceName > :afterValue OR i.id > :afterId)"
+        + " ORDER BY i.referenceName ASC , i.id ASC"));
+    assertThat(builder.getParameters(), hasEntry(AFTER_VALUE, cursor.getValue()));
+    assertThat(builder.getParameters(), hasEntry(AFTER_ID, cursor.getId()));
+  }
+
+  @Test
+  public void shouldSeekBackwardsIfSortIsDescending() throws Exception {
+    when(pageable.getSort()).thenReturn(new Sort(Sort.Direction.DESC, REFERENCE_NAME));
+    KeysetCursor cursor = new KeysetCursor("fridge", UUID.randomUUID());
+
+    String sql = new InventoryItemQueryBuilder(null, null, null, pageable, false)
+        .after(cursor)
+        .build();
+
+    assertThat(sql, equalTo(SELECT_SQL
+        + " WHERE i.referenceName <= :afterValue"
+        + " AND (i.referenceName < :afterValue OR i.id < :afterId)"
+        + " ORDER BY i.referenceName DESC , i.id DESC"));
+  }
+}
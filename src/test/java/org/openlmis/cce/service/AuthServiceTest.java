@@ -0,0 +1,197 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableMap;
+import java.net.URI;
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestOperations;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AuthServiceTest {
+  private static final String TOKEN = "token";
+  private static final String NEW_TOKEN = "new-token";
+  private static final int EXPIRES_IN = 3600;
+
+  @Mock
+  private RestOperations restTemplate;
+
+  @Mock
+  private Clock clock;
+
+  @InjectMocks
+  private AuthService authService;
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(authService, "restTemplate", restTemplate);
+    ReflectionTestUtils.setField(authService, "clientId", "client");
+    ReflectionTestUtils.setField(authService, "clientSecret", "secret");
+    ReflectionTestUtils.setField(authService, "authorizationUrl", "http://localhost/token");
+    when(clock.millis()).thenReturn(0L);
+  }
+
+  @Test
+  public void shouldReuseTokenUntilShortlyBeforeItExpires() {
+    mockTokenResponse(TOKEN, NEW_TOKEN);
+
+    assertThat(authService.obtainAccessToken(), is(TOKEN));
+
+    when(clock.millis()).thenReturn(EXPIRES_IN * 1000L - 60_001);
+    assertThat(authService.obtainAccessToken(), is(TOKEN));
+
+    when(clock.millis()).thenReturn(EXPIRES_IN * 1000L - 60_000);
+    assertThat(authService.obtainAccessToken(), is(NEW_TOKEN));
+
+    verifyTokenRequests(2);
+    assertThat(authService.getStatistics().getRevalidations(), is(2L));
+    assertThat(authService.getStatistics().getHits(), is(1L));
+  }
+
+  @Test
+  public void shouldNotReuseTokenWithoutExpirationTime() {
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+        eq(Object.class)))
+        .thenReturn(ResponseEntity.ok(ImmutableMap.of("access_token", TOKEN)));
+
+    authService.obtainAccessToken();
+    authService.obtainAccessToken();
+
+    verifyTokenRequests(2);
+  }
+
+  @Test
+  public void shouldFetchNewTokenAfterInvalidation() {
+    mockTokenResponse(TOKEN, NEW_TOKEN);
+
+    authService.obtainAccessToken();
+    authService.invalidateAccessToken(TOKEN);
+
+    assertThat(authService.obtainAccessToken(), is(NEW_TOKEN));
+    assertThat(authService.getStatistics().getInvalidations(), is(1L));
+  }
+
+  @Test
+  public void shouldNotInvalidateTokenThatHasAlreadyBeenReplaced() {
+    mockTokenResponse(TOKEN, NEW_TOKEN);
+
+    authService.obtainAccessToken();
+    authService.invalidateAccessToken(NEW_TOKEN);
+
+    assertThat(authService.obtainAccessToken(), is(TOKEN));
+    assertThat(authService.getStatistics().getInvalidations(), is(0L));
+  }
+
+  @Test
+  public void shouldRetryRequestWithNewTokenIfTokenWasRejected() {
+    mockTokenResponse(TOKEN, NEW_TOKEN);
+
+    String result = authService.withAccessToken(token -> {
+      if (TOKEN.equals(token)) {
+        throw new HttpClientErrorException(HttpStatus.UNAUTHORIZED);
+      }
+
+      return token;
+    });
+
+    assertThat(result, is(NEW_TOKEN));
+    verifyTokenRequests(2);
+  }
+
+  @Test(expected = HttpClientErrorException.class)
+  public void shouldNotRetryRequestForOtherErrors() {
+    mockTokenResponse(TOKEN, NEW_TOKEN);
+
+    try {
+      authService.withAccessToken(token -> {
+        throw new HttpClientErrorException(HttpStatus.FORBIDDEN);
+      });
+    } finally {
+      verifyTokenRequests(1);
+    }
+  }
+
+  @Test
+  public void shouldFetchTokenOnceForConcurrentCallers() throws Exception {
+    CountDownLatch latch = new CountDownLatch(1);
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+        eq(Object.class)))
+        .thenAnswer(invocation -> {
+          latch.await(5, TimeUnit.SECONDS);
+          return ResponseEntity.ok(ImmutableMap.of("access_token", TOKEN,
+              "expires_in", EXPIRES_IN));
+        });
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<String>> results = IntStream
+        .range(0, 4)
+        .mapToObj(idx -> (Callable<String>) authService::obtainAccessToken)
+        .map(executor::submit)
+        .collect(Collectors.toList());
+
+    latch.countDown();
+
+    for (Future<String> result : results) {
+      assertThat(result.get(5, TimeUnit.SECONDS), is(TOKEN));
+    }
+
+    executor.shutdown();
+    verifyTokenRequests(1);
+  }
+
+  private void mockTokenResponse(String token, String nextToken) {
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+        eq(Object.class)))
+        .thenReturn(ResponseEntity.ok(ImmutableMap.of("access_token", token,
+            "expires_in", EXPIRES_IN)))
+        .thenReturn(ResponseEntity.ok(ImmutableMap.of("access_token", nextToken,
+            "expires_in", EXPIRES_IN)));
+  }
+
+  private void verifyTokenRequests(int count) {
+    verify(restTemplate, times(count)).exchange(any(URI.class), eq(HttpMethod.POST),
+        any(HttpEntity.class), eq(Object.class));
+  }
+}
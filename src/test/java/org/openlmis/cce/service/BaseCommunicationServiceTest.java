@@ -23,9 +23,13 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.when;
 import static org.springframework.http.HttpHeaders.AUTHORIZATION;
 
+import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.UUID;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import lombok.Getter;
 import org.junit.Before;
 import org.junit.runner.RunWith;
@@ -36,9 +40,15 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.openlmis.cce.util.DynamicPageTypeReference;
 import org.openlmis.cce.util.PageImplRepresentation;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
 import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestOperations;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -57,6 +67,9 @@ public abstract class BaseCommunicationServiceTest {
   @Captor
   private ArgumentCaptor<HttpEntity> entityCaptor;
 
+  @Captor
+  private ArgumentCaptor<RequestCallback> callbackCaptor;
+
   @Mock
   @Getter
   private ResponseEntity entityResponse;
@@ -72,7 +85,8 @@ public abstract class BaseCommunicationServiceTest {
   @Before
   public void setUp() throws Exception {
     initService(restClient, authService);
-    when(authService.obtainAccessToken()).thenReturn(TOKEN);
+    when(authService.withAccessToken(any(Function.class))).thenAnswer(invocation ->
+        ((Function<String, ?>) invocation.getArguments()[0]).apply(TOKEN));
   }
 
   protected abstract void initService(RestOperations restClient, AuthService authService);
@@ -98,6 +112,20 @@ public abstract class BaseCommunicationServiceTest {
         .thenReturn(pageResponse);
   }
 
+  protected void mockStreamRequest(HttpMethod method, HttpStatus status, HttpHeaders headers,
+                                   String body) {
+    when(restClient.execute(uriCaptor.capture(), eq(method), callbackCaptor.capture(),
+        any(ResponseExtractor.class)))
+        .thenAnswer(invocation -> {
+          MockClientHttpResponse response = new MockClientHttpResponse(
+              body.getBytes(StandardCharsets.UTF_8), status);
+          response.getHeaders().putAll(headers);
+
+          ResponseExtractor extractor = (ResponseExtractor) invocation.getArguments()[3];
+          return extractor.extractData(response);
+        });
+  }
+
   void mockRestClientThrowException(HttpStatusCodeException exp) {
     when(restClient
         .exchange(uriCaptor.capture(), any(HttpMethod.class),
@@ -121,6 +149,10 @@ public abstract class BaseCommunicationServiceTest {
     return uriCaptor.getValue();
   }
 
+  protected List<URI> getUris() {
+    return uriCaptor.getAllValues();
+  }
+
   protected HttpEntity getEntity() {
     HttpEntity entity = entityCaptor.getValue();
     assertThat(entity.getHeaders(), hasEntry(AUTHORIZATION, of(getTokenHeader())));
@@ -128,6 +160,16 @@ public abstract class BaseCommunicationServiceTest {
     return entity;
   }
 
+  protected HttpHeaders getRequestHeaders() throws IOException {
+    MockClientHttpRequest request = new MockClientHttpRequest();
+    callbackCaptor.getValue().doWithRequest(request);
+
+    HttpHeaders headers = request.getHeaders();
+    assertThat(headers, hasEntry(AUTHORIZATION, of(getTokenHeader())));
+
+    return headers;
+  }
+
   String getTokenHeader() {
     return "Bearer " + TOKEN;
   }
@@ -27,8 +27,11 @@ import static org.openlmis.cce.service.PermissionService.CCE_INVENTORY_VIEW;
 
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.javers.common.collections.Sets;
 import org.junit.Before;
 import org.junit.Test;
@@ -39,12 +42,18 @@ import org.openlmis.cce.InventoryItemDataBuilder;
 import org.openlmis.cce.InventoryItemSearchParamsDataBuilder;
 import org.openlmis.cce.domain.InventoryItem;
 import org.openlmis.cce.dto.PermissionStringDto;
+import org.openlmis.cce.dto.PermissionStringIndex;
+import org.openlmis.cce.exception.ValidationMessageException;
 import org.openlmis.cce.repository.InventoryItemRepository;
+import org.openlmis.cce.util.KeysetCursor;
+import org.openlmis.cce.util.KeysetPage;
 import org.openlmis.cce.util.Pagination;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 public class InventoryItemServiceTest {
+  private static final int FETCH_SIZE = 100;
 
   @Mock
   private InventoryItemRepository repository;
@@ -74,7 +83,7 @@ public class InventoryItemServiceTest {
 
     userId = UUID.randomUUID();
     PermissionStrings.Handler handler = mock(PermissionStrings.Handler.class);
-    when(handler.get()).thenReturn(permissionStrings);
+    when(handler.get()).thenAnswer(invocation -> PermissionStringIndex.of(permissionStrings));
     when(permissionService.getPermissionStrings(userId)).thenReturn(handler);
 
     inventoryItem = new InventoryItemDataBuilder().build();
@@ -100,6 +109,7 @@ public class InventoryItemServiceTest {
         eq(Collections.singleton(facilityId)),
         eq(Sets.asSet(programId2)),
         eq(params.getFunctionalStatus()),
+        eq(true),
         eq(pageable)
     )).thenReturn(expectedPage);
 
@@ -134,6 +144,7 @@ public class InventoryItemServiceTest {
         eq(Sets.asSet(facilityId1, facilityId2)),
         eq(Sets.asSet(programId1, programId2)),
         eq(null),
+        eq(true),
         eq(pageable)
     )).thenReturn(expectedPage);
 
@@ -161,6 +172,7 @@ public class InventoryItemServiceTest {
         eq(Collections.singleton(facilityId)),
         eq(Sets.asSet(programId1)),
         eq(params.getFunctionalStatus()),
+        eq(true),
         eq(pageable)
     )).thenReturn(expectedPage);
 
@@ -169,18 +181,194 @@ public class InventoryItemServiceTest {
     assertEquals(expectedPage, page);
   }
 
+  @Test
+  public void searchShouldUseKeysetPaginationIfCursorIsGiven() {
+    UUID facilityId = UUID.randomUUID();
+    UUID programId = UUID.randomUUID();
+    addPermission(CCE_INVENTORY_VIEW, facilityId, programId);
+
+    KeysetCursor cursor = new KeysetCursor("fridge", UUID.randomUUID());
+    InventoryItemSearchParams params = new InventoryItemSearchParamsDataBuilder()
+        .withFacilityId(facilityId)
+        .withProgramId(programId)
+        .withAfter(cursor.encode())
+        .build();
+    when(pageable.getSort()).thenReturn(new Sort("referenceName"));
+
+    KeysetPage<InventoryItem> expectedKeysetPage = new KeysetPage<>(
+        Collections.singletonList(inventoryItem), pageable, 1, null, false);
+    when(repository.search(
+        eq(Collections.singleton(facilityId)),
+        eq(Sets.asSet(programId)),
+        eq(params.getFunctionalStatus()),
+        eq(true),
+        eq(cursor),
+        eq(pageable)
+    )).thenReturn(expectedKeysetPage);
+
+    Page<InventoryItem> page = service.search(userId, params, pageable);
+
+    assertEquals(expectedKeysetPage, page);
+  }
+
+  @Test
+  public void searchShouldPassWithoutTotalFlagToRepository() {
+    UUID facilityId = UUID.randomUUID();
+    UUID programId = UUID.randomUUID();
+    addPermission(CCE_INVENTORY_VIEW, facilityId, programId);
+
+    InventoryItemSearchParams params = new InventoryItemSearchParamsDataBuilder()
+        .withFacilityId(facilityId)
+        .withProgramId(programId)
+        .withoutTotal()
+        .build();
+
+    when(repository.search(
+        eq(Collections.singleton(facilityId)),
+        eq(Sets.asSet(programId)),
+        eq(params.getFunctionalStatus()),
+        eq(false),
+        eq(pageable)
+    )).thenReturn(expectedPage);
+
+    Page<InventoryItem> page = service.search(userId, params, pageable);
+
+    assertEquals(expectedPage, page);
+  }
+
+  @Test(expected = ValidationMessageException.class)
+  public void searchShouldNotAllowKeysetPaginationForOtherSorts() {
+    UUID facilityId = UUID.randomUUID();
+    UUID programId = UUID.randomUUID();
+    addPermission(CCE_INVENTORY_VIEW, facilityId, programId);
+
+    InventoryItemSearchParams params = new InventoryItemSearchParamsDataBuilder()
+        .withFacilityId(facilityId)
+        .withProgramId(programId)
+        .withAfter("")
+        .build();
+    when(pageable.getSort()).thenReturn(new Sort("type"));
+
+    service.search(userId, params, pageable);
+  }
+
   @Test(expected = Exception.class)
   public void searchShouldThrowExceptionForMissingPageable() {
     when(repository.search(
         any(),
         any(),
         any(),
+        any(Boolean.class),
         eq(null)
     )).thenThrow(new Exception());
 
     service.search(userId, params, null);
   }
 
+  @Test
+  public void shouldStreamItemsUserHasRightFor() {
+    UUID facilityId = UUID.randomUUID();
+
+    UUID programId1 = UUID.randomUUID();
+    addPermission(CCE_INVENTORY_VIEW, facilityId, programId1);
+
+    UUID programId2 = UUID.randomUUID();
+    addPermission(CCE_INVENTORY_EDIT, facilityId, programId2);
+
+    InventoryItemSearchParams params = new InventoryItemSearchParamsDataBuilder()
+        .withFacilityId(facilityId)
+        .withoutProgramId()
+        .build();
+
+    when(repository.streamAll(
+        eq(Collections.singleton(facilityId)),
+        eq(Sets.asSet(programId1)),
+        eq(params.getFunctionalStatus()),
+        eq(FETCH_SIZE)
+    )).thenReturn(Stream.of(inventoryItem));
+
+    List<InventoryItem> items = service.streamAll(userId, params, FETCH_SIZE)
+        .collect(Collectors.toList());
+
+    assertEquals(Collections.singletonList(inventoryItem), items);
+  }
+
+  @Test
+  public void shouldStreamNothingIfUserHasNoRights() {
+    InventoryItemSearchParams params = new InventoryItemSearchParamsDataBuilder().build();
+
+    assertEquals(0, service.streamAll(userId, params, FETCH_SIZE).count());
+    verifyZeroInteractions(repository);
+  }
+
+  @Test
+  public void shouldReturnEmptyPageIfUserHasNoRightForRequestedFacility() {
+    addPermission(CCE_INVENTORY_VIEW, UUID.randomUUID(), UUID.randomUUID());
+
+    InventoryItemSearchParams params = new InventoryItemSearchParamsDataBuilder()
+        .withFacilityId(UUID.randomUUID())
+        .withoutProgramId()
+        .build();
+
+    Page<InventoryItem> page = service.search(userId, params, pageable);
+
+    assertEquals(Pagination.getPage(emptyList(), pageable), page);
+    verifyZeroInteractions(repository);
+  }
+
+  @Test
+  public void shouldStreamNothingIfUserHasNoRightForRequestedFacility() {
+    addPermission(CCE_INVENTORY_VIEW, UUID.randomUUID(), UUID.randomUUID());
+
+    InventoryItemSearchParams params = new InventoryItemSearchParamsDataBuilder()
+        .withFacilityId(UUID.randomUUID())
+        .withoutProgramId()
+        .build();
+
+    assertEquals(0, service.streamAll(userId, params, FETCH_SIZE).count());
+    verifyZeroInteractions(repository);
+  }
+
+  @Test
+  public void shouldStreamNothingIfUserHasNoRightForRequestedProgram() {
+    addPermission(CCE_INVENTORY_VIEW, UUID.randomUUID(), UUID.randomUUID());
+
+    InventoryItemSearchParams params = new InventoryItemSearchParamsDataBuilder()
+        .withoutFacilityId()
+        .withProgramId(UUID.randomUUID())
+        .build();
+
+    assertEquals(0, service.streamAll(userId, params, FETCH_SIZE).count());
+    verifyZeroInteractions(repository);
+  }
+
+  @Test
+  public void shouldStreamOnlyFacilitiesGrantedForRequestedProgram() {
+    UUID facilityId1 = UUID.randomUUID();
+    UUID facilityId2 = UUID.randomUUID();
+    UUID programId1 = UUID.randomUUID();
+    UUID programId2 = UUID.randomUUID();
+    addPermission(CCE_INVENTORY_VIEW, facilityId1, programId1);
+    addPermission(CCE_INVENTORY_VIEW, facilityId2, programId2);
+
+    InventoryItemSearchParams params = new InventoryItemSearchParamsDataBuilder()
+        .withoutFacilityId()
+        .withProgramId(programId1)
+        .build();
+
+    when(repository.streamAll(
+        eq(Collections.singleton(facilityId1)),
+        eq(Collections.singleton(programId1)),
+        eq(params.getFunctionalStatus()),
+        eq(FETCH_SIZE)
+    )).thenReturn(Stream.of(inventoryItem));
+
+    List<InventoryItem> items = service.streamAll(userId, params, FETCH_SIZE)
+        .collect(Collectors.toList());
+
+    assertEquals(Collections.singletonList(inventoryItem), items);
+  }
+
   @Test(expected = Exception.class)
   public void shouldThrowExceptionForMissingSearchParams() {
     service.search(userId, null, pageable);
@@ -15,38 +15,76 @@
 
 package org.openlmis.cce.service;
 
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.openlmis.cce.domain.FunctionalStatus;
+import org.openlmis.cce.domain.OutboxEvent;
 import org.openlmis.cce.dto.InventoryItemDto;
-import org.openlmis.cce.service.notifier.NonfunctionalCceNotifier;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @RunWith(MockitoJUnitRunner.class)
 public class InventoryStatusProcessorTest {
+  private static final UUID EVENT_ID = UUID.randomUUID();
+  private static final ZonedDateTime NOW = ZonedDateTime.now();
 
   @Mock
-  private NonfunctionalCceNotifier nonfunctionalCceNotifier;
+  private OutboxService outboxService;
 
   @InjectMocks
   private InventoryStatusProcessor inventoryStatusProcessor;
 
   private InventoryItemDto inventoryItem = mock(InventoryItemDto.class);
 
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(inventoryStatusProcessor, "poolSize", 1);
+    ReflectionTestUtils.setField(inventoryStatusProcessor, "queueCapacity", 1);
+    ReflectionTestUtils.setField(inventoryStatusProcessor, "submitTimeout", 10L);
+    ReflectionTestUtils.setField(inventoryStatusProcessor, "shutdownTimeout", 1000L);
+    inventoryStatusProcessor.init();
+
+    when(outboxService.addFunctionalStatusChange(inventoryItem))
+        .thenReturn(createEvent(NOW));
+  }
+
+  @After
+  public void tearDown() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
   @Test
   public void shouldNotifyWhenItemNeedsRepair() {
     when(inventoryItem.getFunctionalStatus()).thenReturn(FunctionalStatus.AWAITING_REPAIR);
 
     inventoryStatusProcessor.functionalStatusChange(inventoryItem);
+    inventoryStatusProcessor.shutdown();
 
-    verify(nonfunctionalCceNotifier).notify(inventoryItem);
+    verify(outboxService).addFunctionalStatusChange(inventoryItem);
+    verify(outboxService).deliver(EVENT_ID);
   }
 
   @Test
@@ -54,8 +92,10 @@ public class InventoryStatusProcessorTest {
     when(inventoryItem.getFunctionalStatus()).thenReturn(FunctionalStatus.UNSERVICEABLE);
 
     inventoryStatusProcessor.functionalStatusChange(inventoryItem);
+    inventoryStatusProcessor.shutdown();
 
-    verify(nonfunctionalCceNotifier).notify(inventoryItem);
+    verify(outboxService).addFunctionalStatusChange(inventoryItem);
+    verify(outboxService).deliver(EVENT_ID);
   }
 
   @Test
@@ -63,7 +103,97 @@ public class InventoryStatusProcessorTest {
     when(inventoryItem.getFunctionalStatus()).thenReturn(FunctionalStatus.FUNCTIONING);
 
     inventoryStatusProcessor.functionalStatusChange(inventoryItem);
+    inventoryStatusProcessor.shutdown();
+
+    verify(outboxService, never()).addFunctionalStatusChange(inventoryItem);
+    verify(outboxService, never()).deliver(any(UUID.class));
+  }
+
+  @Test
+  public void shouldDeliverOnlyAfterTransactionCommits() {
+    when(inventoryItem.getFunctionalStatus()).thenReturn(FunctionalStatus.AWAITING_REPAIR);
+    TransactionSynchronizationManager.initSynchronization();
+
+    inventoryStatusProcessor.functionalStatusChange(inventoryItem);
+    verify(outboxService).addFunctionalStatusChange(inventoryItem);
+    verify(outboxService, never()).deliver(EVENT_ID);
+
+    TransactionSynchronizationManager.getSynchronizations()
+        .forEach(TransactionSynchronization::afterCommit);
+    inventoryStatusProcessor.shutdown();
+
+    verify(outboxService).deliver(EVENT_ID);
+  }
+
+  @Test
+  public void shouldDeliverDigestWindowWhenItCloses() {
+    when(inventoryItem.getFunctionalStatus()).thenReturn(FunctionalStatus.AWAITING_REPAIR);
+    when(outboxService.addFunctionalStatusChange(inventoryItem))
+        .thenReturn(createEvent(NOW.plusNanos(100_000_000)));
+    when(outboxService.deliverDue()).thenReturn(true, false);
+
+    inventoryStatusProcessor.functionalStatusChange(inventoryItem);
+    verify(outboxService, never()).deliverDue();
+
+    verify(outboxService, timeout(5000).times(2)).deliverDue();
+    inventoryStatusProcessor.shutdown();
+
+    verify(outboxService, never()).deliver(any(UUID.class));
+    assertThat(inventoryStatusProcessor.getStatistics().getCompleted(), is(1L));
+  }
+
+  @Test
+  public void shouldNotDeliverStatusChangesThatJoinedDigestWindow() {
+    when(inventoryItem.getFunctionalStatus()).thenReturn(FunctionalStatus.AWAITING_REPAIR);
+    when(outboxService.addFunctionalStatusChange(inventoryItem)).thenReturn(null);
+
+    inventoryStatusProcessor.functionalStatusChange(inventoryItem);
+    inventoryStatusProcessor.shutdown();
+
+    verify(outboxService, never()).deliver(any(UUID.class));
+    verify(outboxService, never()).deliverDue();
+  }
+
+  @Test
+  public void shouldCountFailedDeliveries() {
+    when(inventoryItem.getFunctionalStatus()).thenReturn(FunctionalStatus.AWAITING_REPAIR);
+    when(outboxService.deliver(EVENT_ID)).thenThrow(new IllegalStateException());
+
+    inventoryStatusProcessor.functionalStatusChange(inventoryItem);
+    inventoryStatusProcessor.shutdown();
+
+    assertThat(inventoryStatusProcessor.getStatistics().getFailed(), is(1L));
+  }
+
+  @Test
+  public void shouldLeaveStatusChangesToPollerWhenQueueStaysFull() throws Exception {
+    when(inventoryItem.getFunctionalStatus()).thenReturn(FunctionalStatus.AWAITING_REPAIR);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      started.countDown();
+      release.await();
+      return true;
+    }).when(outboxService).deliver(EVENT_ID);
+
+    inventoryStatusProcessor.functionalStatusChange(inventoryItem);
+    assertThat(started.await(1, TimeUnit.SECONDS), is(true));
+    inventoryStatusProcessor.functionalStatusChange(inventoryItem);
+    inventoryStatusProcessor.functionalStatusChange(inventoryItem);
+
+    assertThat(inventoryStatusProcessor.getStatistics().getQueueDepth(), is(1));
+    assertThat(inventoryStatusProcessor.getStatistics().getRejected(), is(1L));
+
+    release.countDown();
+    inventoryStatusProcessor.shutdown();
+    verify(outboxService, times(3)).addFunctionalStatusChange(inventoryItem);
+    verify(outboxService, times(2)).deliver(EVENT_ID);
+  }
 
-    verify(nonfunctionalCceNotifier, never()).notify(inventoryItem);
+  private OutboxEvent createEvent(ZonedDateTime deliveryDate) {
+    OutboxEvent event = OutboxEvent.newInstance(OutboxService.FUNCTIONAL_STATUS_CHANGE, "{}",
+        NOW, deliveryDate);
+    event.setId(EVENT_ID);
+    return event;
   }
-}
\ No newline at end of file
+}
@@ -20,6 +20,9 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.net.URI;
@@ -27,7 +30,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
 import org.javers.common.collections.Lists;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
@@ -38,8 +43,10 @@ import org.openlmis.cce.service.dto.ExpandedObjectReferenceDto;
 import org.openlmis.cce.service.dto.TestDto;
 import org.openlmis.cce.service.dto.TestDtoDataBuilder;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 
 @SuppressWarnings("PMD.UnusedPrivateField")
@@ -49,6 +56,7 @@ public class ObjReferenceExpanderTest {
   private static final List<String> EXPANDED_LIST_VALUE = Lists.asList("element1", "element2");
   private static final UUID EXPANDED_UUID_VALUE = UUID.randomUUID();
   private static final String EXPANDED_OBJECT_REFERENCE_DTO_FIELD = "expandedObjectReferenceDto";
+  private static final String ACCESS_TOKEN = "token";
 
   @Mock
   private AuthService authService;
@@ -64,10 +72,17 @@ public class ObjReferenceExpanderTest {
   @Before
   public void setUp() {
     MockitoAnnotations.initMocks(this);
+    when(authService.withAccessToken(any(Function.class))).thenAnswer(invocation ->
+        ((Function<String, ?>) invocation.getArguments()[0]).apply(ACCESS_TOKEN));
     objReferenceExpander.registerConverters(); // This is normally called by Spring's @PostConstruct
     testDto = new TestDtoDataBuilder().buildDtoWithObjectReferenceNotExpanded();
   }
 
+  @After
+  public void tearDown() {
+    objReferenceExpander.shutdown();
+  }
+
   @Test(expected = ValidationMessageException.class)
   public void shouldThrowExceptionIfExpandedFieldIsNotObjectReferenceDto() {
     objReferenceExpander.expandDto(testDto, Lists.asList("uuidProperty"));
@@ -128,4 +143,53 @@ public class ObjReferenceExpanderTest {
     assertNotNull(actual.getExpandedUuidProperty());
     assertEquals(EXPANDED_UUID_VALUE, actual.getExpandedUuidProperty());
   }
+
+  @Test
+  public void shouldRetrieveEachReferencedResourceOnlyOnce() {
+    Map<String, Object> responseMap = new HashMap<>();
+    responseMap.put("expandedStringProperty", EXPANDED_STRING_VALUE);
+
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.GET), any(RequestEntity.class),
+        eq(Map.class))).thenReturn(ResponseEntity.ok(responseMap));
+
+    TestDto other = new TestDtoDataBuilder().buildDtoWithObjectReferenceNotExpanded();
+    // the data builder uses the same href for all DTOs
+    TestDto same = new TestDtoDataBuilder().buildDtoWithObjectReferenceNotExpanded();
+    other.getExpandedObjectReferenceDto().setHref(
+        testDto.getExpandedObjectReferenceDto().getHref() + "/other");
+
+    objReferenceExpander.expandDtos(Lists.asList(testDto, same, other),
+        Lists.asList(EXPANDED_OBJECT_REFERENCE_DTO_FIELD));
+
+    verify(restTemplate, times(2)).exchange(any(URI.class), eq(HttpMethod.GET),
+        any(RequestEntity.class), eq(Map.class));
+
+    assertEquals(EXPANDED_STRING_VALUE,
+        testDto.getExpandedObjectReferenceDto().getExpandedStringProperty());
+    assertEquals(EXPANDED_STRING_VALUE,
+        same.getExpandedObjectReferenceDto().getExpandedStringProperty());
+    assertEquals(EXPANDED_STRING_VALUE,
+        other.getExpandedObjectReferenceDto().getExpandedStringProperty());
+  }
+
+  @Test(expected = DataRetrievalException.class)
+  public void shouldRethrowErrorOfConcurrentRetrieval() {
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.GET), any(RequestEntity.class),
+        eq(Map.class))).thenThrow(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR));
+
+    TestDto other = new TestDtoDataBuilder().buildDtoWithObjectReferenceNotExpanded();
+    other.getExpandedObjectReferenceDto().setHref(
+        testDto.getExpandedObjectReferenceDto().getHref() + "/other");
+
+    objReferenceExpander.expandDtos(Lists.asList(testDto, other),
+        Lists.asList(EXPANDED_OBJECT_REFERENCE_DTO_FIELD));
+  }
+
+  @Test
+  public void shouldNotRetrieveAnythingIfThereIsNothingToExpand() {
+    objReferenceExpander.expandDtos(Lists.asList(testDto), null);
+
+    verify(restTemplate, never()).exchange(any(URI.class), any(HttpMethod.class),
+        any(RequestEntity.class), eq(Map.class));
+  }
 }
@@ -0,0 +1,314 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.cce.domain.FunctionalStatus;
+import org.openlmis.cce.domain.OutboxEvent;
+import org.openlmis.cce.dto.InventoryItemDto;
+import org.openlmis.cce.dto.ObjectReferenceDto;
+import org.openlmis.cce.repository.OutboxEventRepository;
+import org.openlmis.cce.service.notifier.NonfunctionalCceNotifier;
+import org.openlmis.cce.service.notifier.NotificationResult;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OutboxServiceTest {
+  private static final ZonedDateTime NOW = ZonedDateTime.of(2026, 10, 17, 12, 0, 0, 0,
+      ZoneOffset.UTC);
+  private static final long INITIAL_DELAY = 1000;
+  private static final long MAX_DELAY = 5000;
+  private static final long LEASE = 60000;
+
+  @Mock
+  private OutboxEventRepository outboxEventRepository;
+
+  @Mock
+  private NonfunctionalCceNotifier nonfunctionalCceNotifier;
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  @InjectMocks
+  private OutboxService outboxService;
+
+  private InventoryItemDto inventoryItem;
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(outboxService, "objectMapper",
+        new ObjectMapper().findAndRegisterModules());
+    ReflectionTestUtils.setField(outboxService, "clock",
+        Clock.fixed(Instant.from(NOW), ZoneOffset.UTC));
+    ReflectionTestUtils.setField(outboxService, "batchSize", 2);
+    ReflectionTestUtils.setField(outboxService, "initialRetryDelay", INITIAL_DELAY);
+    ReflectionTestUtils.setField(outboxService, "maxRetryDelay", MAX_DELAY);
+    ReflectionTestUtils.setField(outboxService, "maxAttempts", 3);
+    ReflectionTestUtils.setField(outboxService, "lease", LEASE);
+    ReflectionTestUtils.setField(outboxService, "failedRetention", MAX_DELAY);
+
+    inventoryItem = new InventoryItemDto();
+    inventoryItem.setId(UUID.randomUUID());
+    inventoryItem.setFacility(
+        ObjectReferenceDto.create(UUID.randomUUID(), "http://localhost", "facilities"));
+    inventoryItem.setFunctionalStatus(FunctionalStatus.AWAITING_REPAIR);
+    inventoryItem.setModifiedDate(NOW);
+
+    when(outboxEventRepository.save(any(OutboxEvent.class)))
+        .thenAnswer(invocation -> invocation.getArguments()[0]);
+    when(nonfunctionalCceNotifier.notify(anyListOf(InventoryItemDto.class), anyList()))
+        .thenAnswer(invocation -> getResults(invocation.getArguments()[0]));
+  }
+
+  @Test
+  public void shouldAddStatusChangeThatCanBeDelivered() {
+    ArgumentCaptor<OutboxEvent> captor = ArgumentCaptor.forClass(OutboxEvent.class);
+    outboxService.addFunctionalStatusChange(inventoryItem);
+    verify(outboxEventRepository).save(captor.capture());
+
+    OutboxEvent event = captor.getValue();
+    assertThat(event.getNextAttemptDate(), is(NOW));
+    when(outboxEventRepository.claimDue(NOW, 2)).thenReturn(Collections.singletonList(event));
+
+    assertThat(outboxService.deliverDue(), is(false));
+
+    InventoryItemDto delivered = getNotifiedItems().get(0);
+    assertThat(delivered.getId(), is(inventoryItem.getId()));
+    assertThat(delivered.getFacilityId(), is(inventoryItem.getFacilityId()));
+    assertThat(delivered.getFunctionalStatus(), is(FunctionalStatus.AWAITING_REPAIR));
+    assertThat(event.isDelivered(), is(true));
+    assertThat(event.getAttempts(), is(1));
+  }
+
+  @Test
+  public void shouldNotDeliverEventClaimedElsewhere() {
+    UUID eventId = UUID.randomUUID();
+
+    assertThat(outboxService.deliver(eventId), is(false));
+
+    verify(nonfunctionalCceNotifier, never()).notify(anyListOf(InventoryItemDto.class), anyList());
+  }
+
+  @Test
+  public void shouldRetryFailedDeliveryWithBackoff() throws Exception {
+    OutboxEvent event = createEvent();
+    when(nonfunctionalCceNotifier.notify(anyListOf(InventoryItemDto.class), anyList()))
+        .thenAnswer(invocation -> getResults(invocation.getArguments()[0], 0));
+
+    outboxService.deliver(event.getId());
+    assertThat(event.getNextAttemptDate(), is(NOW.plusNanos(INITIAL_DELAY * 1_000_000)));
+
+    outboxService.deliver(event.getId());
+    assertThat(event.getNextAttemptDate(), is(NOW.plusNanos(2 * INITIAL_DELAY * 1_000_000)));
+
+    outboxService.deliver(event.getId());
+    assertThat(event.getNextAttemptDate(), is(nullValue()));
+    assertThat(event.isDelivered(), is(false));
+    assertThat(event.isFailed(), is(true));
+    assertThat(event.getFailedDate(), is(NOW));
+    assertThat(event.getAttempts(), is(3));
+  }
+
+  @Test
+  public void shouldClaimEventsAndRecordOutcomeInSeparateTransactions() throws Exception {
+    OutboxEvent event = createEvent();
+    doAnswer(invocation -> {
+      assertThat(event.getClaimedUntil(), is(NOW.plusNanos(LEASE * 1_000_000)));
+      verify(transactionManager).commit(any(TransactionStatus.class));
+      return getResults(invocation.getArguments()[0]);
+    }).when(nonfunctionalCceNotifier).notify(anyListOf(InventoryItemDto.class), anyList());
+
+    outboxService.deliver(event.getId());
+
+    verify(transactionManager, times(2)).commit(any(TransactionStatus.class));
+    assertThat(event.isDelivered(), is(true));
+    assertThat(event.getClaimedUntil(), is(nullValue()));
+  }
+
+  @Test
+  public void shouldNotNotifyRecipientsAgainAfterPartialFailure() throws Exception {
+    OutboxEvent event = createEvent();
+    UUID notified = UUID.randomUUID();
+    when(nonfunctionalCceNotifier.notify(anyListOf(InventoryItemDto.class), anyList()))
+        .thenAnswer(invocation -> {
+          NotificationResult result = new NotificationResult();
+          result.addNotifiedRecipient(notified);
+          result.fail(new IllegalStateException("unavailable"));
+          return Collections.singletonList(result);
+        });
+
+    outboxService.deliver(event.getId());
+
+    assertThat(event.isDelivered(), is(false));
+    assertThat(event.getNotifiedRecipients(), contains(notified));
+
+    when(nonfunctionalCceNotifier.notify(anyListOf(InventoryItemDto.class), anyList()))
+        .thenAnswer(invocation -> getResults(invocation.getArguments()[0]));
+
+    outboxService.deliver(event.getId());
+
+    assertThat(event.isDelivered(), is(true));
+    assertThat(getNotifiedRecipients(2).get(1), is(Collections.singletonList(
+        Collections.singleton(notified))));
+  }
+
+  @Test
+  public void shouldRecordOutcomesOfOtherEventsIfClaimOfOneWasLost() throws Exception {
+    OutboxEvent lost = createEvent();
+    OutboxEvent delivered = createEvent();
+    when(outboxEventRepository.claimDue(NOW, 2)).thenReturn(Arrays.asList(lost, delivered));
+    when(outboxEventRepository.save(lost))
+        .thenReturn(lost)
+        .thenThrow(new ObjectOptimisticLockingFailureException(OutboxEvent.class, lost.getId()));
+
+    outboxService.deliverDue();
+
+    verify(outboxEventRepository, times(2)).save(lost);
+    verify(outboxEventRepository, times(2)).save(delivered);
+    verify(transactionManager).rollback(any(TransactionStatus.class));
+  }
+
+  @Test
+  public void shouldPurgeFailedEventsAfterRetention() {
+    when(outboxEventRepository.deleteFailedBefore(NOW.minusNanos(MAX_DELAY * 1_000_000)))
+        .thenReturn(2);
+
+    assertThat(outboxService.purgeFailed(), is(2));
+  }
+
+  @Test
+  public void shouldReportFullBatch() throws Exception {
+    List<OutboxEvent> events = Arrays.asList(createEvent(), createEvent());
+    when(outboxEventRepository.claimDue(NOW, 2)).thenReturn(events);
+
+    assertThat(outboxService.deliverDue(), is(true));
+    assertThat(getNotifiedItems().size(), is(2));
+  }
+
+  @Test
+  public void shouldRetryOnlyEventsThatCouldNotBeDelivered() throws Exception {
+    OutboxEvent delivered = createEvent();
+    OutboxEvent failed = createEvent();
+    when(outboxEventRepository.claimDue(NOW, 2)).thenReturn(Arrays.asList(delivered, failed));
+    when(nonfunctionalCceNotifier.notify(anyListOf(InventoryItemDto.class), anyList()))
+        .thenAnswer(invocation -> getResults(invocation.getArguments()[0], 1));
+
+    outboxService.deliverDue();
+
+    assertThat(delivered.isDelivered(), is(true));
+    assertThat(failed.isDelivered(), is(false));
+    assertThat(failed.isFailed(), is(false));
+    assertThat(failed.getNextAttemptDate(), is(NOW.plusNanos(INITIAL_DELAY * 1_000_000)));
+  }
+
+  @Test
+  public void shouldDelayStatusChangesUntilDigestWindowCloses() {
+    ReflectionTestUtils.setField(outboxService, "digestWindow", MAX_DELAY);
+    ZonedDateTime windowEnd = NOW.plusSeconds(1);
+    when(outboxEventRepository.findOpenWindowEnd(OutboxService.FUNCTIONAL_STATUS_CHANGE, NOW))
+        .thenReturn(null, windowEnd);
+
+    OutboxEvent opening = outboxService.addFunctionalStatusChange(inventoryItem);
+    assertThat(opening.getNextAttemptDate(), is(NOW.plusNanos(MAX_DELAY * 1_000_000)));
+    assertThat(outboxService.addFunctionalStatusChange(inventoryItem), is(nullValue()));
+
+    ArgumentCaptor<OutboxEvent> captor = ArgumentCaptor.forClass(OutboxEvent.class);
+    verify(outboxEventRepository, times(2)).save(captor.capture());
+    assertThat(captor.getAllValues().get(0).getNextAttemptDate(),
+        is(NOW.plusNanos(MAX_DELAY * 1_000_000)));
+    assertThat(captor.getAllValues().get(1).getNextAttemptDate(), is(windowEnd));
+    verify(outboxEventRepository, times(2)).lockWindows(OutboxService.FUNCTIONAL_STATUS_CHANGE);
+  }
+
+  @Test
+  public void shouldNotRetryEventsThatCannotBeRead() {
+    OutboxEvent event = OutboxEvent.newInstance(OutboxService.FUNCTIONAL_STATUS_CHANGE,
+        "not json", NOW);
+    event.setId(UUID.randomUUID());
+    when(outboxEventRepository.claim(event.getId(), NOW)).thenReturn(event);
+
+    outboxService.deliver(event.getId());
+
+    verify(nonfunctionalCceNotifier, never()).notify(anyListOf(InventoryItemDto.class), anyList());
+    assertThat(event.getNextAttemptDate(), is(nullValue()));
+    assertThat(event.isFailed(), is(true));
+    assertThat(event.getAttempts(), is(1));
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<InventoryItemDto> getNotifiedItems() {
+    ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+    verify(nonfunctionalCceNotifier).notify(captor.capture(), anyList());
+    return captor.getValue();
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<List> getNotifiedRecipients(int times) {
+    ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+    verify(nonfunctionalCceNotifier, times(times))
+        .notify(anyListOf(InventoryItemDto.class), captor.capture());
+    return captor.getAllValues();
+  }
+
+  private List<NotificationResult> getResults(Object items, int... failed) {
+    List<NotificationResult> results = new ArrayList<>();
+    ((List<?>) items).forEach(item -> results.add(new NotificationResult()));
+    for (int index : failed) {
+      results.get(index).fail(new IllegalStateException("unavailable"));
+    }
+    return results;
+  }
+
+  private OutboxEvent createEvent() throws Exception {
+    OutboxEvent event = OutboxEvent.newInstance(OutboxService.FUNCTIONAL_STATUS_CHANGE,
+        new ObjectMapper().findAndRegisterModules().writeValueAsString(inventoryItem), NOW);
+    event.setId(UUID.randomUUID());
+    when(outboxEventRepository.claim(event.getId(), NOW)).thenReturn(event);
+    return event;
+  }
+}
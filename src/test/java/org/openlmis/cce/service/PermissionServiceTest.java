@@ -35,6 +35,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.openlmis.cce.domain.InventoryItem;
 import org.openlmis.cce.dto.PermissionStringDto;
+import org.openlmis.cce.dto.PermissionStringIndex;
 import org.openlmis.cce.dto.UserDto;
 import org.openlmis.cce.exception.PermissionMessageException;
 import org.openlmis.cce.util.AuthenticationHelper;
@@ -83,6 +84,7 @@ public class PermissionServiceTest {
     when(authenticationHelper.getCurrentUser()).thenReturn(user);
     when(user.getId()).thenReturn(userId);
     when(permissionStrings.forUser(userId)).thenReturn(handler);
+    when(handler.get()).thenReturn(PermissionStringIndex.builder().build());
 
     ReflectionTestUtils.setField(permissionService, "serviceTokenClientId", SERVICE_CLIENT_ID);
     ReflectionTestUtils.setField(permissionService, "apiKeyPrefix", API_KEY_PREFIX);
@@ -238,7 +240,7 @@ public class PermissionServiceTest {
 
   private void stubHasRight(String rightName, UUID programId, UUID faciliyId) {
     PermissionStringDto permission = PermissionStringDto.create(rightName, faciliyId, programId);
-    when(handler.get()).thenReturn(Collections.singleton(permission));
+    when(handler.get()).thenReturn(PermissionStringIndex.of(Collections.singleton(permission)));
   }
 
 }
@@ -15,71 +15,113 @@
 
 package org.openlmis.cce.service;
 
-import static java.util.Collections.singletonList;
 import static org.apache.commons.lang3.RandomStringUtils.random;
 import static org.hamcrest.Matchers.equalTo;
-import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.lang.reflect.Field;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.time.Clock;
 import java.util.UUID;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
-import org.openlmis.cce.dto.PermissionStringDto;
+import org.openlmis.cce.dto.PermissionStringIndex;
 import org.openlmis.cce.service.referencedata.UserReferenceDataService;
+import org.springframework.test.util.ReflectionTestUtils;
 
 @RunWith(MockitoJUnitRunner.class)
 public class PermissionStringsTest {
-  private static final String HANDLERS_FIELD_NAME = "handlers";
   private static final UUID USER = UUID.randomUUID();
+  private static final long FRESHNESS = 1000;
+  private static final long STALE_WHILE_REVALIDATE = 5000;
+  private static final long MAX_USERS = 2;
+  private static final long EXPIRE_AFTER_ACCESS = 60000;
 
   @Mock
   private UserReferenceDataService userReferenceDataService;
 
+  @Mock
+  private Clock clock;
+
   @InjectMocks
   private PermissionStrings permissionStrings;
 
   @Mock
-  private ServiceResponse<List<String>> response;
+  private ServiceResponse<PermissionStringIndex> response;
 
-  @Test
-  public void shouldCreateHandlerIfNotExist() throws Exception {
-    Field handlers = PermissionStrings.class.getDeclaredField(HANDLERS_FIELD_NAME);
-    handlers.setAccessible(true);
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(permissionStrings, "refreshExecutor",
+        MoreExecutors.newDirectExecutorService());
+    ReflectionTestUtils.setField(permissionStrings, "maxUsers", MAX_USERS);
+    ReflectionTestUtils.setField(permissionStrings, "expireAfterAccess", EXPIRE_AFTER_ACCESS);
+    permissionStrings.init();
+  }
 
-    Map map = (Map) handlers.get(permissionStrings);
-    assertThat(map.size(), is(0));
+  @Test
+  public void shouldCreateHandlerIfNotExist() {
+    assertThat(permissionStrings.getUserCount(), is(0L));
 
     PermissionStrings.Handler handler = permissionStrings.forUser(USER);
 
     assertThat(handler, is(notNullValue()));
-
-    map = (Map) handlers.get(permissionStrings);
-    assertThat(map.size(), is(1));
+    assertThat(permissionStrings.getUserCount(), is(1L));
   }
 
   @Test
-  public void shouldNotRecreateHandler() throws Exception {
-    Field handlers = PermissionStrings.class.getDeclaredField(HANDLERS_FIELD_NAME);
-    handlers.setAccessible(true);
-
-    permissionStrings.forUser(USER);
+  public void shouldNotRecreateHandler() {
+    PermissionStrings.Handler handler = permissionStrings.forUser(USER);
     permissionStrings.forUser(USER);
     permissionStrings.forUser(USER);
+
+    assertThat(permissionStrings.forUser(USER), is(sameInstance(handler)));
+    assertThat(permissionStrings.getUserCount(), is(1L));
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedHandlerIfThereAreTooManyUsers() {
+    UUID other = UUID.randomUUID();
+    PermissionStrings.Handler handler = permissionStrings.forUser(USER);
+
+    permissionStrings.forUser(other);
     permissionStrings.forUser(USER);
+    permissionStrings.forUser(UUID.randomUUID());
 
-    Map map = (Map) handlers.get(permissionStrings);
-    assertThat(map.size(), is(1));
+    assertThat(permissionStrings.getUserCount(), is(MAX_USERS));
+    assertThat(permissionStrings.getEvictionCount(), is(1L));
+    assertThat(permissionStrings.forUser(USER), is(sameInstance(handler)));
+  }
+
+  @Test
+  public void shouldEvictIdleHandlers() {
+    when(clock.millis()).thenReturn(0L);
+    PermissionStrings.Handler handler = permissionStrings.forUser(USER);
+
+    when(clock.millis()).thenReturn(EXPIRE_AFTER_ACCESS);
+
+    assertThat(permissionStrings.forUser(USER), is(not(sameInstance(handler))));
+    assertThat(permissionStrings.getEvictionCount(), is(1L));
+  }
+
+  @Test
+  public void shouldCountPermissionStringsKeptInMemory() {
+    mockResponse(random(5));
+    permissionStrings.forUser(USER).get();
+    permissionStrings.forUser(UUID.randomUUID());
+
+    assertThat(permissionStrings.getUserCount(), is(2L));
+    assertThat(permissionStrings.getPermissionStringCount(), is(1L));
   }
 
   @Test
@@ -91,19 +133,19 @@ public class PermissionStringsTest {
     when(userReferenceDataService.getPermissionStrings(USER, null)).thenReturn(response);
     when(response.isModified()).thenReturn(true);
     when(response.getETag()).thenReturn(etag);
-    when(response.getBody()).thenReturn(singletonList(random(5)));
-    Set<PermissionStringDto> one = handler.get();
+    when(response.getBody()).thenReturn(index(random(5)));
+    PermissionStringIndex one = handler.get();
 
-    assertThat(one, hasSize(1));
+    assertThat(one.size(), is(1));
 
     // here handler should have etag and should use it
     when(userReferenceDataService.getPermissionStrings(USER, null))
         .thenThrow(new IllegalArgumentException());
     when(userReferenceDataService.getPermissionStrings(USER, etag)).thenReturn(response);
-    when(response.getBody()).thenReturn(singletonList(random(5)));
-    Set<PermissionStringDto> two = handler.get();
+    when(response.getBody()).thenReturn(index(random(5)));
+    PermissionStringIndex two = handler.get();
 
-    assertThat(two, hasSize(1));
+    assertThat(two.size(), is(1));
 
     assertThat(one, is(not(equalTo(two))));
   }
@@ -117,20 +159,136 @@ public class PermissionStringsTest {
     when(userReferenceDataService.getPermissionStrings(USER, null)).thenReturn(response);
     when(response.isModified()).thenReturn(true);
     when(response.getETag()).thenReturn(etag);
-    when(response.getBody()).thenReturn(singletonList(random(5)));
-    Set<PermissionStringDto> one = handler.get();
+    when(response.getBody()).thenReturn(index(random(5)));
+    PermissionStringIndex one = handler.get();
 
-    assertThat(one, hasSize(1));
+    assertThat(one.size(), is(1));
 
     // here handler should have etag and should use it
     when(userReferenceDataService.getPermissionStrings(USER, null))
         .thenThrow(new IllegalArgumentException());
     when(userReferenceDataService.getPermissionStrings(USER, etag)).thenReturn(response);
     when(response.isModified()).thenReturn(false);
-    Set<PermissionStringDto> two = handler.get();
+    PermissionStringIndex two = handler.get();
 
-    assertThat(two, hasSize(1));
+    assertThat(two.size(), is(1));
 
     assertThat(one, is(equalTo(two)));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void shouldNotCallReferenceDataIfPermissionStringsAreFresh() {
+    enableCache();
+    PermissionStrings.Handler handler = permissionStrings.forUser(USER);
+    mockResponse(random(5));
+
+    when(clock.millis()).thenReturn(0L);
+    PermissionStringIndex one = handler.get();
+
+    when(clock.millis()).thenReturn(FRESHNESS - 1);
+    PermissionStringIndex two = handler.get();
+
+    assertThat(one, is(equalTo(two)));
+    verify(userReferenceDataService, times(1)).getPermissionStrings(USER, null);
+    assertThat(permissionStrings.getStatistics().getMisses(), is(1L));
+    assertThat(permissionStrings.getStatistics().getHits(), is(1L));
+    assertThat(permissionStrings.getStatistics().getRevalidations(), is(1L));
+  }
+
+  @Test
+  public void shouldReturnStalePermissionStringsAndRefreshThemInBackground() {
+    enableCache();
+    PermissionStrings.Handler handler = permissionStrings.forUser(USER);
+    String etag = mockResponse(random(5));
+
+    when(clock.millis()).thenReturn(0L);
+    PermissionStringIndex one = handler.get();
+
+    when(userReferenceDataService.getPermissionStrings(USER, etag)).thenReturn(response);
+    when(response.getBody()).thenReturn(index(random(5)));
+    when(clock.millis()).thenReturn(FRESHNESS);
+    PermissionStringIndex two = handler.get();
+
+    assertThat(two, is(equalTo(one)));
+    verify(userReferenceDataService).getPermissionStrings(USER, etag);
+
+    PermissionStringIndex three = handler.get();
+
+    assertThat(three, is(not(equalTo(one))));
+    assertThat(permissionStrings.getStatistics().getStaleHits(), is(1L));
+    assertThat(permissionStrings.getStatistics().getHits(), is(1L));
+    assertThat(permissionStrings.getStatistics().getRevalidations(), is(2L));
+  }
+
+  @Test
+  public void shouldWaitForReferenceDataIfPermissionStringsAreTooOld() {
+    enableCache();
+    PermissionStrings.Handler handler = permissionStrings.forUser(USER);
+    String etag = mockResponse(random(5));
+
+    when(clock.millis()).thenReturn(0L);
+    PermissionStringIndex one = handler.get();
+
+    when(userReferenceDataService.getPermissionStrings(USER, etag)).thenReturn(response);
+    when(response.getBody()).thenReturn(index(random(5)));
+    when(clock.millis()).thenReturn(FRESHNESS + STALE_WHILE_REVALIDATE);
+    PermissionStringIndex two = handler.get();
+
+    assertThat(two, is(not(equalTo(one))));
+    assertThat(permissionStrings.getStatistics().getMisses(), is(2L));
+    assertThat(permissionStrings.getStatistics().getStaleHits(), is(0L));
+  }
+
+  @Test
+  public void shouldKeepStalePermissionStringsIfBackgroundRefreshFailed() {
+    enableCache();
+    PermissionStrings.Handler handler = permissionStrings.forUser(USER);
+    String etag = mockResponse(random(5));
+
+    when(clock.millis()).thenReturn(0L);
+    PermissionStringIndex one = handler.get();
+
+    when(userReferenceDataService.getPermissionStrings(USER, etag))
+        .thenThrow(new IllegalStateException());
+    when(clock.millis()).thenReturn(FRESHNESS);
+    PermissionStringIndex two = handler.get();
+
+    assertThat(two, is(equalTo(one)));
+    assertThat(permissionStrings.getStatistics().getFailures(), is(1L));
+  }
+
+  @Test
+  public void shouldNotUseCacheIfFreshnessWindowsAreNotSet() {
+    PermissionStrings.Handler handler = permissionStrings.forUser(USER);
+    when(userReferenceDataService.getPermissionStrings(any(UUID.class), any()))
+        .thenReturn(response);
+    when(response.isModified()).thenReturn(true);
+    when(response.getBody()).thenReturn(index(random(5)));
+
+    handler.get();
+    handler.get();
+
+    verify(userReferenceDataService, times(2)).getPermissionStrings(any(UUID.class), any());
+  }
+
+  private void enableCache() {
+    ReflectionTestUtils.setField(permissionStrings, "freshness", FRESHNESS);
+    ReflectionTestUtils.setField(permissionStrings, "staleWhileRevalidate",
+        STALE_WHILE_REVALIDATE);
+  }
+
+  private String mockResponse(String permissionString) {
+    String etag = random(5);
+
+    when(userReferenceDataService.getPermissionStrings(USER, null)).thenReturn(response);
+    when(response.isModified()).thenReturn(true);
+    when(response.getETag()).thenReturn(etag);
+    when(response.getBody()).thenReturn(index(permissionString));
+
+    return etag;
+  }
+
+  private PermissionStringIndex index(String permissionString) {
+    return PermissionStringIndex.builder().add(permissionString).build();
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.util.function.Supplier;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.cce.util.CacheStatistics;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ResourceCacheTest {
+  private static final String KEY = "key";
+  private static final String VALUE = "value";
+  private static final long TTL = 1000;
+  private static final long NOT_FOUND_TTL = 100;
+
+  @Mock
+  private Clock clock;
+
+  @Mock
+  private Supplier<String> loader;
+
+  private ResourceCache<String, String> cache;
+
+  @Before
+  public void setUp() {
+    when(clock.millis()).thenReturn(0L);
+    cache = new ResourceCache<>(TTL, NOT_FOUND_TTL, 10, clock, new CacheStatistics());
+  }
+
+  @Test
+  public void shouldServeResourceFromCacheUntilItExpires() {
+    when(loader.get()).thenReturn(VALUE);
+
+    assertThat(cache.get(KEY, loader), is(VALUE));
+    when(clock.millis()).thenReturn(TTL - 1);
+    assertThat(cache.get(KEY, loader), is(VALUE));
+    verify(loader, times(1)).get();
+
+    when(clock.millis()).thenReturn(TTL);
+    assertThat(cache.get(KEY, loader), is(VALUE));
+    verify(loader, times(2)).get();
+  }
+
+  @Test
+  public void shouldRememberMissingResourceForShorterTime() {
+    assertThat(cache.get(KEY, loader), is(nullValue()));
+    when(clock.millis()).thenReturn(NOT_FOUND_TTL - 1);
+    assertThat(cache.get(KEY, loader), is(nullValue()));
+    verify(loader, times(1)).get();
+
+    when(loader.get()).thenReturn(VALUE);
+    when(clock.millis()).thenReturn(NOT_FOUND_TTL);
+    assertThat(cache.get(KEY, loader), is(VALUE));
+    verify(loader, times(2)).get();
+  }
+
+  @Test
+  public void shouldRetrieveResourceAgainAfterInvalidation() {
+    when(loader.get()).thenReturn(VALUE);
+
+    cache.get(KEY, loader);
+    cache.invalidate(KEY);
+    cache.get(KEY, loader);
+    cache.invalidateAll();
+    cache.get(KEY, loader);
+
+    verify(loader, times(3)).get();
+    assertThat(cache.getStatistics().getInvalidations(), is(2L));
+  }
+
+  @Test
+  public void shouldNotCacheFailures() {
+    when(loader.get())
+        .thenThrow(new HttpServerErrorException(HttpStatus.BAD_GATEWAY))
+        .thenReturn(VALUE);
+
+    try {
+      cache.get(KEY, loader);
+    } catch (HttpServerErrorException exp) {
+      // expected
+    }
+
+    assertThat(cache.getStatistics().getFailures(), is(1L));
+    assertThat(cache.get(KEY, loader), is(VALUE));
+    verify(loader, times(2)).get();
+  }
+
+  @Test
+  public void shouldReportHitRatio() {
+    when(loader.get()).thenReturn(VALUE);
+
+    for (int i = 0; i < 4; ++i) {
+      cache.get(KEY, loader);
+    }
+
+    CacheStatistics statistics = cache.getStatistics();
+    assertThat(statistics.getHits(), is(3L));
+    assertThat(statistics.getMisses(), is(1L));
+    assertThat(statistics.getHitRatio(), is(closeTo(0.75, 0.001)));
+  }
+
+  @Test
+  public void shouldAlwaysAskLoaderIfDisabled() {
+    cache = ResourceCache.disabled();
+    when(loader.get()).thenReturn(VALUE);
+
+    cache.get(KEY, loader);
+    cache.get(KEY, loader);
+
+    verify(loader, times(2)).get();
+    assertThat(cache.size(), is(0L));
+  }
+}
@@ -26,11 +26,13 @@ import static org.springframework.http.HttpHeaders.AUTHORIZATION;
 
 import com.google.common.collect.ImmutableList;
 import java.net.URI;
+import java.time.Clock;
 import java.util.List;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.openlmis.cce.dto.BaseDto;
+import org.openlmis.cce.util.CacheStatistics;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
@@ -74,6 +76,28 @@ public abstract class ResourceCommunicationServiceTest<T extends BaseDto>
     assertThat(entity.getBody(), is(nullValue()));
   }
 
+  @Test
+  public void shouldServeFoundResourceFromCache() throws Exception {
+    // given
+    ResourceCommunicationService<T> service = getService();
+    service.setCache(new ResourceCache<>(1000, 100, 10, Clock.systemUTC(),
+        new CacheStatistics()));
+    T instance = generateInstance();
+
+    // when
+    mockEntityRequest(HttpMethod.GET, getResultClass(service));
+    mockEntityResponse(response -> when(response.getBody()).thenReturn(instance));
+
+    T found = service.findOne(instance.getId());
+    T cached = service.findOne(instance.getId());
+
+    // then
+    assertThat(found, equalTo(instance));
+    assertThat(cached, equalTo(instance));
+    assertThat(getUris(), hasSize(1));
+    assertThat(service.getCacheStatistics().getHits(), is(1L));
+  }
+
   @Test
   public void shouldReturnNullIfEntityNotFound() throws Exception {
     // given
@@ -0,0 +1,170 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.cce.service.referencedata.FacilityReferenceDataService;
+import org.openlmis.cce.util.CacheStatistics;
+import org.openlmis.cce.util.ConnectionPoolStatistics;
+import org.openlmis.cce.util.ExecutorStatistics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ServiceMetricsTest {
+
+  @Mock
+  private PermissionStrings permissionStrings;
+
+  @Mock
+  private AuthService authService;
+
+  @Mock
+  private ConnPoolControl<HttpRoute> connectionPool;
+
+  @Mock
+  private ObjReferenceExpander objReferenceExpander;
+
+  @Mock
+  private InventoryStatusProcessor inventoryStatusProcessor;
+
+  private ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(10));
+
+  @InjectMocks
+  private ServiceMetrics serviceMetrics;
+
+  @Before
+  public void setUp() {
+    when(permissionStrings.getStatistics()).thenReturn(new CacheStatistics());
+    when(authService.getStatistics()).thenReturn(new CacheStatistics());
+    when(connectionPool.getTotalStats()).thenReturn(new PoolStats(2, 1, 3, 20));
+    ReflectionTestUtils.setField(serviceMetrics, "connectionPoolStatistics",
+        new ConnectionPoolStatistics(connectionPool));
+    ReflectionTestUtils.setField(serviceMetrics, "referenceDataServices",
+        Collections.singletonList(new FacilityReferenceDataService()));
+    when(objReferenceExpander.getCacheStatistics()).thenReturn(new CacheStatistics());
+    when(inventoryStatusProcessor.getStatistics()).thenReturn(new ExecutorStatistics(executor));
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void shouldPublishPermissionStringCacheStatistics() {
+    CacheStatistics statistics = new CacheStatistics();
+    statistics.recordHit();
+    statistics.recordMiss();
+    statistics.recordRevalidation(40);
+    when(permissionStrings.getStatistics()).thenReturn(statistics);
+
+    Map<String, Number> metrics = getMetrics();
+
+    assertThat(metrics.get("cache.permissionStrings.hits")).isEqualTo(1L);
+    assertThat(metrics.get("cache.permissionStrings.misses")).isEqualTo(1L);
+    assertThat(metrics.get("cache.permissionStrings.hitRatio")).isEqualTo(0.5);
+    assertThat(metrics.get("cache.permissionStrings.maxRefreshTime")).isEqualTo(40L);
+  }
+
+  @Test
+  public void shouldPublishPermissionStringRegistryFootprint() {
+    when(permissionStrings.getUserCount()).thenReturn(3L);
+    when(permissionStrings.getPermissionStringCount()).thenReturn(120L);
+    when(permissionStrings.getEvictionCount()).thenReturn(2L);
+
+    Map<String, Number> metrics = getMetrics();
+
+    assertThat(metrics.get("cache.permissionStrings.users")).isEqualTo(3L);
+    assertThat(metrics.get("cache.permissionStrings.permissionStrings")).isEqualTo(120L);
+    assertThat(metrics.get("cache.permissionStrings.evictions")).isEqualTo(2L);
+  }
+
+  @Test
+  public void shouldPublishAccessTokenCacheStatistics() {
+    CacheStatistics statistics = new CacheStatistics();
+    statistics.recordHit();
+    statistics.recordInvalidation();
+    when(authService.getStatistics()).thenReturn(statistics);
+
+    Map<String, Number> metrics = getMetrics();
+
+    assertThat(metrics.get("cache.accessToken.hits")).isEqualTo(1L);
+    assertThat(metrics.get("cache.accessToken.invalidations")).isEqualTo(1L);
+  }
+
+  @Test
+  public void shouldPublishConnectionPoolStatistics() {
+    Map<String, Number> metrics = getMetrics();
+
+    assertThat(metrics.get("http.pool.leased")).isEqualTo(2);
+    assertThat(metrics.get("http.pool.pending")).isEqualTo(1);
+    assertThat(metrics.get("http.pool.available")).isEqualTo(3);
+    assertThat(metrics.get("http.pool.max")).isEqualTo(20);
+  }
+
+  @Test
+  public void shouldPublishReferenceDataCacheStatistics() {
+    CacheStatistics statistics = new CacheStatistics();
+    statistics.recordStaleHit();
+    when(objReferenceExpander.getCacheStatistics()).thenReturn(statistics);
+
+    Map<String, Number> metrics = getMetrics();
+
+    assertThat(metrics.get("cache.referencedata.facilities.hits")).isEqualTo(0L);
+    assertThat(metrics.get("cache.references.staleHits")).isEqualTo(1L);
+  }
+
+  @Test
+  public void shouldPublishStatusChangeExecutorStatistics() {
+    ExecutorStatistics statistics = new ExecutorStatistics(executor);
+    statistics.recordRejected();
+    when(inventoryStatusProcessor.getStatistics()).thenReturn(statistics);
+
+    Map<String, Number> metrics = getMetrics();
+
+    assertThat(metrics.get("executor.statusChanges.queueDepth")).isEqualTo(0);
+    assertThat(metrics.get("executor.statusChanges.queueCapacity")).isEqualTo(10);
+    assertThat(metrics.get("executor.statusChanges.rejected")).isEqualTo(1L);
+  }
+
+  private Map<String, Number> getMetrics() {
+    Collection<Metric<?>> metrics = serviceMetrics.metrics();
+    return metrics
+        .stream()
+        .collect(Collectors.toMap(Metric::getName, Metric::getValue));
+  }
+}
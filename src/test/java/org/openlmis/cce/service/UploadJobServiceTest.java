@@ -0,0 +1,240 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.cce.domain.UploadJob;
+import org.openlmis.cce.domain.UploadJobStatus;
+import org.openlmis.cce.exception.ValidationMessageException;
+import org.openlmis.cce.i18n.MessageService;
+import org.openlmis.cce.repository.UploadJobRepository;
+import org.openlmis.cce.util.Message;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UploadJobServiceTest {
+  private static final String ERROR_KEY = "test.failure";
+  private static final String ERROR = "Test failure";
+
+  @Mock
+  private UploadJobRepository uploadJobRepository;
+
+  @Mock
+  private MessageService messageService;
+
+  @InjectMocks
+  private UploadJobService uploadJobService;
+
+  private UUID jobId = UUID.randomUUID();
+  private Path file;
+
+  @Before
+  public void setUp() throws IOException {
+    ReflectionTestUtils.setField(uploadJobService, "poolSize", 1);
+    ReflectionTestUtils.setField(uploadJobService, "lease", 60000L);
+    uploadJobService.init();
+
+    file = Files.createTempFile("upload-job-service-test-", ".csv");
+
+    Message message = new Message(ERROR_KEY);
+    when(messageService.localize(any(Message.class)))
+        .thenReturn(message.new LocalizedMessage(ERROR));
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    uploadJobService.shutdown();
+    Files.deleteIfExists(file);
+  }
+
+  @Test
+  public void shouldSaveJobAndRunItInBackground() throws IOException {
+    when(uploadJobRepository.save(any(UploadJob.class))).thenAnswer(invocation -> {
+      UploadJob job = (UploadJob) invocation.getArguments()[0];
+      job.setId(jobId);
+      return job;
+    });
+    MockMultipartFile multipartFile = new MockMultipartFile("file", "catalog.csv", "text/csv",
+        new ByteArrayInputStream("header".getBytes(StandardCharsets.UTF_8)));
+
+    UploadJob job = uploadJobService.submit(multipartFile, (input, listener) -> 0);
+
+    assertThat(job.getId(), is(jobId));
+    assertThat(job.getFileName(), is("catalog.csv"));
+    assertThat(job.getStatus(), is(UploadJobStatus.PENDING));
+    verify(uploadJobRepository, timeout(5000))
+        .markFinished(eq(jobId), eq(UploadJobStatus.COMPLETED), any(ZonedDateTime.class));
+  }
+
+  @Test
+  public void shouldFailJobsThatWereNotStartedBeforeShutdown() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    UUID queuedJobId = UUID.randomUUID();
+    when(uploadJobRepository.save(any(UploadJob.class)))
+        .thenAnswer(invocation -> setId(invocation.getArguments()[0], jobId))
+        .thenAnswer(invocation -> setId(invocation.getArguments()[0], queuedJobId));
+
+    uploadJobService.submit(newMultipartFile(), (input, listener) -> {
+      started.countDown();
+      await(release);
+      return 0;
+    });
+    started.await();
+    uploadJobService.submit(newMultipartFile(), (input, listener) -> 0);
+
+    uploadJobService.shutdown();
+    release.countDown();
+
+    verify(uploadJobRepository).markFinished(eq(queuedJobId), eq(UploadJobStatus.FAILED),
+        any(ZonedDateTime.class), eq(ERROR));
+    verify(uploadJobRepository, never()).markStarted(eq(queuedJobId),
+        any(UploadJobStatus.class), any(ZonedDateTime.class));
+  }
+
+  @Test
+  public void shouldRenewLeasesOfActiveJobsOnly() throws Exception {
+    when(uploadJobRepository.save(any(UploadJob.class)))
+        .thenAnswer(invocation -> setId(invocation.getArguments()[0], jobId));
+    CountDownLatch release = new CountDownLatch(1);
+
+    uploadJobService.renewLeases();
+    verify(uploadJobRepository, never()).renewLeases(anyCollectionOf(UUID.class),
+        anyCollectionOf(UploadJobStatus.class), any(ZonedDateTime.class));
+
+    uploadJobService.submit(newMultipartFile(), (input, listener) -> {
+      await(release);
+      return 0;
+    });
+    uploadJobService.renewLeases();
+    release.countDown();
+
+    verify(uploadJobRepository).renewLeases(eq(Collections.singletonList(jobId)),
+        anyCollectionOf(UploadJobStatus.class), any(ZonedDateTime.class));
+  }
+
+  @Test
+  public void shouldFailJobsWithExpiredLease() {
+    when(uploadJobRepository.markExpired(anyCollectionOf(UploadJobStatus.class),
+        eq(UploadJobStatus.FAILED), any(ZonedDateTime.class), eq(ERROR))).thenReturn(2);
+
+    assertThat(uploadJobService.failExpired(), is(2));
+  }
+
+  @Test
+  public void shouldSaveProgressAndCompleteJob() {
+    uploadJobService.run(jobId, file, (input, listener) -> {
+      listener.chunkRead(2);
+      listener.chunkWritten(2);
+      listener.chunkRead(1);
+      listener.chunkFailed(1, new ValidationMessageException(ERROR_KEY));
+      return 3;
+    });
+
+    verify(uploadJobRepository)
+        .markStarted(eq(jobId), eq(UploadJobStatus.RUNNING), any(ZonedDateTime.class));
+    verify(uploadJobRepository).addRowsRead(jobId, 2);
+    verify(uploadJobRepository).addRowsRead(jobId, 1);
+    verify(uploadJobRepository).addRowsWritten(jobId, 2);
+    verify(uploadJobRepository).addRowsFailed(jobId, 1, ERROR);
+    verify(uploadJobRepository)
+        .markFinished(eq(jobId), eq(UploadJobStatus.COMPLETED), any(ZonedDateTime.class));
+    assertThat(Files.exists(file), is(false));
+  }
+
+  @Test
+  public void shouldFailJobIfFileCouldNotBeUploaded() {
+    uploadJobService.run(jobId, file, (input, listener) -> {
+      throw new ValidationMessageException(ERROR_KEY);
+    });
+
+    verify(uploadJobRepository)
+        .markFinished(eq(jobId), eq(UploadJobStatus.FAILED), any(ZonedDateTime.class), eq(ERROR));
+    verify(uploadJobRepository, never())
+        .markFinished(eq(jobId), eq(UploadJobStatus.COMPLETED), any(ZonedDateTime.class));
+    assertThat(Files.exists(file), is(false));
+  }
+
+  @Test
+  public void shouldFailJobWithMessageOfUnexpectedError() {
+    uploadJobService.run(jobId, file, (input, listener) -> {
+      throw new IOException("stream closed");
+    });
+
+    verify(uploadJobRepository).markFinished(eq(jobId), eq(UploadJobStatus.FAILED),
+        any(ZonedDateTime.class), eq("stream closed"));
+    verify(messageService, never()).localize(any(Message.class));
+    verify(uploadJobRepository, never()).addRowsFailed(any(UUID.class), eq(0), anyString());
+  }
+
+  @Test
+  public void shouldRemoveFileIfJobCouldNotBeStarted() {
+    when(uploadJobRepository.markStarted(eq(jobId), eq(UploadJobStatus.RUNNING),
+        any(ZonedDateTime.class))).thenThrow(new IllegalStateException("database is down"));
+
+    uploadJobService.run(jobId, file, (input, listener) -> 0);
+
+    verify(uploadJobRepository).markFinished(eq(jobId), eq(UploadJobStatus.FAILED),
+        any(ZonedDateTime.class), eq("database is down"));
+    assertThat(Files.exists(file), is(false));
+  }
+
+  private MockMultipartFile newMultipartFile() {
+    return new MockMultipartFile("file", "catalog.csv", "text/csv",
+        "header".getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException exp) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(exp);
+    }
+  }
+
+  private UploadJob setId(Object job, UUID id) {
+    ((UploadJob) job).setId(id);
+    return (UploadJob) job;
+  }
+}
@@ -18,17 +18,21 @@ package org.openlmis.cce.service.notifier;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Matchers.contains;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.openlmis.cce.i18n.InventoryItemMessageKeys.EMAIL_NONFUNCTIONAL_CCE_CONTENT;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.EMAIL_NONFUNCTIONAL_CCE_DIGEST_CONTENT;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.EMAIL_NONFUNCTIONAL_CCE_DIGEST_ITEM;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.EMAIL_NONFUNCTIONAL_CCE_DIGEST_SUBJECT;
 import static org.openlmis.cce.i18n.InventoryItemMessageKeys.EMAIL_NONFUNCTIONAL_CCE_SUBJECT;
 import static org.openlmis.cce.service.PermissionService.CCE_INVENTORY_EDIT;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import java.text.MessageFormat;
 import java.time.ZonedDateTime;
@@ -36,15 +40,18 @@ import java.time.chrono.Chronology;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.time.format.FormatStyle;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
+import java.util.stream.Collectors;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
@@ -64,8 +71,7 @@ import org.openlmis.cce.service.referencedata.FacilityReferenceDataService;
 import org.openlmis.cce.service.referencedata.RightReferenceDataService;
 import org.openlmis.cce.service.referencedata.SupervisoryNodeReferenceDataService;
 import org.openlmis.cce.service.referencedata.UserReferenceDataService;
-import org.openlmis.cce.util.Message;
-import org.springframework.context.i18n.LocaleContextHolder;
+import org.openlmis.cce.util.MessageTemplate;
 import org.springframework.test.util.ReflectionTestUtils;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -81,7 +87,6 @@ public class NonfunctionalCceNotifierTest {
       + "this device was made by user ${saveUser} at ${saveDate}.\n"
       + "Please login to view the list of non-functioning CCE needing attention"
       + "at this facility. ${urlToViewCceList}";
-  private static final String TEST_KEY = "testKey";
   private static final String FACILITY_NAME = "some-facility";
   private static final String EQUIPMENT_TYPE = "eq-type";
   private static final String REFERENCE_NAME = "some-name";
@@ -94,6 +99,9 @@ public class NonfunctionalCceNotifierTest {
   private static final ReasonNotWorkingOrNotInUse REASON_NOT_WORKING_OR_NOT_IN_USE =
       ReasonNotWorkingOrNotInUse.DEAD;
   private static final ZonedDateTime MODIFIED_DATE = ZonedDateTime.now();
+  private static final UUID USER_ID_1 = UUID.randomUUID();
+  private static final UUID USER_ID_2 = UUID.randomUUID();
+  private static final Locale DEFAULT_LOCALE = Locale.GERMANY;
 
   @Mock
   private FacilityReferenceDataService facilityReferenceDataService;
@@ -145,18 +153,25 @@ public class NonfunctionalCceNotifierTest {
     mockUsers(Collections.singletonList(user));
     mockMessages();
     ReflectionTestUtils.setField(notifier, "urlToViewCce", URL_TO_VIEW_CCE);
+    ReflectionTestUtils.setField(notifier, "defaultLocale", DEFAULT_LOCALE);
+    when(user.getId()).thenReturn(USER_ID_1);
+    when(user2.getId()).thenReturn(USER_ID_2);
+    when(notificationService.notify(anyCollectionOf(NotificationDto.class)))
+        .thenAnswer(invocation -> ((Collection<NotificationDto>) invocation.getArguments()[0])
+            .stream()
+            .collect(Collectors.toMap(NotificationDto::getUserId, notification -> true)));
   }
 
   @Test
   public void shouldNotifyWithCorrectSubject() {
     notifier.notify(inventoryItem);
 
-    verify(notificationService).notify(
-        eq(user),
-        eq(String.format("Attention: %s \"%s\" at facility %s on %s is %s",
+    NotificationDto notification = getSingleNotification();
+    assertThat(notification.getUserId()).isEqualTo(USER_ID_1);
+    assertThat(getEmail(notification).getSubject()).isEqualTo(
+        String.format("Attention: %s \"%s\" at facility %s on %s is %s",
             EQUIPMENT_TYPE, REFERENCE_NAME, FACILITY_NAME,
-            getDateTimeFormatter().format(MODIFIED_DATE), FUNCTIONAL_STATUS)),
-        any());
+            getDateTimeFormatter().format(MODIFIED_DATE), FUNCTIONAL_STATUS));
   }
 
   @Test
@@ -165,10 +180,8 @@ public class NonfunctionalCceNotifierTest {
 
     String urlToViewCCe = MessageFormat.format(
         URL_TO_VIEW_CCE, inventoryItem.getFacilityId(), inventoryItem.getProgramId(), "true");
-    verify(notificationService).notify(
-        eq(user),
-        any(),
-        eq(String.format("Dear %s:\n"
+    assertThat(getEmail(getSingleNotification()).getBody()).isEqualTo(
+        String.format("Dear %s:\n"
                 + "This email is to inform you that the %s \"%s\" at %s is has been marked as %s"
                 + " with the reason \"%s\". The last status update for this device was made by "
                 + "user %s at %s.\n"
@@ -176,7 +189,7 @@ public class NonfunctionalCceNotifierTest {
                 + "at this facility. %s",
             USERNAME_1, EQUIPMENT_TYPE, REFERENCE_NAME, FACILITY_NAME, FUNCTIONAL_STATUS,
             REASON_NOT_WORKING_OR_NOT_IN_USE, LAST_MODIFIER_USERNAME,
-            getDateTimeFormatter().format(MODIFIED_DATE), urlToViewCCe)));
+            getDateTimeFormatter().format(MODIFIED_DATE), urlToViewCCe));
   }
 
   @Test
@@ -185,7 +198,7 @@ public class NonfunctionalCceNotifierTest {
 
     notifier.notify(inventoryItem);
 
-    verify(notificationService, never()).notify(any(), any(), any());
+    verifyZeroInteractions(notificationService);
   }
 
   @Test
@@ -207,10 +220,103 @@ public class NonfunctionalCceNotifierTest {
 
     notifier.notify(inventoryItem);
 
-    verify(notificationService)
-        .notify(any(UserDto.class), any(), contains(USERNAME_1));
-    verify(notificationService)
-        .notify(any(UserDto.class), any(), contains(USERNAME_2));
+    List<NotificationDto> notifications = getNotifications();
+    assertThat(notifications).hasSize(2);
+    assertThat(notifications
+        .stream()
+        .map(notification -> getEmail(notification).getBody())
+        .collect(Collectors.joining()))
+        .contains(USERNAME_1)
+        .contains(USERNAME_2);
+  }
+
+  @Test
+  public void shouldSendOneDigestPerRecipientAndResolveRecipientsOnce() {
+    mockTemplate(EMAIL_NONFUNCTIONAL_CCE_DIGEST_SUBJECT, "${count} items");
+    mockTemplate(EMAIL_NONFUNCTIONAL_CCE_DIGEST_CONTENT, "Dear ${username}:\n${items}");
+    mockTemplate(EMAIL_NONFUNCTIONAL_CCE_DIGEST_ITEM, "${referenceName}");
+
+    notify(inventoryItem, inventoryItem);
+
+    verify(supervisoryNodeReferenceDataService).findSupervisoryNode(facilityId, programId);
+    verify(userReferenceDataService).findByRight(rightId, programId, supervisoryNodeId);
+    MessageDto email = getEmail(getSingleNotification());
+    assertThat(email.getSubject()).isEqualTo("2 items");
+    assertThat(email.getBody())
+        .isEqualTo("Dear " + USERNAME_1 + ":\n" + REFERENCE_NAME + "\n" + REFERENCE_NAME);
+  }
+
+  @Test
+  public void shouldReportPartialFailure() {
+    mockUsers(Arrays.asList(user, user2));
+    when(notificationService.notify(anyCollectionOf(NotificationDto.class)))
+        .thenReturn(ImmutableMap.of(USER_ID_1, true, USER_ID_2, false));
+
+    NotificationResult result = notify(inventoryItem).get(0);
+
+    assertThat(getNotifications()).hasSize(2);
+    assertThat(result.isSuccessful()).isFalse();
+    assertThat(result.getNotifiedRecipients()).containsOnly(USER_ID_1);
+  }
+
+  @Test
+  public void shouldSkipRecipientsAlreadyNotified() {
+    mockUsers(Arrays.asList(user, user2));
+
+    NotificationResult result = notifier.notify(Collections.singletonList(inventoryItem),
+        Collections.singletonList(Collections.singleton(USER_ID_1))).get(0);
+
+    assertThat(getSingleNotification().getUserId()).isEqualTo(USER_ID_2);
+    assertThat(result.isSuccessful()).isTrue();
+    assertThat(result.getNotifiedRecipients()).containsOnly(USER_ID_2);
+  }
+
+  @Test
+  public void shouldNotNotifyIfAllRecipientsWereAlreadyNotified() {
+    NotificationResult result = notifier.notify(Collections.singletonList(inventoryItem),
+        Collections.singletonList(Collections.singleton(USER_ID_1))).get(0);
+
+    verifyZeroInteractions(notificationService);
+    assertThat(result.isSuccessful()).isTrue();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldFailIfNoRecipientWasNotified() {
+    when(notificationService.notify(anyCollectionOf(NotificationDto.class)))
+        .thenReturn(ImmutableMap.of(USER_ID_1, false));
+
+    notifier.notify(inventoryItem);
+  }
+
+  @Test
+  public void shouldNotifyOtherFacilitiesIfRecipientsCannotBeFound() {
+    UUID otherFacilityId = UUID.randomUUID();
+    InventoryItemDto otherItem = mock(InventoryItemDto.class);
+    when(otherItem.getFacilityId()).thenReturn(otherFacilityId);
+    when(otherItem.getProgramId()).thenReturn(programId);
+    IllegalStateException exception = new IllegalStateException("unavailable");
+    when(supervisoryNodeReferenceDataService.findSupervisoryNode(otherFacilityId, programId))
+        .thenThrow(exception);
+
+    List<NotificationResult> results = notify(otherItem, inventoryItem);
+
+    assertThat(results.get(0).getError()).isSameAs(exception);
+    assertThat(results.get(1).isSuccessful()).isTrue();
+    assertThat(getSingleNotification().getUserId()).isEqualTo(USER_ID_1);
+  }
+
+  @Test
+  public void shouldNotifyOtherItemsIfItemCannotBeDescribed() {
+    InventoryItemDto otherItem = mock(InventoryItemDto.class);
+    when(otherItem.getFacilityId()).thenReturn(facilityId);
+    when(otherItem.getProgramId()).thenReturn(programId);
+    when(otherItem.getCatalogItem()).thenThrow(new IllegalStateException("unavailable"));
+
+    List<NotificationResult> results = notify(inventoryItem, otherItem);
+
+    assertThat(results.get(0).isSuccessful()).isTrue();
+    assertThat(results.get(1).isSuccessful()).isFalse();
+    assertThat(getEmail(getSingleNotification()).getBody()).contains(REFERENCE_NAME);
   }
 
   @Test
@@ -317,19 +423,41 @@ public class NonfunctionalCceNotifierTest {
   }
 
   private void mockMessages() {
-    Message.LocalizedMessage localizedMessage = new Message(TEST_KEY).new LocalizedMessage(SUBJECT);
-    when(messageService.localize(new Message(EMAIL_NONFUNCTIONAL_CCE_SUBJECT)))
-        .thenReturn(localizedMessage);
-    localizedMessage = new Message(TEST_KEY).new LocalizedMessage(CONTENT);
-    when(messageService.localize(new Message(EMAIL_NONFUNCTIONAL_CCE_CONTENT)))
-        .thenReturn(localizedMessage);
+    mockTemplate(EMAIL_NONFUNCTIONAL_CCE_SUBJECT, SUBJECT);
+    mockTemplate(EMAIL_NONFUNCTIONAL_CCE_CONTENT, CONTENT);
   }
 
-  private DateTimeFormatter getDateTimeFormatter() {
-    Locale locale = LocaleContextHolder.getLocale();
+  private void mockTemplate(String key, String text) {
+    when(messageService.getTemplate(eq(key), any(Locale.class)))
+        .thenReturn(MessageTemplate.compile(text));
+  }
+
+  private List<NotificationResult> notify(InventoryItemDto... items) {
+    return notifier.notify(Arrays.asList(items),
+        Collections.nCopies(items.length, Collections.emptySet()));
+  }
+
+  private NotificationDto getSingleNotification() {
+    List<NotificationDto> notifications = getNotifications();
+    assertThat(notifications).hasSize(1);
+    return notifications.get(0);
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<NotificationDto> getNotifications() {
+    ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+    verify(notificationService).notify(captor.capture());
+    return new ArrayList<>(captor.getValue());
+  }
 
+  private MessageDto getEmail(NotificationDto notification) {
+    return notification.getMessages().get(NotificationChannelDto.EMAIL.toString());
+  }
+
+  private DateTimeFormatter getDateTimeFormatter() {
     String datePattern = DateTimeFormatterBuilder.getLocalizedDateTimePattern(
-        FormatStyle.MEDIUM, FormatStyle.MEDIUM, Chronology.ofLocale(locale), locale);
+        FormatStyle.MEDIUM, FormatStyle.MEDIUM, Chronology.ofLocale(DEFAULT_LOCALE),
+        DEFAULT_LOCALE);
     return DateTimeFormatter.ofPattern(datePattern);
   }
 
@@ -18,16 +18,24 @@ package org.openlmis.cce.service.notifier;
 import static java.util.Collections.singletonList;
 import static org.apache.commons.lang3.builder.EqualsBuilder.reflectionEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.openlmis.cce.service.notifier.NotificationChannelDto.EMAIL;
 
 import java.net.URI;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -40,7 +48,9 @@ import org.openlmis.cce.dto.UserDto;
 import org.openlmis.cce.service.AuthService;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -66,7 +76,8 @@ public class NotificationServiceTest {
 
   @Before
   public void setUp() {
-    when(authService.obtainAccessToken()).thenReturn(ACCESS_TOKEN);
+    when(authService.withAccessToken(any(Function.class))).thenAnswer(invocation ->
+        ((Function<String, ?>) invocation.getArguments()[0]).apply(ACCESS_TOKEN));
 
     ReflectionTestUtils.setField(notificationService, "restTemplate", restTemplate);
     ReflectionTestUtils.setField(notificationService, "notificationUrl", BASE_URL);
@@ -92,6 +103,38 @@ public class NotificationServiceTest {
             captor.getValue().getBody()));
   }
 
+  @Test
+  public void shouldSendNotificationsConcurrentlyAndReportResultPerRecipient() {
+    ReflectionTestUtils.setField(notificationService, "maxParallelRequests", 2);
+    notificationService.init();
+
+    UUID failingUser = UUID.randomUUID();
+    List<NotificationDto> notifications = Stream
+        .generate(() -> NotificationDto.createEmail(UUID.randomUUID(), MAIL_SUBJECT, MAIL_CONTENT))
+        .limit(5)
+        .collect(Collectors.toList());
+    notifications.add(NotificationDto.createEmail(failingUser, MAIL_SUBJECT, MAIL_CONTENT));
+
+    when(restTemplate.postForObject(any(URI.class), any(HttpEntity.class), eq(Object.class)))
+        .thenAnswer(invocation -> {
+          HttpEntity<NotificationDto> entity =
+              (HttpEntity<NotificationDto>) invocation.getArguments()[1];
+          if (failingUser.equals(entity.getBody().getUserId())) {
+            throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+          }
+          return null;
+        });
+
+    Map<UUID, Boolean> results = notificationService.notify(notifications);
+    notificationService.shutdown();
+
+    assertEquals(6, results.size());
+    assertFalse(results.get(failingUser));
+    assertEquals(5, results.values().stream().filter(sent -> sent).count());
+    verify(restTemplate, times(6))
+        .postForObject(any(URI.class), any(HttpEntity.class), eq(Object.class));
+  }
+
   private NotificationDto getNotificationRequest(UserDto user) {
     Map<String, MessageDto> messages = new HashMap<>();
     messages.put(EMAIL.toString(), new MessageDto(MAIL_SUBJECT, MAIL_CONTENT));
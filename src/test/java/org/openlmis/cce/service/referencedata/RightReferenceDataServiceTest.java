@@ -16,17 +16,22 @@
 package org.openlmis.cce.service.referencedata;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.when;
 
 import java.net.URI;
+import java.time.Clock;
 import java.util.UUID;
 import org.junit.Test;
 import org.openlmis.cce.dto.RightDto;
+import org.openlmis.cce.service.ResourceCache;
+import org.openlmis.cce.util.CacheStatistics;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
+import org.springframework.test.util.ReflectionTestUtils;
 
 public class RightReferenceDataServiceTest extends BaseReferenceDataServiceTest<RightDto> {
   private static final String RIGHT_NAME = "RIGHT_NAME";
@@ -69,6 +74,27 @@ public class RightReferenceDataServiceTest extends BaseReferenceDataServiceTest<
     assertThat(entity.getBody(), is(nullValue()));
   }
 
+  @Test
+  public void shouldServeRightFoundByNameFromCache() throws Exception {
+    // given
+    RightDto instance = generateInstance();
+    ReflectionTestUtils.setField(service, "rightsByName",
+        new ResourceCache<>(1000, 100, 10, Clock.systemUTC(), new CacheStatistics()));
+
+    // when
+    mockArrayRequest(HttpMethod.GET, getArrayResultClass(service));
+    mockArrayResponse(response -> when(response.getBody()).thenReturn(new Object[]{instance}));
+
+    service.findRight(RIGHT_NAME);
+    service.invalidateAll();
+    service.findRight(RIGHT_NAME);
+    RightDto found = service.findRight(RIGHT_NAME);
+
+    // then
+    assertThat(found, equalTo(instance));
+    assertThat(getUris(), hasSize(2));
+  }
+
   @Test
   public void shouldReturnFirstIfThereIsMoreElements() throws Exception {
     // given
@@ -20,6 +20,7 @@ import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
@@ -28,21 +29,30 @@ import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.when;
 
+import com.fasterxml.jackson.core.JsonParseException;
 import java.net.URI;
+import java.time.Clock;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.assertj.core.util.Lists;
 import org.junit.Test;
+import org.openlmis.cce.dto.PermissionStringIndex;
 import org.openlmis.cce.dto.UserDto;
+import org.openlmis.cce.service.ResourceCache;
 import org.openlmis.cce.service.ServiceResponse;
+import org.openlmis.cce.util.CacheStatistics;
 import org.openlmis.cce.util.PageImplRepresentation;
+import org.springframework.boot.actuate.metrics.Metric;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
 
 public class UserReferenceDataServiceTest extends BaseReferenceDataServiceTest<UserDto> {
   private static final String USER_NAME = "admin";
@@ -157,58 +167,61 @@ public class UserReferenceDataServiceTest extends BaseReferenceDataServiceTest<U
   public void shouldRetrievePermissionStrings() throws Exception {
     UserDto instance = generateInstance();
     String etag = RandomStringUtils.random(10);
+    UUID facilityId = UUID.randomUUID();
+    UUID programId = UUID.randomUUID();
+    HttpHeaders headers = new HttpHeaders();
+    headers.setETag("\"new\"");
 
     // when
-    mockArrayRequest(HttpMethod.GET, String[].class);
-    mockArrayResponse(response ->
-        when(response.getBody()).thenReturn(new String[]{"PERMISSION_STRING"}));
+    mockStreamRequest(HttpMethod.GET, HttpStatus.OK, headers,
+        "[\"CCE_MANAGE\", \"CCE_INVENTORY_VIEW|" + facilityId + "|" + programId + "\"]");
 
-    ServiceResponse<List<String>> found = service.getPermissionStrings(instance.getId(), etag);
+    ServiceResponse<PermissionStringIndex> found = service
+        .getPermissionStrings(instance.getId(), etag);
 
     // then
-    ResponseEntity response = getArrayResponse();
-
-    assertThat(found.getBody(), hasItem("PERMISSION_STRING"));
-    assertThat(found.getHeaders(), equalTo(response.getHeaders()));
+    assertThat(found.getBody().size(), is(2));
+    assertThat(found.getBody().hasRight("CCE_MANAGE", null, null), is(true));
+    assertThat(found.getBody().hasRight("CCE_INVENTORY_VIEW", facilityId, programId), is(true));
+    assertThat(found.getHeaders(), equalTo(headers));
     assertThat(found.isModified(), is(true));
 
     URI uri = getUri();
     String url = getRequestUrl(service, instance.getId() + "/permissionStrings");
     assertThat(uri.toString(), equalTo(url));
 
-    HttpEntity entity = getEntity();
-
-    assertThat(entity.getBody(), is(nullValue()));
-    assertThat(entity.getHeaders(), hasEntry(HttpHeaders.IF_NONE_MATCH, singletonList(etag)));
+    assertThat(getRequestHeaders(), hasEntry(HttpHeaders.IF_NONE_MATCH, singletonList(etag)));
   }
 
   @Test
   public void shouldNotRetrievePermissionStringsIfThereWasNoChange() throws Exception {
     UserDto instance = generateInstance();
     String etag = RandomStringUtils.random(10);
+    HttpHeaders headers = new HttpHeaders();
 
     // when
-    mockArrayRequest(HttpMethod.GET, String[].class);
-    mockArrayResponse(response ->
-        when(response.getStatusCode()).thenReturn(HttpStatus.NOT_MODIFIED));
+    mockStreamRequest(HttpMethod.GET, HttpStatus.NOT_MODIFIED, headers, "");
 
-    ServiceResponse<List<String>> found = service.getPermissionStrings(instance.getId(), etag);
+    ServiceResponse<PermissionStringIndex> found = service
+        .getPermissionStrings(instance.getId(), etag);
 
     // then
-    ResponseEntity response = getArrayResponse();
-
     assertThat(found.getBody(), is(nullValue()));
-    assertThat(found.getHeaders(), equalTo(response.getHeaders()));
+    assertThat(found.getHeaders(), equalTo(headers));
     assertThat(found.isModified(), is(false));
 
     URI uri = getUri();
     String url = getRequestUrl(service, instance.getId() + "/permissionStrings");
     assertThat(uri.toString(), equalTo(url));
 
-    HttpEntity entity = getEntity();
+    assertThat(getRequestHeaders(), hasEntry(HttpHeaders.IF_NONE_MATCH, singletonList(etag)));
+  }
 
-    assertThat(entity.getBody(), is(nullValue()));
-    assertThat(entity.getHeaders(), hasEntry(HttpHeaders.IF_NONE_MATCH, singletonList(etag)));
+  @Test(expected = JsonParseException.class)
+  public void shouldNotAcceptPermissionStringsThatAreNotAnArray() throws Exception {
+    mockStreamRequest(HttpMethod.GET, HttpStatus.OK, new HttpHeaders(), "{}");
+
+    service.getPermissionStrings(UUID.randomUUID(), null);
   }
 
   @Test
@@ -267,4 +280,41 @@ public class UserReferenceDataServiceTest extends BaseReferenceDataServiceTest<U
     HttpEntity entity = getEntity();
     assertThat(entity.getBody(), is(nullValue()));
   }
+
+  @Test
+  public void shouldServeUsersFoundByRightFromCache() {
+    // given
+    UUID rightId = UUID.randomUUID();
+    UUID programId = UUID.randomUUID();
+    UUID supervisoryNodeId = UUID.randomUUID();
+    UserDto instance = generateInstance();
+    ReflectionTestUtils.setField(service, "usersByRight",
+        new ResourceCache<>(1000, 100, 10, Clock.systemUTC(), new CacheStatistics()));
+
+    mockArrayRequest(HttpMethod.GET, getArrayResultClass(service));
+    mockArrayResponse(response -> when(response.getBody()).thenReturn(new Object[]{instance}));
+
+    // when
+    service.findByRight(rightId, programId, supervisoryNodeId);
+    service.findByRight(rightId, programId, null);
+    service.invalidateAll();
+    service.findByRight(rightId, programId, supervisoryNodeId);
+    List<UserDto> users = service.findByRight(rightId, programId, supervisoryNodeId);
+
+    // then
+    assertThat(users, hasItem(instance));
+    assertThat(getUris(), hasSize(3));
+    assertThat(service.getUsersByRightCacheStatistics().getHits(), is(1L));
+  }
+
+  @Test
+  public void shouldAddMetricsOfUsersFoundByRightCache() {
+    List<Metric<?>> metrics = new ArrayList<>();
+
+    service.addCacheMetrics(metrics);
+
+    List<String> names = metrics.stream().map(Metric::getName).collect(Collectors.toList());
+    assertThat(names, hasItem("cache.referencedata.users.hits"));
+    assertThat(names, hasItem("cache.referencedata.usersByRight.hits"));
+  }
 }
@@ -0,0 +1,45 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.UUID;
+import org.junit.Test;
+import org.openlmis.cce.exception.ValidationMessageException;
+
+public class KeysetCursorTest {
+
+  @Test
+  public void shouldDecodeEncodedCursor() {
+    KeysetCursor cursor = new KeysetCursor("Fridge #1 / ąę", UUID.randomUUID());
+
+    assertEquals(cursor, KeysetCursor.decode(cursor.encode()));
+  }
+
+  @Test
+  public void shouldDecodeEmptyTokenAsStart() {
+    assertTrue(KeysetCursor.decode("").isStart());
+    assertTrue(KeysetCursor.decode(null).isStart());
+  }
+
+  @Test(expected = ValidationMessageException.class)
+  public void shouldThrowExceptionIfTokenIsInvalid() {
+    KeysetCursor.decode("not-a-cursor");
+  }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class MessageTemplateTest {
+  private static final Map<String, String> VALUES = ImmutableMap.of(
+      "name", "Fridge", "count", "2");
+
+  private StringBuilder buffer = new StringBuilder();
+
+  @Test
+  public void shouldReplaceVariables() {
+    MessageTemplate template = MessageTemplate.compile("${count} x ${name} need attention");
+
+    assertThat(template.render(VALUES::get, buffer)).isEqualTo("2 x Fridge need attention");
+  }
+
+  @Test
+  public void shouldRenderTextWithoutVariables() {
+    assertThat(MessageTemplate.compile("").render(VALUES::get, buffer)).isEmpty();
+    assertThat(MessageTemplate.compile("no variables").render(VALUES::get, buffer))
+        .isEqualTo("no variables");
+  }
+
+  @Test
+  public void shouldLeaveUnknownAndIncompleteVariables() {
+    MessageTemplate template = MessageTemplate.compile("${unknown} ${} $name ${name");
+
+    assertThat(template.render(VALUES::get, buffer)).isEqualTo("${unknown} ${} $name ${name");
+  }
+
+  @Test
+  public void shouldRenderEscapedVariablesAsText() {
+    MessageTemplate template = MessageTemplate.compile("$${name} is ${name}");
+
+    assertThat(template.render(VALUES::get, buffer)).isEqualTo("${name} is Fridge");
+  }
+
+  @Test
+  public void shouldReuseBuffer() {
+    MessageTemplate template = MessageTemplate.compile("${name}");
+    buffer.append("previous");
+
+    assertThat(template.render(VALUES::get, buffer)).isEqualTo("Fridge");
+    assertThat(template.appendTo(buffer, VALUES::get).toString()).isEqualTo("FridgeFridge");
+  }
+}
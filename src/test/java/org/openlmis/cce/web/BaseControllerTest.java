@@ -0,0 +1,155 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+
+package org.openlmis.cce.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.openlmis.cce.i18n.MessageKeys.ERROR_DECOMPRESSED_FILE_TOO_LARGE;
+import static org.openlmis.cce.i18n.MessageKeys.ERROR_FILE_IS_EMPTY;
+import static org.openlmis.cce.i18n.MessageKeys.ERROR_INCORRECT_FILE_FORMAT;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.openlmis.cce.exception.ValidationMessageException;
+import org.springframework.util.StreamUtils;
+
+public class BaseControllerTest {
+  private static final String CSV = "header\nvalue\n";
+  private static final String ZIP = "file.zip";
+  private static final long MAX_SIZE = 1024;
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void shouldOpenPlainCsvFile() throws IOException {
+    InputStream inputStream = new ByteArrayInputStream(getBytes());
+
+    assertThat(BaseController.openCsvFile(inputStream, "file.csv", MAX_SIZE)).isSameAs(inputStream);
+  }
+
+  @Test
+  public void shouldDecompressGzipCompressedCsvFile() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (OutputStream outputStream = new GZIPOutputStream(compressed)) {
+      outputStream.write(getBytes());
+    }
+
+    assertThat(read(compressed, "file.csv.gz")).isEqualTo(CSV);
+  }
+
+  @Test
+  public void shouldRejectGzipCompressedCsvFileLargerThanLimit() throws IOException {
+    expectedException.expect(ValidationMessageException.class);
+    expectedException.expectMessage(ERROR_DECOMPRESSED_FILE_TOO_LARGE);
+
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (OutputStream outputStream = new GZIPOutputStream(compressed)) {
+      outputStream.write(new byte[(int) MAX_SIZE + 1]);
+    }
+
+    read(compressed, "file.csv.gz");
+  }
+
+  @Test
+  public void shouldDecompressCsvFileOfZipArchive() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (ZipOutputStream outputStream = new ZipOutputStream(compressed)) {
+      outputStream.putNextEntry(new ZipEntry("directory/"));
+      outputStream.putNextEntry(new ZipEntry("directory/file.csv"));
+      outputStream.write(getBytes());
+    }
+
+    assertThat(read(compressed, ZIP)).isEqualTo(CSV);
+  }
+
+  @Test
+  public void shouldRejectZipArchiveWithMoreFiles() throws IOException {
+    expectedException.expect(ValidationMessageException.class);
+    expectedException.expectMessage(ERROR_INCORRECT_FILE_FORMAT);
+
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (ZipOutputStream outputStream = new ZipOutputStream(compressed)) {
+      outputStream.putNextEntry(new ZipEntry("file.csv"));
+      outputStream.write(getBytes());
+      outputStream.putNextEntry(new ZipEntry("other.csv"));
+      outputStream.write(getBytes());
+    }
+
+    read(compressed, ZIP);
+  }
+
+  @Test
+  public void shouldRejectZipArchiveWithoutCsvFile() throws IOException {
+    expectedException.expect(ValidationMessageException.class);
+    expectedException.expectMessage(ERROR_INCORRECT_FILE_FORMAT);
+
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (ZipOutputStream outputStream = new ZipOutputStream(compressed)) {
+      outputStream.putNextEntry(new ZipEntry("file.txt"));
+      outputStream.write(getBytes());
+    }
+
+    read(compressed, ZIP);
+  }
+
+  @Test
+  public void shouldRejectZipArchiveWithoutFiles() throws IOException {
+    expectedException.expect(ValidationMessageException.class);
+    expectedException.expectMessage(ERROR_FILE_IS_EMPTY);
+
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (ZipOutputStream outputStream = new ZipOutputStream(compressed)) {
+      outputStream.putNextEntry(new ZipEntry("directory/"));
+    }
+
+    read(compressed, ZIP);
+  }
+
+  @Test
+  public void shouldRejectCsvFileOfZipArchiveLargerThanLimit() throws IOException {
+    expectedException.expect(ValidationMessageException.class);
+    expectedException.expectMessage(ERROR_DECOMPRESSED_FILE_TOO_LARGE);
+
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (ZipOutputStream outputStream = new ZipOutputStream(compressed)) {
+      outputStream.putNextEntry(new ZipEntry("file.csv"));
+      outputStream.write(new byte[(int) MAX_SIZE + 1]);
+    }
+
+    read(compressed, ZIP);
+  }
+
+  private byte[] getBytes() {
+    return CSV.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private String read(ByteArrayOutputStream compressed, String fileName) throws IOException {
+    InputStream inputStream = BaseController.openCsvFile(
+        new ByteArrayInputStream(compressed.toByteArray()), fileName, MAX_SIZE);
+    return StreamUtils.copyToString(inputStream, StandardCharsets.UTF_8);
+  }
+}
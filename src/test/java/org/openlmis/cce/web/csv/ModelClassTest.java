@@ -16,6 +16,8 @@
 package org.openlmis.cce.web.csv;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.openlmis.cce.web.csv.processor.CsvCellProcessors.STRING_TYPE;
@@ -27,6 +29,7 @@ import java.util.List;
 import org.junit.Test;
 import org.openlmis.cce.web.csv.model.ModelClass;
 import org.openlmis.cce.web.csv.model.ModelField;
+import org.openlmis.cce.web.csv.model.PropertyAccessor;
 import org.openlmis.cce.web.dummy.DummyTransferObject;
 
 
@@ -45,6 +48,22 @@ public class ModelClassTest {
     assertThat(mappings[2], is("dummyNestedField.code"));
   }
 
+  @Test
+  public void shouldGetAccessorsGivenTheHeader() {
+    String[] headers = {MANDATORY_STRING_FIELD, "unknown", OPTIONAL_NESTED_FIELD};
+
+    ModelClass<DummyTransferObject> modelClass = new ModelClass<>(DummyTransferObject.class);
+    PropertyAccessor[] accessors = modelClass.getAccessors(headers);
+    DummyTransferObject dto = modelClass.newInstance();
+    accessors[0].set(dto, "value");
+    accessors[2].set(dto, "code");
+
+    assertThat(accessors[1], is(nullValue()));
+    assertThat(dto.getMandatoryStringField(), is("value"));
+    assertThat(dto.getDummyNestedField().getCode(), is("code"));
+    assertThat(accessors[0], is(sameInstance(modelClass.getAccessors(headers)[0])));
+  }
+
   @Test
   public void shouldFindImportFieldWithName() {
     ModelClass<DummyTransferObject> modelClass = new ModelClass<>(DummyTransferObject.class);
@@ -0,0 +1,67 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web.csv.format;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlmis.cce.domain.Dimensions;
+import org.openlmis.cce.domain.EnergySource;
+import org.openlmis.cce.domain.StorageTemperature;
+import org.openlmis.cce.dto.CatalogItemDto;
+import org.openlmis.cce.web.csv.model.ModelClass;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class CsvFormatterTest {
+
+  private CsvFormatter formatter = new CsvFormatter();
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(formatter, "flushInterval", 1);
+  }
+
+  @Test
+  public void shouldWriteHeaderAndValuesOfEachRow() throws IOException {
+    CatalogItemDto item = new CatalogItemDto(true, "equipment-code",
+        "type", "model", "producent", EnergySource.ELECTRIC, 2016,
+        StorageTemperature.MINUS3, 20, -20, "LOW", 1, 1, 1,
+        new Dimensions(100, 200, 300), true, false);
+    CatalogItemDto withoutOptionalFields = new CatalogItemDto(false, null,
+        "type", "model2", "producent", EnergySource.SOLAR, null,
+        StorageTemperature.MINUS3, null, null, null, null, null, null,
+        null, null, false);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    formatter.process(output, new ModelClass<>(CatalogItemDto.class), Stream.of(item, withoutOptionalFields));
+
+    String[] lines = new String(output.toByteArray(), StandardCharsets.UTF_8).split("\r\n");
+    assertThat(lines).containsExactly(
+        "From PQS catalog,PQS equipment code,Type,Model,Manufacturer,Energy source,"
+            + "Date of prequal,Storage temperature,Max operating temp (degrees C),"
+            + "Min operating temp (degrees C),Energy consumption (NA for solar),"
+            + "Holdover time (hours),Gross volume,Net volume,Dimensions,Visible in catalog,"
+            + "Archived",
+        "Y,equipment-code,type,model,producent,ELECTRIC,2016,MINUS3,20,-20,LOW,1,1,1,"
+            + "\"100,200,300\",Y,N",
+        "N,,type,model2,producent,SOLAR,,MINUS3,,,,,,,,,N");
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web.csv.model;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+import org.openlmis.cce.domain.Dimensions;
+import org.openlmis.cce.dto.CatalogItemDto;
+import org.openlmis.cce.web.dummy.DummyTransferObject;
+
+public class PropertyAccessorTest {
+
+  @Test
+  public void shouldGetAndSetProperty() {
+    PropertyAccessor accessor = PropertyAccessor.compile(CatalogItemDto.class, "model");
+    CatalogItemDto dto = new CatalogItemDto();
+
+    accessor.set(dto, "model-1");
+
+    assertThat(dto.getModel(), is("model-1"));
+    assertThat(accessor.get(dto), is("model-1"));
+  }
+
+  @Test
+  public void shouldGetAndSetPrimitiveProperty() {
+    PropertyAccessor accessor =
+        PropertyAccessor.compile(DummyTransferObject.class, "mandatoryIntField");
+    DummyTransferObject dto = new DummyTransferObject();
+
+    accessor.set(dto, 5);
+
+    assertThat(dto.getMandatoryIntField(), is(5));
+    assertThat(accessor.get(dto), is(5));
+  }
+
+  @Test
+  public void shouldCreateIntermediateBeanWhenSettingNestedProperty() {
+    PropertyAccessor accessor =
+        PropertyAccessor.compile(DummyTransferObject.class, "dummyNestedField.code");
+    DummyTransferObject dto = new DummyTransferObject();
+
+    accessor.set(dto, "code-1");
+
+    assertThat(dto.getDummyNestedField(), is(notNullValue()));
+    assertThat(dto.getDummyNestedField().getCode(), is("code-1"));
+    assertThat(accessor.get(dto), is("code-1"));
+  }
+
+  @Test
+  public void shouldReuseExistingIntermediateBean() {
+    PropertyAccessor accessor = PropertyAccessor.compile(CatalogItemDto.class, "dimensions.width");
+    CatalogItemDto dto = new CatalogItemDto();
+    Dimensions dimensions = new Dimensions(1, 2, 3);
+    dto.setDimensions(dimensions);
+
+    accessor.set(dto, 10);
+
+    assertThat(dto.getDimensions(), is(sameInstance(dimensions)));
+    assertThat(dimensions.getWidth(), is(10));
+    assertThat(accessor.get(dto), is(10));
+  }
+
+  @Test
+  public void shouldReturnNullIfIntermediateBeanIsMissing() {
+    PropertyAccessor accessor = PropertyAccessor.compile(CatalogItemDto.class, "dimensions.width");
+
+    assertThat(accessor.get(new CatalogItemDto()), is(nullValue()));
+  }
+
+  @Test
+  public void shouldCompileConstructor() {
+    assertThat(PropertyAccessor.compileConstructor(CatalogItemDto.class).get(),
+        is(new CatalogItemDto()));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldNotSetNestedPropertyIfIntermediateBeanCannotBeCreated() {
+    PropertyAccessor accessor = PropertyAccessor.compile(CatalogItemDto.class, "dimensions.width");
+
+    accessor.set(new CatalogItemDto(), 10);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldNotCompileAccessorOfUnknownProperty() {
+    PropertyAccessor.compile(CatalogItemDto.class, "unknown");
+  }
+}
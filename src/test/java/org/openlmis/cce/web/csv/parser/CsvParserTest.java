@@ -0,0 +1,269 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web.csv.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlmis.cce.domain.CatalogItem;
+import org.openlmis.cce.dto.CatalogItemDto;
+import org.openlmis.cce.exception.ValidationMessageException;
+import org.openlmis.cce.util.Message;
+import org.openlmis.cce.web.csv.model.ModelClass;
+import org.openlmis.cce.web.csv.parser.ValidationReport.RowError;
+import org.openlmis.cce.web.csv.recordhandler.ChunkValidator;
+import org.openlmis.cce.web.csv.recordhandler.RecordProcessor;
+import org.openlmis.cce.web.csv.recordhandler.RecordWriter;
+import org.openlmis.cce.web.validator.CsvHeaderValidator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+public class CsvParserTest {
+  private static final String HEADER = "Type, Model, Manufacturer, Energy source, "
+      + "Storage temperature, From PQS catalog, PQS equipment code, Date of prequal, "
+      + "Max operating temp (degrees C), Min operating temp (degrees C), "
+      + "Energy consumption (NA for solar), Holdover time (hours), Dimensions, "
+      + "Visible in catalog, Archived";
+  private static final String ROW = "sometype, model%d, somemanuf, ELECTRIC, PLUS4, Y, "
+      + "eqcode%d, 2010, 10, -10, NA, 3, \"2, 1, 5\", Y, N";
+  private static final int ROWS = 25;
+
+  private PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+  private RecordProcessor<CatalogItemDto, CatalogItem> processor = CatalogItem::newInstance;
+  private List<CatalogItem> written = Collections.synchronizedList(new ArrayList<>());
+  private Set<String> threads = ConcurrentHashMap.newKeySet();
+
+  private CsvParser parser = new CsvParser();
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(parser, "chunkSize", 2);
+    ReflectionTestUtils.setField(parser, "poolSize", 3);
+    ReflectionTestUtils.setField(parser, "queueCapacity", 2);
+    ReflectionTestUtils.setField(parser, "maxReportedErrors", 10);
+    ReflectionTestUtils.setField(parser, "transactionManager", transactionManager);
+    parser.init();
+  }
+
+  @After
+  public void tearDown() {
+    parser.shutdown();
+  }
+
+  @Test
+  public void shouldWriteEachChunkInItsOwnTransaction() throws IOException {
+    RecordWriter<CatalogItem> writer = entities -> {
+      threads.add(Thread.currentThread().getName());
+      written.addAll(entities);
+    };
+
+    int count = parse(writer);
+
+    assertThat(count).isEqualTo(ROWS);
+    assertThat(written.stream().map(CatalogItem::getModel).collect(Collectors.toSet()))
+        .hasSize(ROWS)
+        .contains("model0", "model" + (ROWS - 1));
+    assertThat(threads).isNotEmpty();
+    threads.forEach(name -> assertThat(name).startsWith("csv-parser-"));
+    verify(transactionManager, times(13)).commit(any(TransactionStatus.class));
+  }
+
+  @Test
+  public void shouldStopReadingAndRethrowFirstFailure() throws IOException {
+    ValidationMessageException failure = new ValidationMessageException("test.failure");
+    RecordWriter<CatalogItem> writer = entities -> {
+      written.addAll(entities);
+      throw failure;
+    };
+
+    try {
+      parse(writer);
+    } catch (ValidationMessageException exp) {
+      assertThat(exp).isSameAs(failure);
+      assertThat(written.size()).isLessThan(ROWS);
+      return;
+    }
+
+    throw new AssertionError("expected the failure of a chunk to be rethrown");
+  }
+
+  @Test
+  public void shouldProcessChunksOfFilesUploadedAtTheSameTimeSideBySide() throws Exception {
+    CountDownLatch firstFileWriting = new CountDownLatch(1);
+    CountDownLatch secondFileWritten = new CountDownLatch(1);
+    AtomicBoolean waitedTooLong = new AtomicBoolean();
+    RecordWriter<CatalogItem> blocked = entities -> {
+      firstFileWriting.countDown();
+      try {
+        waitedTooLong.compareAndSet(false, !secondFileWritten.await(10, TimeUnit.SECONDS));
+      } catch (InterruptedException exp) {
+        Thread.currentThread().interrupt();
+      }
+    };
+    ExecutorService uploads = Executors.newSingleThreadExecutor();
+
+    try {
+      Future<Integer> first = uploads.submit(() -> parse(blocked));
+      assertThat(firstFileWriting.await(10, TimeUnit.SECONDS)).isTrue();
+
+      assertThat(parse(entities -> secondFileWritten.countDown())).isEqualTo(ROWS);
+      assertThat(first.get(10, TimeUnit.SECONDS)).isEqualTo(ROWS);
+      assertThat(waitedTooLong.get()).isFalse();
+    } finally {
+      uploads.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldReportProgressAndContinueAfterFailedChunksIfListenerAllowsIt()
+      throws IOException {
+    AtomicInteger readRows = new AtomicInteger();
+    AtomicInteger writtenRows = new AtomicInteger();
+    AtomicInteger failedRows = new AtomicInteger();
+    RecordWriter<CatalogItem> writer = entities -> {
+      if (entities.stream().anyMatch(item -> "model0".equals(item.getModel()))) {
+        throw new ValidationMessageException("test.failure");
+      }
+    };
+    ParseListener listener = new ParseListener() {
+      @Override
+      public void chunkRead(int rows) {
+        readRows.addAndGet(rows);
+      }
+
+      @Override
+      public void chunkWritten(int rows) {
+        writtenRows.addAndGet(rows);
+      }
+
+      @Override
+      public void chunkFailed(int rows, RuntimeException error) {
+        failedRows.addAndGet(rows);
+      }
+    };
+
+    int count = parse(writer, listener);
+
+    assertThat(count).isEqualTo(ROWS);
+    assertThat(readRows.get()).isEqualTo(ROWS);
+    assertThat(writtenRows.get()).isEqualTo(ROWS - 2);
+    assertThat(failedRows.get()).isEqualTo(2);
+    verify(transactionManager, times(12)).commit(any(TransactionStatus.class));
+    verify(transactionManager).rollback(any(TransactionStatus.class));
+  }
+
+  @Test
+  public void shouldReportErrorsOfAllRowsWithoutWriting() throws IOException {
+    TransactionStatus status = mock(TransactionStatus.class);
+    when(transactionManager.getTransaction(any(TransactionDefinition.class))).thenReturn(status);
+
+    RecordProcessor<CatalogItemDto, CatalogItem> failing = dto -> {
+      if ("model3".equals(dto.getModel())) {
+        throw new ValidationMessageException("test.processor");
+      }
+      return CatalogItem.newInstance(dto);
+    };
+    ChunkValidator<CatalogItem> validator = entities -> {
+      threads.add(Thread.currentThread().getName());
+      for (int i = 0; i < entities.size(); ++i) {
+        if ("model8".equals(entities.get(i).getModel())) {
+          return Collections.singletonMap(i, new Message("test.validator"));
+        }
+      }
+      return Collections.emptyMap();
+    };
+
+    ValidationReport report = parser.validate(getCsv("model5", "invalid"),
+        new ModelClass<>(CatalogItemDto.class), new CsvHeaderValidator(), failing, validator);
+
+    assertThat(report.getRowCount()).isEqualTo(ROWS);
+    assertThat(report.getErrorCount()).isEqualTo(3);
+    assertThat(report.getErrors().stream().map(RowError::getRow).collect(Collectors.toList()))
+        .containsExactly(4, 6, 9);
+    assertThat(report.getErrors().stream()
+        .map(error -> error.getMessage().toString().split(":")[0])
+        .collect(Collectors.toList()))
+        .containsExactly("test.processor", "cce.error.upload.record.invalid", "test.validator");
+    threads.forEach(name -> assertThat(name).startsWith("csv-parser-"));
+    verify(status, times(12)).setRollbackOnly();
+  }
+
+  @Test
+  public void shouldKeepOnlyErrorsOfFirstRowsWhenLimitIsReached() throws IOException {
+    ReflectionTestUtils.setField(parser, "maxReportedErrors", 2);
+    TransactionStatus status = mock(TransactionStatus.class);
+    when(transactionManager.getTransaction(any(TransactionDefinition.class))).thenReturn(status);
+
+    ChunkValidator<CatalogItem> validator = entities -> Collections.singletonMap(
+        0, new Message("test.validator"));
+
+    ValidationReport report = parser.validate(getCsv(null, null),
+        new ModelClass<>(CatalogItemDto.class), new CsvHeaderValidator(), processor, validator);
+
+    assertThat(report.getErrorCount()).isEqualTo(13);
+    assertThat(report.getErrors().stream().map(RowError::getRow).collect(Collectors.toList()))
+        .containsExactly(1, 3);
+  }
+
+  private int parse(RecordWriter<CatalogItem> writer) throws IOException {
+    return parse(writer, ParseListener.NONE);
+  }
+
+  private int parse(RecordWriter<CatalogItem> writer, ParseListener listener)
+      throws IOException {
+    return parser.parse(getCsv(null, null), new ModelClass<>(CatalogItemDto.class),
+        new CsvHeaderValidator(), processor, writer, listener);
+  }
+
+  private InputStream getCsv(String invalidModel, String invalidHoldoverTime) {
+    StringBuilder csv = new StringBuilder(HEADER);
+    for (int i = 0; i < ROWS; ++i) {
+      String row = String.format(ROW, i, i);
+      if (row.contains(invalidModel + ",")) {
+        row = row.replace(", 3, ", ", " + invalidHoldoverTime + ", ");
+      }
+      csv.append('\n').append(row);
+    }
+
+    return new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8));
+  }
+}
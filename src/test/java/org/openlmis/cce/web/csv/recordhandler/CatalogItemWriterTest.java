@@ -16,27 +16,36 @@
 package org.openlmis.cce.web.csv.recordhandler;
 
 import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
 import static org.assertj.core.util.Lists.emptyList;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.openlmis.cce.i18n.CatalogItemMessageKeys.ERROR_MANUFACTURER_MODEL_DUPLICATED;
+import static org.openlmis.cce.i18n.CatalogItemMessageKeys.ERROR_MANUFACTURER_MODEL_NOT_UNIQUE;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import org.assertj.core.util.Lists;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.openlmis.cce.domain.CatalogItem;
 import org.openlmis.cce.repository.CatalogItemRepository;
+import org.openlmis.cce.util.Message;
 
 @RunWith(MockitoJUnitRunner.class)
 public class CatalogItemWriterTest {
@@ -60,7 +69,7 @@ public class CatalogItemWriterTest {
 
 
   @Captor
-  private ArgumentCaptor<Iterable<CatalogItem>> catalogItemsCaptor;
+  private ArgumentCaptor<List<CatalogItem>> catalogItemsCaptor;
 
   @Mock
   private CatalogItemRepository catalogItemRepository;
@@ -69,9 +78,10 @@ public class CatalogItemWriterTest {
   private CatalogItemWriter catalogItemWriter;
 
   @Test
-  public void shouldNotSetIdIfExistingItemNotFound() {
+  public void shouldSetNewIdIfExistingItemNotFound() {
     //given
     CatalogItem toSave = create(EQUIPMENT_CODE_1, MANUFACTURER_1, MODEL_1);
+    toSave.setId(null);
     List<CatalogItem> toSaveList = singletonList(toSave);
 
     // when
@@ -81,11 +91,53 @@ public class CatalogItemWriterTest {
     catalogItemWriter.write(toSaveList);
 
     // then
-    verify(catalogItemRepository).save(toSaveList);
+    verify(catalogItemRepository).upsert(catalogItemsCaptor.capture());
+
+    List<CatalogItem> captured = catalogItemsCaptor.getValue();
+    assertThat(captured, hasSize(1));
+    assertThat(captured.get(0).getId(), notNullValue());
   }
 
   @Test
-  public void shouldFindByEquipmentCode() throws Exception {
+  public void shouldLockKeysBeforeFindingExistingItems() {
+    List<CatalogItem> toSaveList = singletonList(create(EQUIPMENT_CODE_1, MANUFACTURER_1, MODEL_1));
+
+    when(catalogItemRepository.findExisting(anyListOf(CatalogItem.class)))
+        .thenReturn(emptyList());
+
+    catalogItemWriter.write(toSaveList);
+
+    InOrder order = inOrder(catalogItemRepository);
+    order.verify(catalogItemRepository).lockKeys(toSaveList);
+    order.verify(catalogItemRepository).findExisting(toSaveList);
+    order.verify(catalogItemRepository).upsert(anyListOf(CatalogItem.class));
+  }
+
+  @Test
+  public void shouldWriteItemsWithSameKeyOnce() {
+    //given
+    CatalogItem first = create(EQUIPMENT_CODE_1, MANUFACTURER_1, MODEL_1);
+    CatalogItem second = create(EQUIPMENT_CODE_1, MANUFACTURER_2, MODEL_1);
+    CatalogItem third = create(null, MANUFACTURER_3, MODEL_3);
+    CatalogItem fourth = create(null, MANUFACTURER_3, MODEL_3);
+
+    // when
+    when(catalogItemRepository.findExisting(anyListOf(CatalogItem.class)))
+        .thenReturn(emptyList());
+
+    catalogItemWriter.write(Arrays.asList(first, second, third, fourth));
+
+    // then
+    verify(catalogItemRepository).upsert(catalogItemsCaptor.capture());
+
+    List<CatalogItem> captured = catalogItemsCaptor.getValue();
+    assertThat(captured, hasSize(2));
+    assertThat(captured.get(0), sameInstance(second));
+    assertThat(captured.get(1), sameInstance(fourth));
+  }
+
+  @Test
+  public void shouldFindByEquipmentCodeAndModel() throws Exception {
     // given
     CatalogItem toSave = create(EQUIPMENT_CODE_1, MANUFACTURER_1, MODEL_1);
     List<CatalogItem> toSaveList = singletonList(toSave);
@@ -103,9 +155,9 @@ public class CatalogItemWriterTest {
     catalogItemWriter.write(toSaveList);
 
     //then
-    verify(catalogItemRepository).save(catalogItemsCaptor.capture());
+    verify(catalogItemRepository).upsert(catalogItemsCaptor.capture());
 
-    List<CatalogItem> captured = Lists.newArrayList(catalogItemsCaptor.getValue());
+    List<CatalogItem> captured = catalogItemsCaptor.getValue();
     assertThat(captured, hasSize(1));
     assertThat(captured.get(0).getId(), equalTo(db1.getId()));
   }
@@ -129,9 +181,9 @@ public class CatalogItemWriterTest {
     catalogItemWriter.write(toSaveList);
 
     //then
-    verify(catalogItemRepository).save(catalogItemsCaptor.capture());
+    verify(catalogItemRepository).upsert(catalogItemsCaptor.capture());
 
-    List<CatalogItem> captured = Lists.newArrayList(catalogItemsCaptor.getValue());
+    List<CatalogItem> captured = catalogItemsCaptor.getValue();
     assertThat(captured, hasSize(1));
     assertThat(captured.get(0).getId(), equalTo(db3.getId()));
   }
@@ -155,7 +207,87 @@ public class CatalogItemWriterTest {
     catalogItemWriter.write(toSaveList);
 
     //then
-    verify(catalogItemRepository).save(toSaveList);
+    verify(catalogItemRepository).upsert(catalogItemsCaptor.capture());
+
+    List<CatalogItem> captured = catalogItemsCaptor.getValue();
+    assertThat(captured, hasSize(1));
+    assertThat(captured.get(0).getId(), not(equalTo(db3.getId())));
+  }
+
+  @Test
+  public void shouldNotFindIfModelNotMatch() {
+    // given
+    CatalogItem toSave = create(EQUIPMENT_CODE_1, MANUFACTURER_2, MODEL_2);
+    List<CatalogItem> toSaveList = singletonList(toSave);
+
+    CatalogItem db1 = create(EQUIPMENT_CODE_1, MANUFACTURER_1, MODEL_1);
+    List<CatalogItem> fromDb = singletonList(db1);
+
+    // when
+    when(catalogItemRepository.findExisting(anyListOf(CatalogItem.class)))
+        .thenReturn(fromDb);
+
+    catalogItemWriter.write(toSaveList);
+
+    //then
+    verify(catalogItemRepository).upsert(catalogItemsCaptor.capture());
+
+    List<CatalogItem> captured = catalogItemsCaptor.getValue();
+    assertThat(captured, hasSize(1));
+    assertThat(captured.get(0).getId(), not(equalTo(db1.getId())));
+  }
+
+  @Test
+  public void shouldReportItemsConflictingWithExistingOnes() {
+    // given
+    CatalogItem sameManufacturerAndModel = create(EQUIPMENT_CODE_3, MANUFACTURER_3, MODEL_3);
+    CatalogItem matchedByManufacturerAndModel = create(null, MANUFACTURER_1, MODEL_1);
+    CatalogItem matchedByEquipmentCodeAndModel = create(EQUIPMENT_CODE_1, MANUFACTURER_4, MODEL_1);
+    CatalogItem sameEquipmentCodeOfOtherModel = create(EQUIPMENT_CODE_1, MANUFACTURER_2, MODEL_2);
+
+    CatalogItem db1 = create(EQUIPMENT_CODE_1, MANUFACTURER_1, MODEL_1);
+    CatalogItem db2 = create(EQUIPMENT_CODE_2, MANUFACTURER_2, MODEL_2);
+    CatalogItem db3 = create(null, MANUFACTURER_3, MODEL_3);
+    List<CatalogItem> fromDb = Arrays.asList(db1, db2, db3);
+
+    // when
+    when(catalogItemRepository.findMatching(anyListOf(CatalogItem.class)))
+        .thenReturn(fromDb);
+
+    Map<Integer, Message> errors = catalogItemWriter.newValidator().validate(Arrays.asList(
+        sameManufacturerAndModel, matchedByManufacturerAndModel, matchedByEquipmentCodeAndModel,
+        sameEquipmentCodeOfOtherModel
+    ));
+
+    // then
+    assertThat(errors.keySet(), hasSize(2));
+    assertThat(errors.get(0), equalTo(new Message(ERROR_MANUFACTURER_MODEL_NOT_UNIQUE)));
+    assertThat(errors.get(3), equalTo(new Message(ERROR_MANUFACTURER_MODEL_NOT_UNIQUE)));
+  }
+
+  @Test
+  public void shouldReportItemsWithSameManufacturerAndModelInDifferentChunks() {
+    // given
+    CatalogItem first = create(EQUIPMENT_CODE_1, MANUFACTURER_1, MODEL_1);
+    CatalogItem second = create(null, MANUFACTURER_2, MODEL_2);
+    CatalogItem sameEquipmentCode = create(EQUIPMENT_CODE_1, MANUFACTURER_1, MODEL_1);
+    CatalogItem sameManufacturerAndModel = create(null, MANUFACTURER_2, MODEL_2);
+    CatalogItem differentEquipmentCode = create(EQUIPMENT_CODE_2, MANUFACTURER_1, MODEL_1);
+
+    // when
+    when(catalogItemRepository.findMatching(anyListOf(CatalogItem.class)))
+        .thenReturn(emptyList());
+
+    ChunkValidator<CatalogItem> validator = catalogItemWriter.newValidator();
+    Map<Integer, Message> firstErrors = validator.validate(Arrays.asList(first, second));
+    Map<Integer, Message> secondErrors = validator.validate(Arrays.asList(
+        sameEquipmentCode, sameManufacturerAndModel, differentEquipmentCode
+    ));
+
+    // then
+    assertThat(firstErrors.keySet(), hasSize(0));
+    assertThat(secondErrors,
+        equalTo(singletonMap(2, new Message(ERROR_MANUFACTURER_MODEL_DUPLICATED))));
   }
 
   private CatalogItem create(String equipmentCode, String manufacturer, String model) {
@@ -0,0 +1,189 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web.csv.recordhandler;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_ITEM_ALREADY_EXISTS;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_ITEM_DUPLICATED;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.cce.CatalogItemDataBuilder;
+import org.openlmis.cce.InventoryItemDataBuilder;
+import org.openlmis.cce.domain.CatalogItem;
+import org.openlmis.cce.domain.InventoryItem;
+import org.openlmis.cce.exception.ValidationMessageException;
+import org.openlmis.cce.repository.InventoryItemRepository;
+
+@RunWith(MockitoJUnitRunner.class)
+public class InventoryItemWriterTest {
+  private static final String EQUIPMENT_TRACKING_ID_1 = "equipmentTrackingId1";
+  private static final String EQUIPMENT_TRACKING_ID_2 = "equipmentTrackingId2";
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Captor
+  private ArgumentCaptor<Collection<String>> equipmentTrackingIdsCaptor;
+
+  @Captor
+  private ArgumentCaptor<Collection<String>> modelsCaptor;
+
+  @Captor
+  private ArgumentCaptor<Collection<String>> typesCaptor;
+
+  @Mock
+  private InventoryItemRepository inventoryItemRepository;
+
+  @InjectMocks
+  private InventoryItemWriter inventoryItemWriter;
+
+  private CatalogItem catalogItem = new CatalogItemDataBuilder().build();
+
+  @Test
+  public void shouldFindExistingItemsOfWholeChunkAtOnce() {
+    InventoryItem item1 = create(EQUIPMENT_TRACKING_ID_1);
+    InventoryItem item2 = create(EQUIPMENT_TRACKING_ID_2);
+    InventoryItem item3 = create(null);
+    List<InventoryItem> toSave = Arrays.asList(item1, item2, item3);
+
+    mockExistingItems(emptyList());
+
+    inventoryItemWriter.write(toSave);
+
+    verify(inventoryItemRepository)
+        .findByEquipmentTrackingIdInAndCatalogItem_ModelInAndCatalogItem_TypeIn(
+            equipmentTrackingIdsCaptor.capture(), modelsCaptor.capture(), typesCaptor.capture());
+    assertThat(equipmentTrackingIdsCaptor.getValue(),
+        containsInAnyOrder(EQUIPMENT_TRACKING_ID_1, EQUIPMENT_TRACKING_ID_2));
+    assertThat(modelsCaptor.getValue(), containsInAnyOrder(catalogItem.getModel()));
+    assertThat(typesCaptor.getValue(), containsInAnyOrder(catalogItem.getType()));
+    verify(inventoryItemRepository).save(toSave);
+  }
+
+  @Test
+  public void shouldNotSearchForExistingItemsIfNoneHasEquipmentTrackingId() {
+    List<InventoryItem> toSave = singletonList(create(null));
+
+    inventoryItemWriter.write(toSave);
+
+    verify(inventoryItemRepository, never())
+        .findByEquipmentTrackingIdInAndCatalogItem_ModelInAndCatalogItem_TypeIn(
+            any(), any(), any());
+    verify(inventoryItemRepository).save(toSave);
+  }
+
+  @Test
+  public void shouldThrowExceptionIfItemAlreadyExists() {
+    expectedException.expect(ValidationMessageException.class);
+    expectedException.expectMessage(ERROR_ITEM_ALREADY_EXISTS);
+
+    mockExistingItems(singletonList(create(EQUIPMENT_TRACKING_ID_1)));
+
+    try {
+      inventoryItemWriter.write(
+          Arrays.asList(create(EQUIPMENT_TRACKING_ID_1), create(EQUIPMENT_TRACKING_ID_2)));
+    } finally {
+      verify(inventoryItemRepository, never()).save(anyCollectionOf(InventoryItem.class));
+    }
+  }
+
+  @Test
+  public void shouldThrowExceptionIfItemWithSameModelAndTypeAlreadyExists() {
+    expectedException.expect(ValidationMessageException.class);
+    expectedException.expectMessage(ERROR_ITEM_ALREADY_EXISTS);
+
+    CatalogItem sameModelAndType = new CatalogItemDataBuilder()
+        .withModel(catalogItem.getModel())
+        .withType(catalogItem.getType())
+        .build();
+    mockExistingItems(singletonList(create(EQUIPMENT_TRACKING_ID_1, sameModelAndType)));
+
+    try {
+      inventoryItemWriter.write(singletonList(create(EQUIPMENT_TRACKING_ID_1)));
+    } finally {
+      verify(inventoryItemRepository, never()).save(anyCollectionOf(InventoryItem.class));
+    }
+  }
+
+  @Test
+  public void shouldSaveItemsIfOnlyPartOfKeyMatchesExistingItem() {
+    CatalogItem otherModel = new CatalogItemDataBuilder()
+        .withModel("other-model")
+        .withType(catalogItem.getType())
+        .build();
+    List<InventoryItem> toSave = Arrays
+        .asList(create(EQUIPMENT_TRACKING_ID_1), create(EQUIPMENT_TRACKING_ID_2, otherModel));
+    mockExistingItems(Arrays
+        .asList(create(EQUIPMENT_TRACKING_ID_1, otherModel), create(EQUIPMENT_TRACKING_ID_2)));
+
+    inventoryItemWriter.write(toSave);
+
+    verify(inventoryItemRepository).save(toSave);
+  }
+
+  @Test
+  public void shouldThrowExceptionIfItemIsDuplicatedInChunk() {
+    expectedException.expect(ValidationMessageException.class);
+    expectedException.expectMessage(ERROR_ITEM_DUPLICATED);
+
+    try {
+      inventoryItemWriter.write(
+          Arrays.asList(create(EQUIPMENT_TRACKING_ID_1), create(EQUIPMENT_TRACKING_ID_1)));
+    } finally {
+      verify(inventoryItemRepository, never()).save(anyCollectionOf(InventoryItem.class));
+    }
+  }
+
+  private void mockExistingItems(List<InventoryItem> existing) {
+    when(inventoryItemRepository
+        .findByEquipmentTrackingIdInAndCatalogItem_ModelInAndCatalogItem_TypeIn(
+            anyCollectionOf(String.class), anyCollectionOf(String.class),
+            anyCollectionOf(String.class)))
+        .thenReturn(existing);
+  }
+
+  private InventoryItem create(String equipmentTrackingId) {
+    return create(equipmentTrackingId, catalogItem);
+  }
+
+  private InventoryItem create(String equipmentTrackingId, CatalogItem catalogItem) {
+    return new InventoryItemDataBuilder()
+        .withId(null)
+        .withCatalogItem(catalogItem)
+        .withEquipmentTrackingId(equipmentTrackingId)
+        .build();
+  }
+
+}
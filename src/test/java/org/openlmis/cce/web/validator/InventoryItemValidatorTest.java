@@ -46,6 +46,7 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.openlmis.cce.InventoryItemDataBuilder;
 import org.openlmis.cce.domain.FunctionalStatus;
 import org.openlmis.cce.domain.InventoryItem;
+import org.openlmis.cce.dto.InventoryItemCsvDto;
 import org.openlmis.cce.dto.InventoryItemDto;
 import org.openlmis.cce.dto.ObjectReferenceDto;
 import org.openlmis.cce.exception.ValidationMessageException;
@@ -107,6 +108,32 @@ public class InventoryItemValidatorTest {
     inventoryItemValidator.validate(inventoryItemDto, null);
   }
 
+  @Test
+  public void shouldThrowExceptionIfCatalogItemIdOfUploadedItemIsNull() {
+    expectedEx.expect(ValidationMessageException.class);
+    expectedEx.expectMessage(
+        new Message(ERROR_CATALOG_ITEM_REQUIRED, "").toString());
+
+    InventoryItemCsvDto csvDto = new InventoryItemCsvDto();
+    inventoryItem.export(csvDto);
+    csvDto.setCatalogItemId(null);
+
+    inventoryItemValidator.validateRequiredFields(csvDto);
+  }
+
+  @Test
+  public void shouldThrowExceptionIfFacilityIdOfUploadedItemIsNull() {
+    expectedEx.expect(ValidationMessageException.class);
+    expectedEx.expectMessage(
+        new Message(ERROR_FACILITY_REQUIRED, "").toString());
+
+    InventoryItemCsvDto csvDto = new InventoryItemCsvDto();
+    inventoryItem.export(csvDto);
+    csvDto.setFacilityId(null);
+
+    inventoryItemValidator.validateRequiredFields(csvDto);
+  }
+
   @Test
   public void shouldThrowExceptionIfProgramIdIsNull() {
     expectedEx.expect(ValidationMessageException.class);